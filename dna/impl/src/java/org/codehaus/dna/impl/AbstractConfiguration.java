@@ -0,0 +1,697 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+
+/**
+ * Abstract base class for read-only Configuration implementations.
+ * Subclasses supply the name, value, attributes and children and
+ * this class implements the typed accessors on top of
+ * {@link #getValue(String)} and {@link #getAttribute(String, String)}.
+ * As the configuration can not change the result of parsing a
+ * value or attribute is cached after the first typed access.
+ *
+ * <p>The indexed accessors are implemented on top of
+ * {@link #getChildren()} and {@link #getAttributeNames()} and
+ * so subclasses are expected to return cached arrays from them.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+abstract class AbstractConfiguration
+    implements IndexedConfiguration, HashedConfiguration
+{
+    /**
+     * Postfix indicating that location is generated.
+     */
+    private static final String AUTOGEN_POSTFIX = "<autogen>";
+
+    /**
+     * Constant for empty String array to reduce
+     * creation cost for empty array.
+     */
+    static final String[] EMPTY_STRING_ARRAY = new String[ 0 ];
+
+    /**
+     * Constant for empty configuration array to reduce
+     * creation cost for empty array.
+     */
+    static final Configuration[] EMPTY_CONFIG_ARRAY = new Configuration[ 0 ];
+
+    /**
+     * The typed form of value, created on first
+     * typed access (May be null).
+     */
+    private volatile TypedValue m_typedValue;
+
+    /**
+     * Typed attribute values keyed by attribute name, created
+     * on first typed attribute access (May be null).
+     */
+    private volatile ConcurrentMap m_typedAttributes;
+
+    /**
+     * The structural hash, calculated on first access (May be null).
+     */
+    private volatile Long m_structuralHash;
+
+    /**
+     * Return a child Configuration element with specified name.
+     * If no such element exists an element will be autocreated.
+     *
+     * @param name the name of child configuration object
+     * @return a child Configuration element with specified name.
+     */
+    public Configuration getChild( final String name )
+    {
+        return getChild( name, true );
+    }
+
+    /**
+     * Return the structural hash of configuration. The hash is
+     * calculated on first access and then reused.
+     *
+     * @return the structural hash of configuration.
+     */
+    public long getStructuralHash()
+    {
+        Long hash = m_structuralHash;
+        if( null == hash )
+        {
+            hash = new Long( ConfigurationUtil.computeStructuralHash( this, null ) );
+            m_structuralHash = hash;
+        }
+        return hash.longValue();
+    }
+
+    /**
+     * Return the structural hash if it has been calculated.
+     *
+     * @return the structural hash or null
+     */
+    Long getCachedStructuralHash()
+    {
+        return m_structuralHash;
+    }
+
+    /**
+     * Set the structural hash calculated by
+     * {@link ConfigurationUtil#structuralHash(Configuration)}.
+     *
+     * @param hash the structural hash
+     */
+    void setStructuralHash( final long hash )
+    {
+        m_structuralHash = new Long( hash );
+    }
+
+    /**
+     * Return the number of child elements.
+     *
+     * @return the number of child elements.
+     */
+    public int getChildCount()
+    {
+        return getChildren().length;
+    }
+
+    /**
+     * Return the child element at specified index.
+     *
+     * @param index the index of child
+     * @return the child element
+     */
+    public Configuration getChild( final int index )
+    {
+        return getChildren()[ index ];
+    }
+
+    /**
+     * Return the number of attributes.
+     *
+     * @return the number of attributes.
+     */
+    public int getAttributeCount()
+    {
+        return getAttributeNames().length;
+    }
+
+    /**
+     * Return the name of attribute at specified index.
+     *
+     * @param index the index of attribute
+     * @return the name of attribute
+     */
+    public String getAttributeName( final int index )
+    {
+        return getAttributeNames()[ index ];
+    }
+
+    /**
+     * Pass each child element to visitor in order until all
+     * children have been visited or the visitor returns false.
+     *
+     * @param visitor the visitor
+     * @return true if all children were visited
+     */
+    public boolean forEachChild( final ConfigurationVisitor visitor )
+    {
+        if( null == visitor )
+        {
+            throw new NullPointerException( "visitor" );
+        }
+        final Configuration[] children = getChildren();
+        for( int i = 0; i < children.length; i++ )
+        {
+            if( !visitor.visit( children[ i ] ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return text value of element.
+     *
+     * @return the value
+     * @throws ConfigurationException if no value in element
+     */
+    public String getValue()
+        throws ConfigurationException
+    {
+        final String value = getValue( null );
+        if( null != value )
+        {
+            return value;
+        }
+        else
+        {
+            final String message = "No value specified";
+            throw new ConfigurationException( message, getPath(), getLocation() );
+        }
+    }
+
+    /**
+     * Return text value of element as a boolean.
+     *
+     * @return the value
+     * @throws ConfigurationException if no value in element
+     *         or value can not be converted to correct type
+     */
+    public boolean getValueAsBoolean()
+        throws ConfigurationException
+    {
+        return getRequiredTypedValue().toBoolean();
+    }
+
+    /**
+     * Return text value of element as a boolean.
+     * Use specified default if no value in element or
+     * value can not be converted to correct type.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public boolean getValueAsBoolean( final boolean defaultValue )
+    {
+        final TypedValue typed = getTypedValue();
+        if( null != typed )
+        {
+            return typed.toBoolean();
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Return text value of element as an integer.
+     *
+     * @return the value
+     * @throws ConfigurationException if no value in element
+     *         or value can not be converted to correct type
+     */
+    public int getValueAsInteger()
+        throws ConfigurationException
+    {
+        final TypedValue typed = getRequiredTypedValue();
+        if( typed.isInteger() )
+        {
+            return typed.toInteger( 0 );
+        }
+        final String value = getValue();
+        try
+        {
+            //Parse again to report cause of failure
+            return Integer.parseInt( value );
+        }
+        catch( final NumberFormatException nfe )
+        {
+            final String message =
+                "Unable to parse " + value + " as an integer";
+            throw new ConfigurationException( message, getPath(), getLocation(), nfe );
+        }
+    }
+
+    /**
+     * Return text value of element as an integer.
+     * Use specified default if no value in element or
+     * value can not be converted to correct type.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public int getValueAsInteger( final int defaultValue )
+    {
+        final TypedValue typed = getTypedValue();
+        if( null != typed )
+        {
+            return typed.toInteger( defaultValue );
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Return text value of element as a long.
+     *
+     * @return the value
+     * @throws ConfigurationException if no value in element
+     *         or value can not be converted to correct type
+     */
+    public long getValueAsLong()
+        throws ConfigurationException
+    {
+        final TypedValue typed = getRequiredTypedValue();
+        if( typed.isLong() )
+        {
+            return typed.toLong( 0 );
+        }
+        final String value = getValue();
+        try
+        {
+            //Parse again to report cause of failure
+            return Long.parseLong( value );
+        }
+        catch( final NumberFormatException nfe )
+        {
+            final String message =
+                "Unable to parse " + value + " as a Long";
+            throw new ConfigurationException( message, getPath(), getLocation(), nfe );
+        }
+    }
+
+    /**
+     * Return text value of element as a long.
+     * Use specified default if no value in element or
+     * value can not be converted to correct type.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public long getValueAsLong( final long defaultValue )
+    {
+        final TypedValue typed = getTypedValue();
+        if( null != typed )
+        {
+            return typed.toLong( defaultValue );
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Return text value of element as a float.
+     *
+     * @return the value
+     * @throws ConfigurationException if no value in element
+     *         or value can not be converted to correct type
+     */
+    public float getValueAsFloat()
+        throws ConfigurationException
+    {
+        final TypedValue typed = getRequiredTypedValue();
+        if( typed.isFloat() )
+        {
+            return typed.toFloat( 0 );
+        }
+        final String value = getValue();
+        try
+        {
+            //Parse again to report cause of failure
+            return Float.parseFloat( value );
+        }
+        catch( final NumberFormatException nfe )
+        {
+            final String message =
+                "Unable to parse " + value + " as a Float";
+            throw new ConfigurationException( message, getPath(), getLocation(), nfe );
+        }
+    }
+
+    /**
+     * Return text value of element as a float.
+     * Use specified default if no value in element or
+     * value can not be converted to correct type.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public float getValueAsFloat( final float defaultValue )
+    {
+        final TypedValue typed = getTypedValue();
+        if( null != typed )
+        {
+            return typed.toFloat( defaultValue );
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Return attribute value with specified name.
+     *
+     * @param name the attribute name
+     * @return the attribute value
+     * @throws ConfigurationException if no attribute with
+     *         specified name
+     */
+    public String getAttribute( final String name )
+        throws ConfigurationException
+    {
+        final String value = getAttribute( name, null );
+        if( null != value )
+        {
+            return value;
+        }
+        else
+        {
+            final String message =
+                "Attribute named " + name + " not specified.";
+            throw new ConfigurationException( message, getPath(), getLocation() );
+        }
+    }
+
+    /**
+     * Return attribute value with specified name as a boolean.
+     *
+     * @param name the attribute name
+     * @return the attribute value
+     * @throws ConfigurationException if no attribute with
+     *         specified name or attribute can not be converted
+     *         to correct type
+     */
+    public boolean getAttributeAsBoolean( final String name )
+        throws ConfigurationException
+    {
+        return getRequiredTypedAttribute( name ).toBoolean();
+    }
+
+    /**
+     * Return attribute value with specified name as a boolean.
+     * If no attribute with specified name or attribute can
+     * not be converted to correct type then return
+     * default value.
+     *
+     * @param name the attribute name
+     * @param defaultValue the default value
+     * @return the attribute value
+     */
+    public boolean getAttributeAsBoolean( final String name,
+                                          final boolean defaultValue )
+    {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null != typed )
+        {
+            return typed.toBoolean();
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Return attribute value with specified name as an integer.
+     *
+     * @param name the attribute name
+     * @return the attribute value
+     * @throws ConfigurationException if no attribute with
+     *         specified name or attribute can not be converted
+     *         to correct type
+     */
+    public int getAttributeAsInteger( final String name )
+        throws ConfigurationException
+    {
+        final TypedValue typed = getRequiredTypedAttribute( name );
+        if( typed.isInteger() )
+        {
+            return typed.toInteger( 0 );
+        }
+        final String message =
+            "Unable to parse " + getAttribute( name ) + " as an Integer.";
+        throw new ConfigurationException( message, getPath(), getLocation() );
+    }
+
+    /**
+     * Return attribute value with specified name as an integer.
+     * If no attribute with specified name or attribute can
+     * not be converted to correct type then return
+     * default value.
+     *
+     * @param name the attribute name
+     * @param defaultValue the default value
+     * @return the attribute value
+     */
+    public int getAttributeAsInteger( final String name,
+                                      final int defaultValue )
+    {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null != typed )
+        {
+            return typed.toInteger( defaultValue );
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Return attribute value with specified name as a long.
+     *
+     * @param name the attribute name
+     * @return the attribute value
+     * @throws ConfigurationException if no attribute with
+     *         specified name or attribute can not be converted
+     *         to correct type
+     */
+    public long getAttributeAsLong( final String name )
+        throws ConfigurationException
+    {
+        final TypedValue typed = getRequiredTypedAttribute( name );
+        if( typed.isLong() )
+        {
+            return typed.toLong( 0 );
+        }
+        final String message =
+            "Unable to parse " + getAttribute( name ) + " as a Long.";
+        throw new ConfigurationException( message, getPath(), getLocation() );
+    }
+
+    /**
+     * Return attribute value with specified name as a long.
+     * If no attribute with specified name or attribute can
+     * not be converted to correct type then return
+     * default value.
+     *
+     * @param name the attribute name
+     * @param defaultValue the default value
+     * @return the attribute value
+     */
+    public long getAttributeAsLong( final String name,
+                                    final long defaultValue )
+    {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null != typed )
+        {
+            return typed.toLong( defaultValue );
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Return attribute value with specified name as a float.
+     *
+     * @param name the attribute name
+     * @return the attribute value
+     * @throws ConfigurationException if no attribute with
+     *         specified name or attribute can not be converted
+     *         to correct type
+     */
+    public float getAttributeAsFloat( final String name )
+        throws ConfigurationException
+    {
+        final TypedValue typed = getRequiredTypedAttribute( name );
+        if( typed.isFloat() )
+        {
+            return typed.toFloat( 0 );
+        }
+        final String message =
+            "Unable to parse " + getAttribute( name ) + " as a Float.";
+        throw new ConfigurationException( message, getPath(), getLocation() );
+    }
+
+    /**
+     * Return attribute value with specified name as a float.
+     * If no attribute with specified name or attribute can
+     * not be converted to correct type then return
+     * default value.
+     *
+     * @param name the attribute name
+     * @param defaultValue the default value
+     * @return the attribute value
+     */
+    public float getAttributeAsFloat( final String name,
+                                      final float defaultValue )
+    {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null != typed )
+        {
+            return typed.toFloat( defaultValue );
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Return the typed form of value or null if no value.
+     * The typed form is created on first request and then reused.
+     *
+     * @return the typed value or null
+     */
+    private TypedValue getTypedValue()
+    {
+        TypedValue typed = m_typedValue;
+        if( null == typed )
+        {
+            final String value = getValue( null );
+            if( null == value )
+            {
+                return null;
+            }
+            typed = new TypedValue( value );
+            m_typedValue = typed;
+        }
+        return typed;
+    }
+
+    /**
+     * Return the typed form of value.
+     *
+     * @return the typed value
+     * @throws ConfigurationException if no value in element
+     */
+    private TypedValue getRequiredTypedValue()
+        throws ConfigurationException
+    {
+        final TypedValue typed = getTypedValue();
+        if( null == typed )
+        {
+            final String message = "No value specified";
+            throw new ConfigurationException( message, getPath(), getLocation() );
+        }
+        return typed;
+    }
+
+    /**
+     * Return the typed form of attribute with specified name
+     * or null if no such attribute. The typed form is created
+     * on first request and then reused.
+     *
+     * @param name the attribute name
+     * @return the typed value or null
+     */
+    private TypedValue getTypedAttribute( final String name )
+    {
+        ConcurrentMap cache = m_typedAttributes;
+        if( null != cache )
+        {
+            final TypedValue typed = (TypedValue)cache.get( name );
+            if( null != typed )
+            {
+                return typed;
+            }
+        }
+        final String value = getAttribute( name, null );
+        if( null == value )
+        {
+            return null;
+        }
+        if( null == cache )
+        {
+            synchronized( this )
+            {
+                cache = m_typedAttributes;
+                if( null == cache )
+                {
+                    cache = new ConcurrentHashMap();
+                    m_typedAttributes = cache;
+                }
+            }
+        }
+        return TypedValue.addToCache( cache, name, value );
+    }
+
+    /**
+     * Return the typed form of attribute with specified name.
+     *
+     * @param name the attribute name
+     * @return the typed value
+     * @throws ConfigurationException if no attribute with
+     *         specified name
+     */
+    private TypedValue getRequiredTypedAttribute( final String name )
+        throws ConfigurationException
+    {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null == typed )
+        {
+            final String message =
+                "Attribute named " + name + " not specified.";
+            throw new ConfigurationException( message, getPath(), getLocation() );
+        }
+        return typed;
+    }
+
+    /**
+     * Create a child that is returned from {@link #getChild(String)}
+     * when no child with specified name exists. Mirrors the behaviour
+     * of {@link DefaultConfiguration}.
+     *
+     * @param name the name of child
+     * @return the autogenerated child
+     */
+    protected final Configuration createAutogenChild( final String name )
+    {
+        final String path = getPath() + ConfigurationUtil.PATH_SEPARATOR + getName();
+        return new DefaultConfiguration( name, generateLocation(), path );
+    }
+
+    /**
+     * Generate a location string that postfixes
+     * autogenerated marker.
+     *
+     * @return a autogenerated location string
+     */
+    protected final String generateLocation()
+    {
+        final String location = getLocation();
+        if( !location.endsWith( AUTOGEN_POSTFIX ) )
+        {
+            return location + AUTOGEN_POSTFIX;
+        }
+        else
+        {
+            return location;
+        }
+    }
+}
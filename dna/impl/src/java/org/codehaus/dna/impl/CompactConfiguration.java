@@ -0,0 +1,361 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.Arrays;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Compact read-only Configuration implementation. Attributes are
+ * held as parallel arrays sorted by name and children as an
+ * exact-size array, which uses considerably less memory than
+ * the maps and lists backing a {@link DefaultConfiguration}.
+ *
+ * <p>Instances are created via
+ * {@link ConfigurationUtil#toCompactConfiguration(Configuration)}
+ * or {@link ConfigurationTreeBuilder}.
+ * The arrays returned from {@link #getAttributeNames()} and
+ * {@link #getChildren()} are shared between callers and should
+ * not be modified.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public class CompactConfiguration
+    extends AbstractConfiguration
+{
+    /**
+     * The name of configuration element.
+     */
+    private final String m_name;
+
+    /**
+     * The system id of source (May be null).
+     */
+    private final String m_systemId;
+
+    /**
+     * The line number in source or -1 if unknown.
+     */
+    private final int m_lineNumber;
+
+    /**
+     * The column number in source or -1 if unknown.
+     */
+    private final int m_columnNumber;
+
+    /**
+     * The path of configuration element in document. If null
+     * then the path is derived from {@link #m_parent} on demand.
+     */
+    private final String m_path;
+
+    /**
+     * The parent configuration element used to derive path
+     * (May be null).
+     */
+    private final Configuration m_parent;
+
+    /**
+     * The attribute names sorted in natural order.
+     */
+    private final String[] m_attributeNames;
+
+    /**
+     * The attribute values, parallel to {@link #m_attributeNames}.
+     */
+    private final String[] m_attributeValues;
+
+    /**
+     * The value contained in configuration (May be null).
+     */
+    private final String m_value;
+
+    /**
+     * The child elements. Assigned once by the creator
+     * after the children have been created.
+     */
+    private Configuration[] m_children = EMPTY_CONFIG_ARRAY;
+
+    /**
+     * Create a CompactConfiguration instance.
+     *
+     * @param name the name of configuration element
+     * @param parent the parent used to derive path if path is null
+     * @param path the path of configuration element in document (May be null)
+     * @param systemId the system id of source (May be null)
+     * @param lineNumber the line number in source or -1 if unknown
+     * @param columnNumber the column number in source or -1 if unknown
+     * @param attributeNames the attribute names sorted in natural order
+     * @param attributeValues the attribute values
+     * @param value the value of element (May be null)
+     */
+    CompactConfiguration( final String name,
+                          final Configuration parent,
+                          final String path,
+                          final String systemId,
+                          final int lineNumber,
+                          final int columnNumber,
+                          final String[] attributeNames,
+                          final String[] attributeValues,
+                          final String value )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        if( null == attributeNames )
+        {
+            throw new NullPointerException( "attributeNames" );
+        }
+        if( null == attributeValues )
+        {
+            throw new NullPointerException( "attributeValues" );
+        }
+        m_name = name;
+        m_parent = parent;
+        m_path = path;
+        m_systemId = systemId;
+        m_lineNumber = lineNumber;
+        m_columnNumber = columnNumber;
+        m_attributeNames = attributeNames;
+        m_attributeValues = attributeValues;
+        m_value = value;
+    }
+
+    /**
+     * Return the name of the configuration element.
+     *
+     * @return the name of the configuration element.
+     */
+    public String getName()
+    {
+        return m_name;
+    }
+
+    /**
+     * Return the path to the configuration element.
+     *
+     * @return the path to the configuration element.
+     */
+    public String getPath()
+    {
+        if( null != m_path )
+        {
+            return m_path;
+        }
+        else if( null == m_parent )
+        {
+            return ConfigurationUtil.ROOT_PATH;
+        }
+        else
+        {
+            return ConfigurationUtil.generatePathName( m_parent.getPath(),
+                                                       m_parent.getName() );
+        }
+    }
+
+    /**
+     * Return the location of configuration element.
+     *
+     * @return the location of configuration element.
+     */
+    public String getLocation()
+    {
+        return ConfigurationUtil.formatLocation( m_systemId, m_lineNumber, m_columnNumber );
+    }
+
+    /**
+     * Return an array of all the child elements.
+     * The array is shared and should not be modified.
+     *
+     * @return an array of all the child elements.
+     */
+    public Configuration[] getChildren()
+    {
+        return m_children;
+    }
+
+    /**
+     * Return an array of all the child elements with specified name.
+     *
+     * @param name the name of child configuration objects
+     * @return an array of all the child elements with specified name.
+     */
+    public Configuration[] getChildren( final String name )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        final Configuration[] children = m_children;
+        int count = 0;
+        for( int i = 0; i < children.length; i++ )
+        {
+            if( children[ i ].getName().equals( name ) )
+            {
+                count++;
+            }
+        }
+        if( 0 == count )
+        {
+            return EMPTY_CONFIG_ARRAY;
+        }
+        else if( children.length == count )
+        {
+            return children;
+        }
+
+        final Configuration[] results = new Configuration[ count ];
+        int index = 0;
+        for( int i = 0; i < children.length; i++ )
+        {
+            if( children[ i ].getName().equals( name ) )
+            {
+                results[ index++ ] = children[ i ];
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Return a child Configuration element with specified name.
+     * If no such element exists and createChild is true then an
+     * element will be autocreated otherwise null will be returned.
+     *
+     * @param name the name of child configuration object
+     * @param createChild true if child should be created if it does not exist
+     * @return a child Configuration element with specified name.
+     */
+    public Configuration getChild( final String name,
+                                   final boolean createChild )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        final Configuration[] children = m_children;
+        for( int i = 0; i < children.length; i++ )
+        {
+            if( children[ i ].getName().equals( name ) )
+            {
+                return children[ i ];
+            }
+        }
+        if( createChild )
+        {
+            return createAutogenChild( name );
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Return text value of element.
+     * Use specified default if no value in element.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public String getValue( final String defaultValue )
+    {
+        if( null != m_value )
+        {
+            return m_value;
+        }
+        else
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Return an array of all the attribute names.
+     * The array is shared and should not be modified.
+     *
+     * @return an array of all the attribute names.
+     */
+    public String[] getAttributeNames()
+    {
+        return m_attributeNames;
+    }
+
+    /**
+     * Return attribute value with specified name.
+     * If no attribute with specified name then return
+     * default value.
+     *
+     * @param name the attribute name
+     * @param defaultValue the default value
+     * @return the attribute value
+     */
+    public String getAttribute( final String name,
+                                final String defaultValue )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        final int index = Arrays.binarySearch( m_attributeNames, name );
+        if( index >= 0 )
+        {
+            return m_attributeValues[ index ];
+        }
+        else
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Overide toString to improve ability to debug implementation.
+     *
+     * @return string representation of object
+     */
+    public String toString()
+    {
+        final StringBuffer sb = new StringBuffer();
+        sb.append( "[Configuration name='" );
+        sb.append( getName() );
+        sb.append( "'" );
+        if( 0 != m_attributeNames.length )
+        {
+            sb.append( " attributes={" );
+            for( int i = 0; i < m_attributeNames.length; i++ )
+            {
+                if( 0 != i )
+                {
+                    sb.append( ", " );
+                }
+                sb.append( m_attributeNames[ i ] );
+                sb.append( '=' );
+                sb.append( m_attributeValues[ i ] );
+            }
+            sb.append( "}" );
+        }
+        sb.append( "]" );
+        return sb.toString();
+    }
+
+    /**
+     * Set the children of configuration. Only invoked
+     * by the creator of the configuration.
+     *
+     * @param children the children
+     */
+    void setChildren( final Configuration[] children )
+    {
+        if( null == children )
+        {
+            throw new NullPointerException( "children" );
+        }
+        m_children = children;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Read-only Configuration that decodes an element of a compiled
+ * configuration from its {@link CompiledConfigurationTable} when
+ * accessed. The children of an element are created in one pass
+ * on first access, after which they are retained so that
+ * successive calls return the same instances.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ * @see ConfigurationCompiler
+ */
+final class CompiledConfiguration
+    extends AbstractConfiguration
+{
+    /**
+     * The table holding compiled configuration.
+     */
+    private final CompiledConfigurationTable m_table;
+
+    /**
+     * The parent used to derive path or null for the root element.
+     */
+    private final CompiledConfiguration m_parent;
+
+    /**
+     * The index of element in table.
+     */
+    private final int m_index;
+
+    /**
+     * The children, created on first access (May be null).
+     */
+    private volatile Configuration[] m_children;
+
+    /**
+     * Create a view of element in table.
+     *
+     * @param table the table holding compiled configuration
+     * @param parent the parent used to derive path (May be null)
+     * @param index the index of element in table
+     */
+    CompiledConfiguration( final CompiledConfigurationTable table,
+                           final CompiledConfiguration parent,
+                           final int index )
+    {
+        m_table = table;
+        m_parent = parent;
+        m_index = index;
+    }
+
+    /**
+     * Return the name of the configuration element.
+     *
+     * @return the name of the configuration element.
+     */
+    public String getName()
+    {
+        return m_table.getStringField( m_index, ConfigurationCompiler.NAME );
+    }
+
+    /**
+     * Return the path to the configuration element.
+     *
+     * @return the path to the configuration element.
+     */
+    public String getPath()
+    {
+        if( null == m_parent )
+        {
+            return m_table.getRootPath();
+        }
+
+        //Collect the names of the ancestors rather than recursing
+        //through them so that deep trees do not exhaust the stack
+        final List names = new ArrayList();
+        CompiledConfiguration ancestor = m_parent;
+        while( null != ancestor )
+        {
+            names.add( ancestor.getName() );
+            ancestor = ancestor.m_parent;
+        }
+        return ConfigurationUtil.generatePathName( m_table.getRootPath(), names );
+    }
+
+    /**
+     * Return the location of configuration element.
+     *
+     * @return the location of configuration element.
+     */
+    public String getLocation()
+    {
+        final String systemId =
+            m_table.getStringField( m_index, ConfigurationCompiler.SYSTEM_ID );
+        return ConfigurationUtil.formatLocation( systemId,
+                                                 getField( ConfigurationCompiler.LINE_NUMBER ),
+                                                 getField( ConfigurationCompiler.COLUMN_NUMBER ) );
+    }
+
+    /**
+     * Return the number of child elements.
+     *
+     * @return the number of child elements.
+     */
+    public int getChildCount()
+    {
+        return getField( ConfigurationCompiler.CHILD_COUNT );
+    }
+
+    /**
+     * Return the child element at specified index.
+     *
+     * @param index the index of child
+     * @return the child element
+     */
+    public Configuration getChild( final int index )
+    {
+        final Configuration[] children = getChildren();
+        if( index < 0 || index >= children.length )
+        {
+            throw new IndexOutOfBoundsException( String.valueOf( index ) );
+        }
+        return children[ index ];
+    }
+
+    /**
+     * Return an array of all the child elements.
+     * The array is shared and should not be modified.
+     *
+     * @return an array of all the child elements.
+     */
+    public Configuration[] getChildren()
+    {
+        Configuration[] children = m_children;
+        if( null == children )
+        {
+            synchronized( this )
+            {
+                children = m_children;
+                if( null == children )
+                {
+                    children = createChildren();
+                    m_children = children;
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Return an array of all the child elements with specified name.
+     *
+     * @param name the name of child configuration objects
+     * @return an array of all the child elements with specified name.
+     */
+    public Configuration[] getChildren( final String name )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        final Configuration[] children = getChildren();
+        final List results = new ArrayList();
+        for( int i = 0; i < children.length; i++ )
+        {
+            if( name.equals( children[ i ].getName() ) )
+            {
+                results.add( children[ i ] );
+            }
+        }
+        if( 0 == results.size() )
+        {
+            return EMPTY_CONFIG_ARRAY;
+        }
+        else
+        {
+            return (Configuration[])results.toArray( new Configuration[ results.size() ] );
+        }
+    }
+
+    /**
+     * Return a child Configuration element with specified name.
+     * If no such element exists and createChild is true then an
+     * element will be autocreated otherwise null will be returned.
+     *
+     * @param name the name of child configuration object
+     * @param createChild true if child should be created if it does not exist
+     * @return a child Configuration element with specified name.
+     */
+    public Configuration getChild( final String name,
+                                   final boolean createChild )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        final Configuration[] children = getChildren();
+        for( int i = 0; i < children.length; i++ )
+        {
+            if( name.equals( children[ i ].getName() ) )
+            {
+                return children[ i ];
+            }
+        }
+        if( createChild )
+        {
+            return createAutogenChild( name );
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Return text value of element.
+     * Use specified default if no value in element.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public String getValue( final String defaultValue )
+    {
+        final String value = m_table.getStringField( m_index, ConfigurationCompiler.VALUE );
+        if( null != value )
+        {
+            return value;
+        }
+        else
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Return the number of attributes.
+     *
+     * @return the number of attributes.
+     */
+    public int getAttributeCount()
+    {
+        return getField( ConfigurationCompiler.ATTRIBUTE_COUNT );
+    }
+
+    /**
+     * Return the name of attribute at specified index.
+     *
+     * @param index the index of attribute
+     * @return the name of attribute
+     */
+    public String getAttributeName( final int index )
+    {
+        if( index < 0 || index >= getAttributeCount() )
+        {
+            throw new IndexOutOfBoundsException( String.valueOf( index ) );
+        }
+        final int start = getField( ConfigurationCompiler.ATTRIBUTE_START );
+        return m_table.getAttributeName( start + index );
+    }
+
+    /**
+     * Return an array of all the attribute names.
+     *
+     * @return an array of all the attribute names.
+     */
+    public String[] getAttributeNames()
+    {
+        final int count = getAttributeCount();
+        if( 0 == count )
+        {
+            return EMPTY_STRING_ARRAY;
+        }
+        final int start = getField( ConfigurationCompiler.ATTRIBUTE_START );
+        final String[] names = new String[ count ];
+        for( int i = 0; i < count; i++ )
+        {
+            names[ i ] = m_table.getAttributeName( start + i );
+        }
+        return names;
+    }
+
+    /**
+     * Return attribute value with specified name.
+     * If no attribute with specified name then return
+     * default value.
+     *
+     * @param name the attribute name
+     * @param defaultValue the default value
+     * @return the attribute value
+     */
+    public String getAttribute( final String name,
+                                final String defaultValue )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        final int count = getAttributeCount();
+        final int start = getField( ConfigurationCompiler.ATTRIBUTE_START );
+        for( int i = 0; i < count; i++ )
+        {
+            if( name.equals( m_table.getAttributeName( start + i ) ) )
+            {
+                return m_table.getAttributeValue( start + i );
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Overide toString to improve ability to debug implementation.
+     *
+     * @return string representation of object
+     */
+    public String toString()
+    {
+        return "[Configuration name='" + getName() + "']";
+    }
+
+    /**
+     * Return a field from the record of element.
+     *
+     * @param field the index of field in record
+     * @return the value of field
+     */
+    private int getField( final int field )
+    {
+        return m_table.getField( m_index, field );
+    }
+
+    /**
+     * Create a view of every child element, locating each child
+     * by skipping the subtree of its previous sibling.
+     *
+     * @return the children
+     */
+    private Configuration[] createChildren()
+    {
+        final int count = getChildCount();
+        if( 0 == count )
+        {
+            return EMPTY_CONFIG_ARRAY;
+        }
+        final Configuration[] children = new Configuration[ count ];
+        int node = m_index + 1;
+        for( int i = 0; i < count; i++ )
+        {
+            children[ i ] = new CompiledConfiguration( m_table, this, node );
+            node = m_table.skip( node );
+        }
+        return children;
+    }
+}
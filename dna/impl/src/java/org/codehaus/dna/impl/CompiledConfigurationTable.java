@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.nio.ByteBuffer;
+
+import org.codehaus.dna.ConfigurationException;
+
+/**
+ * Provides access to the tables of a compiled configuration held
+ * in a buffer. The buffer is only read via absolute positions so a
+ * table may be shared by any number of threads. Strings are decoded
+ * the first time they are requested and then cached.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ * @see ConfigurationCompiler
+ */
+final class CompiledConfigurationTable
+{
+    /**
+     * The buffer holding compiled configuration.
+     */
+    private final ByteBuffer m_buffer;
+
+    /**
+     * The decoded strings by index. Entries are null until decoded.
+     */
+    private final String[] m_strings;
+
+    /**
+     * The number of elements.
+     */
+    private final int m_nodeCount;
+
+    /**
+     * The index of the path of root element.
+     */
+    private final int m_rootPath;
+
+    /**
+     * The offset of the element table.
+     */
+    private final int m_nodeOffset;
+
+    /**
+     * The offset of the attribute table.
+     */
+    private final int m_attributeOffset;
+
+    /**
+     * Create a table over specified buffer.
+     *
+     * @param buffer the buffer
+     * @throws ConfigurationException if buffer does not contain a
+     *         compiled configuration or any of its tables are corrupt
+     */
+    CompiledConfigurationTable( final ByteBuffer buffer )
+        throws ConfigurationException
+    {
+        if( buffer.limit() < ConfigurationCompiler.HEADER_SIZE ||
+            ConfigurationCompiler.MAGIC != buffer.getInt( 0 ) )
+        {
+            final String message = "Buffer does not contain a compiled configuration";
+            throw new ConfigurationException( message, null, null );
+        }
+        final int version = buffer.getInt( 4 );
+        if( ConfigurationCompiler.VERSION != version )
+        {
+            final String message =
+                "Unsupported compiled configuration version " + version;
+            throw new ConfigurationException( message, null, null );
+        }
+        m_buffer = buffer;
+        final int stringCount = buffer.getInt( 8 );
+        m_nodeCount = buffer.getInt( 12 );
+        final int attributeCount = buffer.getInt( 16 );
+        m_rootPath = buffer.getInt( 20 );
+        final long end = ConfigurationCompiler.HEADER_SIZE + stringCount * 4L +
+            m_nodeCount * ConfigurationCompiler.NODE_FIELDS * 4L + attributeCount * 2 * 4L;
+        if( stringCount < 0 || m_nodeCount < 1 || attributeCount < 0 ||
+            buffer.limit() < end )
+        {
+            final String message = "Compiled configuration is truncated";
+            throw new ConfigurationException( message, null, null );
+        }
+        m_strings = new String[ stringCount ];
+        m_nodeOffset = ConfigurationCompiler.HEADER_SIZE + stringCount * 4;
+        m_attributeOffset = m_nodeOffset + m_nodeCount * ConfigurationCompiler.NODE_FIELDS * 4;
+
+        //Validate every table once so that later accesses can not fail
+        validateStrings( (int)end );
+        checkString( m_rootPath, true );
+        validateNodes( attributeCount );
+        for( int i = 0; i < attributeCount; i++ )
+        {
+            checkString( m_buffer.getInt( m_attributeOffset + i * 8 ), false );
+            checkString( m_buffer.getInt( m_attributeOffset + i * 8 + 4 ), false );
+        }
+    }
+
+    /**
+     * Return the number of elements.
+     *
+     * @return the number of elements.
+     */
+    int getNodeCount()
+    {
+        return m_nodeCount;
+    }
+
+    /**
+     * Return the path of root element.
+     *
+     * @return the path of root element.
+     */
+    String getRootPath()
+    {
+        return getString( m_rootPath );
+    }
+
+    /**
+     * Return a field from the record of element.
+     *
+     * @param node the index of element
+     * @param field the index of field in record
+     * @return the value of field
+     */
+    int getField( final int node, final int field )
+    {
+        final int offset =
+            m_nodeOffset + ( node * ConfigurationCompiler.NODE_FIELDS + field ) * 4;
+        return m_buffer.getInt( offset );
+    }
+
+    /**
+     * Return a string field from the record of element.
+     *
+     * @param node the index of element
+     * @param field the index of field in record
+     * @return the string (May be null)
+     */
+    String getStringField( final int node, final int field )
+    {
+        return getString( getField( node, field ) );
+    }
+
+    /**
+     * Return the name of attribute.
+     *
+     * @param attribute the index of attribute in attribute table
+     * @return the name of attribute
+     */
+    String getAttributeName( final int attribute )
+    {
+        return getString( m_buffer.getInt( m_attributeOffset + attribute * 8 ) );
+    }
+
+    /**
+     * Return the value of attribute.
+     *
+     * @param attribute the index of attribute in attribute table
+     * @return the value of attribute
+     */
+    String getAttributeValue( final int attribute )
+    {
+        return getString( m_buffer.getInt( m_attributeOffset + attribute * 8 + 4 ) );
+    }
+
+    /**
+     * Return the index of the element after the subtree
+     * rooted at element with index, which is the index
+     * of the next sibling if there is one.
+     *
+     * @param node the index of element
+     * @return the index after the subtree
+     */
+    int skip( final int node )
+    {
+        return node + getField( node, ConfigurationCompiler.SIZE );
+    }
+
+    /**
+     * Return the string at index, decoding it on first request.
+     *
+     * @param index the index of string
+     * @return the string or null if index is {@link ConfigurationCompiler#NO_STRING}
+     */
+    String getString( final int index )
+    {
+        if( ConfigurationCompiler.NO_STRING == index )
+        {
+            return null;
+        }
+        final String cached = m_strings[ index ];
+        if( null != cached )
+        {
+            return cached;
+        }
+        final int offset = m_buffer.getInt( ConfigurationCompiler.HEADER_SIZE + index * 4 );
+        final int length = m_buffer.getInt( offset );
+        final char[] chars = new char[ length ];
+        for( int i = 0; i < length; i++ )
+        {
+            chars[ i ] = m_buffer.getChar( offset + 4 + i * 2 );
+        }
+        final String string = new String( chars );
+        m_strings[ index ] = string;
+        return string;
+    }
+
+    /**
+     * Check that every entry of the string table lies within
+     * the string data.
+     *
+     * @param start the offset of the string data
+     * @throws ConfigurationException if an entry is out of bounds
+     */
+    private void validateStrings( final int start )
+        throws ConfigurationException
+    {
+        final int limit = m_buffer.limit();
+        for( int i = 0; i < m_strings.length; i++ )
+        {
+            final int offset = m_buffer.getInt( ConfigurationCompiler.HEADER_SIZE + i * 4 );
+            if( offset < start || offset > limit - 4 )
+            {
+                throw corrupt( "string " + i + " has invalid offset " + offset );
+            }
+            final int length = m_buffer.getInt( offset );
+            if( length < 0 || offset + 4 + length * 2L > limit )
+            {
+                throw corrupt( "string " + i + " has invalid length " + length );
+            }
+        }
+    }
+
+    /**
+     * Check that the strings, attributes and subtree of every
+     * element record lie within the tables.
+     *
+     * @param attributeCount the number of attributes
+     * @throws ConfigurationException if a record is invalid
+     */
+    private void validateNodes( final int attributeCount )
+        throws ConfigurationException
+    {
+        if( m_nodeCount != getField( 0, ConfigurationCompiler.SIZE ) )
+        {
+            throw corrupt( "root element does not contain every element" );
+        }
+        for( int node = 0; node < m_nodeCount; node++ )
+        {
+            checkString( getField( node, ConfigurationCompiler.NAME ), false );
+            checkString( getField( node, ConfigurationCompiler.VALUE ), true );
+            checkString( getField( node, ConfigurationCompiler.SYSTEM_ID ), true );
+
+            final int count = getField( node, ConfigurationCompiler.ATTRIBUTE_COUNT );
+            final int start = getField( node, ConfigurationCompiler.ATTRIBUTE_START );
+            if( count < 0 || start < 0 || start > attributeCount - count )
+            {
+                throw corrupt( "element " + node + " has invalid attributes" );
+            }
+
+            //The children must exactly fill the subtree of element
+            final int end = node + getField( node, ConfigurationCompiler.SIZE );
+            final int childCount = getField( node, ConfigurationCompiler.CHILD_COUNT );
+            if( end <= node || end > m_nodeCount || childCount < 0 )
+            {
+                throw corrupt( "element " + node + " has invalid size" );
+            }
+            int child = node + 1;
+            int children = 0;
+            while( child < end && children < childCount )
+            {
+                final int size = getField( child, ConfigurationCompiler.SIZE );
+                if( size < 1 )
+                {
+                    break;
+                }
+                child += size;
+                children++;
+            }
+            if( child != end || children != childCount )
+            {
+                throw corrupt( "element " + node + " has invalid children" );
+            }
+        }
+    }
+
+    /**
+     * Check that index refers to a string in the string table.
+     *
+     * @param index the index of string
+     * @param optional true if index may be {@link ConfigurationCompiler#NO_STRING}
+     * @throws ConfigurationException if index is invalid
+     */
+    private void checkString( final int index, final boolean optional )
+        throws ConfigurationException
+    {
+        if( optional && ConfigurationCompiler.NO_STRING == index )
+        {
+            return;
+        }
+        else if( index < 0 || index >= m_strings.length )
+        {
+            throw corrupt( "invalid string index " + index );
+        }
+    }
+
+    /**
+     * Create the exception reporting a corrupt table.
+     *
+     * @param detail the description of problem
+     * @return the exception
+     */
+    private static ConfigurationException corrupt( final String detail )
+    {
+        final String message = "Compiled configuration is corrupt: " + detail;
+        return new ConfigurationException( message, null, null );
+    }
+}
@@ -0,0 +1,511 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+
+/**
+ * Binds configurations onto typed interfaces and plain objects so
+ * that components can read their settings without repeatedly
+ * navigating and parsing the configuration. Every value is read,
+ * checked and converted once when the configuration is bound.
+ *
+ * <p>An interface is bound by a dynamic proxy. Each of its methods
+ * is an accessor for one property, named after the method with any
+ * "get" or "is" prefix removed. Accessors taking no parameters are
+ * required and binding fails if the property is missing. Accessors
+ * taking one parameter of their return type return that parameter
+ * if the property is missing.</p>
+ *
+ * <p>A class is bound by creating it with its no-argument
+ * constructor and setting every non-static, non-final field named
+ * after a property; the "m_" prefix of field names is removed.
+ * Fields for missing properties keep their initial value, so
+ * reading a setting is a plain field access.</p>
+ *
+ * <p>Property names are converted from camel case to lower case
+ * words separated by hyphens, so that getMaxThreads() and
+ * m_maxThreads both read "max-threads". A property is read from
+ * the attribute of that name, or else from the value of the child
+ * element of that name. Properties may be strings, ints, longs,
+ * booleans, floats, {@link Configuration} objects or bound
+ * interfaces; the last two are read from child elements.</p>
+ *
+ * <p>The accessors and fields of each type are looked up once and
+ * cached. The binder is thread-safe.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public final class ConfigurationBinder
+{
+    /**
+     * The prefix removed from accessor names.
+     */
+    private static final String GET_PREFIX = "get";
+
+    /**
+     * The prefix removed from boolean accessor names.
+     */
+    private static final String IS_PREFIX = "is";
+
+    /**
+     * The prefix removed from field names.
+     */
+    private static final String FIELD_PREFIX = "m_";
+
+    /**
+     * Constant for methods and constructors with no parameters.
+     */
+    private static final Class[] NO_PARAMETER_TYPES = new Class[ 0 ];
+
+    /**
+     * Constant for invoking constructors with no parameters.
+     */
+    private static final Object[] NO_ARGUMENTS = new Object[ 0 ];
+
+    /**
+     * The bindings keyed by type. Bindings are softly referenced
+     * as they refer to the type and would otherwise stop it being
+     * unloaded.
+     */
+    private final Map m_bindings = new WeakHashMap();
+
+    /**
+     * Bind configuration onto type.
+     *
+     * @param type the interface or class
+     * @param configuration the configuration
+     * @return an instance of type holding the values of configuration
+     * @throws ConfigurationException if a required property is missing
+     *         or a value can not be converted to the type of its property
+     * @throws IllegalArgumentException if type can not be bound
+     */
+    public Object bind( final Class type, final Configuration configuration )
+        throws ConfigurationException
+    {
+        if( null == type )
+        {
+            throw new NullPointerException( "type" );
+        }
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        final Binding binding = getBinding( type );
+        final ConfigurationProperty[] properties = binding.m_properties;
+        if( type.isInterface() )
+        {
+            final Map values = new HashMap();
+            for( int i = 0; i < properties.length; i++ )
+            {
+                final ConfigurationProperty property = properties[ i ];
+                final Object value = property.read( this, configuration );
+                if( null != value )
+                {
+                    values.put( property.getMember(), value );
+                }
+            }
+            final ConfigurationBindingHandler handler =
+                new ConfigurationBindingHandler( type, configuration.getPath(), values );
+            return Proxy.newProxyInstance( type.getClassLoader(),
+                                           new Class[]{type},
+                                           handler );
+        }
+        else
+        {
+            final Object object = newInstance( binding.m_constructor, configuration );
+            for( int i = 0; i < properties.length; i++ )
+            {
+                final ConfigurationProperty property = properties[ i ];
+                final Object value = property.read( this, configuration );
+                if( null != value )
+                {
+                    setField( (Field)property.getMember(), object, value );
+                }
+            }
+            return object;
+        }
+    }
+
+    /**
+     * Return the properties of type, looking them up and
+     * caching them if necessary.
+     *
+     * @param type the interface or class
+     * @return the properties
+     * @throws IllegalArgumentException if type can not be bound
+     */
+    ConfigurationProperty[] getProperties( final Class type )
+    {
+        return getBinding( type ).m_properties;
+    }
+
+    /**
+     * Return the binding for type, creating and caching
+     * it if necessary.
+     *
+     * @param type the interface or class
+     * @return the binding
+     * @throws IllegalArgumentException if type can not be bound
+     */
+    private Binding getBinding( final Class type )
+    {
+        synchronized( m_bindings )
+        {
+            final Reference reference = (Reference)m_bindings.get( type );
+            if( null != reference )
+            {
+                final Binding binding = (Binding)reference.get();
+                if( null != binding )
+                {
+                    return binding;
+                }
+            }
+            final Binding binding = createBinding( type );
+            m_bindings.put( type, new SoftReference( binding ) );
+            return binding;
+        }
+    }
+
+    /**
+     * Create the binding for type.
+     *
+     * @param type the interface or class
+     * @return the binding
+     * @throws IllegalArgumentException if type can not be bound
+     */
+    private static Binding createBinding( final Class type )
+    {
+        if( type.isInterface() )
+        {
+            return new Binding( null, createAccessorProperties( type ) );
+        }
+        else if( type.isPrimitive() ||
+            type.isArray() ||
+            Modifier.isAbstract( type.getModifiers() ) )
+        {
+            final String message = "Unable to bind configuration to " + type.getName();
+            throw new IllegalArgumentException( message );
+        }
+
+        final Constructor constructor;
+        try
+        {
+            constructor = type.getDeclaredConstructor( NO_PARAMETER_TYPES );
+        }
+        catch( final NoSuchMethodException nsme )
+        {
+            final String message =
+                type.getName() + " has no constructor without parameters";
+            throw new IllegalArgumentException( message );
+        }
+        constructor.setAccessible( true );
+        return new Binding( constructor, createFieldProperties( type ) );
+    }
+
+    /**
+     * Create a property for every accessor of interface.
+     *
+     * @param type the interface
+     * @return the properties
+     * @throws IllegalArgumentException if an accessor is not supported
+     */
+    private static ConfigurationProperty[] createAccessorProperties( final Class type )
+    {
+        final List properties = new ArrayList();
+        final Method[] methods = type.getMethods();
+        for( int i = 0; i < methods.length; i++ )
+        {
+            final Method method = methods[ i ];
+            if( isObjectMethod( method ) )
+            {
+                continue;
+            }
+            final Class returnType = method.getReturnType();
+            final Class[] parameterTypes = method.getParameterTypes();
+            if( parameterTypes.length > 1 ||
+                ( 1 == parameterTypes.length && returnType != parameterTypes[ 0 ] ) )
+            {
+                final String message =
+                    "Accessor " + method + " must take no parameters or a " +
+                    "default value of its return type";
+                throw new IllegalArgumentException( message );
+            }
+            if( !ConfigurationProperty.isSupportedType( returnType ) )
+            {
+                final String message =
+                    "Accessor " + method + " returns unsupported type " + returnType;
+                throw new IllegalArgumentException( message );
+            }
+            final String name = toPropertyName( getAccessorName( method ) );
+            final boolean required = 0 == parameterTypes.length;
+            properties.add( new ConfigurationProperty( method, name, returnType, required ) );
+        }
+        return toArray( properties );
+    }
+
+    /**
+     * Create a property for every field of class and its superclasses
+     * that is neither static nor final.
+     *
+     * @param type the class
+     * @return the properties
+     * @throws IllegalArgumentException if a field has an unsupported type
+     */
+    private static ConfigurationProperty[] createFieldProperties( final Class type )
+    {
+        final List properties = new ArrayList();
+        for( Class clazz = type; Object.class != clazz; clazz = clazz.getSuperclass() )
+        {
+            final Field[] fields = clazz.getDeclaredFields();
+            for( int i = 0; i < fields.length; i++ )
+            {
+                final Field field = fields[ i ];
+                final int modifiers = field.getModifiers();
+                if( Modifier.isStatic( modifiers ) ||
+                    Modifier.isFinal( modifiers ) ||
+                    field.isSynthetic() )
+                {
+                    continue;
+                }
+                final Class fieldType = field.getType();
+                if( !ConfigurationProperty.isSupportedType( fieldType ) )
+                {
+                    final String message =
+                        "Field " + field + " has unsupported type " + fieldType;
+                    throw new IllegalArgumentException( message );
+                }
+                field.setAccessible( true );
+                final String name = toPropertyName( getFieldName( field ) );
+                properties.add( new ConfigurationProperty( field, name, fieldType, false ) );
+            }
+        }
+        return toArray( properties );
+    }
+
+    /**
+     * Return true if method is declared by Object.
+     *
+     * @param method the method
+     * @return true if method is declared by Object
+     */
+    private static boolean isObjectMethod( final Method method )
+    {
+        try
+        {
+            Object.class.getMethod( method.getName(), method.getParameterTypes() );
+            return true;
+        }
+        catch( final NoSuchMethodException nsme )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Return the name of accessor without any "get" or "is" prefix.
+     *
+     * @param method the accessor
+     * @return the name
+     */
+    private static String getAccessorName( final Method method )
+    {
+        final String name = method.getName();
+        if( hasPrefix( name, GET_PREFIX ) )
+        {
+            return name.substring( GET_PREFIX.length() );
+        }
+        else if( Boolean.TYPE == method.getReturnType() && hasPrefix( name, IS_PREFIX ) )
+        {
+            return name.substring( IS_PREFIX.length() );
+        }
+        else
+        {
+            return name;
+        }
+    }
+
+    /**
+     * Return the name of field without any "m_" prefix.
+     *
+     * @param field the field
+     * @return the name
+     */
+    private static String getFieldName( final Field field )
+    {
+        final String name = field.getName();
+        if( name.startsWith( FIELD_PREFIX ) && name.length() > FIELD_PREFIX.length() )
+        {
+            return name.substring( FIELD_PREFIX.length() );
+        }
+        else
+        {
+            return name;
+        }
+    }
+
+    /**
+     * Return true if name starts with prefix followed by
+     * an upper case character.
+     *
+     * @param name the name
+     * @param prefix the prefix
+     * @return true if name has prefix
+     */
+    private static boolean hasPrefix( final String name, final String prefix )
+    {
+        return name.length() > prefix.length() &&
+            name.startsWith( prefix ) &&
+            Character.isUpperCase( name.charAt( prefix.length() ) );
+    }
+
+    /**
+     * Convert a camel case name into lower case words separated
+     * by hyphens. A run of upper case characters is treated as a
+     * single word, so "URLPath" becomes "url-path".
+     *
+     * @param name the name
+     * @return the property name
+     */
+    static String toPropertyName( final String name )
+    {
+        final int length = name.length();
+        final StringBuffer sb = new StringBuffer( length + 4 );
+        for( int i = 0; i < length; i++ )
+        {
+            final char ch = name.charAt( i );
+            if( Character.isUpperCase( ch ) )
+            {
+                if( i > 0 &&
+                    ( !Character.isUpperCase( name.charAt( i - 1 ) ) ||
+                    ( i + 1 < length && Character.isLowerCase( name.charAt( i + 1 ) ) ) ) )
+                {
+                    sb.append( '-' );
+                }
+                sb.append( Character.toLowerCase( ch ) );
+            }
+            else
+            {
+                sb.append( ch );
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Create an object using constructor without parameters.
+     *
+     * @param constructor the constructor
+     * @param configuration the configuration being bound
+     * @return the object
+     * @throws ConfigurationException if the constructor fails
+     */
+    private static Object newInstance( final Constructor constructor,
+                                       final Configuration configuration )
+        throws ConfigurationException
+    {
+        try
+        {
+            return constructor.newInstance( NO_ARGUMENTS );
+        }
+        catch( final InvocationTargetException ite )
+        {
+            final String message =
+                "Unable to create " + constructor.getDeclaringClass().getName();
+            throw new ConfigurationException( message,
+                                              configuration.getPath(),
+                                              configuration.getLocation(),
+                                              ite.getTargetException() );
+        }
+        catch( final Exception e )
+        {
+            final String message =
+                "Unable to create " + constructor.getDeclaringClass().getName();
+            throw new ConfigurationException( message,
+                                              configuration.getPath(),
+                                              configuration.getLocation(),
+                                              e );
+        }
+    }
+
+    /**
+     * Set field of object to value.
+     *
+     * @param field the field, which is accessible
+     * @param object the object
+     * @param value the value
+     */
+    private static void setField( final Field field, final Object object, final Object value )
+    {
+        try
+        {
+            field.set( object, value );
+        }
+        catch( final IllegalAccessException iae )
+        {
+            //Can not happen as field was made accessible
+            throw new IllegalStateException( iae.toString() );
+        }
+    }
+
+    /**
+     * Convert list of properties into an array.
+     *
+     * @param properties the list
+     * @return the array
+     */
+    private static ConfigurationProperty[] toArray( final List properties )
+    {
+        return (ConfigurationProperty[])properties.
+            toArray( new ConfigurationProperty[ properties.size() ] );
+    }
+
+    /**
+     * The constructor and properties of a bound type.
+     */
+    private static final class Binding
+    {
+        /**
+         * The constructor without parameters or null for interfaces.
+         */
+        final Constructor m_constructor;
+
+        /**
+         * The properties.
+         */
+        final ConfigurationProperty[] m_properties;
+
+        /**
+         * Create a binding.
+         *
+         * @param constructor the constructor or null for interfaces
+         * @param properties the properties
+         */
+        Binding( final Constructor constructor,
+                 final ConfigurationProperty[] properties )
+        {
+            m_constructor = constructor;
+            m_properties = properties;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * The handler for interfaces bound by {@link ConfigurationBinder}.
+ * Every value is read and converted when the interface is bound,
+ * so invoking an accessor only looks up the value. Accessors that
+ * take a default value return it if the configuration did not
+ * contain the property. The handler is immutable and may be shared
+ * between threads without synchronization.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+final class ConfigurationBindingHandler
+    implements InvocationHandler
+{
+    /**
+     * The name of the Object.equals() method.
+     */
+    private static final String EQUALS_METHOD_NAME = "equals";
+
+    /**
+     * The name of the Object.hashCode() method.
+     */
+    private static final String HASH_CODE_METHOD_NAME = "hashCode";
+
+    /**
+     * The bound interface.
+     */
+    private final Class m_type;
+
+    /**
+     * The path of the bound configuration.
+     */
+    private final String m_path;
+
+    /**
+     * The values keyed by accessor method. Properties missing
+     * from the configuration have no entry.
+     */
+    private final Map m_values;
+
+    /**
+     * Create a handler.
+     *
+     * @param type the bound interface
+     * @param path the path of the bound configuration
+     * @param values the values keyed by accessor method
+     */
+    ConfigurationBindingHandler( final Class type,
+                                 final String path,
+                                 final Map values )
+    {
+        m_type = type;
+        m_path = path;
+        m_values = values;
+    }
+
+    /**
+     * Return the value for accessor or, if the configuration did
+     * not contain it, the default value passed to the accessor.
+     * Proxies are only equal to themselves.
+     *
+     * @param proxy the proxy
+     * @param method the accessor
+     * @param args the arguments
+     * @return the value
+     */
+    public Object invoke( final Object proxy, final Method method, final Object[] args )
+    {
+        if( Object.class == method.getDeclaringClass() )
+        {
+            final String name = method.getName();
+            if( EQUALS_METHOD_NAME.equals( name ) )
+            {
+                return Boolean.valueOf( proxy == args[ 0 ] );
+            }
+            else if( HASH_CODE_METHOD_NAME.equals( name ) )
+            {
+                return new Integer( System.identityHashCode( proxy ) );
+            }
+            else
+            {
+                return m_type.getName() + "[" + m_path + "]";
+            }
+        }
+
+        final Object value = m_values.get( method );
+        if( null == value && null != args )
+        {
+            return args[ 0 ];
+        }
+        return value;
+    }
+}
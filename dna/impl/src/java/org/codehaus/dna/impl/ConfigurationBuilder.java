@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import javax.xml.parsers.SAXParser;
+
+import org.codehaus.dna.Configuration;
+import org.xml.sax.InputSource;
+
+/**
+ * Builds Configuration objects from XML documents, reusing the
+ * SAX parser and {@link SAXConfigurationHandler} between documents.
+ * Each thread that uses the builder is given its own parser and
+ * handler which are retained for the life of the thread, so the
+ * cost of creating them is only paid once per thread rather than
+ * once per document.
+ *
+ * <p>The builder is thread-safe. All documents built by a builder
+ * share its {@link StringPool}.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public class ConfigurationBuilder
+{
+    /**
+     * The pool used to deduplicate names, attribute keys
+     * and system ids.
+     */
+    private final StringPool m_pool;
+
+    /**
+     * The parser and handler of each thread.
+     */
+    private final ThreadLocal m_contexts = new ThreadLocal();
+
+    /**
+     * Create a builder with its own string pool.
+     */
+    public ConfigurationBuilder()
+    {
+        this( new StringPool() );
+    }
+
+    /**
+     * Create a builder that deduplicates strings using
+     * the specified pool.
+     *
+     * @param pool the string pool
+     */
+    public ConfigurationBuilder( final StringPool pool )
+    {
+        if( null == pool )
+        {
+            throw new NullPointerException( "pool" );
+        }
+        m_pool = pool;
+    }
+
+    /**
+     * Return the string pool used by builder.
+     *
+     * @return the string pool used by builder.
+     */
+    public StringPool getStringPool()
+    {
+        return m_pool;
+    }
+
+    /**
+     * Create a configuration object from specified XML InputSource.
+     *
+     * @param input the InputSource
+     * @return the configuration object
+     * @throws Exception if unable to create configuration object
+     *         from input
+     */
+    public Configuration build( final InputSource input )
+        throws Exception
+    {
+        if( null == input )
+        {
+            throw new NullPointerException( "input" );
+        }
+        BuildContext context = (BuildContext)m_contexts.get();
+        if( null == context )
+        {
+            context = new BuildContext();
+            m_contexts.set( context );
+        }
+        if( context.m_active )
+        {
+            //Invoked while building another document on this
+            //thread (for instance from a handler) so the
+            //thread's parser is busy
+            return parse( ConfigurationUtil.createSAXParser(),
+                          createHandler( m_pool ),
+                          input );
+        }
+
+        context.m_active = true;
+        boolean completed = false;
+        try
+        {
+            if( null == context.m_parser )
+            {
+                context.m_parser = ConfigurationUtil.createSAXParser();
+            }
+            if( null == context.m_handler )
+            {
+                context.m_handler = createHandler( m_pool );
+            }
+            final Configuration configuration =
+                parse( context.m_parser, context.m_handler, input );
+            completed = true;
+            return configuration;
+        }
+        finally
+        {
+            context.m_active = false;
+            if( !completed )
+            {
+                //The parser may be left in an inconsistent
+                //state by a failed parse so discard it
+                context.m_parser = null;
+            }
+        }
+    }
+
+    /**
+     * Create configuration objects from specified XML InputSources.
+     * The documents are built in order on the calling thread using
+     * the same parser and handler. If any document fails to build
+     * the exception is thrown and the remaining documents are not built.
+     *
+     * @param inputs the InputSources
+     * @return the configuration objects in the same order as inputs
+     * @throws Exception if unable to create a configuration object
+     *         from an input
+     */
+    public Configuration[] build( final InputSource[] inputs )
+        throws Exception
+    {
+        if( null == inputs )
+        {
+            throw new NullPointerException( "inputs" );
+        }
+        for( int i = 0; i < inputs.length; i++ )
+        {
+            if( null == inputs[ i ] )
+            {
+                throw new NullPointerException( "inputs[" + i + "]" );
+            }
+        }
+        final Configuration[] configurations = new Configuration[ inputs.length ];
+        for( int i = 0; i < inputs.length; i++ )
+        {
+            configurations[ i ] = build( inputs[ i ] );
+        }
+        return configurations;
+    }
+
+    /**
+     * Create the handler used to build documents. Subclasses may
+     * override this to use a customized handler. The handler is
+     * reused via {@link SAXConfigurationHandler#clear()}.
+     *
+     * @param pool the string pool
+     * @return the handler
+     */
+    protected SAXConfigurationHandler createHandler( final StringPool pool )
+    {
+        return new SAXConfigurationHandler( pool );
+    }
+
+    /**
+     * Parse input using specified parser and handler.
+     *
+     * @param parser the parser
+     * @param handler the handler
+     * @param input the InputSource
+     * @return the configuration object
+     * @throws Exception if unable to create configuration object
+     *         from input
+     */
+    private static Configuration parse( final SAXParser parser,
+                                        final SAXConfigurationHandler handler,
+                                        final InputSource input )
+        throws Exception
+    {
+        handler.clear();
+        try
+        {
+            parser.parse( input, handler );
+            return handler.getConfiguration();
+        }
+        finally
+        {
+            handler.clear();
+        }
+    }
+
+    /**
+     * The parser and handler used by one thread.
+     */
+    private static final class BuildContext
+    {
+        /**
+         * The parser or null if not yet created.
+         */
+        private SAXParser m_parser;
+
+        /**
+         * The handler or null if not yet created.
+         */
+        private SAXConfigurationHandler m_handler;
+
+        /**
+         * True while the thread is building a document.
+         */
+        private boolean m_active;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * A single difference between two configuration trees as
+ * reported by {@link ConfigurationDiff}. A change describes
+ * one of the following:
+ * <ul>
+ *   <li>an element that was added or removed, in which case
+ *       {@link #getAttribute()} is null and the type is
+ *       {@link #ADDED} or {@link #REMOVED}.</li>
+ *   <li>an element whose value changed, in which case
+ *       {@link #getAttribute()} is null and the type is
+ *       {@link #CHANGED}.</li>
+ *   <li>an attribute that was added, removed or changed,
+ *       in which case {@link #getAttribute()} is the name
+ *       of the attribute.</li>
+ * </ul>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public final class ConfigurationChange
+{
+    /**
+     * Type of change when element or attribute was added.
+     */
+    public static final int ADDED = 0;
+
+    /**
+     * Type of change when element or attribute was removed.
+     */
+    public static final int REMOVED = 1;
+
+    /**
+     * Type of change when element value or attribute value changed.
+     */
+    public static final int CHANGED = 2;
+
+    /**
+     * The type of change.
+     */
+    private final int m_type;
+
+    /**
+     * The path to element, see {@link #getPath()}.
+     */
+    private final String m_path;
+
+    /**
+     * The name of attribute or null if the change is to the element.
+     */
+    private final String m_attribute;
+
+    /**
+     * The element in the old configuration (May be null).
+     */
+    private final Configuration m_oldConfiguration;
+
+    /**
+     * The element in the new configuration (May be null).
+     */
+    private final Configuration m_newConfiguration;
+
+    /**
+     * The old value of attribute or element (May be null).
+     */
+    private final String m_oldValue;
+
+    /**
+     * The new value of attribute or element (May be null).
+     */
+    private final String m_newValue;
+
+    /**
+     * Create a change.
+     *
+     * @param type the type of change
+     * @param path the path to element
+     * @param attribute the name of attribute (May be null)
+     * @param oldConfiguration the element in old configuration (May be null)
+     * @param newConfiguration the element in new configuration (May be null)
+     * @param oldValue the old value (May be null)
+     * @param newValue the new value (May be null)
+     */
+    ConfigurationChange( final int type,
+                         final String path,
+                         final String attribute,
+                         final Configuration oldConfiguration,
+                         final Configuration newConfiguration,
+                         final String oldValue,
+                         final String newValue )
+    {
+        m_type = type;
+        m_path = path;
+        m_attribute = attribute;
+        m_oldConfiguration = oldConfiguration;
+        m_newConfiguration = newConfiguration;
+        m_oldValue = oldValue;
+        m_newValue = newValue;
+    }
+
+    /**
+     * Return the type of change. One of {@link #ADDED},
+     * {@link #REMOVED} or {@link #CHANGED}.
+     *
+     * @return the type of change
+     */
+    public int getType()
+    {
+        return m_type;
+    }
+
+    /**
+     * Return the path to the element. The path starts with the name
+     * of the root element and is followed by one step for each
+     * descendant on the way to the element. Each step is the name of
+     * the element and its 1-based position among the children of its
+     * parent with the same name, using the positional predicate of
+     * {@link ConfigurationQuery}. For example the path of the first
+     * "ssl" element in the second "listener" of a "server" is
+     * "server/listener[2]/ssl[1]" and the path of the root is "server".
+     *
+     * <p>The steps after the root name are a query expression, so
+     * compiling them and evaluating the query against the root
+     * element selects the element in the tree that contains it.</p>
+     *
+     * @return the path to the element
+     */
+    public String getPath()
+    {
+        return m_path;
+    }
+
+    /**
+     * Return the name of attribute that changed or null if
+     * the element or its value changed.
+     *
+     * @return the name of attribute or null
+     */
+    public String getAttribute()
+    {
+        return m_attribute;
+    }
+
+    /**
+     * Return the element in the old configuration or null
+     * if the element was added.
+     *
+     * @return the element in the old configuration
+     */
+    public Configuration getOldConfiguration()
+    {
+        return m_oldConfiguration;
+    }
+
+    /**
+     * Return the element in the new configuration or null
+     * if the element was removed.
+     *
+     * @return the element in the new configuration
+     */
+    public Configuration getNewConfiguration()
+    {
+        return m_newConfiguration;
+    }
+
+    /**
+     * Return the old value of attribute or element value.
+     * Always null for added or removed elements.
+     *
+     * @return the old value
+     */
+    public String getOldValue()
+    {
+        return m_oldValue;
+    }
+
+    /**
+     * Return the new value of attribute or element value.
+     * Always null for added or removed elements.
+     *
+     * @return the new value
+     */
+    public String getNewValue()
+    {
+        return m_newValue;
+    }
+
+    /**
+     * Return string representation of change.
+     *
+     * @return string representation of change
+     */
+    public String toString()
+    {
+        final StringBuffer sb = new StringBuffer();
+        sb.append( "[ConfigurationChange " );
+        if( ADDED == m_type )
+        {
+            sb.append( "added" );
+        }
+        else if( REMOVED == m_type )
+        {
+            sb.append( "removed" );
+        }
+        else
+        {
+            sb.append( "changed" );
+        }
+        sb.append( " path='" );
+        sb.append( m_path );
+        sb.append( "'" );
+        if( null != m_attribute )
+        {
+            sb.append( " attribute='" );
+            sb.append( m_attribute );
+            sb.append( "'" );
+        }
+        if( null != m_oldValue || null != m_newValue )
+        {
+            sb.append( " old=" );
+            sb.append( m_oldValue );
+            sb.append( " new=" );
+            sb.append( m_newValue );
+        }
+        sb.append( "]" );
+        return sb.toString();
+    }
+}
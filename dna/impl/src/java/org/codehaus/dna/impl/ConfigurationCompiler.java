@@ -0,0 +1,429 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+
+/**
+ * Compiles Configuration trees into a compact binary form and
+ * loads them again without parsing. The loaded configuration is
+ * read-only and decodes its elements from the underlying buffer
+ * when they are accessed. Files are memory-mapped, so loading is
+ * almost free and several processes reading the same file share
+ * its pages.
+ *
+ * <p>The file consists of a header, a table with the offset of
+ * every string, a table with a fixed size record for every element
+ * in document order, a table of attribute name and value pairs
+ * and finally the strings themselves. Every string is stored once
+ * and referenced by index.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ * @see CompiledConfiguration
+ */
+public final class ConfigurationCompiler
+{
+    /**
+     * Magic number identifying compiled configurations ("DNAC").
+     */
+    static final int MAGIC = 0x444E4143;
+
+    /**
+     * Version of the compiled format.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Size in bytes of the header.
+     */
+    static final int HEADER_SIZE = 24;
+
+    /**
+     * Index of the name of element in its record.
+     */
+    static final int NAME = 0;
+
+    /**
+     * Index of the value of element in its record.
+     */
+    static final int VALUE = 1;
+
+    /**
+     * Index of the system id of element in its record.
+     */
+    static final int SYSTEM_ID = 2;
+
+    /**
+     * Index of the line number of element in its record.
+     */
+    static final int LINE_NUMBER = 3;
+
+    /**
+     * Index of the column number of element in its record.
+     */
+    static final int COLUMN_NUMBER = 4;
+
+    /**
+     * Index of the number of attributes of element in its record.
+     */
+    static final int ATTRIBUTE_COUNT = 5;
+
+    /**
+     * Index of the first attribute of element in its record.
+     */
+    static final int ATTRIBUTE_START = 6;
+
+    /**
+     * Index of the number of children of element in its record.
+     */
+    static final int CHILD_COUNT = 7;
+
+    /**
+     * Index of the size of subtree of element in its record.
+     */
+    static final int SIZE = 8;
+
+    /**
+     * Number of ints in the record of an element.
+     */
+    static final int NODE_FIELDS = 9;
+
+    /**
+     * String index used for a missing string.
+     */
+    static final int NO_STRING = -1;
+
+    /**
+     * Indexes of strings added to the string table.
+     */
+    private final Map m_stringIndexes = new HashMap();
+
+    /**
+     * The strings in string table.
+     */
+    private final List m_strings = new ArrayList();
+
+    /**
+     * The records of elements.
+     */
+    private int[] m_nodes = new int[ 16 * NODE_FIELDS ];
+
+    /**
+     * The number of elements.
+     */
+    private int m_nodeCount;
+
+    /**
+     * The attribute name and value pairs.
+     */
+    private int[] m_attributes = new int[ 16 ];
+
+    /**
+     * The number of attributes.
+     */
+    private int m_attributeCount;
+
+    /**
+     * Private constructor as instances only live for one compile.
+     */
+    private ConfigurationCompiler()
+    {
+    }
+
+    /**
+     * Compile configuration and write it to output.
+     * The output stream is not closed.
+     *
+     * @param configuration the configuration
+     * @param output the output stream
+     * @throws IOException if unable to write to output
+     */
+    public static void compile( final Configuration configuration,
+                                final OutputStream output )
+        throws IOException
+    {
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        if( null == output )
+        {
+            throw new NullPointerException( "output" );
+        }
+        final ConfigurationCompiler compiler = new ConfigurationCompiler();
+        final int rootPath = compiler.addString( configuration.getPath() );
+        compiler.addNodes( configuration );
+        compiler.write( rootPath, output );
+    }
+
+    /**
+     * Compile configuration and write it to file.
+     *
+     * @param configuration the configuration
+     * @param file the file
+     * @throws IOException if unable to write to file
+     */
+    public static void compile( final Configuration configuration,
+                                final File file )
+        throws IOException
+    {
+        if( null == file )
+        {
+            throw new NullPointerException( "file" );
+        }
+        final OutputStream output = new FileOutputStream( file );
+        try
+        {
+            compile( configuration, output );
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    /**
+     * Load a configuration compiled into file. The file is
+     * memory-mapped and must not be modified while the
+     * configuration is in use.
+     *
+     * @param file the file
+     * @return the configuration
+     * @throws IOException if unable to read file
+     * @throws ConfigurationException if file is not a
+     *         compiled configuration
+     */
+    public static Configuration load( final File file )
+        throws IOException, ConfigurationException
+    {
+        if( null == file )
+        {
+            throw new NullPointerException( "file" );
+        }
+        final FileInputStream input = new FileInputStream( file );
+        try
+        {
+            final FileChannel channel = input.getChannel();
+            final ByteBuffer buffer =
+                channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            return load( buffer );
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+
+    /**
+     * Load a configuration compiled into buffer. The buffer
+     * is read using absolute positions only and must not be
+     * modified while the configuration is in use.
+     *
+     * @param buffer the buffer
+     * @return the configuration
+     * @throws ConfigurationException if buffer does not contain
+     *         a compiled configuration
+     */
+    public static Configuration load( final ByteBuffer buffer )
+        throws ConfigurationException
+    {
+        if( null == buffer )
+        {
+            throw new NullPointerException( "buffer" );
+        }
+        final CompiledConfigurationTable table = new CompiledConfigurationTable( buffer );
+        return new CompiledConfiguration( table, null, 0 );
+    }
+
+    /**
+     * Add configuration and its children to the element table.
+     * The tree is walked rather than recursed so that trees of
+     * any depth can be compiled.
+     *
+     * @param configuration the configuration
+     */
+    private void addNodes( final Configuration configuration )
+    {
+        //The index of the open element at each depth
+        int[] indexes = new int[ 16 ];
+        final ConfigurationWalker walker = new ConfigurationWalker( configuration );
+        while( walker.next() )
+        {
+            final int depth = walker.getDepth();
+            if( walker.isStartElement() )
+            {
+                if( depth == indexes.length )
+                {
+                    final int[] newIndexes = new int[ indexes.length * 2 ];
+                    System.arraycopy( indexes, 0, newIndexes, 0, indexes.length );
+                    indexes = newIndexes;
+                }
+                indexes[ depth ] =
+                    addNode( walker.getConfiguration(), walker.getIndexedConfiguration() );
+            }
+            else
+            {
+                final int index = indexes[ depth ];
+                m_nodes[ index * NODE_FIELDS + SIZE ] = m_nodeCount - index;
+            }
+        }
+    }
+
+    /**
+     * Add the record of configuration and its attributes to the
+     * element table. The size of the record is set once the
+     * children have been added.
+     *
+     * @param configuration the configuration
+     * @param indexed the indexed view of configuration
+     * @return the index of the record
+     */
+    private int addNode( final Configuration configuration,
+                         final IndexedConfiguration indexed )
+    {
+        if( m_nodeCount * NODE_FIELDS == m_nodes.length )
+        {
+            final int[] nodes = new int[ m_nodes.length * 2 ];
+            System.arraycopy( m_nodes, 0, nodes, 0, m_nodes.length );
+            m_nodes = nodes;
+        }
+        final int index = m_nodeCount++;
+        final int offset = index * NODE_FIELDS;
+        m_nodes[ offset + NAME ] = addString( indexed.getName() );
+        m_nodes[ offset + VALUE ] = addString( indexed.getValue( null ) );
+        if( configuration instanceof DefaultConfiguration )
+        {
+            final DefaultConfiguration source = (DefaultConfiguration)configuration;
+            m_nodes[ offset + SYSTEM_ID ] = addString( source.getSystemId() );
+            m_nodes[ offset + LINE_NUMBER ] = source.getLineNumber();
+            m_nodes[ offset + COLUMN_NUMBER ] = source.getColumnNumber();
+        }
+        else
+        {
+            m_nodes[ offset + SYSTEM_ID ] = addString( configuration.getLocation() );
+            m_nodes[ offset + LINE_NUMBER ] = -1;
+            m_nodes[ offset + COLUMN_NUMBER ] = -1;
+        }
+
+        final int attributeCount = indexed.getAttributeCount();
+        m_nodes[ offset + ATTRIBUTE_COUNT ] = attributeCount;
+        m_nodes[ offset + ATTRIBUTE_START ] = m_attributeCount;
+        for( int i = 0; i < attributeCount; i++ )
+        {
+            final String name = indexed.getAttributeName( i );
+            addAttribute( addString( name ), addString( indexed.getAttribute( name, null ) ) );
+        }
+
+        m_nodes[ offset + CHILD_COUNT ] = indexed.getChildCount();
+        return index;
+    }
+
+    /**
+     * Add an attribute to the attribute table.
+     *
+     * @param name the index of attribute name
+     * @param value the index of attribute value
+     */
+    private void addAttribute( final int name, final int value )
+    {
+        if( m_attributeCount * 2 == m_attributes.length )
+        {
+            final int[] attributes = new int[ m_attributes.length * 2 ];
+            System.arraycopy( m_attributes, 0, attributes, 0, m_attributes.length );
+            m_attributes = attributes;
+        }
+        m_attributes[ m_attributeCount * 2 ] = name;
+        m_attributes[ m_attributeCount * 2 + 1 ] = value;
+        m_attributeCount++;
+    }
+
+    /**
+     * Return the index of string in string table,
+     * adding it if not already present.
+     *
+     * @param string the string (May be null)
+     * @return the index of string or {@link #NO_STRING} if null
+     */
+    private int addString( final String string )
+    {
+        if( null == string )
+        {
+            return NO_STRING;
+        }
+        final Integer index = (Integer)m_stringIndexes.get( string );
+        if( null != index )
+        {
+            return index.intValue();
+        }
+        final int newIndex = m_strings.size();
+        m_strings.add( string );
+        m_stringIndexes.put( string, new Integer( newIndex ) );
+        return newIndex;
+    }
+
+    /**
+     * Write the compiled configuration to output.
+     *
+     * @param rootPath the index of the path of root element
+     * @param output the output stream
+     * @throws IOException if unable to write to output
+     */
+    private void write( final int rootPath, final OutputStream output )
+        throws IOException
+    {
+        final DataOutputStream data =
+            new DataOutputStream( new BufferedOutputStream( output ) );
+        final int stringCount = m_strings.size();
+        data.writeInt( MAGIC );
+        data.writeInt( VERSION );
+        data.writeInt( stringCount );
+        data.writeInt( m_nodeCount );
+        data.writeInt( m_attributeCount );
+        data.writeInt( rootPath );
+
+        int offset = HEADER_SIZE + stringCount * 4 +
+            m_nodeCount * NODE_FIELDS * 4 + m_attributeCount * 2 * 4;
+        for( int i = 0; i < stringCount; i++ )
+        {
+            data.writeInt( offset );
+            offset += 4 + ( (String)m_strings.get( i ) ).length() * 2;
+        }
+        final int nodeLength = m_nodeCount * NODE_FIELDS;
+        for( int i = 0; i < nodeLength; i++ )
+        {
+            data.writeInt( m_nodes[ i ] );
+        }
+        final int attributeLength = m_attributeCount * 2;
+        for( int i = 0; i < attributeLength; i++ )
+        {
+            data.writeInt( m_attributes[ i ] );
+        }
+        for( int i = 0; i < stringCount; i++ )
+        {
+            final String string = (String)m_strings.get( i );
+            data.writeInt( string.length() );
+            data.writeChars( string );
+        }
+        data.flush();
+    }
+}
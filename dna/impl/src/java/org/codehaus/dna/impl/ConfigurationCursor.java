@@ -0,0 +1,808 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.ConfigurationException;
+
+/**
+ * Describes the element a {@link ConfigurationStreamReader} is
+ * positioned at. The accessors mirror those of
+ * {@link org.codehaus.dna.Configuration} but the cursor has no
+ * children and is reused for every element, so it must not be
+ * retained by a {@link ConfigurationStreamHandler}.
+ *
+ * <p>The cursor only holds the elements that are currently open,
+ * so its memory use depends on the depth of the document rather
+ * than its size.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public final class ConfigurationCursor
+{
+    /**
+     * Constant that boolean values must equal to be "true".
+     */
+    private static final String TRUE_STRING = "true";
+
+    /**
+     * Initial number of levels in the element stack.
+     */
+    private static final int INITIAL_DEPTH = 8;
+
+    /**
+     * The names of open elements by depth.
+     */
+    private String[] m_names = new String[ INITIAL_DEPTH ];
+
+    /**
+     * The system ids of open elements by depth.
+     */
+    private String[] m_systemIds = new String[ INITIAL_DEPTH ];
+
+    /**
+     * The line numbers of open elements by depth.
+     */
+    private int[] m_lineNumbers = new int[ INITIAL_DEPTH ];
+
+    /**
+     * The column numbers of open elements by depth.
+     */
+    private int[] m_columnNumbers = new int[ INITIAL_DEPTH ];
+
+    /**
+     * The attribute names of open elements by depth. The
+     * arrays are reused and may be longer than the count.
+     */
+    private String[][] m_attributeNames = new String[ INITIAL_DEPTH ][];
+
+    /**
+     * The attribute values of open elements by depth.
+     */
+    private String[][] m_attributeValues = new String[ INITIAL_DEPTH ][];
+
+    /**
+     * The number of attributes of open elements by depth.
+     */
+    private int[] m_attributeCounts = new int[ INITIAL_DEPTH ];
+
+    /**
+     * The index of current element in the stack or -1 if none.
+     */
+    private int m_depth = -1;
+
+    /**
+     * The value of current element (May be null).
+     */
+    private String m_value;
+
+    /**
+     * Create a cursor. Only created by the reader.
+     */
+    ConfigurationCursor()
+    {
+    }
+
+    /**
+     * Return the depth of current element where the
+     * root element has depth 0.
+     *
+     * @return the depth of current element
+     */
+    public int getDepth()
+    {
+        return m_depth;
+    }
+
+    /**
+     * Return the name of current element.
+     *
+     * @return the name of current element.
+     */
+    public String getName()
+    {
+        return m_names[ m_depth ];
+    }
+
+    /**
+     * Return the path to current element in the same
+     * form as {@link org.codehaus.dna.Configuration#getPath()}.
+     *
+     * @return the path to current element.
+     */
+    public String getPath()
+    {
+        return getPath( m_depth );
+    }
+
+    /**
+     * Return the location of current element.
+     *
+     * @return the location of current element.
+     */
+    public String getLocation()
+    {
+        return ConfigurationUtil.formatLocation( m_systemIds[ m_depth ],
+                                                 m_lineNumbers[ m_depth ],
+                                                 m_columnNumbers[ m_depth ] );
+    }
+
+    /**
+     * Return the name of the open element at specified depth.
+     *
+     * @param depth the depth of element
+     * @return the name of element
+     */
+    String getName( final int depth )
+    {
+        return m_names[ depth ];
+    }
+
+    /**
+     * Return the path to the open element at specified depth.
+     *
+     * @param depth the depth of element
+     * @return the path to element
+     */
+    String getPath( final int depth )
+    {
+        if( 0 == depth )
+        {
+            return ConfigurationUtil.ROOT_PATH;
+        }
+        final StringBuffer sb = new StringBuffer();
+        for( int i = 0; i < depth; i++ )
+        {
+            if( 0 != i )
+            {
+                sb.append( ConfigurationUtil.PATH_SEPARATOR );
+            }
+            sb.append( m_names[ i ] );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Return text value of element. The value is only
+     * available at the end of element.
+     *
+     * @return the value
+     * @throws ConfigurationException if no value in element
+     */
+    public String getValue()
+        throws ConfigurationException
+    {
+        if( null != m_value )
+        {
+            return m_value;
+        }
+        else
+        {
+            final String message = "No value specified";
+            throw new ConfigurationException( message, getPath(), getLocation() );
+        }
+    }
+
+    /**
+     * Return text value of element.
+     * Use specified default if no value in element.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public String getValue( final String defaultValue )
+    {
+        if( null != m_value )
+        {
+            return m_value;
+        }
+        else
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Return text value of element as an integer.
+     *
+     * @return the value
+     * @throws ConfigurationException if no value in element
+     *         or value can not be converted to correct type
+     */
+    public int getValueAsInteger()
+        throws ConfigurationException
+    {
+        final String value = getValue();
+        try
+        {
+            return Integer.parseInt( value );
+        }
+        catch( final NumberFormatException nfe )
+        {
+            final String message =
+                "Unable to parse " + value + " as an integer";
+            throw new ConfigurationException( message, getPath(), getLocation(), nfe );
+        }
+    }
+
+    /**
+     * Return text value of element as an integer.
+     * Use specified default if no value in element or
+     * value can not be converted to correct type.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public int getValueAsInteger( final int defaultValue )
+    {
+        return parseInteger( m_value, defaultValue );
+    }
+
+    /**
+     * Return text value of element as a long.
+     *
+     * @return the value
+     * @throws ConfigurationException if no value in element
+     *         or value can not be converted to correct type
+     */
+    public long getValueAsLong()
+        throws ConfigurationException
+    {
+        final String value = getValue();
+        try
+        {
+            return Long.parseLong( value );
+        }
+        catch( final NumberFormatException nfe )
+        {
+            final String message =
+                "Unable to parse " + value + " as a Long";
+            throw new ConfigurationException( message, getPath(), getLocation(), nfe );
+        }
+    }
+
+    /**
+     * Return text value of element as a long.
+     * Use specified default if no value in element or
+     * value can not be converted to correct type.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public long getValueAsLong( final long defaultValue )
+    {
+        return parseLong( m_value, defaultValue );
+    }
+
+    /**
+     * Return text value of element as a boolean.
+     *
+     * @return the value
+     * @throws ConfigurationException if no value in element
+     */
+    public boolean getValueAsBoolean()
+        throws ConfigurationException
+    {
+        return getValue().equals( TRUE_STRING );
+    }
+
+    /**
+     * Return text value of element as a boolean.
+     * Use specified default if no value in element.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public boolean getValueAsBoolean( final boolean defaultValue )
+    {
+        if( null == m_value )
+        {
+            return defaultValue;
+        }
+        else
+        {
+            return m_value.equals( TRUE_STRING );
+        }
+    }
+
+    /**
+     * Return text value of element as a float.
+     *
+     * @return the value
+     * @throws ConfigurationException if no value in element
+     *         or value can not be converted to correct type
+     */
+    public float getValueAsFloat()
+        throws ConfigurationException
+    {
+        final String value = getValue();
+        try
+        {
+            return Float.parseFloat( value );
+        }
+        catch( final NumberFormatException nfe )
+        {
+            final String message =
+                "Unable to parse " + value + " as a Float";
+            throw new ConfigurationException( message, getPath(), getLocation(), nfe );
+        }
+    }
+
+    /**
+     * Return text value of element as a float.
+     * Use specified default if no value in element or
+     * value can not be converted to correct type.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public float getValueAsFloat( final float defaultValue )
+    {
+        return parseFloat( m_value, defaultValue );
+    }
+
+    /**
+     * Return the number of attributes of current element.
+     *
+     * @return the number of attributes.
+     */
+    public int getAttributeCount()
+    {
+        return m_attributeCounts[ m_depth ];
+    }
+
+    /**
+     * Return the name of attribute at specified index.
+     *
+     * @param index the index of attribute
+     * @return the name of attribute
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    public String getAttributeName( final int index )
+    {
+        if( index < 0 || index >= m_attributeCounts[ m_depth ] )
+        {
+            throw new IndexOutOfBoundsException( String.valueOf( index ) );
+        }
+        return m_attributeNames[ m_depth ][ index ];
+    }
+
+    /**
+     * Return an array of all the attribute names.
+     *
+     * @return an array of all the attribute names.
+     */
+    public String[] getAttributeNames()
+    {
+        final int count = m_attributeCounts[ m_depth ];
+        final String[] names = new String[ count ];
+        if( 0 != count )
+        {
+            System.arraycopy( m_attributeNames[ m_depth ], 0, names, 0, count );
+        }
+        return names;
+    }
+
+    /**
+     * Return attribute value with specified name.
+     *
+     * @param name the attribute name
+     * @return the attribute value
+     * @throws ConfigurationException if no attribute with
+     *         specified name
+     */
+    public String getAttribute( final String name )
+        throws ConfigurationException
+    {
+        final String value = getAttribute( name, null );
+        if( null != value )
+        {
+            return value;
+        }
+        else
+        {
+            final String message =
+                "Attribute named " + name + " not specified.";
+            throw new ConfigurationException( message, getPath(), getLocation() );
+        }
+    }
+
+    /**
+     * Return attribute value with specified name.
+     * If no attribute with specified name then return
+     * default value.
+     *
+     * @param name the attribute name
+     * @param defaultValue the default value
+     * @return the attribute value
+     */
+    public String getAttribute( final String name,
+                                final String defaultValue )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        final int count = m_attributeCounts[ m_depth ];
+        final String[] names = m_attributeNames[ m_depth ];
+        for( int i = 0; i < count; i++ )
+        {
+            if( name.equals( names[ i ] ) )
+            {
+                return m_attributeValues[ m_depth ][ i ];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Return attribute as an integer.
+     *
+     * @param name the name of the attribute
+     * @return the value of attribute
+     * @throws ConfigurationException if no attribute with
+     *         specified name or attribute can not be converted
+     *         to correct type
+     */
+    public int getAttributeAsInteger( final String name )
+        throws ConfigurationException
+    {
+        final String value = getAttribute( name );
+        try
+        {
+            return Integer.parseInt( value );
+        }
+        catch( final NumberFormatException nfe )
+        {
+            final String message =
+                "Unable to parse " + value + " as an Integer.";
+            throw new ConfigurationException( message, getPath(), getLocation() );
+        }
+    }
+
+    /**
+     * Return attribute as integer.
+     * Use specified default if no attribute with specified name
+     * or attribute can not be converted to correct type.
+     *
+     * @param name the name of the attribute
+     * @param defaultValue the default value
+     * @return the value of attribute
+     */
+    public int getAttributeAsInteger( final String name,
+                                      final int defaultValue )
+    {
+        return parseInteger( getAttribute( name, null ), defaultValue );
+    }
+
+    /**
+     * Return attribute as a long.
+     *
+     * @param name the name of the attribute
+     * @return the value of attribute
+     * @throws ConfigurationException if no attribute with
+     *         specified name or attribute can not be converted
+     *         to correct type
+     */
+    public long getAttributeAsLong( final String name )
+        throws ConfigurationException
+    {
+        final String value = getAttribute( name );
+        try
+        {
+            return Long.parseLong( value );
+        }
+        catch( final NumberFormatException nfe )
+        {
+            final String message =
+                "Unable to parse " + value + " as a Long.";
+            throw new ConfigurationException( message, getPath(), getLocation() );
+        }
+    }
+
+    /**
+     * Return attribute as long.
+     * Use specified default if no attribute with specified name
+     * or attribute can not be converted to correct type.
+     *
+     * @param name the name of the attribute
+     * @param defaultValue the default value
+     * @return the value of attribute
+     */
+    public long getAttributeAsLong( final String name,
+                                    final long defaultValue )
+    {
+        return parseLong( getAttribute( name, null ), defaultValue );
+    }
+
+    /**
+     * Return attribute as a boolean.
+     *
+     * @param name the name of the attribute
+     * @return the value of attribute
+     * @throws ConfigurationException if no attribute with
+     *         specified name
+     */
+    public boolean getAttributeAsBoolean( final String name )
+        throws ConfigurationException
+    {
+        return getAttribute( name ).equals( TRUE_STRING );
+    }
+
+    /**
+     * Return attribute as boolean.
+     * Use specified default if no attribute with specified name.
+     *
+     * @param name the name of the attribute
+     * @param defaultValue the default value
+     * @return the value of attribute
+     */
+    public boolean getAttributeAsBoolean( final String name,
+                                          final boolean defaultValue )
+    {
+        final String value = getAttribute( name, null );
+        if( null == value )
+        {
+            return defaultValue;
+        }
+        else
+        {
+            return value.equals( TRUE_STRING );
+        }
+    }
+
+    /**
+     * Return attribute as a float.
+     *
+     * @param name the name of the attribute
+     * @return the value of attribute
+     * @throws ConfigurationException if no attribute with
+     *         specified name or attribute can not be converted
+     *         to correct type
+     */
+    public float getAttributeAsFloat( final String name )
+        throws ConfigurationException
+    {
+        final String value = getAttribute( name );
+        try
+        {
+            return Float.parseFloat( value );
+        }
+        catch( final NumberFormatException nfe )
+        {
+            final String message =
+                "Unable to parse " + value + " as a Float.";
+            throw new ConfigurationException( message, getPath(), getLocation() );
+        }
+    }
+
+    /**
+     * Return attribute as float.
+     * Use specified default if no attribute with specified name
+     * or attribute can not be converted to correct type.
+     *
+     * @param name the name of the attribute
+     * @param defaultValue the default value
+     * @return the value of attribute
+     */
+    public float getAttributeAsFloat( final String name,
+                                      final float defaultValue )
+    {
+        return parseFloat( getAttribute( name, null ), defaultValue );
+    }
+
+    /**
+     * Return string representation of cursor.
+     *
+     * @return string representation of cursor
+     */
+    public String toString()
+    {
+        if( -1 == m_depth )
+        {
+            return "[ConfigurationCursor]";
+        }
+        else
+        {
+            return "[ConfigurationCursor name='" + getName() +
+                "' location='" + getLocation() + "']";
+        }
+    }
+
+    /**
+     * Position cursor at a new child of current element.
+     * Attributes are added separately via
+     * {@link #addAttribute(String, String)}.
+     *
+     * @param name the name of element
+     * @param systemId the system id (May be null)
+     * @param lineNumber the line number or -1 if unknown
+     * @param columnNumber the column number or -1 if unknown
+     */
+    void push( final String name,
+               final String systemId,
+               final int lineNumber,
+               final int columnNumber )
+    {
+        m_depth++;
+        if( m_depth == m_names.length )
+        {
+            grow();
+        }
+        m_names[ m_depth ] = name;
+        m_systemIds[ m_depth ] = systemId;
+        m_lineNumbers[ m_depth ] = lineNumber;
+        m_columnNumbers[ m_depth ] = columnNumber;
+        m_attributeCounts[ m_depth ] = 0;
+        m_value = null;
+    }
+
+    /**
+     * Add an attribute to current element.
+     *
+     * @param name the name of attribute
+     * @param value the value of attribute
+     */
+    void addAttribute( final String name, final String value )
+    {
+        final int count = m_attributeCounts[ m_depth ];
+        String[] names = m_attributeNames[ m_depth ];
+        String[] values = m_attributeValues[ m_depth ];
+        if( null == names || count == names.length )
+        {
+            final int capacity = Math.max( 4, count * 2 );
+            final String[] newNames = new String[ capacity ];
+            final String[] newValues = new String[ capacity ];
+            if( null != names )
+            {
+                System.arraycopy( names, 0, newNames, 0, count );
+                System.arraycopy( values, 0, newValues, 0, count );
+            }
+            names = newNames;
+            values = newValues;
+            m_attributeNames[ m_depth ] = names;
+            m_attributeValues[ m_depth ] = values;
+        }
+        names[ count ] = name;
+        values[ count ] = value;
+        m_attributeCounts[ m_depth ] = count + 1;
+    }
+
+    /**
+     * Set the value of current element.
+     *
+     * @param value the value (May be null)
+     */
+    void setValue( final String value )
+    {
+        m_value = value;
+    }
+
+    /**
+     * Position cursor back at parent of current element.
+     */
+    void pop()
+    {
+        final int count = m_attributeCounts[ m_depth ];
+        final String[] values = m_attributeValues[ m_depth ];
+        for( int i = 0; i < count; i++ )
+        {
+            values[ i ] = null;
+        }
+        m_depth--;
+        m_value = null;
+    }
+
+    /**
+     * Reset cursor so that it can be reused.
+     */
+    void clear()
+    {
+        while( m_depth >= 0 )
+        {
+            pop();
+        }
+    }
+
+    /**
+     * Double the depth of stack.
+     */
+    private void grow()
+    {
+        final int depth = m_names.length * 2;
+        final String[] names = new String[ depth ];
+        System.arraycopy( m_names, 0, names, 0, m_names.length );
+        m_names = names;
+        final String[] systemIds = new String[ depth ];
+        System.arraycopy( m_systemIds, 0, systemIds, 0, m_systemIds.length );
+        m_systemIds = systemIds;
+        final int[] lineNumbers = new int[ depth ];
+        System.arraycopy( m_lineNumbers, 0, lineNumbers, 0, m_lineNumbers.length );
+        m_lineNumbers = lineNumbers;
+        final int[] columnNumbers = new int[ depth ];
+        System.arraycopy( m_columnNumbers, 0, columnNumbers, 0, m_columnNumbers.length );
+        m_columnNumbers = columnNumbers;
+        final String[][] attributeNames = new String[ depth ][];
+        System.arraycopy( m_attributeNames, 0, attributeNames, 0, m_attributeNames.length );
+        m_attributeNames = attributeNames;
+        final String[][] attributeValues = new String[ depth ][];
+        System.arraycopy( m_attributeValues, 0, attributeValues, 0, m_attributeValues.length );
+        m_attributeValues = attributeValues;
+        final int[] attributeCounts = new int[ depth ];
+        System.arraycopy( m_attributeCounts, 0, attributeCounts, 0, m_attributeCounts.length );
+        m_attributeCounts = attributeCounts;
+    }
+
+    /**
+     * Parse value as an integer.
+     *
+     * @param value the value (May be null)
+     * @param defaultValue the value if null or malformed
+     * @return the parsed value
+     */
+    private static int parseInteger( final String value, final int defaultValue )
+    {
+        if( null == value )
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return Integer.parseInt( value );
+        }
+        catch( final NumberFormatException nfe )
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Parse value as a long.
+     *
+     * @param value the value (May be null)
+     * @param defaultValue the value if null or malformed
+     * @return the parsed value
+     */
+    private static long parseLong( final String value, final long defaultValue )
+    {
+        if( null == value )
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return Long.parseLong( value );
+        }
+        catch( final NumberFormatException nfe )
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Parse value as a float.
+     *
+     * @param value the value (May be null)
+     * @param defaultValue the value if null or malformed
+     * @return the parsed value
+     */
+    private static float parseFloat( final String value, final float defaultValue )
+    {
+        if( null == value )
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return Float.parseFloat( value );
+        }
+        catch( final NumberFormatException nfe )
+        {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,458 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Converts configuration trees into read-only trees in which
+ * structurally identical subtrees share one instance of their
+ * content. This greatly reduces the memory used by generated
+ * configurations that repeat the same blocks many times.
+ *
+ * <p>Each element of the result still reports its own path and
+ * location. The locations are stored in a compact table and each
+ * element is a small wrapper around the shared content. The
+ * wrappers for the children of an element are created together
+ * on first access and retained, so successive calls return the
+ * same instances.</p>
+ *
+ * <p>Content is shared between all trees converted by the same
+ * deduplicator until {@link #clear()} is invoked. The deduplicator
+ * also keeps running totals that estimate the memory saved.
+ * Instances are not thread-safe.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public class ConfigurationDeduplicator
+{
+    /**
+     * Estimated size in bytes of an object header.
+     */
+    private static final int OBJECT_HEADER_SIZE = 12;
+
+    /**
+     * Estimated size in bytes of an array header.
+     */
+    private static final int ARRAY_HEADER_SIZE = 16;
+
+    /**
+     * Estimated size in bytes of a reference or int.
+     */
+    private static final int SLOT_SIZE = 4;
+
+    /**
+     * Estimated size in bytes of a {@link CompactConfiguration}
+     * excluding its arrays.
+     */
+    private static final int NODE_SIZE = OBJECT_HEADER_SIZE + 13 * SLOT_SIZE;
+
+    /**
+     * Estimated size in bytes of a {@link SharedConfiguration}
+     * excluding its children array.
+     */
+    private static final int WRAPPER_SIZE = OBJECT_HEADER_SIZE + 9 * SLOT_SIZE;
+
+    /**
+     * Number of arrays in a {@link LocationTable}.
+     */
+    private static final int LOCATION_TABLE_ARRAYS = 4;
+
+    /**
+     * Canonical content keyed by structural hash. The value
+     * is a list of content with that hash.
+     */
+    private final Map m_canonical = new HashMap();
+
+    /**
+     * Structural hashes of elements in the tree being converted.
+     */
+    private final Map m_hashes = new IdentityHashMap();
+
+    /**
+     * The number of elements converted.
+     */
+    private int m_elementCount;
+
+    /**
+     * The number of converted elements that reused existing content.
+     */
+    private int m_sharedCount;
+
+    /**
+     * The estimated bytes saved by sharing content.
+     */
+    private long m_bytesSaved;
+
+    /**
+     * Convert configuration into a read-only configuration
+     * that shares identical content.
+     *
+     * @param configuration the configuration
+     * @return the converted configuration
+     */
+    public Configuration deduplicate( final Configuration configuration )
+    {
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        final LocationTable locations = new LocationTable();
+        try
+        {
+            final CompactConfiguration content = canonicalize( configuration, locations );
+            locations.trim();
+            m_bytesSaved -= estimateLocationTableSize( locations.size() );
+            return new SharedConfiguration( content,
+                                            null,
+                                            configuration.getPath(),
+                                            locations,
+                                            0 );
+        }
+        finally
+        {
+            m_hashes.clear();
+        }
+    }
+
+    /**
+     * Return the number of elements converted.
+     *
+     * @return the number of elements converted.
+     */
+    public int getElementCount()
+    {
+        return m_elementCount;
+    }
+
+    /**
+     * Return the number of converted elements that reused
+     * content created for an identical element.
+     *
+     * @return the number of converted elements that reused content.
+     */
+    public int getSharedCount()
+    {
+        return m_sharedCount;
+    }
+
+    /**
+     * Return an estimate of the bytes saved compared to converting
+     * the same trees with
+     * {@link ConfigurationUtil#toCompactConfiguration(Configuration)}.
+     * The estimate counts the elements and arrays that were not
+     * created, less the location tables and the wrappers and
+     * children arrays that are retained once every element of the
+     * results has been accessed, assuming 4 byte references.
+     * Strings are not counted as they are shared in either case
+     * when a {@link StringPool} is used. The estimate is negative
+     * if there is too little repetition to pay for the location tables.
+     *
+     * @return the estimated bytes saved
+     */
+    public long getEstimatedBytesSaved()
+    {
+        return m_bytesSaved;
+    }
+
+    /**
+     * Forget all canonical content and reset statistics.
+     */
+    public void clear()
+    {
+        m_canonical.clear();
+        m_elementCount = 0;
+        m_sharedCount = 0;
+        m_bytesSaved = 0;
+    }
+
+    /**
+     * Return the canonical content for configuration, recording
+     * the location of every element in locations. The tree is
+     * walked rather than recursed so that trees of any depth can
+     * be converted, and the content of each element is found once
+     * the content of its children is known.
+     *
+     * @param configuration the configuration
+     * @param locations the location table
+     * @return the canonical content
+     */
+    private CompactConfiguration canonicalize( final Configuration configuration,
+                                               final LocationTable locations )
+    {
+        //The location index and canonical children of the open element at each depth
+        int[] indexes = new int[ 16 ];
+        final List childArrays = new ArrayList();
+        final ConfigurationWalker walker = new ConfigurationWalker( configuration );
+        while( walker.next() )
+        {
+            final int depth = walker.getDepth();
+            final IndexedConfiguration indexed = walker.getIndexedConfiguration();
+            if( walker.isStartElement() )
+            {
+                if( depth == indexes.length )
+                {
+                    final int[] newIndexes = new int[ indexes.length * 2 ];
+                    System.arraycopy( indexes, 0, newIndexes, 0, indexes.length );
+                    indexes = newIndexes;
+                }
+                indexes[ depth ] = addLocation( walker.getConfiguration(), locations );
+                m_elementCount++;
+
+                final int childCount = indexed.getChildCount();
+                m_bytesSaved -= estimateWrapperSize( childCount );
+                Configuration[] children = AbstractConfiguration.EMPTY_CONFIG_ARRAY;
+                if( 0 != childCount )
+                {
+                    children = new Configuration[ childCount ];
+                }
+                if( depth == childArrays.size() )
+                {
+                    childArrays.add( children );
+                }
+                else
+                {
+                    childArrays.set( depth, children );
+                }
+            }
+            else
+            {
+                locations.complete( indexes[ depth ] );
+                final Configuration[] children = (Configuration[])childArrays.get( depth );
+                childArrays.set( depth, null );
+                final CompactConfiguration content =
+                    canonicalizeElement( walker.getConfiguration(), indexed, children );
+                if( 0 == depth )
+                {
+                    return content;
+                }
+                final Configuration[] siblings = (Configuration[])childArrays.get( depth - 1 );
+                siblings[ walker.getIndex() ] = content;
+            }
+        }
+        //Can not happen as the end of the root always returns
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Return the canonical content for an element whose
+     * children have already been canonicalized.
+     *
+     * @param configuration the element
+     * @param indexed the indexed view of element
+     * @param children the canonical children
+     * @return the canonical content
+     */
+    private CompactConfiguration canonicalizeElement( final Configuration configuration,
+                                                      final IndexedConfiguration indexed,
+                                                      final Configuration[] children )
+    {
+        final int attributeCount = indexed.getAttributeCount();
+        String[] attributeNames = AbstractConfiguration.EMPTY_STRING_ARRAY;
+        String[] attributeValues = AbstractConfiguration.EMPTY_STRING_ARRAY;
+        if( 0 != attributeCount )
+        {
+            attributeNames = new String[ attributeCount ];
+            for( int i = 0; i < attributeCount; i++ )
+            {
+                attributeNames[ i ] = indexed.getAttributeName( i );
+            }
+            Arrays.sort( attributeNames );
+            attributeValues = new String[ attributeCount ];
+            for( int i = 0; i < attributeNames.length; i++ )
+            {
+                attributeValues[ i ] = indexed.getAttribute( attributeNames[ i ], null );
+            }
+        }
+        final String name = indexed.getName();
+        final String value = indexed.getValue( null );
+
+        final Long hash = new Long( ConfigurationUtil.structuralHash( configuration, m_hashes ) );
+        List candidates = (List)m_canonical.get( hash );
+        if( null == candidates )
+        {
+            candidates = new ArrayList( 1 );
+            m_canonical.put( hash, candidates );
+        }
+        else
+        {
+            final int count = candidates.size();
+            for( int i = 0; i < count; i++ )
+            {
+                final CompactConfiguration candidate = (CompactConfiguration)candidates.get( i );
+                if( isSame( candidate, name, value, attributeNames, attributeValues, children ) )
+                {
+                    m_sharedCount++;
+                    m_bytesSaved += estimateSize( attributeNames.length, children.length );
+                    return candidate;
+                }
+            }
+        }
+
+        final CompactConfiguration content =
+            new CompactConfiguration( name,
+                                      null,
+                                      ConfigurationUtil.ROOT_PATH,
+                                      null,
+                                      -1,
+                                      -1,
+                                      attributeNames,
+                                      attributeValues,
+                                      value );
+        if( 0 != children.length )
+        {
+            content.setChildren( children );
+        }
+        candidates.add( content );
+        return content;
+    }
+
+    /**
+     * Add the location of configuration to locations.
+     *
+     * @param configuration the configuration
+     * @param locations the location table
+     * @return the index of location
+     */
+    private static int addLocation( final Configuration configuration,
+                                    final LocationTable locations )
+    {
+        if( configuration instanceof DefaultConfiguration )
+        {
+            final DefaultConfiguration source = (DefaultConfiguration)configuration;
+            return locations.add( source.getSystemId(),
+                                  source.getLineNumber(),
+                                  source.getColumnNumber() );
+        }
+        else
+        {
+            return locations.add( configuration.getLocation(), -1, -1 );
+        }
+    }
+
+    /**
+     * Return true if candidate has the specified content. As the
+     * children are canonical they are compared by identity.
+     *
+     * @param candidate the candidate
+     * @param name the name
+     * @param value the value (May be null)
+     * @param attributeNames the sorted attribute names
+     * @param attributeValues the attribute values
+     * @param children the canonical children
+     * @return true if candidate has the specified content
+     */
+    private static boolean isSame( final CompactConfiguration candidate,
+                                   final String name,
+                                   final String value,
+                                   final String[] attributeNames,
+                                   final String[] attributeValues,
+                                   final Configuration[] children )
+    {
+        if( !name.equals( candidate.getName() ) )
+        {
+            return false;
+        }
+        final String candidateValue = candidate.getValue( null );
+        if( null == value )
+        {
+            if( null != candidateValue )
+            {
+                return false;
+            }
+        }
+        else if( !value.equals( candidateValue ) )
+        {
+            return false;
+        }
+
+        final String[] names = candidate.getAttributeNames();
+        if( !Arrays.equals( names, attributeNames ) )
+        {
+            return false;
+        }
+        for( int i = 0; i < names.length; i++ )
+        {
+            if( !attributeValues[ i ].equals( candidate.getAttribute( names[ i ], null ) ) )
+            {
+                return false;
+            }
+        }
+
+        final Configuration[] candidateChildren = candidate.getChildren();
+        if( candidateChildren.length != children.length )
+        {
+            return false;
+        }
+        for( int i = 0; i < children.length; i++ )
+        {
+            if( candidateChildren[ i ] != children[ i ] )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimate the bytes used by an element and its arrays.
+     *
+     * @param attributeCount the number of attributes
+     * @param childCount the number of children
+     * @return the estimated bytes
+     */
+    private static long estimateSize( final int attributeCount, final int childCount )
+    {
+        long size = NODE_SIZE;
+        if( 0 != attributeCount )
+        {
+            size += 2 * ( ARRAY_HEADER_SIZE + attributeCount * SLOT_SIZE );
+        }
+        if( 0 != childCount )
+        {
+            size += ARRAY_HEADER_SIZE + childCount * SLOT_SIZE;
+        }
+        return size;
+    }
+
+    /**
+     * Estimate the bytes retained by the wrapper of an element
+     * once it and its children have been accessed.
+     *
+     * @param childCount the number of children
+     * @return the estimated bytes
+     */
+    private static long estimateWrapperSize( final int childCount )
+    {
+        long size = WRAPPER_SIZE;
+        if( 0 != childCount )
+        {
+            size += ARRAY_HEADER_SIZE + childCount * SLOT_SIZE;
+        }
+        return size;
+    }
+
+    /**
+     * Estimate the bytes used by a location table.
+     *
+     * @param count the number of elements in table
+     * @return the estimated bytes
+     */
+    private static long estimateLocationTableSize( final int count )
+    {
+        return OBJECT_HEADER_SIZE + 5 * SLOT_SIZE +
+            LOCATION_TABLE_ARRAYS * ( ARRAY_HEADER_SIZE + count * SLOT_SIZE );
+    }
+}
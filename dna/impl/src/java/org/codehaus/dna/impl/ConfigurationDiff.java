@@ -0,0 +1,396 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Utility class that calculates the differences between two
+ * configuration trees, such as a configuration before and after
+ * its file has been edited.
+ *
+ * <p>Children are matched by name and position, so the n-th child
+ * named "x" in the old tree is compared with the n-th child named
+ * "x" in the new tree. Extra children are reported as removed or
+ * added and reordering children with different names is not
+ * reported as a change.</p>
+ *
+ * <p>The structural hash of every element (see
+ * {@link ConfigurationUtil#structuralHash(Configuration)}) is
+ * calculated once per diff and subtrees with equal hashes are
+ * skipped without being compared. As the hashes are 64 bits wide
+ * the chance that a changed subtree is skipped is negligible.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public final class ConfigurationDiff
+{
+    /**
+     * Constant for no changes.
+     */
+    private static final ConfigurationChange[] EMPTY_CHANGE_ARRAY = new ConfigurationChange[ 0 ];
+
+    /**
+     * Structural hashes of visited elements keyed by identity.
+     */
+    private final Map m_hashes = new IdentityHashMap();
+
+    /**
+     * The changes found so far.
+     */
+    private final List m_changes = new ArrayList();
+
+    /**
+     * Private constructor as instances only live for one diff.
+     */
+    private ConfigurationDiff()
+    {
+    }
+
+    /**
+     * Return the changes required to turn the old configuration
+     * into the new configuration, in document order.
+     *
+     * @param oldConfiguration the old configuration
+     * @param newConfiguration the new configuration
+     * @return the changes, empty if the configurations are equal
+     */
+    public static ConfigurationChange[] diff( final Configuration oldConfiguration,
+                                              final Configuration newConfiguration )
+    {
+        if( null == oldConfiguration )
+        {
+            throw new NullPointerException( "oldConfiguration" );
+        }
+        if( null == newConfiguration )
+        {
+            throw new NullPointerException( "newConfiguration" );
+        }
+        final ConfigurationDiff diff = new ConfigurationDiff();
+        if( oldConfiguration.getName().equals( newConfiguration.getName() ) )
+        {
+            diff.diffElement( oldConfiguration,
+                              newConfiguration,
+                              oldConfiguration.getName() );
+        }
+        else
+        {
+            diff.addElementChange( ConfigurationChange.REMOVED,
+                                   oldConfiguration.getName(),
+                                   oldConfiguration,
+                                   null );
+            diff.addElementChange( ConfigurationChange.ADDED,
+                                   newConfiguration.getName(),
+                                   null,
+                                   newConfiguration );
+        }
+        return diff.getChanges();
+    }
+
+    /**
+     * Compare two elements with the same name.
+     *
+     * @param oldConfiguration the old element
+     * @param newConfiguration the new element
+     * @param path the path to elements
+     */
+    private void diffElement( final Configuration oldConfiguration,
+                              final Configuration newConfiguration,
+                              final String path )
+    {
+        if( oldConfiguration == newConfiguration ||
+            getHash( oldConfiguration ) == getHash( newConfiguration ) )
+        {
+            return;
+        }
+        final IndexedConfiguration oldIndexed = ConfigurationUtil.toIndexed( oldConfiguration );
+        final IndexedConfiguration newIndexed = ConfigurationUtil.toIndexed( newConfiguration );
+        diffAttributes( oldIndexed, newIndexed, path );
+
+        final String oldValue = oldIndexed.getValue( null );
+        final String newValue = newIndexed.getValue( null );
+        if( ( null == oldValue && null != newValue ) ||
+            ( null != oldValue && !oldValue.equals( newValue ) ) )
+        {
+            m_changes.add( new ConfigurationChange( ConfigurationChange.CHANGED,
+                                                    path,
+                                                    null,
+                                                    oldConfiguration,
+                                                    newConfiguration,
+                                                    oldValue,
+                                                    newValue ) );
+        }
+
+        diffChildren( oldIndexed, newIndexed, path );
+    }
+
+    /**
+     * Compare the attributes of two elements.
+     *
+     * @param oldConfiguration the old element
+     * @param newConfiguration the new element
+     * @param path the path to elements
+     */
+    private void diffAttributes( final IndexedConfiguration oldConfiguration,
+                                 final IndexedConfiguration newConfiguration,
+                                 final String path )
+    {
+        final int oldCount = oldConfiguration.getAttributeCount();
+        for( int i = 0; i < oldCount; i++ )
+        {
+            final String name = oldConfiguration.getAttributeName( i );
+            final String oldValue = oldConfiguration.getAttribute( name, null );
+            final String newValue = newConfiguration.getAttribute( name, null );
+            if( null == newValue )
+            {
+                addAttributeChange( ConfigurationChange.REMOVED, path, name,
+                                    oldConfiguration, newConfiguration,
+                                    oldValue, null );
+            }
+            else if( !newValue.equals( oldValue ) )
+            {
+                addAttributeChange( ConfigurationChange.CHANGED, path, name,
+                                    oldConfiguration, newConfiguration,
+                                    oldValue, newValue );
+            }
+        }
+
+        final int newCount = newConfiguration.getAttributeCount();
+        for( int i = 0; i < newCount; i++ )
+        {
+            final String name = newConfiguration.getAttributeName( i );
+            if( null == oldConfiguration.getAttribute( name, null ) )
+            {
+                addAttributeChange( ConfigurationChange.ADDED, path, name,
+                                    oldConfiguration, newConfiguration,
+                                    null, newConfiguration.getAttribute( name, null ) );
+            }
+        }
+    }
+
+    /**
+     * Compare the children of two elements.
+     *
+     * @param oldConfiguration the old element
+     * @param newConfiguration the new element
+     * @param path the path to elements
+     */
+    private void diffChildren( final IndexedConfiguration oldConfiguration,
+                               final IndexedConfiguration newConfiguration,
+                               final String path )
+    {
+        final Map oldChildren = groupChildrenByName( oldConfiguration );
+        final Map newChildren = groupChildrenByName( newConfiguration );
+
+        final Map positions = new HashMap();
+        final int oldCount = oldConfiguration.getChildCount();
+        for( int i = 0; i < oldCount; i++ )
+        {
+            final Configuration child = oldConfiguration.getChild( i );
+            final String name = child.getName();
+            final int position = nextPosition( positions, name );
+            final List candidates = (List)newChildren.get( name );
+            if( null != candidates && position < candidates.size() )
+            {
+                final Configuration other = (Configuration)candidates.get( position );
+                if( getHash( child ) != getHash( other ) )
+                {
+                    diffElement( child, other, createPath( path, name, position ) );
+                }
+            }
+            else
+            {
+                addElementChange( ConfigurationChange.REMOVED,
+                                  createPath( path, name, position ),
+                                  child,
+                                  null );
+            }
+        }
+
+        positions.clear();
+        final int newCount = newConfiguration.getChildCount();
+        for( int i = 0; i < newCount; i++ )
+        {
+            final Configuration child = newConfiguration.getChild( i );
+            final String name = child.getName();
+            final int position = nextPosition( positions, name );
+            final List candidates = (List)oldChildren.get( name );
+            if( null == candidates || position >= candidates.size() )
+            {
+                addElementChange( ConfigurationChange.ADDED,
+                                  createPath( path, name, position ),
+                                  null,
+                                  child );
+            }
+        }
+    }
+
+    /**
+     * Return the structural hash of element, calculating
+     * it if it has not already been calculated.
+     *
+     * @param configuration the element
+     * @return the structural hash
+     */
+    private long getHash( final Configuration configuration )
+    {
+        return ConfigurationUtil.structuralHash( configuration, m_hashes );
+    }
+
+    /**
+     * Return the changes found.
+     *
+     * @return the changes found
+     */
+    private ConfigurationChange[] getChanges()
+    {
+        if( 0 == m_changes.size() )
+        {
+            return EMPTY_CHANGE_ARRAY;
+        }
+        else
+        {
+            return (ConfigurationChange[])m_changes.
+                toArray( new ConfigurationChange[ m_changes.size() ] );
+        }
+    }
+
+    /**
+     * Record that an element was added or removed.
+     *
+     * @param type the type of change
+     * @param path the path to element
+     * @param oldConfiguration the removed element or null
+     * @param newConfiguration the added element or null
+     */
+    private void addElementChange( final int type,
+                                   final String path,
+                                   final Configuration oldConfiguration,
+                                   final Configuration newConfiguration )
+    {
+        m_changes.add( new ConfigurationChange( type, path, null,
+                                                oldConfiguration, newConfiguration,
+                                                null, null ) );
+    }
+
+    /**
+     * Record that an attribute was added, removed or changed.
+     *
+     * @param type the type of change
+     * @param path the path to element
+     * @param name the name of attribute
+     * @param oldConfiguration the old element
+     * @param newConfiguration the new element
+     * @param oldValue the old value
+     * @param newValue the new value
+     */
+    private void addAttributeChange( final int type,
+                                     final String path,
+                                     final String name,
+                                     final IndexedConfiguration oldConfiguration,
+                                     final IndexedConfiguration newConfiguration,
+                                     final String oldValue,
+                                     final String newValue )
+    {
+        m_changes.add( new ConfigurationChange( type, path, name,
+                                                unwrap( oldConfiguration ),
+                                                unwrap( newConfiguration ),
+                                                oldValue, newValue ) );
+    }
+
+    /**
+     * Return the configuration that was passed to
+     * {@link ConfigurationUtil#toIndexed(Configuration)}.
+     *
+     * @param configuration the possibly adapted configuration
+     * @return the original configuration
+     */
+    private static Configuration unwrap( final IndexedConfiguration configuration )
+    {
+        if( configuration instanceof IndexedConfigurationAdapter )
+        {
+            return ( (IndexedConfigurationAdapter)configuration ).getConfiguration();
+        }
+        else
+        {
+            return configuration;
+        }
+    }
+
+    /**
+     * Group the children of element by name.
+     *
+     * @param configuration the element
+     * @return map from name to a list of children in order
+     */
+    private static Map groupChildrenByName( final IndexedConfiguration configuration )
+    {
+        final Map children = new HashMap();
+        final int count = configuration.getChildCount();
+        for( int i = 0; i < count; i++ )
+        {
+            final Configuration child = configuration.getChild( i );
+            List list = (List)children.get( child.getName() );
+            if( null == list )
+            {
+                list = new ArrayList();
+                children.put( child.getName(), list );
+            }
+            list.add( child );
+        }
+        return children;
+    }
+
+    /**
+     * Return the 0-based position of the next child with
+     * name and advance the counter for name.
+     *
+     * @param positions map from name to number of children seen
+     * @param name the name of child
+     * @return the position of child among children with name
+     */
+    private static int nextPosition( final Map positions, final String name )
+    {
+        final Integer count = (Integer)positions.get( name );
+        int position = 0;
+        if( null != count )
+        {
+            position = count.intValue();
+        }
+        positions.put( name, new Integer( position + 1 ) );
+        return position;
+    }
+
+    /**
+     * Create the path to a child element.
+     *
+     * @param path the path to parent
+     * @param name the name of child
+     * @param position the 0-based position of child among children with name
+     * @return the path to child
+     */
+    private static String createPath( final String path,
+                                      final String name,
+                                      final int position )
+    {
+        final StringBuffer sb = new StringBuffer();
+        sb.append( path );
+        sb.append( ConfigurationUtil.PATH_SEPARATOR );
+        sb.append( name );
+        sb.append( '[' );
+        sb.append( position + 1 );
+        sb.append( ']' );
+        return sb.toString();
+    }
+}
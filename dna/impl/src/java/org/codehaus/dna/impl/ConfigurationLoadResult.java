@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+
+/**
+ * The outcome of loading several configuration files with a
+ * {@link ConfigurationLoader}. Every file appears either in the
+ * configurations or in the errors.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public final class ConfigurationLoadResult
+{
+    /**
+     * The read-only configurations keyed by file.
+     */
+    private final Map m_configurations;
+
+    /**
+     * The exceptions for files that failed to load keyed by file.
+     */
+    private final Map m_errors;
+
+    /**
+     * Create a result.
+     *
+     * @param configurations the configurations keyed by file
+     * @param errors the exceptions keyed by file
+     */
+    ConfigurationLoadResult( final Map configurations, final Map errors )
+    {
+        m_configurations = Collections.unmodifiableMap( configurations );
+        m_errors = Collections.unmodifiableMap( errors );
+    }
+
+    /**
+     * Return the read-only configurations of the files that were
+     * loaded, keyed by {@link File} in the order the files were given.
+     *
+     * @return the configurations keyed by file
+     */
+    public Map getConfigurations()
+    {
+        return m_configurations;
+    }
+
+    /**
+     * Return the configuration loaded from file.
+     *
+     * @param file the file
+     * @return the configuration or null if file was not loaded
+     */
+    public Configuration getConfiguration( final File file )
+    {
+        return (Configuration)m_configurations.get( file );
+    }
+
+    /**
+     * Return the {@link ConfigurationException}s of the files that
+     * failed to load, keyed by {@link File} in the order the files
+     * were given. The location of each exception identifies where in
+     * the file the problem was found when known.
+     *
+     * @return the exceptions keyed by file
+     */
+    public Map getErrors()
+    {
+        return m_errors;
+    }
+
+    /**
+     * Return the exception raised while loading file.
+     *
+     * @param file the file
+     * @return the exception or null if file was loaded
+     */
+    public ConfigurationException getError( final File file )
+    {
+        return (ConfigurationException)m_errors.get( file );
+    }
+
+    /**
+     * Return true if any file failed to load.
+     *
+     * @return true if any file failed to load
+     */
+    public boolean hasErrors()
+    {
+        return 0 != m_errors.size();
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+/**
+ * Loads many configuration files in parallel. The files are
+ * divided between a fixed number of worker threads, each of which
+ * parses with its own parser via a shared {@link ConfigurationBuilder}.
+ * The worker threads belong to the loader and are reused by every
+ * load, so each keeps its parser between loads. They are daemon
+ * threads and are stopped by {@link #shutdown()}. The loaded
+ * configurations are made read-only so they can be safely shared
+ * once loading completes.
+ *
+ * <p>A file that fails to load does not prevent the other files
+ * from loading. Its failure is reported as a
+ * {@link ConfigurationException} in the {@link ConfigurationLoadResult}
+ * with the location of the problem when known.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public class ConfigurationLoader
+{
+    /**
+     * Suffix of files loaded from a directory.
+     */
+    private static final String XML_SUFFIX = ".xml";
+
+    /**
+     * Filter accepting the XML files in a directory.
+     */
+    private static final FileFilter XML_FILTER = new FileFilter()
+    {
+        public boolean accept( final File file )
+        {
+            return file.isFile() && file.getName().endsWith( XML_SUFFIX );
+        }
+    };
+
+    /**
+     * The builder used to parse files.
+     */
+    private final ConfigurationBuilder m_builder;
+
+    /**
+     * The worker threads.
+     */
+    private final ExecutorService m_executor;
+
+    /**
+     * Create a loader with a thread per available processor.
+     */
+    public ConfigurationLoader()
+    {
+        this( new ConfigurationBuilder(), Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * Create a loader that parses with specified builder
+     * using at most threadCount worker threads.
+     *
+     * @param builder the builder used to parse files
+     * @param threadCount the maximum number of worker threads
+     */
+    public ConfigurationLoader( final ConfigurationBuilder builder,
+                                final int threadCount )
+    {
+        if( null == builder )
+        {
+            throw new NullPointerException( "builder" );
+        }
+        if( threadCount < 1 )
+        {
+            throw new IllegalArgumentException( "threadCount must be at least 1" );
+        }
+        m_builder = builder;
+        m_executor = Executors.newFixedThreadPool( threadCount, new ThreadFactory()
+        {
+            public Thread newThread( final Runnable runnable )
+            {
+                final Thread thread = new Thread( runnable, "ConfigurationLoader" );
+                thread.setDaemon( true );
+                return thread;
+            }
+        } );
+    }
+
+    /**
+     * Stop the worker threads once any loads in progress complete.
+     * The loader can not be used after it is shut down.
+     */
+    public void shutdown()
+    {
+        m_executor.shutdown();
+    }
+
+    /**
+     * Load the files in directory whose names end in ".xml".
+     * The files are loaded in parallel and ordered by name
+     * in the result.
+     *
+     * @param directory the directory
+     * @return the result of loading files
+     * @throws ConfigurationException if directory can not be listed
+     * @throws IllegalStateException if the loader has been shut down
+     * @throws InterruptedException if interrupted while waiting
+     *         for files to load
+     */
+    public ConfigurationLoadResult load( final File directory )
+        throws ConfigurationException, InterruptedException
+    {
+        if( null == directory )
+        {
+            throw new NullPointerException( "directory" );
+        }
+        final File[] files = directory.listFiles( XML_FILTER );
+        if( null == files )
+        {
+            final String message = "Unable to list directory " + directory;
+            throw new ConfigurationException( message, null, directory.getPath() );
+        }
+        Arrays.sort( files );
+        return load( files );
+    }
+
+    /**
+     * Load specified files in parallel.
+     *
+     * @param files the files
+     * @return the result of loading files
+     * @throws InterruptedException if interrupted while waiting
+     *         for files to load
+     * @throws IllegalStateException if the loader has been shut down
+     */
+    public ConfigurationLoadResult load( final File[] files )
+        throws InterruptedException
+    {
+        if( null == files )
+        {
+            throw new NullPointerException( "files" );
+        }
+        for( int i = 0; i < files.length; i++ )
+        {
+            if( null == files[ i ] )
+            {
+                throw new NullPointerException( "files[" + i + "]" );
+            }
+        }
+
+        if( m_executor.isShutdown() )
+        {
+            throw new IllegalStateException( "Loader has been shut down" );
+        }
+
+        final Map configurations = new LinkedHashMap();
+        final Map errors = new LinkedHashMap();
+        if( 0 == files.length )
+        {
+            return new ConfigurationLoadResult( configurations, errors );
+        }
+
+        final Future[] futures = new Future[ files.length ];
+        try
+        {
+            for( int i = 0; i < files.length; i++ )
+            {
+                futures[ i ] = m_executor.submit( new LoadTask( files[ i ] ) );
+            }
+            for( int i = 0; i < files.length; i++ )
+            {
+                final Object outcome = getOutcome( futures[ i ] );
+                if( outcome instanceof ConfigurationException )
+                {
+                    errors.put( files[ i ], outcome );
+                }
+                else
+                {
+                    configurations.put( files[ i ], outcome );
+                }
+            }
+        }
+        catch( final InterruptedException ie )
+        {
+            //Abandon the remaining files so the workers are free for the next load
+            for( int i = 0; i < futures.length; i++ )
+            {
+                if( null != futures[ i ] )
+                {
+                    futures[ i ].cancel( true );
+                }
+            }
+            throw ie;
+        }
+        return new ConfigurationLoadResult( configurations, errors );
+    }
+
+    /**
+     * Load a single file with specified builder and make the
+     * result read-only.
+     *
+     * @param builder the builder
+     * @param file the file
+     * @return the read-only configuration
+     * @throws ConfigurationException if unable to load file
+     */
+    static Configuration loadFile( final ConfigurationBuilder builder,
+                                   final File file )
+        throws ConfigurationException
+    {
+        try
+        {
+            final InputSource input = new InputSource( file.toURI().toString() );
+            final Configuration configuration = builder.build( input );
+            if( configuration instanceof DefaultConfiguration )
+            {
+                ( (DefaultConfiguration)configuration ).makeReadOnly();
+            }
+            return configuration;
+        }
+        catch( final Exception e )
+        {
+            throw toConfigurationException( file, e );
+        }
+    }
+
+    /**
+     * Wait for the outcome of a task.
+     *
+     * @param future the future of task
+     * @return the configuration or exception
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static Object getOutcome( final Future future )
+        throws InterruptedException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch( final ExecutionException ee )
+        {
+            //Tasks catch all exceptions so only errors get here
+            final Throwable cause = ee.getCause();
+            if( cause instanceof Error )
+            {
+                throw (Error)cause;
+            }
+            throw new IllegalStateException( cause.toString() );
+        }
+    }
+
+    /**
+     * Convert an exception raised while loading file into a
+     * ConfigurationException that keeps the location of problem.
+     *
+     * @param file the file
+     * @param e the exception
+     * @return the ConfigurationException
+     */
+    private static ConfigurationException toConfigurationException( final File file,
+                                                                    final Exception e )
+    {
+        if( e instanceof ConfigurationException )
+        {
+            return (ConfigurationException)e;
+        }
+        else if( e instanceof SAXException &&
+            ( (SAXException)e ).getException() instanceof ConfigurationException )
+        {
+            return (ConfigurationException)( (SAXException)e ).getException();
+        }
+        else if( e instanceof SAXParseException )
+        {
+            final SAXParseException spe = (SAXParseException)e;
+            String systemId = spe.getSystemId();
+            if( null == systemId )
+            {
+                systemId = file.toURI().toString();
+            }
+            final String location =
+                ConfigurationUtil.formatLocation( systemId,
+                                                  spe.getLineNumber(),
+                                                  spe.getColumnNumber() );
+            return new ConfigurationException( spe.getMessage(), null, location, spe );
+        }
+        else
+        {
+            final String message = "Unable to load " + file + " due to " + e;
+            return new ConfigurationException( message, null, file.toURI().toString(), e );
+        }
+    }
+
+    /**
+     * Task that loads one file, returning the configuration
+     * or the ConfigurationException describing the failure.
+     */
+    private class LoadTask
+        implements Callable
+    {
+        /**
+         * The file to load.
+         */
+        private final File m_file;
+
+        /**
+         * Create a task to load file.
+         *
+         * @param file the file
+         */
+        LoadTask( final File file )
+        {
+            m_file = file;
+        }
+
+        /**
+         * Load the file.
+         *
+         * @return the configuration or ConfigurationException
+         */
+        public Object call()
+        {
+            try
+            {
+                return loadFile( m_builder, m_file );
+            }
+            catch( final ConfigurationException ce )
+            {
+                return ce;
+            }
+        }
+    }
+}
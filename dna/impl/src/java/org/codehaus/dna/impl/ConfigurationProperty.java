@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.lang.reflect.Member;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+
+/**
+ * A property of a type bound by {@link ConfigurationBinder}.
+ * The property is read from the attribute with the same name as
+ * the property or, if there is no such attribute, from the value
+ * of the child element with that name. Properties whose type is
+ * {@link Configuration} or an interface are only read from child
+ * elements.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+final class ConfigurationProperty
+{
+    /**
+     * The method or field the property is read by.
+     */
+    private final Member m_member;
+
+    /**
+     * The name of the attribute or child element.
+     */
+    private final String m_name;
+
+    /**
+     * The type of property.
+     */
+    private final Class m_type;
+
+    /**
+     * True if the configuration must contain the property.
+     */
+    private final boolean m_required;
+
+    /**
+     * Create a property.
+     *
+     * @param member the method or field the property is read by
+     * @param name the name of the attribute or child element
+     * @param type the type of property
+     * @param required true if the configuration must contain the property
+     */
+    ConfigurationProperty( final Member member,
+                           final String name,
+                           final Class type,
+                           final boolean required )
+    {
+        m_member = member;
+        m_name = name;
+        m_type = type;
+        m_required = required;
+    }
+
+    /**
+     * Return the method or field the property is read by.
+     *
+     * @return the method or field
+     */
+    Member getMember()
+    {
+        return m_member;
+    }
+
+    /**
+     * Return the name of the attribute or child element.
+     *
+     * @return the name
+     */
+    String getName()
+    {
+        return m_name;
+    }
+
+    /**
+     * Return the type of property.
+     *
+     * @return the type
+     */
+    Class getType()
+    {
+        return m_type;
+    }
+
+    /**
+     * Return true if the configuration must contain the property.
+     *
+     * @return true if the property is required
+     */
+    boolean isRequired()
+    {
+        return m_required;
+    }
+
+    /**
+     * Return true if properties of specified type can be bound.
+     *
+     * @param type the type
+     * @return true if the type is supported
+     */
+    static boolean isSupportedType( final Class type )
+    {
+        return String.class == type ||
+            Integer.TYPE == type ||
+            Long.TYPE == type ||
+            Boolean.TYPE == type ||
+            Float.TYPE == type ||
+            Configuration.class == type ||
+            type.isInterface();
+    }
+
+    /**
+     * Read the property from configuration. Primitive values are
+     * returned in their wrapper type.
+     *
+     * @param binder the binder used to bind nested interfaces
+     * @param configuration the configuration
+     * @return the value or null if the configuration does not
+     *         contain the property and it is not required
+     * @throws ConfigurationException if the property is required and
+     *         missing or its value can not be converted to its type
+     */
+    Object read( final ConfigurationBinder binder, final Configuration configuration )
+        throws ConfigurationException
+    {
+        if( isStructured() )
+        {
+            final Configuration child = configuration.getChild( m_name, false );
+            if( null == child )
+            {
+                return missing( configuration );
+            }
+            else if( Configuration.class == m_type )
+            {
+                return child;
+            }
+            else
+            {
+                return binder.bind( m_type, child );
+            }
+        }
+        else if( null != configuration.getAttribute( m_name, null ) )
+        {
+            return readAttribute( configuration );
+        }
+        else
+        {
+            final Configuration child = configuration.getChild( m_name, false );
+            if( null == child )
+            {
+                return missing( configuration );
+            }
+            return readValue( child );
+        }
+    }
+
+    /**
+     * Return true if property is only read from child elements.
+     *
+     * @return true if property is a configuration or interface
+     */
+    private boolean isStructured()
+    {
+        return Configuration.class == m_type || m_type.isInterface();
+    }
+
+    /**
+     * Handle a property that is not in configuration.
+     *
+     * @param configuration the configuration
+     * @return null
+     * @throws ConfigurationException if the property is required
+     */
+    private Object missing( final Configuration configuration )
+        throws ConfigurationException
+    {
+        if( m_required )
+        {
+            final String message =
+                "Missing required attribute or element named " + m_name;
+            throw new ConfigurationException( message,
+                                              configuration.getPath(),
+                                              configuration.getLocation() );
+        }
+        return null;
+    }
+
+    /**
+     * Read the property from the attribute of configuration.
+     *
+     * @param configuration the configuration
+     * @return the value
+     * @throws ConfigurationException if the value can not be
+     *         converted to the type of property
+     */
+    private Object readAttribute( final Configuration configuration )
+        throws ConfigurationException
+    {
+        if( String.class == m_type )
+        {
+            return configuration.getAttribute( m_name );
+        }
+        else if( Integer.TYPE == m_type )
+        {
+            return new Integer( configuration.getAttributeAsInteger( m_name ) );
+        }
+        else if( Long.TYPE == m_type )
+        {
+            return new Long( configuration.getAttributeAsLong( m_name ) );
+        }
+        else if( Boolean.TYPE == m_type )
+        {
+            return Boolean.valueOf( configuration.getAttributeAsBoolean( m_name ) );
+        }
+        else
+        {
+            return new Float( configuration.getAttributeAsFloat( m_name ) );
+        }
+    }
+
+    /**
+     * Read the property from the value of child element.
+     *
+     * @param child the child element
+     * @return the value
+     * @throws ConfigurationException if the element has no value or
+     *         the value can not be converted to the type of property
+     */
+    private Object readValue( final Configuration child )
+        throws ConfigurationException
+    {
+        if( String.class == m_type )
+        {
+            return child.getValue();
+        }
+        else if( Integer.TYPE == m_type )
+        {
+            return new Integer( child.getValueAsInteger() );
+        }
+        else if( Long.TYPE == m_type )
+        {
+            return new Long( child.getValueAsLong() );
+        }
+        else if( Boolean.TYPE == m_type )
+        {
+            return Boolean.valueOf( child.getValueAsBoolean() );
+        }
+        else
+        {
+            return new Float( child.getValueAsFloat() );
+        }
+    }
+}
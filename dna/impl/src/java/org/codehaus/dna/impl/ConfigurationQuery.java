@@ -0,0 +1,595 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.dna.Configuration;
+import org.xml.sax.Attributes;
+
+/**
+ * A compiled path expression that selects descendants of a
+ * Configuration. The expression is a sequence of steps separated
+ * by "/". Each step selects the children of the nodes matched by
+ * the previous step, so "listener/ssl" evaluated against a
+ * configuration is equivalent to
+ * <code>getChild( "listener", false ).getChild( "ssl", false )</code>
+ * except that all matches are returned and no configuration
+ * objects are created for missing elements.
+ *
+ * <p>A step is an element name or "*" to match any element,
+ * optionally followed by predicates:</p>
+ * <ul>
+ *   <li><code>[@name]</code> matches elements that have the attribute.</li>
+ *   <li><code>[@name='value']</code> matches elements whose attribute
+ *       has the value. Double quotes may also be used.</li>
+ *   <li><code>[n]</code> matches the n-th (1-based) element selected
+ *       by the step and any preceding predicates for each parent.</li>
+ * </ul>
+ *
+ * <p>For example <code>listener[@port]/ssl</code> evaluated against
+ * a <code>server</code> element selects the <code>ssl</code> elements of
+ * every listener that declares a port. Compiled
+ * queries are immutable and thread-safe, and recently used
+ * expressions are cached by {@link #compile(String)}.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public class ConfigurationQuery
+{
+    /**
+     * Maximum number of compiled queries that are cached.
+     */
+    private static final int MAX_CACHED_QUERIES = 256;
+
+    /**
+     * The name test that matches any element.
+     */
+    private static final String WILDCARD = "*";
+
+    /**
+     * Constant for empty configuration array.
+     */
+    private static final Configuration[] EMPTY_CONFIG_ARRAY = new Configuration[ 0 ];
+
+    /**
+     * Cache of recently compiled queries keyed by expression.
+     */
+    private static final Map c_cache = new LinkedHashMap( 16, 0.75F, true )
+    {
+        protected boolean removeEldestEntry( final Map.Entry eldest )
+        {
+            return size() > MAX_CACHED_QUERIES;
+        }
+    };
+
+    /**
+     * The expression query was compiled from.
+     */
+    private final String m_expression;
+
+    /**
+     * The steps of query.
+     */
+    private final Step[] m_steps;
+
+    /**
+     * Create a query for specified steps.
+     *
+     * @param expression the expression
+     * @param steps the steps
+     */
+    private ConfigurationQuery( final String expression, final Step[] steps )
+    {
+        m_expression = expression;
+        m_steps = steps;
+    }
+
+    /**
+     * Compile specified expression into a query. If the expression
+     * has been compiled recently the cached query is returned.
+     *
+     * @param expression the expression
+     * @return the compiled query
+     * @throws IllegalArgumentException if the expression is malformed
+     */
+    public static ConfigurationQuery compile( final String expression )
+    {
+        if( null == expression )
+        {
+            throw new NullPointerException( "expression" );
+        }
+        synchronized( c_cache )
+        {
+            final ConfigurationQuery query = (ConfigurationQuery)c_cache.get( expression );
+            if( null != query )
+            {
+                return query;
+            }
+        }
+        final ConfigurationQuery query =
+            new ConfigurationQuery( expression, parse( expression ) );
+        synchronized( c_cache )
+        {
+            c_cache.put( expression, query );
+        }
+        return query;
+    }
+
+    /**
+     * Return the expression query was compiled from.
+     *
+     * @return the expression query was compiled from.
+     */
+    public String getExpression()
+    {
+        return m_expression;
+    }
+
+    /**
+     * Return all the configuration elements selected by query
+     * in document order.
+     *
+     * @param configuration the configuration to evaluate query against
+     * @return the selected elements
+     */
+    public Configuration[] select( final Configuration configuration )
+    {
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        final List results = new ArrayList();
+        evaluate( configuration, 0, results );
+        if( 0 == results.size() )
+        {
+            return EMPTY_CONFIG_ARRAY;
+        }
+        else
+        {
+            return (Configuration[])results.toArray( new Configuration[ results.size() ] );
+        }
+    }
+
+    /**
+     * Return the first configuration element selected by query
+     * in document order or null if none selected.
+     *
+     * @param configuration the configuration to evaluate query against
+     * @return the first selected element or null
+     */
+    public Configuration selectFirst( final Configuration configuration )
+    {
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        return evaluate( configuration, 0, null );
+    }
+
+    /**
+     * Return the number of steps in query.
+     *
+     * @return the number of steps in query.
+     */
+    int getStepCount()
+    {
+        return m_steps.length;
+    }
+
+    /**
+     * Create the position counters used to match candidates against
+     * the step at specified index. The counters must be zeroed for
+     * the candidates of each parent.
+     *
+     * @param stepIndex the index of step
+     * @return the position counters or null if step has no
+     *         positional predicates
+     */
+    int[] createPositions( final int stepIndex )
+    {
+        final Step step = m_steps[ stepIndex ];
+        if( step.m_positional )
+        {
+            return new int[ step.m_predicates.length ];
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Return true if an element that has not been built matches the
+     * step at specified index. This allows queries to be evaluated
+     * against SAX events.
+     *
+     * @param stepIndex the index of step
+     * @param name the name of element
+     * @param attributes the attributes of element
+     * @param positions the position counters created by
+     *        {@link #createPositions(int)}
+     * @return true if element matches step
+     */
+    boolean matches( final int stepIndex,
+                     final String name,
+                     final Attributes attributes,
+                     final int[] positions )
+    {
+        final Step step = m_steps[ stepIndex ];
+        if( null != step.m_name && !step.m_name.equals( name ) )
+        {
+            return false;
+        }
+        for( int i = 0; i < step.m_predicates.length; i++ )
+        {
+            final Predicate predicate = step.m_predicates[ i ];
+            if( -1 != predicate.m_position )
+            {
+                positions[ i ]++;
+                if( positions[ i ] != predicate.m_position )
+                {
+                    return false;
+                }
+            }
+            else if( !predicate.matches( attributes.getValue( predicate.m_attribute ) ) )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return string representation of query.
+     *
+     * @return string representation of query
+     */
+    public String toString()
+    {
+        return "[ConfigurationQuery " + m_expression + "]";
+    }
+
+    /**
+     * Evaluate the steps starting at specified index against
+     * the children of configuration. If results is null then
+     * evaluation stops and returns the first match, otherwise
+     * all matches are added to results and null is returned.
+     *
+     * @param configuration the context configuration
+     * @param stepIndex the index of step to evaluate
+     * @param results the list to add matches to (may be null)
+     * @return the first match if results is null
+     */
+    private Configuration evaluate( final Configuration configuration,
+                                    final int stepIndex,
+                                    final List results )
+    {
+        final Step step = m_steps[ stepIndex ];
+        final Configuration[] candidates;
+        if( null == step.m_name )
+        {
+            candidates = configuration.getChildren();
+        }
+        else
+        {
+            candidates = configuration.getChildren( step.m_name );
+        }
+
+        final boolean last = stepIndex == m_steps.length - 1;
+        int[] positions = null;
+        if( step.m_positional )
+        {
+            positions = new int[ step.m_predicates.length ];
+        }
+        for( int i = 0; i < candidates.length; i++ )
+        {
+            final Configuration candidate = candidates[ i ];
+            if( !step.matches( candidate, positions ) )
+            {
+                continue;
+            }
+            if( last )
+            {
+                if( null == results )
+                {
+                    return candidate;
+                }
+                results.add( candidate );
+            }
+            else
+            {
+                final Configuration match = evaluate( candidate, stepIndex + 1, results );
+                if( null != match )
+                {
+                    return match;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parse expression into steps.
+     *
+     * @param expression the expression
+     * @return the steps
+     */
+    private static Step[] parse( final String expression )
+    {
+        final List steps = new ArrayList();
+        final int length = expression.length();
+        int index = 0;
+        while( true )
+        {
+            final int start = index;
+            while( index < length && isNameChar( expression.charAt( index ) ) )
+            {
+                index++;
+            }
+            String name = expression.substring( start, index );
+            if( 0 == name.length() )
+            {
+                throw newSyntaxError( expression, index, "Expected element name" );
+            }
+            else if( WILDCARD.equals( name ) )
+            {
+                name = null;
+            }
+
+            final List predicates = new ArrayList();
+            while( index < length && '[' == expression.charAt( index ) )
+            {
+                index = parsePredicate( expression, index + 1, predicates );
+            }
+            steps.add( new Step( name, (Predicate[])predicates.
+                toArray( new Predicate[ predicates.size() ] ) ) );
+
+            if( index == length )
+            {
+                break;
+            }
+            else if( '/' != expression.charAt( index ) )
+            {
+                throw newSyntaxError( expression, index, "Expected '/'" );
+            }
+            index++;
+        }
+        return (Step[])steps.toArray( new Step[ steps.size() ] );
+    }
+
+    /**
+     * Parse a predicate starting after the '['.
+     *
+     * @param expression the expression
+     * @param start the index after '['
+     * @param predicates the list to add predicate to
+     * @return the index after the closing ']'
+     */
+    private static int parsePredicate( final String expression,
+                                       final int start,
+                                       final List predicates )
+    {
+        final int length = expression.length();
+        int index = start;
+        if( index < length && '@' == expression.charAt( index ) )
+        {
+            index++;
+            final int nameStart = index;
+            while( index < length && isNameChar( expression.charAt( index ) ) )
+            {
+                index++;
+            }
+            final String name = expression.substring( nameStart, index );
+            if( 0 == name.length() )
+            {
+                throw newSyntaxError( expression, index, "Expected attribute name" );
+            }
+
+            String value = null;
+            if( index < length && '=' == expression.charAt( index ) )
+            {
+                index++;
+                if( index >= length ||
+                    ( '\'' != expression.charAt( index ) &&
+                    '"' != expression.charAt( index ) ) )
+                {
+                    throw newSyntaxError( expression, index, "Expected quoted value" );
+                }
+                final char quote = expression.charAt( index );
+                final int end = expression.indexOf( quote, index + 1 );
+                if( -1 == end )
+                {
+                    throw newSyntaxError( expression, index, "Unterminated value" );
+                }
+                value = expression.substring( index + 1, end );
+                index = end + 1;
+            }
+            predicates.add( new Predicate( name, value, -1 ) );
+        }
+        else
+        {
+            final int numberStart = index;
+            while( index < length && Character.isDigit( expression.charAt( index ) ) )
+            {
+                index++;
+            }
+            final String number = expression.substring( numberStart, index );
+            if( 0 == number.length() )
+            {
+                throw newSyntaxError( expression, index, "Expected '@' or position" );
+            }
+            final int position = Integer.parseInt( number );
+            if( position < 1 )
+            {
+                throw newSyntaxError( expression, numberStart, "Position must be at least 1" );
+            }
+            predicates.add( new Predicate( null, null, position ) );
+        }
+
+        if( index >= length || ']' != expression.charAt( index ) )
+        {
+            throw newSyntaxError( expression, index, "Expected ']'" );
+        }
+        return index + 1;
+    }
+
+    /**
+     * Return true if character may appear in an element
+     * or attribute name (or is the wildcard).
+     *
+     * @param ch the character
+     * @return true if character may appear in a name
+     */
+    private static boolean isNameChar( final char ch )
+    {
+        return '/' != ch && '[' != ch && ']' != ch && '@' != ch &&
+            '=' != ch && '\'' != ch && '"' != ch && !Character.isWhitespace( ch );
+    }
+
+    /**
+     * Create exception describing a syntax error in expression.
+     *
+     * @param expression the expression
+     * @param index the index of error
+     * @param message the message
+     * @return the exception
+     */
+    private static IllegalArgumentException newSyntaxError( final String expression,
+                                                            final int index,
+                                                            final String message )
+    {
+        return new IllegalArgumentException( message + " at position " + index +
+                                             " in query \"" + expression + "\"" );
+    }
+
+    /**
+     * A single step of a query.
+     */
+    private static final class Step
+    {
+        /**
+         * The element name or null to match any element.
+         */
+        private final String m_name;
+
+        /**
+         * The predicates applied in order.
+         */
+        private final Predicate[] m_predicates;
+
+        /**
+         * True if any predicate is positional.
+         */
+        private final boolean m_positional;
+
+        /**
+         * Create a step.
+         *
+         * @param name the element name or null
+         * @param predicates the predicates
+         */
+        Step( final String name, final Predicate[] predicates )
+        {
+            m_name = name;
+            m_predicates = predicates;
+            boolean positional = false;
+            for( int i = 0; i < predicates.length; i++ )
+            {
+                if( -1 != predicates[ i ].m_position )
+                {
+                    positional = true;
+                }
+            }
+            m_positional = positional;
+        }
+
+        /**
+         * Return true if candidate satisfies all predicates. The
+         * positions array holds, per predicate, the number of
+         * candidates from the current parent that reached it.
+         *
+         * @param candidate the candidate
+         * @param positions the position counters or null if no
+         *        positional predicates
+         * @return true if candidate satisfies all predicates
+         */
+        boolean matches( final Configuration candidate, final int[] positions )
+        {
+            for( int i = 0; i < m_predicates.length; i++ )
+            {
+                final Predicate predicate = m_predicates[ i ];
+                if( -1 != predicate.m_position )
+                {
+                    positions[ i ]++;
+                    if( positions[ i ] != predicate.m_position )
+                    {
+                        return false;
+                    }
+                }
+                else if( !predicate.matches(
+                    candidate.getAttribute( predicate.m_attribute, null ) ) )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A predicate applied to candidates of a step.
+     */
+    private static final class Predicate
+    {
+        /**
+         * The attribute name or null if positional.
+         */
+        private final String m_attribute;
+
+        /**
+         * The required attribute value or null if
+         * only the presence of attribute is tested.
+         */
+        private final String m_value;
+
+        /**
+         * The 1-based position or -1 if not positional.
+         */
+        private final int m_position;
+
+        /**
+         * Create a predicate.
+         *
+         * @param attribute the attribute name
+         * @param value the attribute value
+         * @param position the position
+         */
+        Predicate( final String attribute, final String value, final int position )
+        {
+            m_attribute = attribute;
+            m_value = value;
+            m_position = position;
+        }
+
+        /**
+         * Return true if the value of attribute satisfies an
+         * attribute predicate.
+         *
+         * @param value the value of attribute (May be null)
+         * @return true if value satisfies predicate
+         */
+        boolean matches( final String value )
+        {
+            return null != value && ( null == m_value || m_value.equals( value ) );
+        }
+    }
+}
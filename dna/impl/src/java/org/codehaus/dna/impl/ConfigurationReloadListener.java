@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.File;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+
+/**
+ * Receives notification when a {@link ConfigurationReloader}
+ * reloads a configuration file. Notifications are delivered on
+ * the thread that checks for changes.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public interface ConfigurationReloadListener
+{
+    /**
+     * Notify listener that a new configuration has been published
+     * for a file.
+     *
+     * @param file the file
+     * @param oldConfiguration the configuration previously published
+     * @param newConfiguration the configuration now published
+     * @param changes the differences between the configurations
+     */
+    void configurationReloaded( File file,
+                                Configuration oldConfiguration,
+                                Configuration newConfiguration,
+                                ConfigurationChange[] changes );
+
+    /**
+     * Notify listener that a file changed but could not be
+     * loaded. The previous configuration remains published.
+     *
+     * @param file the file
+     * @param exception the reason the file could not be loaded
+     */
+    void reloadFailed( File file, ConfigurationException exception );
+}
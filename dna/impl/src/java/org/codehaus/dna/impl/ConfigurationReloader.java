@@ -0,0 +1,456 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+
+/**
+ * Watches configuration files and reloads them when they change.
+ * Each file has a current read-only configuration that is replaced
+ * atomically, so readers calling {@link #getConfiguration(File)}
+ * never block and never see a partially built tree.
+ *
+ * <p>Files are checked by comparing their modification time and
+ * length, either by a daemon thread started with {@link #start()}
+ * or by calling {@link #checkForChanges()}. A change is only
+ * reloaded once the file has stayed the same for the quiet period,
+ * so that several writes in quick succession (as made by some
+ * editors) result in a single reload. Only the changed file is
+ * reloaded.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ * @see ConfigurationReloadListener
+ */
+public class ConfigurationReloader
+{
+    /**
+     * Constant for no listeners.
+     */
+    private static final ConfigurationReloadListener[] EMPTY_LISTENER_ARRAY =
+        new ConfigurationReloadListener[ 0 ];
+
+    /**
+     * The builder used to parse files.
+     */
+    private final ConfigurationBuilder m_builder;
+
+    /**
+     * The interval in milliseconds between checks by the thread.
+     */
+    private final long m_pollInterval;
+
+    /**
+     * The time in milliseconds a file must be unchanged before it
+     * is reloaded.
+     */
+    private final long m_quietPeriod;
+
+    /**
+     * The watched files keyed by file. Replaced rather than modified
+     * so that it can be read without locking.
+     */
+    private volatile Map m_sources = Collections.EMPTY_MAP;
+
+    /**
+     * The listeners. Replaced rather than modified so that it can
+     * be read without locking.
+     */
+    private volatile ConfigurationReloadListener[] m_listeners = EMPTY_LISTENER_ARRAY;
+
+    /**
+     * The thread checking for changes or null if not started.
+     */
+    private Thread m_thread;
+
+    /**
+     * Create a reloader.
+     *
+     * @param builder the builder used to parse files
+     * @param pollInterval the interval in milliseconds between checks
+     *        made by the thread started with {@link #start()}
+     * @param quietPeriod the time in milliseconds a file must be
+     *        unchanged before it is reloaded
+     */
+    public ConfigurationReloader( final ConfigurationBuilder builder,
+                                  final long pollInterval,
+                                  final long quietPeriod )
+    {
+        if( null == builder )
+        {
+            throw new NullPointerException( "builder" );
+        }
+        if( pollInterval < 1 )
+        {
+            throw new IllegalArgumentException( "pollInterval must be at least 1" );
+        }
+        if( quietPeriod < 0 )
+        {
+            throw new IllegalArgumentException( "quietPeriod must not be negative" );
+        }
+        m_builder = builder;
+        m_pollInterval = pollInterval;
+        m_quietPeriod = quietPeriod;
+    }
+
+    /**
+     * Load file and watch it for changes. If the file is already
+     * watched it is not reloaded.
+     *
+     * @param file the file
+     * @return the configuration loaded from file
+     * @throws ConfigurationException if unable to load file
+     */
+    public Configuration addSource( final File file )
+        throws ConfigurationException
+    {
+        if( null == file )
+        {
+            throw new NullPointerException( "file" );
+        }
+        synchronized( this )
+        {
+            final Source existing = (Source)m_sources.get( file );
+            if( null != existing )
+            {
+                return existing.m_configuration;
+            }
+        }
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final Configuration configuration = ConfigurationLoader.loadFile( m_builder, file );
+        synchronized( this )
+        {
+            final Source existing = (Source)m_sources.get( file );
+            if( null != existing )
+            {
+                return existing.m_configuration;
+            }
+            final Map sources = new LinkedHashMap( m_sources );
+            sources.put( file, new Source( file, configuration, lastModified, length ) );
+            m_sources = Collections.unmodifiableMap( sources );
+            return configuration;
+        }
+    }
+
+    /**
+     * Stop watching file.
+     *
+     * @param file the file
+     */
+    public synchronized void removeSource( final File file )
+    {
+        if( null == file )
+        {
+            throw new NullPointerException( "file" );
+        }
+        if( m_sources.containsKey( file ) )
+        {
+            final Map sources = new LinkedHashMap( m_sources );
+            sources.remove( file );
+            m_sources = Collections.unmodifiableMap( sources );
+        }
+    }
+
+    /**
+     * Return the current configuration of file. This method
+     * does not lock and may be called at any rate.
+     *
+     * @param file the file
+     * @return the current configuration or null if file is not watched
+     */
+    public Configuration getConfiguration( final File file )
+    {
+        final Source source = (Source)m_sources.get( file );
+        if( null == source )
+        {
+            return null;
+        }
+        else
+        {
+            return source.m_configuration;
+        }
+    }
+
+    /**
+     * Add a listener to be notified of reloads.
+     *
+     * @param listener the listener
+     */
+    public synchronized void addListener( final ConfigurationReloadListener listener )
+    {
+        if( null == listener )
+        {
+            throw new NullPointerException( "listener" );
+        }
+        final ConfigurationReloadListener[] listeners =
+            new ConfigurationReloadListener[ m_listeners.length + 1 ];
+        System.arraycopy( m_listeners, 0, listeners, 0, m_listeners.length );
+        listeners[ m_listeners.length ] = listener;
+        m_listeners = listeners;
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param listener the listener
+     */
+    public synchronized void removeListener( final ConfigurationReloadListener listener )
+    {
+        if( null == listener )
+        {
+            throw new NullPointerException( "listener" );
+        }
+        for( int i = 0; i < m_listeners.length; i++ )
+        {
+            if( listener == m_listeners[ i ] )
+            {
+                final ConfigurationReloadListener[] listeners =
+                    new ConfigurationReloadListener[ m_listeners.length - 1 ];
+                System.arraycopy( m_listeners, 0, listeners, 0, i );
+                System.arraycopy( m_listeners, i + 1, listeners, i, listeners.length - i );
+                m_listeners = listeners;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Start a daemon thread that checks for changes.
+     */
+    public synchronized void start()
+    {
+        if( null != m_thread )
+        {
+            return;
+        }
+        m_thread = new Thread( new Runnable()
+        {
+            public void run()
+            {
+                poll();
+            }
+        }, "ConfigurationReloader" );
+        m_thread.setDaemon( true );
+        m_thread.start();
+    }
+
+    /**
+     * Stop the thread that checks for changes and wait for it to finish.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void stop()
+        throws InterruptedException
+    {
+        final Thread thread;
+        synchronized( this )
+        {
+            thread = m_thread;
+            m_thread = null;
+        }
+        if( null != thread )
+        {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    /**
+     * Check every file for changes and reload the files
+     * that have been unchanged for the quiet period since
+     * they changed.
+     */
+    public void checkForChanges()
+    {
+        checkForChanges( System.currentTimeMillis() );
+    }
+
+    /**
+     * Check every file for changes at the specified time.
+     *
+     * @param now the current time in milliseconds
+     */
+    synchronized void checkForChanges( final long now )
+    {
+        final Iterator iterator = m_sources.values().iterator();
+        while( iterator.hasNext() )
+        {
+            final Source source = (Source)iterator.next();
+            final File file = source.m_file;
+            final long lastModified = file.lastModified();
+            final long length = file.length();
+            if( lastModified == source.m_lastModified && length == source.m_length )
+            {
+                source.m_pendingSince = -1;
+            }
+            else if( -1 == source.m_pendingSince ||
+                lastModified != source.m_pendingModified ||
+                length != source.m_pendingLength )
+            {
+                //Changed since the last check so restart quiet period
+                source.m_pendingModified = lastModified;
+                source.m_pendingLength = length;
+                source.m_pendingSince = now;
+                if( 0 == m_quietPeriod )
+                {
+                    reload( source );
+                }
+            }
+            else if( now - source.m_pendingSince >= m_quietPeriod )
+            {
+                reload( source );
+            }
+        }
+    }
+
+    /**
+     * Reload a file and publish its new configuration.
+     *
+     * @param source the file
+     */
+    private void reload( final Source source )
+    {
+        source.m_lastModified = source.m_pendingModified;
+        source.m_length = source.m_pendingLength;
+        source.m_pendingSince = -1;
+
+        final Configuration newConfiguration;
+        try
+        {
+            newConfiguration = ConfigurationLoader.loadFile( m_builder, source.m_file );
+        }
+        catch( final ConfigurationException ce )
+        {
+            final ConfigurationReloadListener[] listeners = m_listeners;
+            for( int i = 0; i < listeners.length; i++ )
+            {
+                try
+                {
+                    listeners[ i ].reloadFailed( source.m_file, ce );
+                }
+                catch( final RuntimeException re )
+                {
+                    //Listeners must not stop other listeners or the reloader
+                }
+            }
+            return;
+        }
+
+        final Configuration oldConfiguration = source.m_configuration;
+        source.m_configuration = newConfiguration;
+
+        final ConfigurationReloadListener[] listeners = m_listeners;
+        if( 0 == listeners.length )
+        {
+            return;
+        }
+        final ConfigurationChange[] changes =
+            ConfigurationDiff.diff( oldConfiguration, newConfiguration );
+        for( int i = 0; i < listeners.length; i++ )
+        {
+            try
+            {
+                listeners[ i ].configurationReloaded( source.m_file,
+                                                      oldConfiguration,
+                                                      newConfiguration,
+                                                      changes );
+            }
+            catch( final RuntimeException re )
+            {
+                //Listeners must not stop other listeners or the reloader
+            }
+        }
+    }
+
+    /**
+     * Check for changes until the thread is interrupted.
+     */
+    private void poll()
+    {
+        final Thread thread = Thread.currentThread();
+        while( !thread.isInterrupted() )
+        {
+            checkForChanges();
+            try
+            {
+                Thread.sleep( m_pollInterval );
+            }
+            catch( final InterruptedException ie )
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * A watched file.
+     */
+    private static final class Source
+    {
+        /**
+         * The file.
+         */
+        private final File m_file;
+
+        /**
+         * The current configuration of file.
+         */
+        private volatile Configuration m_configuration;
+
+        /**
+         * The modification time of the loaded file.
+         */
+        private long m_lastModified;
+
+        /**
+         * The length of the loaded file.
+         */
+        private long m_length;
+
+        /**
+         * The modification time of the pending change.
+         */
+        private long m_pendingModified;
+
+        /**
+         * The length of the pending change.
+         */
+        private long m_pendingLength;
+
+        /**
+         * The time the pending change was seen or -1 if none.
+         */
+        private long m_pendingSince = -1;
+
+        /**
+         * Create a watched file.
+         *
+         * @param file the file
+         * @param configuration the configuration of file
+         * @param lastModified the modification time of file
+         * @param length the length of file
+         */
+        Source( final File file,
+                final Configuration configuration,
+                final long lastModified,
+                final long length )
+        {
+            m_file = file;
+            m_configuration = configuration;
+            m_lastModified = lastModified;
+            m_length = length;
+        }
+    }
+}
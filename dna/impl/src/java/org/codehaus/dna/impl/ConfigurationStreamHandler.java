@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+
+/**
+ * Receives the elements of a document streamed by a
+ * {@link ConfigurationStreamReader}. For each element the handler
+ * decides whether to continue streaming into the element, to skip
+ * it or to have it built as a Configuration tree.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public interface ConfigurationStreamHandler
+{
+    /**
+     * Result of {@link #startElement(ConfigurationCursor)} indicating
+     * that the children of element should be streamed and
+     * {@link #endElement(ConfigurationCursor)} invoked.
+     */
+    int CONTINUE = 0;
+
+    /**
+     * Result of {@link #startElement(ConfigurationCursor)} indicating
+     * that the element and its children should be ignored.
+     */
+    int SKIP = 1;
+
+    /**
+     * Result of {@link #startElement(ConfigurationCursor)} indicating
+     * that the element should be built into a Configuration and passed
+     * to {@link #element(Configuration)} instead of being streamed.
+     */
+    int BUILD = 2;
+
+    /**
+     * Notify handler of the start of an element. The cursor
+     * describes the name, attributes and location of element
+     * but the value of element is not yet available.
+     *
+     * @param cursor the cursor positioned at element
+     * @return one of {@link #CONTINUE}, {@link #SKIP} or {@link #BUILD}
+     * @throws ConfigurationException if handler rejects element
+     */
+    int startElement( ConfigurationCursor cursor )
+        throws ConfigurationException;
+
+    /**
+     * Notify handler of the end of an element that was continued.
+     * The cursor describes the element including its value.
+     *
+     * @param cursor the cursor positioned at element
+     * @throws ConfigurationException if handler rejects element
+     */
+    void endElement( ConfigurationCursor cursor )
+        throws ConfigurationException;
+
+    /**
+     * Receive an element that was built.
+     *
+     * @param configuration the element and its children
+     * @throws ConfigurationException if handler rejects element
+     */
+    void element( Configuration configuration )
+        throws ConfigurationException;
+}
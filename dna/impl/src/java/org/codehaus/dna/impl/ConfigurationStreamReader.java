@@ -0,0 +1,452 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import javax.xml.parsers.SAXParser;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Reads a configuration document as a stream of elements
+ * without building a Configuration tree. Each element is passed
+ * to a {@link ConfigurationStreamHandler} via a reusable
+ * {@link ConfigurationCursor} so memory use is bounded by the
+ * depth of the document rather than its size. The handler may
+ * ask for selected elements to be built into a Configuration,
+ * in which case only that subtree is held in memory.
+ *
+ * <p>The same rules as {@link SAXConfigurationHandler} apply to
+ * documents, so mixed content is rejected.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public class ConfigurationStreamReader
+{
+    /**
+     * The pool used to deduplicate names, attribute keys
+     * and system ids.
+     */
+    private final StringPool m_pool;
+
+    /**
+     * Create a reader with its own string pool.
+     */
+    public ConfigurationStreamReader()
+    {
+        this( new StringPool() );
+    }
+
+    /**
+     * Create a reader that deduplicates strings using
+     * the specified pool.
+     *
+     * @param pool the string pool
+     */
+    public ConfigurationStreamReader( final StringPool pool )
+    {
+        if( null == pool )
+        {
+            throw new NullPointerException( "pool" );
+        }
+        m_pool = pool;
+    }
+
+    /**
+     * Return the string pool used by reader.
+     *
+     * @return the string pool used by reader.
+     */
+    public StringPool getStringPool()
+    {
+        return m_pool;
+    }
+
+    /**
+     * Stream the elements of specified document to handler.
+     *
+     * @param input the InputSource
+     * @param handler the handler
+     * @throws ConfigurationException if the handler rejects an element
+     * @throws Exception if unable to parse input
+     */
+    public void read( final InputSource input,
+                      final ConfigurationStreamHandler handler )
+        throws Exception
+    {
+        if( null == input )
+        {
+            throw new NullPointerException( "input" );
+        }
+        if( null == handler )
+        {
+            throw new NullPointerException( "handler" );
+        }
+        final SAXParser saxParser = ConfigurationUtil.createSAXParser();
+        try
+        {
+            saxParser.parse( input, new StreamHandler( handler ) );
+        }
+        catch( final SAXException se )
+        {
+            if( se.getException() instanceof ConfigurationException )
+            {
+                throw se.getException();
+            }
+            throw se;
+        }
+    }
+
+    /**
+     * The SAX handler that drives the cursor.
+     */
+    private class StreamHandler
+        extends DefaultHandler
+    {
+        /**
+         * The handler receiving elements.
+         */
+        private final ConfigurationStreamHandler m_handler;
+
+        /**
+         * The cursor describing current element.
+         */
+        private final ConfigurationCursor m_cursor = new ConfigurationCursor();
+
+        /**
+         * Text received since the last start or end of element.
+         */
+        private final StringBuffer m_text = new StringBuffer();
+
+        /**
+         * Flags indicating whether open elements have children, by depth.
+         */
+        private boolean[] m_hasChildren = new boolean[ 8 ];
+
+        /**
+         * The depth within an element being skipped or 0 if none.
+         */
+        private int m_skipDepth;
+
+        /**
+         * The depth within an element being built or 0 if none.
+         */
+        private int m_buildDepth;
+
+        /**
+         * The handler used to build elements, created on first use.
+         */
+        private SAXConfigurationHandler m_builder;
+
+        /**
+         * The Locator specified by XML parser.
+         */
+        private Locator m_locator;
+
+        /**
+         * Create a handler that streams to specified handler.
+         *
+         * @param handler the handler receiving elements
+         */
+        StreamHandler( final ConfigurationStreamHandler handler )
+        {
+            m_handler = handler;
+        }
+
+        /**
+         * Let the XML parser specify locator for when
+         * events arrive at handler.
+         *
+         * @param locator the locator
+         */
+        public void setDocumentLocator( final Locator locator )
+        {
+            m_locator = locator;
+        }
+
+        /**
+         * Start an element and notify handler.
+         *
+         * @param uri the uri (ignored)
+         * @param localName the localName (ignored)
+         * @param qName the qualified name (used for name of element)
+         * @param attributes the attributes of XML element
+         * @throws SAXException if element had mixed content or
+         *         handler rejected element
+         */
+        public void startElement( final String uri,
+                                  final String localName,
+                                  final String qName,
+                                  final Attributes attributes )
+            throws SAXException
+        {
+            if( 0 != m_skipDepth )
+            {
+                m_skipDepth++;
+                return;
+            }
+            if( 0 != m_buildDepth )
+            {
+                m_buildDepth++;
+                m_builder.startElement( uri, localName, qName, attributes );
+                return;
+            }
+
+            final int parentDepth = m_cursor.getDepth();
+            if( -1 != parentDepth )
+            {
+                checkMixedContent();
+                m_hasChildren[ parentDepth ] = true;
+            }
+            m_text.setLength( 0 );
+
+            if( null == m_locator )
+            {
+                m_cursor.push( m_pool.intern( qName ), null, -1, -1 );
+            }
+            else
+            {
+                m_cursor.push( m_pool.intern( qName ),
+                               m_pool.intern( m_locator.getSystemId() ),
+                               m_locator.getLineNumber(),
+                               m_locator.getColumnNumber() );
+            }
+            final int depth = m_cursor.getDepth();
+            if( depth == m_hasChildren.length )
+            {
+                final boolean[] hasChildren = new boolean[ depth * 2 ];
+                System.arraycopy( m_hasChildren, 0, hasChildren, 0, depth );
+                m_hasChildren = hasChildren;
+            }
+            m_hasChildren[ depth ] = false;
+            final int length = attributes.getLength();
+            for( int i = 0; i < length; i++ )
+            {
+                m_cursor.addAttribute( m_pool.intern( attributes.getQName( i ) ),
+                                       attributes.getValue( i ) );
+            }
+
+            final int action;
+            try
+            {
+                action = m_handler.startElement( m_cursor );
+            }
+            catch( final ConfigurationException ce )
+            {
+                throw new SAXException( ce );
+            }
+            if( ConfigurationStreamHandler.SKIP == action )
+            {
+                m_skipDepth = 1;
+            }
+            else if( ConfigurationStreamHandler.BUILD == action )
+            {
+                startBuild( uri, localName, qName, attributes );
+            }
+        }
+
+        /**
+         * End an element and notify handler.
+         *
+         * @param uri the uri (ignored)
+         * @param localName the localName (ignored)
+         * @param qName the qualified name (ignored)
+         * @throws SAXException if element had mixed content or
+         *         handler rejected element
+         */
+        public void endElement( final String uri,
+                                final String localName,
+                                final String qName )
+            throws SAXException
+        {
+            if( 0 != m_skipDepth )
+            {
+                m_skipDepth--;
+                if( 0 == m_skipDepth )
+                {
+                    m_cursor.pop();
+                }
+                return;
+            }
+            try
+            {
+                if( 0 != m_buildDepth )
+                {
+                    m_builder.endElement( uri, localName, qName );
+                    m_buildDepth--;
+                    if( 0 == m_buildDepth )
+                    {
+                        final Configuration configuration = m_builder.getConfiguration();
+                        m_builder.clear();
+                        m_cursor.pop();
+                        m_handler.element( configuration );
+                    }
+                    return;
+                }
+
+                if( SAXConfigurationHandler.isWhitespace( m_text ) )
+                {
+                    m_cursor.setValue( null );
+                }
+                else if( m_hasChildren[ m_cursor.getDepth() ] )
+                {
+                    checkMixedContent();
+                }
+                else
+                {
+                    m_cursor.setValue( m_text.toString() );
+                }
+                m_text.setLength( 0 );
+                m_handler.endElement( m_cursor );
+                m_cursor.pop();
+            }
+            catch( final ConfigurationException ce )
+            {
+                throw new SAXException( ce );
+            }
+        }
+
+        /**
+         * Receive text data for current element.
+         *
+         * @param ch the char array
+         * @param start the start index
+         * @param length the length of data
+         * @throws SAXException if unable to parse data
+         */
+        public void characters( final char[] ch,
+                                final int start,
+                                final int length )
+            throws SAXException
+        {
+            if( 0 != m_buildDepth )
+            {
+                m_builder.characters( ch, start, length );
+            }
+            else if( 0 == m_skipDepth )
+            {
+                m_text.append( ch, start, length );
+            }
+        }
+
+        /**
+         * Rethrow exception and dont attempt to do
+         * any error handling.
+         *
+         * @param spe the input exception
+         * @throws SAXException always thrown
+         */
+        public void warning( final SAXParseException spe )
+            throws SAXException
+        {
+            throw spe;
+        }
+
+        /**
+         * Rethrow exception and dont attempt to do
+         * any error handling.
+         *
+         * @param spe the input exception
+         * @throws SAXException always thrown
+         */
+        public void error( final SAXParseException spe )
+            throws SAXException
+        {
+            throw spe;
+        }
+
+        /**
+         * Rethrow exception and dont attempt to do
+         * any error handling.
+         *
+         * @param spe the input exception
+         * @throws SAXException always thrown
+         */
+        public void fatalError( final SAXParseException spe )
+            throws SAXException
+        {
+            throw spe;
+        }
+
+        /**
+         * Start building current element with the builder.
+         *
+         * @param uri the uri
+         * @param localName the localName
+         * @param qName the qualified name
+         * @param attributes the attributes of XML element
+         * @throws SAXException if unable to build element
+         */
+        private void startBuild( final String uri,
+                                 final String localName,
+                                 final String qName,
+                                 final Attributes attributes )
+            throws SAXException
+        {
+            if( null == m_builder )
+            {
+                m_builder = new SAXConfigurationHandler( m_pool );
+            }
+            m_builder.setDocumentLocator( m_locator );
+            final int parentDepth = m_cursor.getDepth() - 1;
+            if( -1 != parentDepth )
+            {
+                final Configuration parent =
+                    new DefaultConfiguration( m_cursor.getName( parentDepth ),
+                                              ConfigurationUtil.ROOT_PATH,
+                                              m_cursor.getPath( parentDepth ) );
+                m_builder.setRootParent( parent );
+            }
+            m_buildDepth = 1;
+            m_builder.startElement( uri, localName, qName, attributes );
+        }
+
+        /**
+         * Throw an exception if there is non-whitespace text
+         * for an element with children.
+         *
+         * @throws SAXException if there is mixed content
+         */
+        private void checkMixedContent()
+            throws SAXException
+        {
+            if( !SAXConfigurationHandler.isWhitespace( m_text ) )
+            {
+                final String message =
+                    "Mixed content (" + m_text.toString().trim() + ") " +
+                    "not supported @ " + getLocationDescription();
+                throw new SAXException( message );
+            }
+        }
+
+        /**
+         * Return the current location of XML parser.
+         *
+         * @return the location description
+         */
+        private String getLocationDescription()
+        {
+            if( null == m_locator )
+            {
+                return "";
+            }
+            else
+            {
+                return ConfigurationUtil.formatLocation( m_locator.getSystemId(),
+                                                         m_locator.getLineNumber(),
+                                                         m_locator.getColumnNumber() );
+            }
+        }
+    }
+}
@@ -0,0 +1,478 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.Arrays;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Builds read-only Configuration trees programmatically in a single
+ * pass. Elements are opened with {@link #start(String)}, given
+ * attributes, a value and children, and closed with {@link #end()}:
+ *
+ * <pre>
+ * final Configuration configuration =
+ *     new ConfigurationTreeBuilder().
+ *     start( "server" ).attribute( "name", "main" ).
+ *         element( "port", "8080" ).
+ *         start( "address" ).attribute( "host", "localhost" ).end().
+ *     end().
+ *     build();
+ * </pre>
+ *
+ * <p>The attributes and children of open elements are collected in
+ * buffers shared by the whole tree. When an element is closed they
+ * are copied into exact-size arrays and a {@link CompactConfiguration}
+ * is created, so the tree never needs to be copied or made read-only
+ * afterwards. Setting an attribute twice keeps the last value.</p>
+ *
+ * <p>The builder keeps its buffers between trees so it is cheap to
+ * reuse. It is not thread-safe.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public final class ConfigurationTreeBuilder
+{
+    /**
+     * The initial capacity of the element stack.
+     */
+    private static final int INITIAL_DEPTH = 16;
+
+    /**
+     * The initial capacity of the attribute and child buffers.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * The names of open elements.
+     */
+    private String[] m_names = new String[ INITIAL_DEPTH ];
+
+    /**
+     * The values of open elements.
+     */
+    private String[] m_values = new String[ INITIAL_DEPTH ];
+
+    /**
+     * The paths of open elements.
+     */
+    private String[] m_paths = new String[ INITIAL_DEPTH ];
+
+    /**
+     * The paths of the children of open elements or null
+     * if not yet calculated.
+     */
+    private String[] m_childPaths = new String[ INITIAL_DEPTH ];
+
+    /**
+     * The system ids of open elements.
+     */
+    private String[] m_systemIds = new String[ INITIAL_DEPTH ];
+
+    /**
+     * The line numbers of open elements.
+     */
+    private int[] m_lineNumbers = new int[ INITIAL_DEPTH ];
+
+    /**
+     * The column numbers of open elements.
+     */
+    private int[] m_columnNumbers = new int[ INITIAL_DEPTH ];
+
+    /**
+     * The index in the attribute buffer of the first
+     * attribute of each open element.
+     */
+    private int[] m_attributeStarts = new int[ INITIAL_DEPTH ];
+
+    /**
+     * The index in the child buffer of the first
+     * child of each open element.
+     */
+    private int[] m_childStarts = new int[ INITIAL_DEPTH ];
+
+    /**
+     * The number of open elements.
+     */
+    private int m_depth;
+
+    /**
+     * The attribute names of open elements.
+     */
+    private String[] m_attributeNames = new String[ INITIAL_CAPACITY ];
+
+    /**
+     * The attribute values, parallel to {@link #m_attributeNames}.
+     */
+    private String[] m_attributeValues = new String[ INITIAL_CAPACITY ];
+
+    /**
+     * The number of entries in the attribute buffer.
+     */
+    private int m_attributeCount;
+
+    /**
+     * The completed children of open elements.
+     */
+    private Configuration[] m_children = new Configuration[ INITIAL_CAPACITY ];
+
+    /**
+     * The number of entries in the child buffer.
+     */
+    private int m_childCount;
+
+    /**
+     * The completed root element or null.
+     */
+    private Configuration m_root;
+
+    /**
+     * Open an element. The first element is the root of the tree
+     * and every other element is a child of the innermost open
+     * element.
+     *
+     * @param name the name of element
+     * @return this builder
+     * @throws IllegalStateException if the root element is already closed
+     */
+    public ConfigurationTreeBuilder start( final String name )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        if( null != m_root )
+        {
+            throw new IllegalStateException( "Root element already closed" );
+        }
+
+        final String path;
+        if( 0 == m_depth )
+        {
+            path = ConfigurationUtil.ROOT_PATH;
+        }
+        else
+        {
+            //The children of an element share the same path
+            final int parent = m_depth - 1;
+            if( null == m_childPaths[ parent ] )
+            {
+                m_childPaths[ parent ] =
+                    ConfigurationUtil.generatePathName( m_paths[ parent ], m_names[ parent ] );
+            }
+            path = m_childPaths[ parent ];
+        }
+
+        if( m_depth == m_names.length )
+        {
+            growStack();
+        }
+        final int index = m_depth++;
+        m_names[ index ] = name;
+        m_values[ index ] = null;
+        m_paths[ index ] = path;
+        m_childPaths[ index ] = null;
+        m_systemIds[ index ] = null;
+        m_lineNumbers[ index ] = -1;
+        m_columnNumbers[ index ] = -1;
+        m_attributeStarts[ index ] = m_attributeCount;
+        m_childStarts[ index ] = m_childCount;
+        return this;
+    }
+
+    /**
+     * Set an attribute of the innermost open element.
+     *
+     * @param name the name of attribute
+     * @param value the value of attribute
+     * @return this builder
+     * @throws IllegalStateException if no element is open
+     */
+    public ConfigurationTreeBuilder attribute( final String name, final String value )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        if( null == value )
+        {
+            throw new NullPointerException( "value" );
+        }
+        checkOpen();
+        if( m_attributeCount == m_attributeNames.length )
+        {
+            final int capacity = m_attributeCount * 2;
+            m_attributeNames = grow( m_attributeNames, capacity );
+            m_attributeValues = grow( m_attributeValues, capacity );
+        }
+        m_attributeNames[ m_attributeCount ] = name;
+        m_attributeValues[ m_attributeCount ] = value;
+        m_attributeCount++;
+        return this;
+    }
+
+    /**
+     * Set the value of the innermost open element.
+     *
+     * @param value the value or null to remove value
+     * @return this builder
+     * @throws IllegalStateException if no element is open
+     */
+    public ConfigurationTreeBuilder value( final String value )
+    {
+        checkOpen();
+        m_values[ m_depth - 1 ] = value;
+        return this;
+    }
+
+    /**
+     * Set the location of the innermost open element.
+     *
+     * @param systemId the system id of source (May be null)
+     * @param lineNumber the line number in source or -1 if unknown
+     * @param columnNumber the column number in source or -1 if unknown
+     * @return this builder
+     * @throws IllegalStateException if no element is open
+     */
+    public ConfigurationTreeBuilder location( final String systemId,
+                                              final int lineNumber,
+                                              final int columnNumber )
+    {
+        checkOpen();
+        final int index = m_depth - 1;
+        m_systemIds[ index ] = systemId;
+        m_lineNumbers[ index ] = lineNumber;
+        m_columnNumbers[ index ] = columnNumber;
+        return this;
+    }
+
+    /**
+     * Add an element with a value and no attributes or children.
+     * This is equivalent to start( name ).value( value ).end().
+     *
+     * @param name the name of element
+     * @param value the value of element (May be null)
+     * @return this builder
+     * @throws IllegalStateException if the root element is already closed
+     */
+    public ConfigurationTreeBuilder element( final String name, final String value )
+    {
+        return start( name ).value( value ).end();
+    }
+
+    /**
+     * Close the innermost open element.
+     *
+     * @return this builder
+     * @throws IllegalStateException if no element is open
+     */
+    public ConfigurationTreeBuilder end()
+    {
+        checkOpen();
+        final int index = --m_depth;
+
+        final int attributeStart = m_attributeStarts[ index ];
+        final String[] attributeNames;
+        final String[] attributeValues;
+        final int attributeCount = m_attributeCount - attributeStart;
+        if( 0 == attributeCount )
+        {
+            attributeNames = AbstractConfiguration.EMPTY_STRING_ARRAY;
+            attributeValues = AbstractConfiguration.EMPTY_STRING_ARRAY;
+        }
+        else
+        {
+            sortAttributes( attributeStart, m_attributeCount );
+            final int count = removeDuplicateAttributes( attributeStart, m_attributeCount );
+            attributeNames = new String[ count ];
+            attributeValues = new String[ count ];
+            System.arraycopy( m_attributeNames, attributeStart, attributeNames, 0, count );
+            System.arraycopy( m_attributeValues, attributeStart, attributeValues, 0, count );
+            m_attributeCount = attributeStart;
+        }
+
+        final CompactConfiguration configuration =
+            new CompactConfiguration( m_names[ index ],
+                                      null,
+                                      m_paths[ index ],
+                                      m_systemIds[ index ],
+                                      m_lineNumbers[ index ],
+                                      m_columnNumbers[ index ],
+                                      attributeNames,
+                                      attributeValues,
+                                      m_values[ index ] );
+
+        final int childStart = m_childStarts[ index ];
+        final int childCount = m_childCount - childStart;
+        if( 0 != childCount )
+        {
+            final Configuration[] children = new Configuration[ childCount ];
+            System.arraycopy( m_children, childStart, children, 0, childCount );
+            configuration.setChildren( children );
+            m_childCount = childStart;
+        }
+
+        if( 0 == m_depth )
+        {
+            m_root = configuration;
+        }
+        else
+        {
+            if( m_childCount == m_children.length )
+            {
+                final Configuration[] children = new Configuration[ m_childCount * 2 ];
+                System.arraycopy( m_children, 0, children, 0, m_childCount );
+                m_children = children;
+            }
+            m_children[ m_childCount++ ] = configuration;
+        }
+        return this;
+    }
+
+    /**
+     * Return the completed tree and reset the builder so
+     * that it can build another tree.
+     *
+     * @return the root element of the tree
+     * @throws IllegalStateException if the root element has not
+     *         been closed
+     */
+    public Configuration build()
+    {
+        if( null == m_root )
+        {
+            throw new IllegalStateException( "Root element not closed" );
+        }
+        final Configuration root = m_root;
+        m_root = null;
+
+        //Release references to the completed tree
+        Arrays.fill( m_children, null );
+        Arrays.fill( m_attributeNames, null );
+        Arrays.fill( m_attributeValues, null );
+        Arrays.fill( m_names, null );
+        Arrays.fill( m_values, null );
+        Arrays.fill( m_paths, null );
+        Arrays.fill( m_childPaths, null );
+        Arrays.fill( m_systemIds, null );
+        return root;
+    }
+
+    /**
+     * Throw an exception if no element is open.
+     *
+     * @throws IllegalStateException if no element is open
+     */
+    private void checkOpen()
+    {
+        if( 0 == m_depth )
+        {
+            throw new IllegalStateException( "No open element" );
+        }
+    }
+
+    /**
+     * Sort the attributes between start and end by name. Insertion
+     * sort is used as elements have few attributes and it keeps
+     * attributes with the same name in the order they were set.
+     *
+     * @param start the index of the first attribute
+     * @param end the index after the last attribute
+     */
+    private void sortAttributes( final int start, final int end )
+    {
+        final String[] names = m_attributeNames;
+        final String[] values = m_attributeValues;
+        for( int i = start + 1; i < end; i++ )
+        {
+            final String name = names[ i ];
+            final String value = values[ i ];
+            int j = i - 1;
+            while( j >= start && names[ j ].compareTo( name ) > 0 )
+            {
+                names[ j + 1 ] = names[ j ];
+                values[ j + 1 ] = values[ j ];
+                j--;
+            }
+            names[ j + 1 ] = name;
+            values[ j + 1 ] = value;
+        }
+    }
+
+    /**
+     * Remove all but the last of each run of attributes with the
+     * same name from the sorted attributes between start and end.
+     *
+     * @param start the index of the first attribute
+     * @param end the index after the last attribute
+     * @return the number of attributes remaining
+     */
+    private int removeDuplicateAttributes( final int start, final int end )
+    {
+        final String[] names = m_attributeNames;
+        final String[] values = m_attributeValues;
+        int count = 0;
+        for( int i = start; i < end; i++ )
+        {
+            if( i + 1 < end && names[ i ].equals( names[ i + 1 ] ) )
+            {
+                continue;
+            }
+            names[ start + count ] = names[ i ];
+            values[ start + count ] = values[ i ];
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Double the capacity of the element stack.
+     */
+    private void growStack()
+    {
+        final int capacity = m_depth * 2;
+        m_names = grow( m_names, capacity );
+        m_values = grow( m_values, capacity );
+        m_paths = grow( m_paths, capacity );
+        m_childPaths = grow( m_childPaths, capacity );
+        m_systemIds = grow( m_systemIds, capacity );
+        m_lineNumbers = grow( m_lineNumbers, capacity );
+        m_columnNumbers = grow( m_columnNumbers, capacity );
+        m_attributeStarts = grow( m_attributeStarts, capacity );
+        m_childStarts = grow( m_childStarts, capacity );
+    }
+
+    /**
+     * Return a copy of array with specified capacity.
+     *
+     * @param array the array
+     * @param capacity the capacity
+     * @return the new array
+     */
+    private static String[] grow( final String[] array, final int capacity )
+    {
+        final String[] result = new String[ capacity ];
+        System.arraycopy( array, 0, result, 0, array.length );
+        return result;
+    }
+
+    /**
+     * Return a copy of array with specified capacity.
+     *
+     * @param array the array
+     * @param capacity the capacity
+     * @return the new array
+     */
+    private static int[] grow( final int[] array, final int capacity )
+    {
+        final int[] result = new int[ capacity ];
+        System.arraycopy( array, 0, result, 0, array.length );
+        return result;
+    }
+}
@@ -7,6 +7,10 @@
  */
 package org.codehaus.dna.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -23,7 +27,6 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
 import org.xml.sax.InputSource;
 
@@ -51,6 +54,51 @@ public class ConfigurationUtil
      */
     private static final String ELEMENT_LOCATION = "dom-gen";
 
+    /**
+     * Constant for location when the source is unknown.
+     */
+    private static final String UNKNOWN_LOCATION = "";
+
+    /**
+     * Offset basis of the 64-bit FNV-1a hash used for strings.
+     */
+    private static final long HASH_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * Prime of the 64-bit FNV-1a hash used for strings.
+     */
+    private static final long HASH_PRIME = 0x100000001b3L;
+
+    /**
+     * Hash contributed by a missing value or name.
+     */
+    private static final long NULL_HASH = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The factory used to create SAX parsers. Looking up the factory
+     * scans the classpath for providers so it is only done once.
+     */
+    private static SAXParserFactory c_saxParserFactory;
+
+    /**
+     * The system property naming the DocumentBuilderFactory implementation.
+     */
+    private static final String DOCUMENT_BUILDER_FACTORY_PROPERTY =
+        "javax.xml.parsers.DocumentBuilderFactory";
+
+    /**
+     * The factory used to create document builders, created when
+     * first needed. Access is synchronized on this class as
+     * factories are not thread-safe.
+     */
+    private static DocumentBuilderFactory c_documentBuilderFactory;
+
+    /**
+     * The value of the factory system property when the document
+     * builder factory was created.
+     */
+    private static String c_documentBuilderFactoryName;
+
     /**
      * Serialize Configuration object to sepcified Result object.
      * The developer can serialize to a system out by using
@@ -100,14 +148,105 @@ public class ConfigurationUtil
     public static Configuration buildFromXML( final InputSource input )
         throws Exception
     {
-        final SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
-        saxParserFactory.setNamespaceAware( false );
-        final SAXParser saxParser = saxParserFactory.newSAXParser();
-        final SAXConfigurationHandler handler = new SAXConfigurationHandler();
+        return buildFromXML( input, new StringPool() );
+    }
+
+    /**
+     * Create a configuration object from specified XML InputSource.
+     * Element names, attribute keys and system ids are deduplicated
+     * using specified pool which may be shared between parses.
+     *
+     * @param input the InputSource
+     * @param pool the string pool
+     * @return the configuration object
+     * @throws Exception if unable to create configuration object
+     *         from input
+     */
+    public static Configuration buildFromXML( final InputSource input,
+                                              final StringPool pool )
+        throws Exception
+    {
+        final SAXParser saxParser = createSAXParser();
+        final SAXConfigurationHandler handler = new SAXConfigurationHandler( pool );
         saxParser.parse( input, handler );
         return handler.getConfiguration();
     }
 
+    /**
+     * Create a configuration object from specified XML InputSource
+     * that only contains the subtrees selected by paths and their
+     * ancestors, see {@link SAXConfigurationHandler#setFilter(String[])}.
+     * Elements outside the selected subtrees are skipped while parsing
+     * so large documents can be read cheaply.
+     *
+     * @param input the InputSource
+     * @param pool the string pool
+     * @param paths the paths of the subtrees to build
+     * @return the configuration object
+     * @throws Exception if unable to create configuration object
+     *         from input
+     */
+    public static Configuration buildFromXML( final InputSource input,
+                                              final StringPool pool,
+                                              final String[] paths )
+        throws Exception
+    {
+        if( null == paths )
+        {
+            throw new NullPointerException( "paths" );
+        }
+        final SAXParser saxParser = createSAXParser();
+        final SAXConfigurationHandler handler = new SAXConfigurationHandler( pool );
+        handler.setFilter( paths );
+        saxParser.parse( input, handler );
+        return handler.getConfiguration();
+    }
+
+    /**
+     * Create a non-namespace aware SAX parser using a shared factory.
+     *
+     * @return the new parser
+     * @throws Exception if unable to create parser
+     */
+    static SAXParser createSAXParser()
+        throws Exception
+    {
+        synchronized( ConfigurationUtil.class )
+        {
+            if( null == c_saxParserFactory )
+            {
+                final SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
+                saxParserFactory.setNamespaceAware( false );
+                c_saxParserFactory = saxParserFactory;
+            }
+            return c_saxParserFactory.newSAXParser();
+        }
+    }
+
+    /**
+     * Utility method to create a new configuration from XML
+     * whose identical subtrees share content, see
+     * {@link ConfigurationDeduplicator}. Names and attribute keys
+     * are interned in the specified pool.
+     *
+     * @param input the InputSource to load XML from
+     * @param pool the pool to intern names and keys in
+     * @param deduplicator the deduplicator used to share content
+     * @return the created configuration
+     * @throws Exception if unable to create configuration
+     */
+    public static Configuration buildFromXML( final InputSource input,
+                                              final StringPool pool,
+                                              final ConfigurationDeduplicator deduplicator )
+        throws Exception
+    {
+        if( null == deduplicator )
+        {
+            throw new NullPointerException( "deduplicator" );
+        }
+        return deduplicator.deduplicate( buildFromXML( input, pool ) );
+    }
+
     /**
      * Convert specified Element into a configuration object.
      *
@@ -116,47 +255,113 @@ public class ConfigurationUtil
      */
     public static Configuration toConfiguration( final Element element )
     {
-        return toConfiguration( element, ROOT_PATH );
+        return toConfiguration( element, new StringPool() );
+    }
+
+    /**
+     * Convert specified Element into a configuration object.
+     * Element names and attribute keys are deduplicated
+     * using specified pool which may be shared between calls.
+     *
+     * @param element the Element
+     * @param pool the string pool
+     * @return the Configuration object
+     */
+    public static Configuration toConfiguration( final Element element,
+                                                 final StringPool pool )
+    {
+        if( null == pool )
+        {
+            throw new NullPointerException( "pool" );
+        }
+        return toConfiguration( element, null, pool );
     }
 
     /**
      * Internal utility method to convert specified Element into
-     * a configuration object.
+     * a configuration object. The elements are visited through their
+     * child, sibling and parent links rather than by recursion so
+     * that documents of any depth can be converted.
      *
      * @param element the Element
-     * @param parentPath the path to root of document
+     * @param parent the parent configuration or null if root
+     * @param pool the string pool
      * @return the Configuration object
      */
     private static Configuration toConfiguration( final Element element,
-                                                  final String parentPath )
+                                                  final Configuration parent,
+                                                  final StringPool pool )
     {
+        final DefaultConfiguration root = createConfiguration( element, parent, pool );
+        final List parents = new ArrayList();
+        DefaultConfiguration current = root;
+        Node node = element.getFirstChild();
+        while( null != node )
+        {
+            if( node instanceof Element )
+            {
+                final DefaultConfiguration child =
+                    createConfiguration( (Element)node, current, pool );
+                current.addChild( child );
+                final Node first = node.getFirstChild();
+                if( null != first )
+                {
+                    parents.add( current );
+                    current = child;
+                    node = first;
+                    continue;
+                }
+            }
+
+            //Move to the next sibling of node or of its closest ancestor
+            while( null == node.getNextSibling() && element != node )
+            {
+                node = node.getParentNode();
+                if( element != node )
+                {
+                    current = (DefaultConfiguration)parents.remove( parents.size() - 1 );
+                }
+            }
+            if( element == node )
+            {
+                break;
+            }
+            node = node.getNextSibling();
+        }
+        return root;
+    }
+
+    /**
+     * Create the configuration for an Element with the attributes
+     * and text of element but none of its child elements.
+     *
+     * @param element the Element
+     * @param parent the parent configuration or null if root
+     * @param pool the string pool
+     * @return the Configuration object
+     */
+    private static DefaultConfiguration createConfiguration( final Element element,
+                                                             final Configuration parent,
+                                                             final StringPool pool )
+    {
+        final String elementName = pool.intern( element.getNodeName() );
         final DefaultConfiguration configuration =
-            new DefaultConfiguration( element.getNodeName(), ELEMENT_LOCATION, parentPath );
+            new DefaultConfiguration( elementName, parent, ELEMENT_LOCATION, -1, -1 );
         final NamedNodeMap attributes = element.getAttributes();
         final int length = attributes.getLength();
         for( int i = 0; i < length; i++ )
         {
             final Node node = attributes.item( i );
-            final String name = node.getNodeName();
+            final String name = pool.intern( node.getNodeName() );
             final String value = node.getNodeValue();
             configuration.setAttribute( name, value );
         }
 
-        final String childPath =
-            generatePathName( parentPath, configuration.getName() );
-
+        //Child elements are added later, failing if there is also text
         String content = null;
-        final NodeList nodes = element.getChildNodes();
-        final int count = nodes.getLength();
-        for( int i = 0; i < count; i++ )
+        for( Node node = element.getFirstChild(); null != node; node = node.getNextSibling() )
         {
-            final Node node = nodes.item( i );
-            if( node instanceof Element )
-            {
-                final Configuration child = toConfiguration( (Element)node, childPath );
-                configuration.addChild( child );
-            }
-            else if( node instanceof Text )
+            if( node instanceof Text )
             {
                 final Text data = (Text)node;
                 if( null != content )
@@ -178,6 +383,439 @@ public class ConfigurationUtil
         return configuration;
     }
 
+    /**
+     * Convert specified Configuration into a compact read-only
+     * representation. The returned configuration is equal to the
+     * input according to {@link #equals(Configuration, Configuration)}
+     * and retains the path and location of each element.
+     *
+     * @param configuration the configuration
+     * @return the compact configuration
+     */
+    public static Configuration toCompactConfiguration( final Configuration configuration )
+    {
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        if( configuration instanceof CompactConfiguration )
+        {
+            return configuration;
+        }
+        CompactConfiguration root = null;
+        final List results = new ArrayList();
+        final ConfigurationWalker walker = new ConfigurationWalker( configuration );
+        while( walker.next() )
+        {
+            final int depth = walker.getDepth();
+            if( !walker.isStartElement() )
+            {
+                results.remove( depth );
+                continue;
+            }
+
+            CompactConfiguration parent = null;
+            if( 0 != depth )
+            {
+                parent = (CompactConfiguration)results.get( depth - 1 );
+            }
+            final CompactConfiguration result =
+                toCompactConfiguration( walker.getConfiguration(), parent );
+            final int childCount = walker.getIndexedConfiguration().getChildCount();
+            if( 0 != childCount )
+            {
+                //The array is filled in as the children are visited
+                result.setChildren( new Configuration[ childCount ] );
+            }
+            if( null == parent )
+            {
+                root = result;
+            }
+            else
+            {
+                parent.getChildren()[ walker.getIndex() ] = result;
+            }
+            results.add( result );
+        }
+        return root;
+    }
+
+    /**
+     * Internal utility method to convert specified Configuration
+     * into a compact representation without its children.
+     *
+     * @param configuration the configuration
+     * @param parent the compact parent or null if root
+     * @return the compact configuration
+     */
+    private static CompactConfiguration toCompactConfiguration( final Configuration configuration,
+                                                                final Configuration parent )
+    {
+        final String[] names = configuration.getAttributeNames();
+        final String[] attributeNames;
+        final String[] attributeValues;
+        if( 0 == names.length )
+        {
+            attributeNames = AbstractConfiguration.EMPTY_STRING_ARRAY;
+            attributeValues = AbstractConfiguration.EMPTY_STRING_ARRAY;
+        }
+        else
+        {
+            attributeNames = new String[ names.length ];
+            System.arraycopy( names, 0, attributeNames, 0, names.length );
+            Arrays.sort( attributeNames );
+            attributeValues = new String[ names.length ];
+            for( int i = 0; i < attributeNames.length; i++ )
+            {
+                attributeValues[ i ] =
+                    configuration.getAttribute( attributeNames[ i ], null );
+            }
+        }
+
+        final CompactConfiguration result;
+        if( configuration instanceof DefaultConfiguration )
+        {
+            final DefaultConfiguration source = (DefaultConfiguration)configuration;
+            String path = null;
+            if( null == parent || !source.isPathDerived() )
+            {
+                path = source.getPath();
+            }
+            result = new CompactConfiguration( source.getName(),
+                                               parent,
+                                               path,
+                                               source.getSystemId(),
+                                               source.getLineNumber(),
+                                               source.getColumnNumber(),
+                                               attributeNames,
+                                               attributeValues,
+                                               source.getValue( null ) );
+        }
+        else
+        {
+            result = new CompactConfiguration( configuration.getName(),
+                                               parent,
+                                               configuration.getPath(),
+                                               configuration.getLocation(),
+                                               -1,
+                                               -1,
+                                               attributeNames,
+                                               attributeValues,
+                                               configuration.getValue( null ) );
+        }
+
+        return result;
+    }
+
+    /**
+     * Return a 64-bit hash of the structure of configuration. The
+     * hash covers the name, value, attributes and children of the
+     * element in the same way as {@link #equals(Configuration, Configuration)}
+     * so equal configurations always have equal hashes. Attribute
+     * order does not affect the hash while child order does.
+     * Read-only configurations calculate their hash once, see
+     * {@link HashedConfiguration}.
+     *
+     * @param configuration the configuration
+     * @return the structural hash
+     */
+    public static long structuralHash( final Configuration configuration )
+    {
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        return structuralHash( configuration, null );
+    }
+
+    /**
+     * Return the structural hash of configuration. Cached hashes
+     * are used where available, otherwise the hash of every element
+     * visited is recorded in cache if cache is not null.
+     *
+     * @param configuration the configuration
+     * @param cache map from element to its hash as a Long (may be null)
+     * @return the structural hash
+     */
+    static long structuralHash( final Configuration configuration,
+                                final Map cache )
+    {
+        return structuralHash( configuration, cache, true );
+    }
+
+    /**
+     * Calculate the structural hash of configuration from its name,
+     * value and attributes and the structural hashes of its children.
+     *
+     * @param configuration the configuration
+     * @param cache map from element to its hash as a Long (may be null)
+     * @return the structural hash
+     */
+    static long computeStructuralHash( final Configuration configuration,
+                                       final Map cache )
+    {
+        return structuralHash( configuration, cache, false );
+    }
+
+    /**
+     * Return the structural hash of configuration. The tree is walked
+     * rather than recursed so that trees of any depth can be hashed.
+     * The hash of each element combines the hash of its name, value
+     * and attributes with the hashes of its children in order, and is
+     * complete when the end of the element is reached. Cached hashes
+     * are used where available so their subtrees are skipped.
+     *
+     * @param configuration the configuration
+     * @param cache map from element to its hash as a Long (may be null)
+     * @param useCachedRoot false to calculate the hash of configuration
+     *        even if it has a cached hash
+     * @return the structural hash
+     */
+    private static long structuralHash( final Configuration configuration,
+                                        final Map cache,
+                                        final boolean useCachedRoot )
+    {
+        long[] hashes = new long[ 16 ];
+        boolean[] cached = new boolean[ 16 ];
+        final ConfigurationWalker walker = new ConfigurationWalker( configuration );
+        while( walker.next() )
+        {
+            final Configuration current = walker.getConfiguration();
+            final int depth = walker.getDepth();
+            if( walker.isStartElement() )
+            {
+                if( depth == hashes.length )
+                {
+                    hashes = grow( hashes );
+                    cached = grow( cached );
+                }
+                final Long hash;
+                if( 0 != depth || useCachedRoot )
+                {
+                    hash = getCachedStructuralHash( current, cache );
+                }
+                else
+                {
+                    hash = null;
+                }
+                cached[ depth ] = null != hash;
+                if( null != hash )
+                {
+                    hashes[ depth ] = hash.longValue();
+                    walker.skipChildren();
+                }
+                else
+                {
+                    hashes[ depth ] = hashElement( walker.getIndexedConfiguration() );
+                }
+            }
+            else
+            {
+                final long hash = hashes[ depth ];
+                if( !cached[ depth ] && ( 0 != depth || useCachedRoot ) )
+                {
+                    setCachedStructuralHash( current, cache, hash );
+                }
+                if( 0 == depth )
+                {
+                    return hash;
+                }
+                hashes[ depth - 1 ] = combineHash( hashes[ depth - 1 ], hash );
+            }
+        }
+        //Can not happen as the end of the root always returns
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Return the hash of the name, value and attributes of
+     * configuration.
+     *
+     * @param configuration the configuration
+     * @return the hash
+     */
+    private static long hashElement( final IndexedConfiguration configuration )
+    {
+        long hash = hashString( configuration.getName() );
+        hash = combineHash( hash, hashString( configuration.getValue( null ) ) );
+
+        //Attributes are unordered so their hashes are summed
+        long attributes = 0;
+        final int attributeCount = configuration.getAttributeCount();
+        for( int i = 0; i < attributeCount; i++ )
+        {
+            final String name = configuration.getAttributeName( i );
+            final String value = configuration.getAttribute( name, null );
+            attributes += combineHash( hashString( name ), hashString( value ) );
+        }
+        return combineHash( hash, attributes );
+    }
+
+    /**
+     * Return the hash of configuration if it is held by the
+     * configuration or in cache.
+     *
+     * @param configuration the configuration
+     * @param cache map from element to its hash as a Long (may be null)
+     * @return the hash or null if not known
+     */
+    private static Long getCachedStructuralHash( final Configuration configuration,
+                                                 final Map cache )
+    {
+        if( configuration instanceof AbstractConfiguration )
+        {
+            return ( (AbstractConfiguration)configuration ).getCachedStructuralHash();
+        }
+        else if( isStructuralHashCached( configuration ) )
+        {
+            return new Long( ( (HashedConfiguration)configuration ).getStructuralHash() );
+        }
+        else if( null != cache )
+        {
+            return (Long)cache.get( configuration );
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Record the calculated hash of configuration in the
+     * configuration, if it caches its own hash, or in cache.
+     *
+     * @param configuration the configuration
+     * @param cache map from element to its hash as a Long (may be null)
+     * @param hash the hash
+     */
+    private static void setCachedStructuralHash( final Configuration configuration,
+                                                 final Map cache,
+                                                 final long hash )
+    {
+        if( configuration instanceof AbstractConfiguration )
+        {
+            ( (AbstractConfiguration)configuration ).setStructuralHash( hash );
+        }
+        else if( null != cache )
+        {
+            cache.put( configuration, new Long( hash ) );
+        }
+    }
+
+    /**
+     * Return a copy of array with double the capacity.
+     *
+     * @param array the array
+     * @return the new array
+     */
+    private static long[] grow( final long[] array )
+    {
+        final long[] result = new long[ array.length * 2 ];
+        System.arraycopy( array, 0, result, 0, array.length );
+        return result;
+    }
+
+    /**
+     * Return a copy of array with double the capacity.
+     *
+     * @param array the array
+     * @return the new array
+     */
+    private static boolean[] grow( final boolean[] array )
+    {
+        final boolean[] result = new boolean[ array.length * 2 ];
+        System.arraycopy( array, 0, result, 0, array.length );
+        return result;
+    }
+
+    /**
+     * Return true if configuration holds a precalculated
+     * structural hash.
+     *
+     * @param configuration the configuration
+     * @return true if configuration holds a precalculated structural hash
+     */
+    private static boolean isStructuralHashCached( final Configuration configuration )
+    {
+        if( configuration instanceof AbstractConfiguration )
+        {
+            return true;
+        }
+        else if( configuration instanceof DefaultConfiguration )
+        {
+            return ( (DefaultConfiguration)configuration ).isReadOnly();
+        }
+        else
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Return the 64-bit FNV-1a hash of string.
+     *
+     * @param value the string (may be null)
+     * @return the hash
+     */
+    private static long hashString( final String value )
+    {
+        if( null == value )
+        {
+            return NULL_HASH;
+        }
+        long hash = HASH_OFFSET;
+        final int length = value.length();
+        for( int i = 0; i < length; i++ )
+        {
+            hash ^= value.charAt( i );
+            hash *= HASH_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Combine two hashes so that every bit of the result
+     * depends on every bit of both inputs.
+     *
+     * @param hash the accumulated hash
+     * @param value the hash to add
+     * @return the combined hash
+     */
+    private static long combineHash( final long hash, final long value )
+    {
+        long result = hash * HASH_PRIME + value;
+        result ^= result >>> 33;
+        result *= 0xff51afd7ed558ccdL;
+        result ^= result >>> 33;
+        result *= 0xc4ceb9fe1a85ec53L;
+        result ^= result >>> 33;
+        return result;
+    }
+
+    /**
+     * Return a view of configuration that supports indexed access
+     * to children and attributes. If configuration already
+     * implements {@link IndexedConfiguration} it is returned.
+     *
+     * @param configuration the configuration
+     * @return the indexed view of configuration
+     */
+    public static IndexedConfiguration toIndexed( final Configuration configuration )
+    {
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        if( configuration instanceof IndexedConfiguration )
+        {
+            return (IndexedConfiguration)configuration;
+        }
+        else
+        {
+            return new IndexedConfigurationAdapter( configuration );
+        }
+    }
+
     /**
      * Add in utity method to generate path string from parent.
      *
@@ -198,8 +836,66 @@ public class ConfigurationUtil
         }
     }
 
+    /**
+     * Generate a path string by applying
+     * {@link #generatePathName(String, String)} to each name in
+     * turn, starting from the last, using a single buffer.
+     *
+     * @param path the path of the outermost ancestor
+     * @param names the names of the ancestors, nearest first
+     * @return the path string
+     */
+    static String generatePathName( final String path,
+                                    final List names )
+    {
+        final StringBuffer sb = new StringBuffer( path );
+        for( int i = names.size() - 1; i >= 0; i-- )
+        {
+            if( 0 != sb.length() )
+            {
+                sb.append( PATH_SEPARATOR );
+            }
+            sb.append( (String)names.get( i ) );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Utility method to build a location string of the form
+     * "systemId:lineNumber:columnNumber" such as "file.xml:20:3".
+     * The line and column numbers are elided if unknown.
+     *
+     * @param systemId the system id (may be null if unknown)
+     * @param lineNumber the line number or -1 if unknown
+     * @param columnNumber the column number or -1 if unknown
+     * @return the location string
+     */
+    static String formatLocation( final String systemId,
+                                  final int lineNumber,
+                                  final int columnNumber )
+    {
+        if( null == systemId )
+        {
+            return UNKNOWN_LOCATION;
+        }
+        else if( -1 == lineNumber )
+        {
+            return systemId;
+        }
+        else if( -1 == columnNumber )
+        {
+            return systemId + ':' + lineNumber;
+        }
+        else
+        {
+            return systemId + ':' + lineNumber + ':' + columnNumber;
+        }
+    }
+
     /**
      * Convert specified Configuration object into a Element.
+     * The whole tree is copied into a new modifiable Document;
+     * use {@link #toElementView(Configuration)} for read-only access.
      *
      * @param configuration the Configuration
      * @return the Element object
@@ -208,8 +904,7 @@ public class ConfigurationUtil
     {
         try
         {
-            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder builder = factory.newDocumentBuilder();
+            final DocumentBuilder builder = createDocumentBuilder();
             final Document document = builder.newDocument();
 
             return createElement( document, configuration );
@@ -221,39 +916,121 @@ public class ConfigurationUtil
     }
 
     /**
-     * Internal helper method to convert specified Configuration object
-     * into a Element.
+     * Return a read-only Element backed by specified Configuration.
+     * Nothing is copied up front; DOM nodes are created as the tree is
+     * navigated and then reused. The element is the document element
+     * of a read-only Document so it can be passed to XPath and XSLT
+     * processors via {@link javax.xml.transform.dom.DOMSource}. Methods
+     * that would modify the tree throw a
+     * {@link org.w3c.dom.DOMException}. The configuration should not be
+     * modified while the element is in use.
      *
-     * @param document the owner document
      * @param configuration the Configuration
-     * @return the Element object
+     * @return the read-only Element
      */
-    private static Element createElement( final Document document,
-                                          final Configuration configuration )
+    public static Element toElementView( final Configuration configuration )
     {
-        final Element element = document.createElement( configuration.getName() );
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        return new DOMConfigurationDocument( configuration ).getDocumentElement();
+    }
 
-        final String content = configuration.getValue( null );
-        if( null != content )
+    /**
+     * Create a document builder using a shared factory. The factory
+     * is looked up again if the system property naming the factory
+     * implementation has changed since it was created.
+     *
+     * @return the new document builder
+     * @throws Exception if unable to create document builder
+     */
+    static DocumentBuilder createDocumentBuilder()
+        throws Exception
+    {
+        final String name = System.getProperty( DOCUMENT_BUILDER_FACTORY_PROPERTY );
+        synchronized( ConfigurationUtil.class )
         {
-            final Text child = document.createTextNode( content );
-            element.appendChild( child );
+            if( null == c_documentBuilderFactory ||
+                !isEqual( name, c_documentBuilderFactoryName ) )
+            {
+                c_documentBuilderFactory = DocumentBuilderFactory.newInstance();
+                c_documentBuilderFactoryName = name;
+            }
+            return c_documentBuilderFactory.newDocumentBuilder();
         }
+    }
 
-        final String[] names = configuration.getAttributeNames();
-        for( int i = 0; i < names.length; i++ )
+    /**
+     * Return true if the strings are both null or equal.
+     *
+     * @param value1 a string or null
+     * @param value2 a string or null
+     * @return true if the strings are equal
+     */
+    private static boolean isEqual( final String value1, final String value2 )
+    {
+        if( null == value1 )
         {
-            final String name = names[ i ];
-            final String value = configuration.getAttribute( name, null );
-            element.setAttribute( name, value );
+            return null == value2;
         }
-        final Configuration[] children = configuration.getChildren();
-        for( int i = 0; i < children.length; i++ )
+        else
         {
-            final Element child = createElement( document, children[ i ] );
-            element.appendChild( child );
+            return value1.equals( value2 );
         }
-        return element;
+    }
+
+    /**
+     * Internal helper method to convert specified Configuration object
+     * into a Element. The tree is walked rather than recursed so that
+     * configurations of any depth can be converted.
+     *
+     * @param document the owner document
+     * @param configuration the Configuration
+     * @return the Element object
+     */
+    private static Element createElement( final Document document,
+                                          final Configuration configuration )
+    {
+        final List elements = new ArrayList();
+        final ConfigurationWalker walker = new ConfigurationWalker( configuration );
+        while( walker.next() )
+        {
+            final int depth = walker.getDepth();
+            if( !walker.isStartElement() )
+            {
+                //Elements are added to their parent once complete
+                //so the DOM never checks a long chain of ancestors
+                final Element element = (Element)elements.remove( depth );
+                if( 0 == depth )
+                {
+                    return element;
+                }
+                ( (Element)elements.get( depth - 1 ) ).appendChild( element );
+                continue;
+            }
+
+            final IndexedConfiguration indexed = walker.getIndexedConfiguration();
+            final Element element = document.createElement( indexed.getName() );
+
+            final String content = indexed.getValue( null );
+            if( null != content )
+            {
+                final Text child = document.createTextNode( content );
+                element.appendChild( child );
+            }
+
+            final int attributeCount = indexed.getAttributeCount();
+            for( int i = 0; i < attributeCount; i++ )
+            {
+                final String name = indexed.getAttributeName( i );
+                final String value = indexed.getAttribute( name, null );
+                element.setAttribute( name, value );
+            }
+            elements.add( element );
+        }
+        //Can not happen as the end of the root always returns
+        throw new IllegalStateException();
     }
 
     /**
@@ -261,6 +1038,8 @@ public class ConfigurationUtil
      * the configuration objects must have equal child configuration
      * objects in identical orders or identical content values and
      * must have the same attributes with the same values.
+     * Read-only configurations with different structural hashes
+     * are known to be unequal without comparing their content.
      *
      * @param configuration1 a configuration object
      * @param configuration2 a configuration object
@@ -269,44 +1048,133 @@ public class ConfigurationUtil
     public static boolean equals( final Configuration configuration1,
                                   final Configuration configuration2 )
     {
-        final String name1 = configuration1.getName();
-        final String name2 = configuration2.getName();
-        if( !name1.equals( name2 ) )
+        return equals( configuration1, configuration2, 0 );
+    }
+
+    /**
+     * Test if two configuration objects are equal, recursing into
+     * the children until {@link ConfigurationWalker#RECURSION_LIMIT}
+     * and walking any deeper subtrees.
+     *
+     * @param configuration1 a configuration object
+     * @param configuration2 a configuration object
+     * @param depth the depth of the configuration objects
+     * @return true if the configuration objects are equal
+     */
+    private static boolean equals( final Configuration configuration1,
+                                   final Configuration configuration2,
+                                   final int depth )
+    {
+        if( configuration1 == configuration2 )
         {
-            return false;
+            return true;
+        }
+        else if( ConfigurationWalker.RECURSION_LIMIT == depth )
+        {
+            return walkEquals( configuration1, configuration2 );
         }
 
-        final Configuration[] children1 = configuration1.getChildren();
-        final Configuration[] children2 = configuration2.getChildren();
-        if( children1.length != children2.length )
+        final IndexedConfiguration indexed1 = toIndexed( configuration1 );
+        final IndexedConfiguration indexed2 = toIndexed( configuration2 );
+        if( !isEqualElement( configuration1, indexed1, configuration2, indexed2 ) )
         {
             return false;
         }
-        else
+        final int childCount = indexed1.getChildCount();
+        for( int i = 0; i < childCount; i++ )
         {
-            for( int i = 0; i < children1.length; i++ )
+            if( !equals( indexed1.getChild( i ), indexed2.getChild( i ), depth + 1 ) )
             {
-                if( !equals( children1[ i ], children2[ i ] ) )
-                {
-                    return false;
-                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Test if two configuration objects are equal by walking
+     * both trees in step.
+     *
+     * @param configuration1 a configuration object
+     * @param configuration2 a configuration object
+     * @return true if the configuration objects are equal
+     */
+    private static boolean walkEquals( final Configuration configuration1,
+                                       final Configuration configuration2 )
+    {
+        //The walkers stay in step as long as child counts are equal
+        final ConfigurationWalker walker1 = new ConfigurationWalker( configuration1 );
+        final ConfigurationWalker walker2 = new ConfigurationWalker( configuration2 );
+        while( walker1.next() )
+        {
+            walker2.next();
+            if( !walker1.isStartElement() )
+            {
+                continue;
+            }
+            if( walker1.getConfiguration() == walker2.getConfiguration() )
+            {
+                walker1.skipChildren();
+                walker2.skipChildren();
+            }
+            else if( !isEqualElement( walker1.getConfiguration(),
+                                      walker1.getIndexedConfiguration(),
+                                      walker2.getConfiguration(),
+                                      walker2.getIndexedConfiguration() ) )
+            {
+                return false;
             }
         }
+        return true;
+    }
+
+    /**
+     * Test if two elements have equal names, values and attributes
+     * and the same number of children.
+     *
+     * @param configuration1 an element
+     * @param indexed1 the indexed view of configuration1
+     * @param configuration2 an element
+     * @param indexed2 the indexed view of configuration2
+     * @return true if the elements are equal
+     */
+    private static boolean isEqualElement( final Configuration configuration1,
+                                           final IndexedConfiguration indexed1,
+                                           final Configuration configuration2,
+                                           final IndexedConfiguration indexed2 )
+    {
+        if( isStructuralHashCached( configuration1 ) &&
+            isStructuralHashCached( configuration2 ) &&
+            ( (HashedConfiguration)configuration1 ).getStructuralHash() !=
+            ( (HashedConfiguration)configuration2 ).getStructuralHash() )
+        {
+            return false;
+        }
+
+        final String name1 = configuration1.getName();
+        final String name2 = configuration2.getName();
+        if( !name1.equals( name2 ) )
+        {
+            return false;
+        }
+
+        if( indexed1.getChildCount() != indexed2.getChildCount() )
+        {
+            return false;
+        }
 
-        final String[] names1 = configuration1.getAttributeNames();
-        final String[] names2 = configuration2.getAttributeNames();
-        if( names1.length != names2.length )
+        final int attributeCount = indexed1.getAttributeCount();
+        if( attributeCount != indexed2.getAttributeCount() )
         {
             return false;
         }
         else
         {
-            for( int i = 0; i < names1.length; i++ )
+            for( int i = 0; i < attributeCount; i++ )
             {
-                final String value1 =
-                    configuration1.getAttribute( names1[ i ], null );
-                final String value2 =
-                    configuration2.getAttribute( names1[ i ], null );
+                final String name = indexed1.getAttributeName( i );
+                final String value1 = indexed1.getAttribute( name, null );
+                final String value2 = indexed2.getAttribute( name, null );
                 if( !value1.equals( value2 ) )
                 {
                     return false;
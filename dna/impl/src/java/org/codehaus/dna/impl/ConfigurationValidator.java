@@ -0,0 +1,556 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.xml.XMLConstants;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
+
+import org.codehaus.dna.Configurable;
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+import org.codehaus.dna.annotation.ConfigurationDescriptor;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.NamespaceSupport;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+/**
+ * Validates configurations against the schema declared by the
+ * {@link ConfigurationDescriptor} of a component. Each schema is
+ * compiled once and cached by component class and location, and
+ * configurations are validated by streaming them as SAX events
+ * into the schema without converting them to text.
+ *
+ * <p>A descriptor with an empty type, or the W3C XML Schema
+ * namespace as its type, is treated as an XML Schema unless the
+ * location ends with ".dtd". Other types are passed to
+ * {@link SchemaFactory} as the schema language; types the
+ * factory does not support, including DTDs, are reported as a
+ * {@link ConfigurationException}.</p>
+ *
+ * <p>The validator is thread-safe.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public class ConfigurationValidator
+{
+    /**
+     * The name of the Configurable.configure() method.
+     */
+    private static final String CONFIGURE_METHOD_NAME = "configure";
+
+    /**
+     * The parameter types of the Configurable.configure() method.
+     */
+    private static final Class[] CONFIGURE_PARAMETER_TYPES = new Class[]{Configuration.class};
+
+    /**
+     * The suffix of DTD locations.
+     */
+    private static final String DTD_SUFFIX = ".dtd";
+
+    /**
+     * The compiled schemas keyed by component class and then location.
+     */
+    private final Map m_schemas = new WeakHashMap();
+
+    /**
+     * Validate configuration against the schema declared by type.
+     * Nothing is checked if type is not {@link Configurable} or
+     * its configure method has no {@link ConfigurationDescriptor}.
+     *
+     * @param type the component type
+     * @param configuration the configuration
+     * @throws ConfigurationException if the configuration is not valid
+     *         or the schema can not be loaded
+     */
+    public void validate( final Class type, final Configuration configuration )
+        throws ConfigurationException
+    {
+        if( null == type )
+        {
+            throw new NullPointerException( "type" );
+        }
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        final ConfigurationDescriptor descriptor = getConfigurationDescriptor( type );
+        if( null != descriptor )
+        {
+            validate( type, descriptor.location(), descriptor.type(), configuration );
+        }
+    }
+
+    /**
+     * Validate configuration against the schema at location,
+     * which is resolved relative to type.
+     *
+     * @param type the component type used to locate the schema
+     * @param location the location of the schema
+     * @param schemaType the schema language or "" for XML Schema
+     * @param configuration the configuration
+     * @throws ConfigurationException if the configuration is not valid
+     *         or the schema can not be loaded
+     */
+    public void validate( final Class type,
+                          final String location,
+                          final String schemaType,
+                          final Configuration configuration )
+        throws ConfigurationException
+    {
+        if( null == type )
+        {
+            throw new NullPointerException( "type" );
+        }
+        if( null == location )
+        {
+            throw new NullPointerException( "location" );
+        }
+        if( null == schemaType )
+        {
+            throw new NullPointerException( "schemaType" );
+        }
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        final Schema schema = getSchema( type, location, schemaType );
+        final ValidatorHandler validator = schema.newValidatorHandler();
+        final LocatingSerializer serializer = new LocatingSerializer();
+        try
+        {
+            //Without an ErrorHandler the validator throws on errors
+            serializer.serialize( configuration, new NamespaceFilter( validator ) );
+        }
+        catch( final SAXException se )
+        {
+            final Configuration current = serializer.getCurrent();
+            final String message =
+                "Configuration does not match schema " + location + " due to " +
+                se.getMessage();
+            if( null == current )
+            {
+                throw new ConfigurationException( message,
+                                                  configuration.getPath(),
+                                                  configuration.getLocation(),
+                                                  se );
+            }
+            else
+            {
+                throw new ConfigurationException( message,
+                                                  current.getPath(),
+                                                  current.getLocation(),
+                                                  se );
+            }
+        }
+    }
+
+    /**
+     * Return the compiled schema at location, compiling
+     * and caching it if necessary.
+     *
+     * @param type the component type used to locate the schema
+     * @param location the location of the schema
+     * @param schemaType the schema language or "" for XML Schema
+     * @return the schema
+     * @throws ConfigurationException if the schema can not be loaded
+     */
+    Schema getSchema( final Class type,
+                      final String location,
+                      final String schemaType )
+        throws ConfigurationException
+    {
+        synchronized( m_schemas )
+        {
+            Map schemas = (Map)m_schemas.get( type );
+            if( null == schemas )
+            {
+                schemas = new HashMap();
+                m_schemas.put( type, schemas );
+            }
+            Schema schema = (Schema)schemas.get( location );
+            if( null == schema )
+            {
+                schema = compileSchema( type, location, schemaType );
+                schemas.put( location, schema );
+            }
+            return schema;
+        }
+    }
+
+    /**
+     * Compile the schema at location.
+     *
+     * @param type the component type used to locate the schema
+     * @param location the location of the schema
+     * @param schemaType the schema language or "" for XML Schema
+     * @return the schema
+     * @throws ConfigurationException if the schema can not be loaded
+     */
+    private static Schema compileSchema( final Class type,
+                                         final String location,
+                                         final String schemaType )
+        throws ConfigurationException
+    {
+        final URL url = type.getResource( location );
+        if( null == url )
+        {
+            final String message =
+                "Unable to locate schema " + location + " for " + type.getName();
+            throw new ConfigurationException( message, null, location );
+        }
+
+        String language = schemaType;
+        if( 0 == language.length() )
+        {
+            if( location.endsWith( DTD_SUFFIX ) )
+            {
+                language = XMLConstants.XML_DTD_NS_URI;
+            }
+            else
+            {
+                language = XMLConstants.W3C_XML_SCHEMA_NS_URI;
+            }
+        }
+
+        final SchemaFactory factory;
+        try
+        {
+            factory = SchemaFactory.newInstance( language );
+        }
+        catch( final IllegalArgumentException iae )
+        {
+            final String message =
+                "Unsupported schema type " + language + " for schema " + location;
+            throw new ConfigurationException( message, null, url.toString(), iae );
+        }
+
+        try
+        {
+            return factory.newSchema( url );
+        }
+        catch( final SAXParseException spe )
+        {
+            final String systemId;
+            if( null == spe.getSystemId() )
+            {
+                systemId = url.toString();
+            }
+            else
+            {
+                systemId = spe.getSystemId();
+            }
+            final String schemaLocation =
+                ConfigurationUtil.formatLocation( systemId,
+                                                  spe.getLineNumber(),
+                                                  spe.getColumnNumber() );
+            final String message = "Unable to compile schema " + location;
+            throw new ConfigurationException( message, null, schemaLocation, spe );
+        }
+        catch( final SAXException se )
+        {
+            final String message = "Unable to compile schema " + location;
+            throw new ConfigurationException( message, null, url.toString(), se );
+        }
+    }
+
+    /**
+     * Return the descriptor of the configure method of type if any.
+     *
+     * @param type the component type
+     * @return the descriptor or null
+     */
+    private static ConfigurationDescriptor getConfigurationDescriptor( final Class type )
+    {
+        if( !Configurable.class.isAssignableFrom( type ) )
+        {
+            return null;
+        }
+        try
+        {
+            final Method method =
+                type.getMethod( CONFIGURE_METHOD_NAME, CONFIGURE_PARAMETER_TYPES );
+            return method.getAnnotation( ConfigurationDescriptor.class );
+        }
+        catch( final NoSuchMethodException nsme )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Serializer that records the configuration being serialized
+     * so that validation errors can report its location.
+     */
+    private static final class LocatingSerializer
+        extends SAXConfigurationSerializer
+    {
+        /**
+         * The configuration being serialized or null.
+         */
+        private Configuration m_current;
+
+        /**
+         * Return the configuration being serialized when
+         * the last event was delivered.
+         *
+         * @return the configuration or null
+         */
+        Configuration getCurrent()
+        {
+            return m_current;
+        }
+
+        /**
+         * Record configuration as current and serialize
+         * the start of its element.
+         *
+         * @param configuration the configuration
+         * @param handler the handler
+         * @throws SAXException if the handler throws an exception
+         */
+        void startElement( final Configuration configuration,
+                           final ContentHandler handler )
+            throws SAXException
+        {
+            m_current = configuration;
+            super.startElement( configuration, handler );
+        }
+
+        /**
+         * Record configuration as current and serialize
+         * the end of its element.
+         *
+         * @param configuration the configuration
+         * @param handler the handler
+         * @throws SAXException if the handler throws an exception
+         */
+        void endElement( final Configuration configuration,
+                         final ContentHandler handler )
+            throws SAXException
+        {
+            m_current = configuration;
+            super.endElement( configuration, handler );
+        }
+    }
+
+    /**
+     * Filter that turns the qualified names and xmlns attributes
+     * recorded in configurations into namespace events, so that
+     * schemas with a target namespace can be validated.
+     */
+    private static final class NamespaceFilter
+        extends XMLFilterImpl
+    {
+        /**
+         * The prefix of namespace declaration attributes.
+         */
+        private static final String XMLNS = "xmlns";
+
+        /**
+         * The namespace declarations in scope.
+         */
+        private final NamespaceSupport m_namespaces = new NamespaceSupport();
+
+        /**
+         * Holder for names split by NamespaceSupport.
+         */
+        private final String[] m_parts = new String[ 3 ];
+
+        /**
+         * Create a filter delivering events to handler.
+         *
+         * @param handler the handler
+         */
+        NamespaceFilter( final ContentHandler handler )
+        {
+            setContentHandler( handler );
+        }
+
+        /**
+         * Declare the namespaces of element and deliver it
+         * with namespace URI and local names.
+         *
+         * @param uri ignored
+         * @param localName ignored
+         * @param qName the qualified name
+         * @param attributes the attributes including xmlns attributes
+         * @throws SAXException if the handler throws an exception
+         */
+        public void startElement( final String uri,
+                                  final String localName,
+                                  final String qName,
+                                  final Attributes attributes )
+            throws SAXException
+        {
+            m_namespaces.pushContext();
+            final int length = attributes.getLength();
+            boolean declared = false;
+            for( int i = 0; i < length; i++ )
+            {
+                final String name = attributes.getQName( i );
+                if( name.startsWith( XMLNS ) )
+                {
+                    final String prefix = getDeclaredPrefix( name );
+                    if( null != prefix )
+                    {
+                        m_namespaces.declarePrefix( prefix, attributes.getValue( i ) );
+                        super.startPrefixMapping( prefix, attributes.getValue( i ) );
+                        declared = true;
+                    }
+                }
+            }
+
+            final Attributes actual;
+            if( declared )
+            {
+                final AttributesImpl copy = new AttributesImpl();
+                for( int i = 0; i < length; i++ )
+                {
+                    final String name = attributes.getQName( i );
+                    if( !name.startsWith( XMLNS ) || null == getDeclaredPrefix( name ) )
+                    {
+                        addAttribute( copy, name, attributes.getValue( i ) );
+                    }
+                }
+                actual = copy;
+            }
+            else if( -1 != indexOfPrefixed( attributes ) )
+            {
+                final AttributesImpl copy = new AttributesImpl();
+                for( int i = 0; i < length; i++ )
+                {
+                    addAttribute( copy, attributes.getQName( i ), attributes.getValue( i ) );
+                }
+                actual = copy;
+            }
+            else
+            {
+                actual = attributes;
+            }
+
+            final String[] parts = processName( qName, false );
+            super.startElement( parts[ 0 ], parts[ 1 ], qName, actual );
+        }
+
+        /**
+         * Deliver end of element with namespace URI and local
+         * name then end the namespace declarations of element.
+         *
+         * @param uri ignored
+         * @param localName ignored
+         * @param qName the qualified name
+         * @throws SAXException if the handler throws an exception
+         */
+        public void endElement( final String uri,
+                                final String localName,
+                                final String qName )
+            throws SAXException
+        {
+            final String[] parts = processName( qName, false );
+            super.endElement( parts[ 0 ], parts[ 1 ], qName );
+            final Enumeration prefixes = m_namespaces.getDeclaredPrefixes();
+            while( prefixes.hasMoreElements() )
+            {
+                super.endPrefixMapping( (String)prefixes.nextElement() );
+            }
+            m_namespaces.popContext();
+        }
+
+        /**
+         * Add an attribute to attributes with its namespace URI
+         * and local name.
+         *
+         * @param attributes the attributes
+         * @param qName the qualified name
+         * @param value the value
+         * @throws SAXException if the prefix of name is undeclared
+         */
+        private void addAttribute( final AttributesImpl attributes,
+                                   final String qName,
+                                   final String value )
+            throws SAXException
+        {
+            final String[] parts = processName( qName, true );
+            attributes.addAttribute( parts[ 0 ], parts[ 1 ], qName, "CDATA", value );
+        }
+
+        /**
+         * Split a qualified name into namespace URI and local name.
+         *
+         * @param qName the qualified name
+         * @param attribute true if name is of an attribute
+         * @return the namespace URI and local name
+         * @throws SAXException if the prefix of name is undeclared
+         */
+        private String[] processName( final String qName, final boolean attribute )
+            throws SAXException
+        {
+            final String[] parts = m_namespaces.processName( qName, m_parts, attribute );
+            if( null == parts )
+            {
+                throw new SAXException( "Undeclared namespace prefix in " + qName );
+            }
+            return parts;
+        }
+
+        /**
+         * Return the index of the first prefixed attribute or -1.
+         *
+         * @param attributes the attributes
+         * @return the index or -1
+         */
+        private static int indexOfPrefixed( final Attributes attributes )
+        {
+            final int length = attributes.getLength();
+            for( int i = 0; i < length; i++ )
+            {
+                if( -1 != attributes.getQName( i ).indexOf( ':' ) )
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Return the prefix declared by an attribute name
+         * starting with "xmlns" or null if it is not a declaration.
+         *
+         * @param name the attribute name
+         * @return the prefix, "" for the default namespace, or null
+         */
+        private static String getDeclaredPrefix( final String name )
+        {
+            if( XMLNS.length() == name.length() )
+            {
+                return "";
+            }
+            else if( ':' == name.charAt( XMLNS.length() ) )
+            {
+                return name.substring( XMLNS.length() + 1 );
+            }
+            else
+            {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Callback used to visit the children of an
+ * {@link IndexedConfiguration}.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public interface ConfigurationVisitor
+{
+    /**
+     * Visit a configuration element.
+     *
+     * @param configuration the configuration element
+     * @return true to continue visiting, false to stop
+     */
+    boolean visit( Configuration configuration );
+}
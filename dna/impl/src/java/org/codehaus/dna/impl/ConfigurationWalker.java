@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Walks a Configuration tree in document order without recursion.
+ * Each call to {@link #next()} moves to the start or the end of an
+ * element, so every element is reported twice: once before its
+ * children and once after them. The open elements are held on an
+ * explicit stack, so trees of any depth can be walked without
+ * exhausting the thread stack:
+ *
+ * <pre>
+ * final ConfigurationWalker walker = new ConfigurationWalker( root );
+ * while( walker.next() )
+ * {
+ *     if( walker.isStartElement() )
+ *     {
+ *         ...
+ *     }
+ *     else
+ *     {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>The children of the current element can be skipped by calling
+ * {@link #skipChildren()} at its start. The walker is not
+ * thread-safe and the tree should not be modified while it is
+ * being walked.</p>
+ *
+ * <p>Walking costs more per element than recursing, so operations
+ * that are commonly applied to shallow trees recurse until they
+ * reach {@link #RECURSION_LIMIT} and only walk the subtrees below
+ * it.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public final class ConfigurationWalker
+{
+    /**
+     * The depth to which operations may recurse before walking
+     * the remainder of the tree.
+     */
+    static final int RECURSION_LIMIT = 256;
+
+    /**
+     * The initial capacity of the stack.
+     */
+    private static final int INITIAL_DEPTH = 16;
+
+    /**
+     * The open elements.
+     */
+    private Configuration[] m_configurations = new Configuration[ INITIAL_DEPTH ];
+
+    /**
+     * The indexed views of the open elements.
+     */
+    private IndexedConfiguration[] m_indexed = new IndexedConfiguration[ INITIAL_DEPTH ];
+
+    /**
+     * The index of the next child to visit of each open element.
+     */
+    private int[] m_nextChildren = new int[ INITIAL_DEPTH ];
+
+    /**
+     * The index of each open element in its parent.
+     */
+    private int[] m_indexes = new int[ INITIAL_DEPTH ];
+
+    /**
+     * The number of open elements, including the current element.
+     */
+    private int m_depth;
+
+    /**
+     * The root element or null once the walk has started.
+     */
+    private Configuration m_root;
+
+    /**
+     * True if positioned at the start of the current element.
+     */
+    private boolean m_start;
+
+    /**
+     * True if the children of the current element are to be skipped.
+     */
+    private boolean m_skipChildren;
+
+    /**
+     * Create a walker for the tree rooted at configuration.
+     *
+     * @param configuration the root of the tree
+     */
+    public ConfigurationWalker( final Configuration configuration )
+    {
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        m_root = configuration;
+    }
+
+    /**
+     * Move to the start or end of the next element.
+     *
+     * @return false if the end of the root element has been passed
+     */
+    public boolean next()
+    {
+        if( null != m_root )
+        {
+            push( m_root, 0 );
+            m_root = null;
+            return true;
+        }
+        else if( 0 == m_depth )
+        {
+            return false;
+        }
+
+        if( m_start )
+        {
+            if( m_skipChildren )
+            {
+                m_skipChildren = false;
+                m_start = false;
+                return true;
+            }
+        }
+        else
+        {
+            pop();
+            if( 0 == m_depth )
+            {
+                return false;
+            }
+        }
+
+        final int top = m_depth - 1;
+        final int index = m_nextChildren[ top ];
+        if( index < m_indexed[ top ].getChildCount() )
+        {
+            m_nextChildren[ top ] = index + 1;
+            push( m_indexed[ top ].getChild( index ), index );
+        }
+        else
+        {
+            m_start = false;
+        }
+        return true;
+    }
+
+    /**
+     * Return true if positioned at the start of the current
+     * element or false if positioned at its end.
+     *
+     * @return true if positioned at the start of an element
+     */
+    public boolean isStartElement()
+    {
+        return m_start;
+    }
+
+    /**
+     * Return the current element.
+     *
+     * @return the current element
+     * @throws IllegalStateException if not positioned at an element
+     */
+    public Configuration getConfiguration()
+    {
+        checkPositioned();
+        return m_configurations[ m_depth - 1 ];
+    }
+
+    /**
+     * Return the depth of the current element. The root
+     * element has depth 0.
+     *
+     * @return the depth of the current element
+     * @throws IllegalStateException if not positioned at an element
+     */
+    public int getDepth()
+    {
+        checkPositioned();
+        return m_depth - 1;
+    }
+
+    /**
+     * Return the index of the current element in its parent.
+     * The root element has index 0.
+     *
+     * @return the index of the current element
+     * @throws IllegalStateException if not positioned at an element
+     */
+    public int getIndex()
+    {
+        checkPositioned();
+        return m_indexes[ m_depth - 1 ];
+    }
+
+    /**
+     * Skip the children of the current element so that the
+     * next call to {@link #next()} moves to its end.
+     *
+     * @throws IllegalStateException if not positioned at the
+     *         start of an element
+     */
+    public void skipChildren()
+    {
+        if( !m_start )
+        {
+            throw new IllegalStateException( "Not positioned at the start of an element" );
+        }
+        m_skipChildren = true;
+    }
+
+    /**
+     * Return the indexed view of the current element.
+     *
+     * @return the indexed view of the current element
+     */
+    IndexedConfiguration getIndexedConfiguration()
+    {
+        checkPositioned();
+        return m_indexed[ m_depth - 1 ];
+    }
+
+    /**
+     * Throw an exception if not positioned at an element.
+     *
+     * @throws IllegalStateException if not positioned at an element
+     */
+    private void checkPositioned()
+    {
+        if( 0 == m_depth )
+        {
+            throw new IllegalStateException( "Not positioned at an element" );
+        }
+    }
+
+    /**
+     * Open an element and move to its start.
+     *
+     * @param configuration the element
+     * @param index the index of element in its parent
+     */
+    private void push( final Configuration configuration, final int index )
+    {
+        if( m_depth == m_configurations.length )
+        {
+            grow();
+        }
+        m_configurations[ m_depth ] = configuration;
+        m_indexed[ m_depth ] = ConfigurationUtil.toIndexed( configuration );
+        m_nextChildren[ m_depth ] = 0;
+        m_indexes[ m_depth ] = index;
+        m_depth++;
+        m_start = true;
+    }
+
+    /**
+     * Close the current element.
+     */
+    private void pop()
+    {
+        m_depth--;
+        m_configurations[ m_depth ] = null;
+        m_indexed[ m_depth ] = null;
+    }
+
+    /**
+     * Double the capacity of the stack.
+     */
+    private void grow()
+    {
+        final int capacity = m_depth * 2;
+
+        final Configuration[] configurations = new Configuration[ capacity ];
+        System.arraycopy( m_configurations, 0, configurations, 0, m_depth );
+        m_configurations = configurations;
+
+        final IndexedConfiguration[] indexed = new IndexedConfiguration[ capacity ];
+        System.arraycopy( m_indexed, 0, indexed, 0, m_depth );
+        m_indexed = indexed;
+
+        final int[] nextChildren = new int[ capacity ];
+        System.arraycopy( m_nextChildren, 0, nextChildren, 0, m_depth );
+        m_nextChildren = nextChildren;
+
+        final int[] indexes = new int[ capacity ];
+        System.arraycopy( m_indexes, 0, indexes, 0, m_depth );
+        m_indexes = indexes;
+    }
+}
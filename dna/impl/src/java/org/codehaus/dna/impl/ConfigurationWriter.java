@@ -0,0 +1,541 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Writes a Configuration as an XML document directly to a
+ * {@link Writer} or an {@link OutputStream}. Unlike
+ * {@link ConfigurationUtil#serializeToResult} no transformer is
+ * created; the document is escaped into a character buffer that
+ * is reused between writes and, for streams, encoded as UTF-8
+ * into a reused byte buffer.
+ *
+ * <p>Elements that have children are placed on their own lines
+ * and indented by the indent string for each level of nesting. An
+ * empty indent writes the document without added whitespace. As
+ * with {@link SAXConfigurationSerializer} an element that has a
+ * value is written with the value as its only content.</p>
+ *
+ * <p>The writer reuses its buffers and so must not be used by
+ * several threads at once.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public class ConfigurationWriter
+{
+    /**
+     * The default indent.
+     */
+    private static final String DEFAULT_INDENT = "  ";
+
+    /**
+     * The declaration written before documents sent to a Writer.
+     */
+    private static final String DECLARATION = "<?xml version=\"1.0\"?>";
+
+    /**
+     * The declaration written before documents sent to an OutputStream.
+     */
+    private static final String UTF8_DECLARATION =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+
+    /**
+     * The line separator written between elements when indenting.
+     */
+    private static final char NEWLINE = '\n';
+
+    /**
+     * The size of the character buffer.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The indent string.
+     */
+    private final String m_indent;
+
+    /**
+     * The buffer of characters waiting to be written.
+     */
+    private final char[] m_buffer = new char[ BUFFER_SIZE ];
+
+    /**
+     * The number of characters in buffer.
+     */
+    private int m_length;
+
+    /**
+     * The buffer characters are encoded into when writing to a
+     * stream or null if not yet used. Large enough to hold the
+     * encoding of a full character buffer.
+     */
+    private byte[] m_bytes;
+
+    /**
+     * The writer being written to or null.
+     */
+    private Writer m_writer;
+
+    /**
+     * The stream being written to or null.
+     */
+    private OutputStream m_output;
+
+    /**
+     * Create a writer that indents by two spaces.
+     */
+    public ConfigurationWriter()
+    {
+        this( DEFAULT_INDENT );
+    }
+
+    /**
+     * Create a writer that indents by the specified string.
+     *
+     * @param indent the indent or "" to write without added whitespace
+     */
+    public ConfigurationWriter( final String indent )
+    {
+        if( null == indent )
+        {
+            throw new NullPointerException( "indent" );
+        }
+        m_indent = indent;
+    }
+
+    /**
+     * Write configuration as an XML document to writer.
+     * The writer is flushed but not closed.
+     *
+     * @param configuration the configuration
+     * @param writer the writer
+     * @throws IOException if unable to write
+     */
+    public void write( final Configuration configuration, final Writer writer )
+        throws IOException
+    {
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        if( null == writer )
+        {
+            throw new NullPointerException( "writer" );
+        }
+        m_writer = writer;
+        try
+        {
+            writeDocument( DECLARATION, configuration );
+            writer.flush();
+        }
+        finally
+        {
+            m_writer = null;
+            m_length = 0;
+        }
+    }
+
+    /**
+     * Write configuration as an XML document encoded in UTF-8
+     * to output. The stream is flushed but not closed.
+     *
+     * @param configuration the configuration
+     * @param output the stream
+     * @throws IOException if unable to write
+     */
+    public void write( final Configuration configuration, final OutputStream output )
+        throws IOException
+    {
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        if( null == output )
+        {
+            throw new NullPointerException( "output" );
+        }
+        if( null == m_bytes )
+        {
+            m_bytes = new byte[ BUFFER_SIZE * 3 ];
+        }
+        m_output = output;
+        try
+        {
+            writeDocument( UTF8_DECLARATION, configuration );
+            output.flush();
+        }
+        finally
+        {
+            m_output = null;
+            m_length = 0;
+        }
+    }
+
+    /**
+     * Write the declaration and the root element.
+     *
+     * @param declaration the XML declaration
+     * @param configuration the root configuration
+     * @throws IOException if unable to write
+     */
+    private void writeDocument( final String declaration,
+                                final Configuration configuration )
+        throws IOException
+    {
+        append( declaration );
+        if( 0 != m_indent.length() )
+        {
+            append( NEWLINE );
+        }
+        writeElements( configuration );
+        if( 0 != m_indent.length() )
+        {
+            append( NEWLINE );
+        }
+        flushBuffer( true );
+    }
+
+    /**
+     * Write an element and its content. The tree is walked rather
+     * than recursed so that configurations of any depth can be
+     * written.
+     *
+     * @param configuration the configuration of element
+     * @throws IOException if unable to write
+     */
+    private void writeElements( final Configuration configuration )
+        throws IOException
+    {
+        final ConfigurationWalker walker = new ConfigurationWalker( configuration );
+        while( walker.next() )
+        {
+            final IndexedConfiguration indexed = walker.getIndexedConfiguration();
+            final int depth = walker.getDepth();
+            if( walker.isStartElement() )
+            {
+                if( 0 != depth )
+                {
+                    appendIndent( depth );
+                }
+                if( writeStartElement( indexed ) )
+                {
+                    walker.skipChildren();
+                }
+            }
+            else if( null != indexed.getValue( null ) )
+            {
+                writeEndElement( indexed );
+            }
+            else if( 0 != indexed.getChildCount() )
+            {
+                appendIndent( depth );
+                writeEndElement( indexed );
+            }
+        }
+    }
+
+    /**
+     * Write the start tag of an element and its value. An element
+     * with no value and no children is written as an empty tag.
+     *
+     * @param configuration the configuration of element
+     * @return true if the children of element are not to be written
+     * @throws IOException if unable to write
+     */
+    private boolean writeStartElement( final IndexedConfiguration configuration )
+        throws IOException
+    {
+        append( '<' );
+        append( configuration.getName() );
+        final int attributeCount = configuration.getAttributeCount();
+        for( int i = 0; i < attributeCount; i++ )
+        {
+            final String attributeName = configuration.getAttributeName( i );
+            append( ' ' );
+            append( attributeName );
+            append( '=' );
+            append( '"' );
+            appendEscaped( configuration.getAttribute( attributeName, "" ), true );
+            append( '"' );
+        }
+
+        final String value = configuration.getValue( null );
+        if( null != value )
+        {
+            append( '>' );
+            appendEscaped( value, false );
+            return true;
+        }
+        else if( 0 == configuration.getChildCount() )
+        {
+            append( '/' );
+            append( '>' );
+            return true;
+        }
+        else
+        {
+            append( '>' );
+            return false;
+        }
+    }
+
+    /**
+     * Write the end tag of an element.
+     *
+     * @param configuration the configuration of element
+     * @throws IOException if unable to write
+     */
+    private void writeEndElement( final IndexedConfiguration configuration )
+        throws IOException
+    {
+        append( '<' );
+        append( '/' );
+        append( configuration.getName() );
+        append( '>' );
+    }
+
+    /**
+     * Start a new line indented to specified depth
+     * unless writing without indentation.
+     *
+     * @param depth the depth
+     * @throws IOException if unable to write
+     */
+    private void appendIndent( final int depth )
+        throws IOException
+    {
+        if( 0 == m_indent.length() )
+        {
+            return;
+        }
+        append( NEWLINE );
+        for( int i = 0; i < depth; i++ )
+        {
+            append( m_indent );
+        }
+    }
+
+    /**
+     * Append text escaping the characters that are
+     * special in content or attribute values.
+     *
+     * @param text the text
+     * @param attribute true if text is an attribute value
+     * @throws IOException if unable to write
+     */
+    private void appendEscaped( final String text, final boolean attribute )
+        throws IOException
+    {
+        final int length = text.length();
+        int start = 0;
+        for( int i = 0; i < length; i++ )
+        {
+            final String replacement = getReplacement( text.charAt( i ), attribute );
+            if( null != replacement )
+            {
+                append( text, start, i );
+                append( replacement );
+                start = i + 1;
+            }
+        }
+        append( text, start, length );
+    }
+
+    /**
+     * Return the entity or character reference that replaces
+     * a character or null if the character is written as is.
+     *
+     * @param ch the character
+     * @param attribute true if character is in an attribute value
+     * @return the replacement or null
+     */
+    private static String getReplacement( final char ch, final boolean attribute )
+    {
+        switch( ch )
+        {
+            case '&':
+                return "&amp;";
+            case '<':
+                return "&lt;";
+            case '>':
+                return "&gt;";
+            case '"':
+                if( attribute )
+                {
+                    return "&quot;";
+                }
+                return null;
+            case '\t':
+                if( attribute )
+                {
+                    return "&#9;";
+                }
+                return null;
+            case '\n':
+                if( attribute )
+                {
+                    return "&#10;";
+                }
+                return null;
+            case '\r':
+                return "&#13;";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Append a string.
+     *
+     * @param text the string
+     * @throws IOException if unable to write
+     */
+    private void append( final String text )
+        throws IOException
+    {
+        append( text, 0, text.length() );
+    }
+
+    /**
+     * Append part of a string.
+     *
+     * @param text the string
+     * @param start the index of first character
+     * @param end the index after the last character
+     * @throws IOException if unable to write
+     */
+    private void append( final String text, final int start, final int end )
+        throws IOException
+    {
+        int offset = start;
+        while( offset < end )
+        {
+            if( m_length == m_buffer.length )
+            {
+                flushBuffer( false );
+            }
+            final int count = Math.min( end - offset, m_buffer.length - m_length );
+            text.getChars( offset, offset + count, m_buffer, m_length );
+            m_length += count;
+            offset += count;
+        }
+    }
+
+    /**
+     * Append a character.
+     *
+     * @param ch the character
+     * @throws IOException if unable to write
+     */
+    private void append( final char ch )
+        throws IOException
+    {
+        if( m_length == m_buffer.length )
+        {
+            flushBuffer( false );
+        }
+        m_buffer[ m_length++ ] = ch;
+    }
+
+    /**
+     * Write the buffered characters. When encoding to a stream a
+     * trailing high surrogate is kept in the buffer so that it is
+     * encoded with the low surrogate that follows it, unless this
+     * is the last flush.
+     *
+     * @param last true if no more characters follow
+     * @throws IOException if unable to write
+     */
+    private void flushBuffer( final boolean last )
+        throws IOException
+    {
+        if( null != m_writer )
+        {
+            m_writer.write( m_buffer, 0, m_length );
+            m_length = 0;
+            return;
+        }
+
+        int end = m_length;
+        if( !last && end > 0 && Character.isHighSurrogate( m_buffer[ end - 1 ] ) )
+        {
+            end--;
+        }
+        m_output.write( m_bytes, 0, encodeUTF8( end ) );
+        if( end < m_length )
+        {
+            m_buffer[ 0 ] = m_buffer[ end ];
+            m_length = 1;
+        }
+        else
+        {
+            m_length = 0;
+        }
+    }
+
+    /**
+     * Encode the first characters of buffer as UTF-8 into
+     * the byte buffer. Unpaired surrogates are encoded as '?'.
+     *
+     * @param end the number of characters to encode
+     * @return the number of bytes
+     */
+    private int encodeUTF8( final int end )
+    {
+        final char[] chars = m_buffer;
+        final byte[] bytes = m_bytes;
+        int count = 0;
+        int i = 0;
+
+        //Fast path for the ASCII text that makes up most documents
+        while( i < end && chars[ i ] < 0x80 )
+        {
+            bytes[ count++ ] = (byte)chars[ i++ ];
+        }
+
+        while( i < end )
+        {
+            final char ch = chars[ i++ ];
+            if( ch < 0x80 )
+            {
+                bytes[ count++ ] = (byte)ch;
+            }
+            else if( ch < 0x800 )
+            {
+                bytes[ count++ ] = (byte)( 0xC0 | ( ch >> 6 ) );
+                bytes[ count++ ] = (byte)( 0x80 | ( ch & 0x3F ) );
+            }
+            else if( Character.isHighSurrogate( ch ) &&
+                i < end && Character.isLowSurrogate( chars[ i ] ) )
+            {
+                final int codePoint = Character.toCodePoint( ch, chars[ i++ ] );
+                bytes[ count++ ] = (byte)( 0xF0 | ( codePoint >> 18 ) );
+                bytes[ count++ ] = (byte)( 0x80 | ( ( codePoint >> 12 ) & 0x3F ) );
+                bytes[ count++ ] = (byte)( 0x80 | ( ( codePoint >> 6 ) & 0x3F ) );
+                bytes[ count++ ] = (byte)( 0x80 | ( codePoint & 0x3F ) );
+            }
+            else if( Character.isHighSurrogate( ch ) || Character.isLowSurrogate( ch ) )
+            {
+                bytes[ count++ ] = (byte)'?';
+            }
+            else
+            {
+                bytes[ count++ ] = (byte)( 0xE0 | ( ch >> 12 ) );
+                bytes[ count++ ] = (byte)( 0x80 | ( ( ch >> 6 ) & 0x3F ) );
+                bytes[ count++ ] = (byte)( 0x80 | ( ch & 0x3F ) );
+            }
+        }
+        return count;
+    }
+}
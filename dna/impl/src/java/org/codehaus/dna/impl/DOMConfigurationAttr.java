@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * A read-only Attr node holding an attribute of a Configuration.
+ * As in other DOM implementations the value of attribute is also
+ * available as a single Text child, created when first accessed.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+final class DOMConfigurationAttr
+    extends DOMConfigurationNode
+    implements Attr
+{
+    /**
+     * The element the attribute belongs to.
+     */
+    private final DOMConfigurationElement m_ownerElement;
+
+    /**
+     * The index of attribute in its element.
+     */
+    private final int m_index;
+
+    /**
+     * The name of attribute.
+     */
+    private final String m_name;
+
+    /**
+     * The value of attribute.
+     */
+    private final String m_value;
+
+    /**
+     * The text node holding value or null if not yet created.
+     */
+    private DOMConfigurationText m_text;
+
+    /**
+     * Create an attribute node.
+     *
+     * @param document the document containing node
+     * @param ownerElement the element the attribute belongs to
+     * @param index the index of attribute in its element
+     * @param name the name of attribute
+     * @param value the value of attribute
+     */
+    DOMConfigurationAttr( final DOMConfigurationDocument document,
+                          final DOMConfigurationElement ownerElement,
+                          final int index,
+                          final String name,
+                          final String value )
+    {
+        super( document, null, 0 );
+        m_ownerElement = ownerElement;
+        m_index = index;
+        m_name = name;
+        m_value = value;
+    }
+
+    /**
+     * Return the number of child nodes.
+     *
+     * @return 1
+     */
+    int getChildCount()
+    {
+        return 1;
+    }
+
+    /**
+     * Return the text node holding value of attribute.
+     *
+     * @param index the index, which must be 0
+     * @return the text node
+     */
+    synchronized DOMConfigurationNode getChild( final int index )
+    {
+        if( 0 != index )
+        {
+            throw new IndexOutOfBoundsException( String.valueOf( index ) );
+        }
+        if( null == m_text )
+        {
+            m_text = new DOMConfigurationText( (DOMConfigurationDocument)getOwnerDocument(),
+                                               this,
+                                               m_value );
+        }
+        return m_text;
+    }
+
+    /**
+     * Return the owner element, which contains the attribute
+     * when comparing document positions.
+     *
+     * @return the owner element
+     */
+    DOMConfigurationNode getContainer()
+    {
+        return m_ownerElement;
+    }
+
+    /**
+     * Return a negative index so that attributes are ordered
+     * after their element and before its children.
+     *
+     * @return the position of attribute in its element
+     */
+    int getContainerIndex()
+    {
+        return m_index - m_ownerElement.getAttributes().getLength();
+    }
+
+    /**
+     * Return the name of attribute.
+     *
+     * @return the name of attribute
+     */
+    public String getNodeName()
+    {
+        return m_name;
+    }
+
+    /**
+     * Return the type of node.
+     *
+     * @return {@link #ATTRIBUTE_NODE}
+     */
+    public short getNodeType()
+    {
+        return ATTRIBUTE_NODE;
+    }
+
+    /**
+     * Return the value of attribute.
+     *
+     * @return the value of attribute
+     */
+    public String getNodeValue()
+    {
+        return m_value;
+    }
+
+    /**
+     * Return the name of attribute.
+     *
+     * @return the name of attribute
+     */
+    public String getName()
+    {
+        return m_name;
+    }
+
+    /**
+     * Return true as attributes are always specified.
+     *
+     * @return true
+     */
+    public boolean getSpecified()
+    {
+        return true;
+    }
+
+    /**
+     * Return the value of attribute.
+     *
+     * @return the value of attribute
+     */
+    public String getValue()
+    {
+        return m_value;
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param value the value
+     */
+    public void setValue( final String value )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return the element the attribute belongs to.
+     *
+     * @return the owner element
+     */
+    public Element getOwnerElement()
+    {
+        return m_ownerElement;
+    }
+
+    /**
+     * Return null as attributes have no schema type.
+     *
+     * @return null
+     */
+    public TypeInfo getSchemaTypeInfo()
+    {
+        return null;
+    }
+
+    /**
+     * Return false as attributes are never IDs.
+     *
+     * @return false
+     */
+    public boolean isId()
+    {
+        return false;
+    }
+}
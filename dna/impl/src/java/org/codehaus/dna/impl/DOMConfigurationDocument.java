@@ -0,0 +1,451 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+
+/**
+ * A read-only Document whose document element is backed
+ * by a Configuration.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+final class DOMConfigurationDocument
+    extends DOMConfigurationNode
+    implements Document
+{
+    /**
+     * The name of document nodes.
+     */
+    private static final String NODE_NAME = "#document";
+
+    /**
+     * The XML version of document.
+     */
+    private static final String XML_VERSION = "1.0";
+
+    /**
+     * The document element.
+     */
+    private final DOMConfigurationElement m_documentElement;
+
+    /**
+     * Create a document for configuration.
+     *
+     * @param configuration the configuration of the document element
+     */
+    DOMConfigurationDocument( final Configuration configuration )
+    {
+        super( null, null, 0 );
+        m_documentElement = new DOMConfigurationElement( this, this, 0, configuration );
+    }
+
+    /**
+     * Return the number of child nodes.
+     *
+     * @return 1
+     */
+    int getChildCount()
+    {
+        return 1;
+    }
+
+    /**
+     * Return the document element.
+     *
+     * @param index the index, which must be 0
+     * @return the document element
+     */
+    DOMConfigurationNode getChild( final int index )
+    {
+        if( 0 != index )
+        {
+            throw new IndexOutOfBoundsException( String.valueOf( index ) );
+        }
+        return m_documentElement;
+    }
+
+    /**
+     * Return the name of node.
+     *
+     * @return "#document"
+     */
+    public String getNodeName()
+    {
+        return NODE_NAME;
+    }
+
+    /**
+     * Return the type of node.
+     *
+     * @return {@link #DOCUMENT_NODE}
+     */
+    public short getNodeType()
+    {
+        return DOCUMENT_NODE;
+    }
+
+    /**
+     * Return null as documents have no text content.
+     *
+     * @return null
+     */
+    public String getTextContent()
+    {
+        return null;
+    }
+
+    /**
+     * Return null as document has no document type.
+     *
+     * @return null
+     */
+    public DocumentType getDoctype()
+    {
+        return null;
+    }
+
+    /**
+     * Return null as document was not created by a DOMImplementation.
+     *
+     * @return null
+     */
+    public DOMImplementation getImplementation()
+    {
+        return null;
+    }
+
+    /**
+     * Return the document element.
+     *
+     * @return the document element
+     */
+    public Element getDocumentElement()
+    {
+        return m_documentElement;
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param tagName the name
+     * @return never returns
+     */
+    public Element createElement( final String tagName )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @return never returns
+     */
+    public DocumentFragment createDocumentFragment()
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param data the text
+     * @return never returns
+     */
+    public Text createTextNode( final String data )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param data the text
+     * @return never returns
+     */
+    public Comment createComment( final String data )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param data the text
+     * @return never returns
+     */
+    public CDATASection createCDATASection( final String data )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param target the target
+     * @param data the data
+     * @return never returns
+     */
+    public ProcessingInstruction createProcessingInstruction( final String target,
+                                                              final String data )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param name the name
+     * @return never returns
+     */
+    public Attr createAttribute( final String name )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param name the name
+     * @return never returns
+     */
+    public EntityReference createEntityReference( final String name )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return the elements with specified name in document order.
+     *
+     * @param tagname the name or "*" for all elements
+     * @return the elements
+     */
+    public NodeList getElementsByTagName( final String tagname )
+    {
+        return m_documentElement.getElementsByTagName( tagname );
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param importedNode the node
+     * @param deep true to import descendants
+     * @return never returns
+     */
+    public Node importNode( final Node importedNode, final boolean deep )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param namespaceURI the namespace
+     * @param qualifiedName the name
+     * @return never returns
+     */
+    public Element createElementNS( final String namespaceURI, final String qualifiedName )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param namespaceURI the namespace
+     * @param qualifiedName the name
+     * @return never returns
+     */
+    public Attr createAttributeNS( final String namespaceURI, final String qualifiedName )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return the elements with specified name in document order.
+     *
+     * @param namespaceURI the namespace
+     * @param localName the name or "*" for all elements
+     * @return the elements
+     */
+    public NodeList getElementsByTagNameNS( final String namespaceURI, final String localName )
+    {
+        return m_documentElement.getElementsByTagNameNS( namespaceURI, localName );
+    }
+
+    /**
+     * Return null as document has no ID attributes.
+     *
+     * @param elementId the ID
+     * @return null
+     */
+    public Element getElementById( final String elementId )
+    {
+        return null;
+    }
+
+    /**
+     * Return null as document was not parsed.
+     *
+     * @return null
+     */
+    public String getInputEncoding()
+    {
+        return null;
+    }
+
+    /**
+     * Return null as document has no XML declaration.
+     *
+     * @return null
+     */
+    public String getXmlEncoding()
+    {
+        return null;
+    }
+
+    /**
+     * Return false as document has no XML declaration.
+     *
+     * @return false
+     */
+    public boolean getXmlStandalone()
+    {
+        return false;
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param xmlStandalone the standalone flag
+     */
+    public void setXmlStandalone( final boolean xmlStandalone )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return the XML version of document.
+     *
+     * @return "1.0"
+     */
+    public String getXmlVersion()
+    {
+        return XML_VERSION;
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param xmlVersion the version
+     */
+    public void setXmlVersion( final String xmlVersion )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return true as errors are always checked.
+     *
+     * @return true
+     */
+    public boolean getStrictErrorChecking()
+    {
+        return true;
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param strictErrorChecking the flag
+     */
+    public void setStrictErrorChecking( final boolean strictErrorChecking )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return null as the location of document is not known.
+     *
+     * @return null
+     */
+    public String getDocumentURI()
+    {
+        return null;
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param documentURI the location
+     */
+    public void setDocumentURI( final String documentURI )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param source the node
+     * @return never returns
+     */
+    public Node adoptNode( final Node source )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return null as document can not be normalized.
+     *
+     * @return null
+     */
+    public DOMConfiguration getDomConfig()
+    {
+        return null;
+    }
+
+    /**
+     * Do nothing as the document is always normalized.
+     */
+    public void normalizeDocument()
+    {
+    }
+
+    /**
+     * Throw an exception as document is read-only.
+     *
+     * @param n the node
+     * @param namespaceURI the namespace
+     * @param qualifiedName the name
+     * @return never returns
+     * @throws DOMException always
+     */
+    public Node renameNode( final Node n,
+                            final String namespaceURI,
+                            final String qualifiedName )
+        throws DOMException
+    {
+        throw readOnly();
+    }
+}
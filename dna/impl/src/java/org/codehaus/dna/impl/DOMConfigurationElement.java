@@ -0,0 +1,708 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.dna.Configuration;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * A read-only Element backed by a Configuration. The child and
+ * attribute nodes are created when first accessed. An element
+ * whose configuration has a value has a single Text child.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+final class DOMConfigurationElement
+    extends DOMConfigurationNode
+    implements Element
+{
+    /**
+     * The name that matches every element.
+     */
+    private static final String WILDCARD = "*";
+
+    /**
+     * Constant for no attributes.
+     */
+    private static final DOMConfigurationAttr[] EMPTY_ATTRIBUTES = new DOMConfigurationAttr[ 0 ];
+
+    /**
+     * The configuration.
+     */
+    private final IndexedConfiguration m_configuration;
+
+    /**
+     * The child nodes or null if not yet created.
+     */
+    private DOMConfigurationNode[] m_children;
+
+    /**
+     * The attribute nodes or null if not yet created.
+     */
+    private DOMConfigurationAttr[] m_attributes;
+
+    /**
+     * Create an element.
+     *
+     * @param document the document containing element
+     * @param parent the parent node
+     * @param index the index of element in parent
+     * @param configuration the configuration
+     */
+    DOMConfigurationElement( final DOMConfigurationDocument document,
+                             final DOMConfigurationNode parent,
+                             final int index,
+                             final Configuration configuration )
+    {
+        super( document, parent, index );
+        m_configuration = ConfigurationUtil.toIndexed( configuration );
+    }
+
+    /**
+     * Return the configuration backing element.
+     *
+     * @return the configuration
+     */
+    Configuration getConfiguration()
+    {
+        return m_configuration;
+    }
+
+    /**
+     * Return the number of child nodes.
+     *
+     * @return the number of child nodes
+     */
+    int getChildCount()
+    {
+        return getChildArray().length;
+    }
+
+    /**
+     * Return the child node at index.
+     *
+     * @param index the index
+     * @return the child node
+     */
+    DOMConfigurationNode getChild( final int index )
+    {
+        return getChildArray()[ index ];
+    }
+
+    /**
+     * Return the name of element.
+     *
+     * @return the name of element
+     */
+    public String getNodeName()
+    {
+        return m_configuration.getName();
+    }
+
+    /**
+     * Return the type of node.
+     *
+     * @return {@link #ELEMENT_NODE}
+     */
+    public short getNodeType()
+    {
+        return ELEMENT_NODE;
+    }
+
+    /**
+     * Return the name of element.
+     *
+     * @return the name of element
+     */
+    public String getTagName()
+    {
+        return m_configuration.getName();
+    }
+
+    /**
+     * Return the value of the configuration or the text of
+     * its descendants.
+     *
+     * @return the text content
+     */
+    public String getTextContent()
+    {
+        final String value = m_configuration.getValue( null );
+        if( null != value )
+        {
+            return value;
+        }
+        final StringBuffer sb = new StringBuffer();
+        appendTextContent( m_configuration, sb );
+        return sb.toString();
+    }
+
+    /**
+     * Return the attributes of element.
+     *
+     * @return the attributes
+     */
+    public NamedNodeMap getAttributes()
+    {
+        return new AttributeMap( getAttributeArray() );
+    }
+
+    /**
+     * Return true if element has attributes.
+     *
+     * @return true if element has attributes
+     */
+    public boolean hasAttributes()
+    {
+        return 0 != m_configuration.getAttributeCount();
+    }
+
+    /**
+     * Return the value of attribute with specified name.
+     *
+     * @param name the name
+     * @return the value or "" if there is no such attribute
+     */
+    public String getAttribute( final String name )
+    {
+        return m_configuration.getAttribute( name, "" );
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param name the name
+     * @param value the value
+     */
+    public void setAttribute( final String name, final String value )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param name the name
+     */
+    public void removeAttribute( final String name )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return the attribute node with specified name.
+     *
+     * @param name the name
+     * @return the attribute node or null
+     */
+    public Attr getAttributeNode( final String name )
+    {
+        return findAttribute( getAttributeArray(), name );
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param newAttr the attribute
+     * @return never returns
+     */
+    public Attr setAttributeNode( final Attr newAttr )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param oldAttr the attribute
+     * @return never returns
+     */
+    public Attr removeAttributeNode( final Attr oldAttr )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return the descendant elements with specified name
+     * in document order.
+     *
+     * @param name the name or "*" for all elements
+     * @return the elements
+     */
+    public NodeList getElementsByTagName( final String name )
+    {
+        final List elements = new ArrayList();
+        collectElements( name, elements );
+        final Node[] nodes = (Node[])elements.toArray( new Node[ elements.size() ] );
+        return new DOMConfigurationNodeList( nodes );
+    }
+
+    /**
+     * Return the value of attribute with specified name if
+     * namespaceURI is null or empty.
+     *
+     * @param namespaceURI the namespace
+     * @param localName the name
+     * @return the value or "" if there is no such attribute
+     */
+    public String getAttributeNS( final String namespaceURI, final String localName )
+    {
+        if( isNoNamespace( namespaceURI ) )
+        {
+            return getAttribute( localName );
+        }
+        else
+        {
+            return "";
+        }
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param namespaceURI the namespace
+     * @param qualifiedName the name
+     * @param value the value
+     */
+    public void setAttributeNS( final String namespaceURI,
+                                final String qualifiedName,
+                                final String value )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param namespaceURI the namespace
+     * @param localName the name
+     */
+    public void removeAttributeNS( final String namespaceURI, final String localName )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return the attribute node with specified name if
+     * namespaceURI is null or empty.
+     *
+     * @param namespaceURI the namespace
+     * @param localName the name
+     * @return the attribute node or null
+     */
+    public Attr getAttributeNodeNS( final String namespaceURI, final String localName )
+    {
+        if( isNoNamespace( namespaceURI ) )
+        {
+            return getAttributeNode( localName );
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param newAttr the attribute
+     * @return never returns
+     */
+    public Attr setAttributeNodeNS( final Attr newAttr )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return the descendant elements with specified name
+     * in document order if namespaceURI is null, empty or "*".
+     *
+     * @param namespaceURI the namespace
+     * @param localName the name or "*" for all elements
+     * @return the elements
+     */
+    public NodeList getElementsByTagNameNS( final String namespaceURI,
+                                            final String localName )
+    {
+        if( isNoNamespace( namespaceURI ) || WILDCARD.equals( namespaceURI ) )
+        {
+            return getElementsByTagName( localName );
+        }
+        else
+        {
+            return new DOMConfigurationNodeList( new Node[ 0 ] );
+        }
+    }
+
+    /**
+     * Return true if element has attribute with specified name.
+     *
+     * @param name the name
+     * @return true if element has attribute
+     */
+    public boolean hasAttribute( final String name )
+    {
+        return null != m_configuration.getAttribute( name, null );
+    }
+
+    /**
+     * Return true if element has attribute with specified name
+     * and namespaceURI is null or empty.
+     *
+     * @param namespaceURI the namespace
+     * @param localName the name
+     * @return true if element has attribute
+     */
+    public boolean hasAttributeNS( final String namespaceURI, final String localName )
+    {
+        return isNoNamespace( namespaceURI ) && hasAttribute( localName );
+    }
+
+    /**
+     * Return null as elements have no schema type.
+     *
+     * @return null
+     */
+    public TypeInfo getSchemaTypeInfo()
+    {
+        return null;
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param name the name
+     * @param isId true to make attribute an ID
+     */
+    public void setIdAttribute( final String name, final boolean isId )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param namespaceURI the namespace
+     * @param localName the name
+     * @param isId true to make attribute an ID
+     */
+    public void setIdAttributeNS( final String namespaceURI,
+                                  final String localName,
+                                  final boolean isId )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param idAttr the attribute
+     * @param isId true to make attribute an ID
+     */
+    public void setIdAttributeNode( final Attr idAttr, final boolean isId )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Add this element, if it matches name, and its matching
+     * descendants to elements in document order. Descendants are
+     * visited through their child, sibling and parent links rather
+     * than by recursion.
+     *
+     * @param name the name or "*" for all elements
+     * @param elements the list of elements
+     */
+    void collectElements( final String name, final List elements )
+    {
+        final boolean wildcard = WILDCARD.equals( name );
+        Node node = this;
+        while( true )
+        {
+            if( ELEMENT_NODE == node.getNodeType() &&
+                ( wildcard || name.equals( node.getNodeName() ) ) )
+            {
+                elements.add( node );
+            }
+
+            //Move to the first child or the next sibling of node
+            //or of its closest ancestor below this element
+            Node next = node.getFirstChild();
+            while( null == next && this != node )
+            {
+                next = node.getNextSibling();
+                if( null == next )
+                {
+                    node = node.getParentNode();
+                }
+            }
+            if( null == next )
+            {
+                return;
+            }
+            node = next;
+        }
+    }
+
+    /**
+     * Return the child nodes, creating them if necessary.
+     *
+     * @return the child nodes
+     */
+    private synchronized DOMConfigurationNode[] getChildArray()
+    {
+        if( null == m_children )
+        {
+            final DOMConfigurationDocument document =
+                (DOMConfigurationDocument)getOwnerDocument();
+            final String value = m_configuration.getValue( null );
+            if( null != value )
+            {
+                m_children = new DOMConfigurationNode[]
+                {
+                    new DOMConfigurationText( document, this, value )
+                };
+            }
+            else
+            {
+                final int count = m_configuration.getChildCount();
+                final DOMConfigurationNode[] children = new DOMConfigurationNode[ count ];
+                for( int i = 0; i < count; i++ )
+                {
+                    children[ i ] =
+                        new DOMConfigurationElement( document,
+                                                     this,
+                                                     i,
+                                                     m_configuration.getChild( i ) );
+                }
+                m_children = children;
+            }
+        }
+        return m_children;
+    }
+
+    /**
+     * Return the attribute nodes, creating them if necessary.
+     *
+     * @return the attribute nodes
+     */
+    private synchronized DOMConfigurationAttr[] getAttributeArray()
+    {
+        if( null == m_attributes )
+        {
+            final int count = m_configuration.getAttributeCount();
+            if( 0 == count )
+            {
+                m_attributes = EMPTY_ATTRIBUTES;
+            }
+            else
+            {
+                final DOMConfigurationDocument document =
+                    (DOMConfigurationDocument)getOwnerDocument();
+                final DOMConfigurationAttr[] attributes = new DOMConfigurationAttr[ count ];
+                for( int i = 0; i < count; i++ )
+                {
+                    final String name = m_configuration.getAttributeName( i );
+                    final String value = m_configuration.getAttribute( name, "" );
+                    attributes[ i ] = new DOMConfigurationAttr( document, this, i, name, value );
+                }
+                m_attributes = attributes;
+            }
+        }
+        return m_attributes;
+    }
+
+    /**
+     * Return the attribute with specified name.
+     *
+     * @param attributes the attributes
+     * @param name the name
+     * @return the attribute or null
+     */
+    private static DOMConfigurationAttr findAttribute( final DOMConfigurationAttr[] attributes,
+                                                       final String name )
+    {
+        for( int i = 0; i < attributes.length; i++ )
+        {
+            if( attributes[ i ].getName().equals( name ) )
+            {
+                return attributes[ i ];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Append the values of the descendants of configuration to sb.
+     *
+     * @param configuration the configuration
+     * @param sb the buffer
+     */
+    private static void appendTextContent( final Configuration configuration,
+                                           final StringBuffer sb )
+    {
+        final ConfigurationWalker walker = new ConfigurationWalker( configuration );
+        while( walker.next() )
+        {
+            if( walker.isStartElement() && 0 != walker.getDepth() )
+            {
+                final String value = walker.getConfiguration().getValue( null );
+                if( null != value )
+                {
+                    sb.append( value );
+                    walker.skipChildren();
+                }
+            }
+        }
+    }
+
+    /**
+     * Return true if namespaceURI denotes no namespace.
+     *
+     * @param namespaceURI the namespace
+     * @return true if namespaceURI is null or empty
+     */
+    private static boolean isNoNamespace( final String namespaceURI )
+    {
+        return null == namespaceURI || 0 == namespaceURI.length();
+    }
+
+    /**
+     * The read-only attributes of an element.
+     */
+    private static final class AttributeMap
+        implements NamedNodeMap
+    {
+        /**
+         * The attributes.
+         */
+        private final DOMConfigurationAttr[] m_attributes;
+
+        /**
+         * Create a map of attributes.
+         *
+         * @param attributes the attributes
+         */
+        AttributeMap( final DOMConfigurationAttr[] attributes )
+        {
+            m_attributes = attributes;
+        }
+
+        /**
+         * Return the attribute with specified name.
+         *
+         * @param name the name
+         * @return the attribute or null
+         */
+        public Node getNamedItem( final String name )
+        {
+            return findAttribute( m_attributes, name );
+        }
+
+        /**
+         * Throw an exception as nodes are read-only.
+         *
+         * @param arg the attribute
+         * @return never returns
+         */
+        public Node setNamedItem( final Node arg )
+        {
+            throw readOnly();
+        }
+
+        /**
+         * Throw an exception as nodes are read-only.
+         *
+         * @param name the name
+         * @return never returns
+         */
+        public Node removeNamedItem( final String name )
+        {
+            throw readOnly();
+        }
+
+        /**
+         * Return the attribute at index.
+         *
+         * @param index the index
+         * @return the attribute or null if index is out of range
+         */
+        public Node item( final int index )
+        {
+            if( index < 0 || index >= m_attributes.length )
+            {
+                return null;
+            }
+            else
+            {
+                return m_attributes[ index ];
+            }
+        }
+
+        /**
+         * Return the number of attributes.
+         *
+         * @return the number of attributes
+         */
+        public int getLength()
+        {
+            return m_attributes.length;
+        }
+
+        /**
+         * Return the attribute with specified name if
+         * namespaceURI is null or empty.
+         *
+         * @param namespaceURI the namespace
+         * @param localName the name
+         * @return the attribute or null
+         */
+        public Node getNamedItemNS( final String namespaceURI, final String localName )
+        {
+            if( isNoNamespace( namespaceURI ) )
+            {
+                return findAttribute( m_attributes, localName );
+            }
+            else
+            {
+                return null;
+            }
+        }
+
+        /**
+         * Throw an exception as nodes are read-only.
+         *
+         * @param arg the attribute
+         * @return never returns
+         */
+        public Node setNamedItemNS( final Node arg )
+        {
+            throw readOnly();
+        }
+
+        /**
+         * Throw an exception as nodes are read-only.
+         *
+         * @param namespaceURI the namespace
+         * @param localName the name
+         * @return never returns
+         */
+        public Node removeNamedItemNS( final String namespaceURI, final String localName )
+        {
+            throw readOnly();
+        }
+    }
+}
@@ -0,0 +1,750 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * Base class of the read-only DOM nodes that present a
+ * Configuration tree as a DOM document. Nodes are created when
+ * they are first navigated to and then retained, so navigating
+ * to a node twice returns the same object. Every method that
+ * would modify the tree throws a {@link DOMException} with code
+ * {@link DOMException#NO_MODIFICATION_ALLOWED_ERR}.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ * @see ConfigurationUtil#toElementView(org.codehaus.dna.Configuration)
+ */
+abstract class DOMConfigurationNode
+    implements Node
+{
+    /**
+     * The message of exceptions raised by attempts to modify nodes.
+     */
+    private static final String READ_ONLY_MESSAGE = "Configuration DOM view is read-only";
+
+    /**
+     * The document containing node or null if node is the document.
+     */
+    private final DOMConfigurationDocument m_document;
+
+    /**
+     * The parent of node or null.
+     */
+    private final DOMConfigurationNode m_parent;
+
+    /**
+     * The index of node among the children of parent.
+     */
+    private final int m_index;
+
+    /**
+     * The user data keyed by key or null if none has been set.
+     */
+    private Map m_userData;
+
+    /**
+     * Create a node.
+     *
+     * @param document the document containing node or null
+     * @param parent the parent node or null
+     * @param index the index of node among the children of parent
+     */
+    DOMConfigurationNode( final DOMConfigurationDocument document,
+                          final DOMConfigurationNode parent,
+                          final int index )
+    {
+        m_document = document;
+        m_parent = parent;
+        m_index = index;
+    }
+
+    /**
+     * Return the number of child nodes.
+     *
+     * @return the number of child nodes
+     */
+    int getChildCount()
+    {
+        return 0;
+    }
+
+    /**
+     * Return the child node at index.
+     *
+     * @param index the index
+     * @return the child node
+     */
+    DOMConfigurationNode getChild( final int index )
+    {
+        throw new IndexOutOfBoundsException( String.valueOf( index ) );
+    }
+
+    /**
+     * Return the node that contains this node when comparing
+     * document positions. This is the parent except for attributes.
+     *
+     * @return the containing node or null
+     */
+    DOMConfigurationNode getContainer()
+    {
+        return m_parent;
+    }
+
+    /**
+     * Return the position of this node within its container
+     * when comparing document positions.
+     *
+     * @return the position of this node
+     */
+    int getContainerIndex()
+    {
+        return m_index;
+    }
+
+    /**
+     * Create the exception raised by attempts to modify nodes.
+     *
+     * @return the exception
+     */
+    static DOMException readOnly()
+    {
+        return new DOMException( DOMException.NO_MODIFICATION_ALLOWED_ERR, READ_ONLY_MESSAGE );
+    }
+
+    /**
+     * Return the value of node, which is null unless
+     * overridden.
+     *
+     * @return the value of node
+     */
+    public String getNodeValue()
+    {
+        return null;
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param nodeValue the value
+     */
+    public void setNodeValue( final String nodeValue )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return the parent of node.
+     *
+     * @return the parent or null
+     */
+    public Node getParentNode()
+    {
+        return m_parent;
+    }
+
+    /**
+     * Return the children of node.
+     *
+     * @return the children
+     */
+    public NodeList getChildNodes()
+    {
+        final int count = getChildCount();
+        final Node[] nodes = new Node[ count ];
+        for( int i = 0; i < count; i++ )
+        {
+            nodes[ i ] = getChild( i );
+        }
+        return new DOMConfigurationNodeList( nodes );
+    }
+
+    /**
+     * Return the first child of node.
+     *
+     * @return the first child or null
+     */
+    public Node getFirstChild()
+    {
+        if( 0 == getChildCount() )
+        {
+            return null;
+        }
+        else
+        {
+            return getChild( 0 );
+        }
+    }
+
+    /**
+     * Return the last child of node.
+     *
+     * @return the last child or null
+     */
+    public Node getLastChild()
+    {
+        final int count = getChildCount();
+        if( 0 == count )
+        {
+            return null;
+        }
+        else
+        {
+            return getChild( count - 1 );
+        }
+    }
+
+    /**
+     * Return the node before this node in its parent.
+     *
+     * @return the previous sibling or null
+     */
+    public Node getPreviousSibling()
+    {
+        if( null == m_parent || 0 == m_index )
+        {
+            return null;
+        }
+        else
+        {
+            return m_parent.getChild( m_index - 1 );
+        }
+    }
+
+    /**
+     * Return the node after this node in its parent.
+     *
+     * @return the next sibling or null
+     */
+    public Node getNextSibling()
+    {
+        if( null == m_parent || m_index + 1 >= m_parent.getChildCount() )
+        {
+            return null;
+        }
+        else
+        {
+            return m_parent.getChild( m_index + 1 );
+        }
+    }
+
+    /**
+     * Return the attributes of node, which is null
+     * unless overridden.
+     *
+     * @return the attributes or null
+     */
+    public NamedNodeMap getAttributes()
+    {
+        return null;
+    }
+
+    /**
+     * Return the document containing node.
+     *
+     * @return the document or null if node is the document
+     */
+    public Document getOwnerDocument()
+    {
+        return m_document;
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param newChild the child to insert
+     * @param refChild the child to insert before
+     * @return never returns
+     */
+    public Node insertBefore( final Node newChild, final Node refChild )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param newChild the child to insert
+     * @param oldChild the child to replace
+     * @return never returns
+     */
+    public Node replaceChild( final Node newChild, final Node oldChild )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param oldChild the child to remove
+     * @return never returns
+     */
+    public Node removeChild( final Node oldChild )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param newChild the child to append
+     * @return never returns
+     */
+    public Node appendChild( final Node newChild )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return true if node has children.
+     *
+     * @return true if node has children
+     */
+    public boolean hasChildNodes()
+    {
+        return 0 != getChildCount();
+    }
+
+    /**
+     * Throw an exception as cloning is not supported; the clone
+     * would have to be modifiable. Use {@link ConfigurationUtil#toElement}
+     * to create a modifiable copy.
+     *
+     * @param deep true to clone descendants
+     * @return never returns
+     */
+    public Node cloneNode( final boolean deep )
+    {
+        final String message = "Configuration DOM view can not be cloned";
+        throw new DOMException( DOMException.NOT_SUPPORTED_ERR, message );
+    }
+
+    /**
+     * Do nothing as the tree is always normalized.
+     */
+    public void normalize()
+    {
+    }
+
+    /**
+     * Return false as no optional features are supported.
+     *
+     * @param feature the feature
+     * @param version the version
+     * @return false
+     */
+    public boolean isSupported( final String feature, final String version )
+    {
+        return false;
+    }
+
+    /**
+     * Return null as nodes have no namespace.
+     *
+     * @return null
+     */
+    public String getNamespaceURI()
+    {
+        return null;
+    }
+
+    /**
+     * Return null as nodes have no namespace prefix.
+     *
+     * @return null
+     */
+    public String getPrefix()
+    {
+        return null;
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param prefix the prefix
+     */
+    public void setPrefix( final String prefix )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return the local name of node, which is null
+     * unless overridden.
+     *
+     * @return the local name or null
+     */
+    public String getLocalName()
+    {
+        return null;
+    }
+
+    /**
+     * Return true if node has attributes.
+     *
+     * @return true if node has attributes
+     */
+    public boolean hasAttributes()
+    {
+        return false;
+    }
+
+    /**
+     * Return null as the base URI is not known.
+     *
+     * @return null
+     */
+    public String getBaseURI()
+    {
+        return null;
+    }
+
+    /**
+     * Compare the position of other node with this node.
+     * Nodes from other trees are ordered consistently but
+     * arbitrarily.
+     *
+     * @param other the other node
+     * @return the position of other relative to this node
+     */
+    public short compareDocumentPosition( final Node other )
+    {
+        if( this == other )
+        {
+            return 0;
+        }
+        if( !( other instanceof DOMConfigurationNode ) ||
+            getRoot() != ( (DOMConfigurationNode)other ).getRoot() )
+        {
+            final short order;
+            if( System.identityHashCode( this ) < System.identityHashCode( other ) )
+            {
+                order = DOCUMENT_POSITION_FOLLOWING;
+            }
+            else
+            {
+                order = DOCUMENT_POSITION_PRECEDING;
+            }
+            return (short)( DOCUMENT_POSITION_DISCONNECTED |
+                DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC | order );
+        }
+
+        final int[] position = getPosition();
+        final int[] otherPosition = ( (DOMConfigurationNode)other ).getPosition();
+        final int length = Math.min( position.length, otherPosition.length );
+        for( int i = 0; i < length; i++ )
+        {
+            if( position[ i ] < otherPosition[ i ] )
+            {
+                return DOCUMENT_POSITION_FOLLOWING;
+            }
+            else if( position[ i ] > otherPosition[ i ] )
+            {
+                return DOCUMENT_POSITION_PRECEDING;
+            }
+        }
+        if( position.length < otherPosition.length )
+        {
+            return (short)( DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING );
+        }
+        else
+        {
+            return (short)( DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING );
+        }
+    }
+
+    /**
+     * Return the text content of node, which is the
+     * value of node unless overridden.
+     *
+     * @return the text content
+     */
+    public String getTextContent()
+    {
+        return getNodeValue();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param textContent the text
+     */
+    public void setTextContent( final String textContent )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return true if other is this node.
+     *
+     * @param other the other node
+     * @return true if other is this node
+     */
+    public boolean isSameNode( final Node other )
+    {
+        return this == other;
+    }
+
+    /**
+     * Return null as nodes have no namespaces.
+     *
+     * @param namespaceURI the namespace
+     * @return null
+     */
+    public String lookupPrefix( final String namespaceURI )
+    {
+        return null;
+    }
+
+    /**
+     * Return true if namespaceURI is null as
+     * nodes have no default namespace.
+     *
+     * @param namespaceURI the namespace
+     * @return true if namespaceURI is null
+     */
+    public boolean isDefaultNamespace( final String namespaceURI )
+    {
+        return null == namespaceURI;
+    }
+
+    /**
+     * Return null as nodes have no namespaces.
+     *
+     * @param prefix the prefix
+     * @return null
+     */
+    public String lookupNamespaceURI( final String prefix )
+    {
+        return null;
+    }
+
+    /**
+     * Return true if other node has the same type, names,
+     * value, attributes and children as this node. Both trees
+     * are walked in step through their child, sibling and parent
+     * links rather than by recursion.
+     *
+     * @param other the other node
+     * @return true if the nodes are equal
+     */
+    public boolean isEqualNode( final Node other )
+    {
+        Node node = this;
+        Node otherNode = other;
+        while( true )
+        {
+            if( !isEqualShallow( node, otherNode ) )
+            {
+                return false;
+            }
+
+            //Both nodes have the same number of children so
+            //the other tree always has a matching node
+            Node next = node.getFirstChild();
+            Node otherNext = otherNode.getFirstChild();
+            while( null == next && this != node )
+            {
+                next = node.getNextSibling();
+                otherNext = otherNode.getNextSibling();
+                if( null == next )
+                {
+                    node = node.getParentNode();
+                    otherNode = otherNode.getParentNode();
+                }
+            }
+            if( null == next )
+            {
+                return true;
+            }
+            node = next;
+            otherNode = otherNext;
+        }
+    }
+
+    /**
+     * Return true if the nodes have the same type, names, value
+     * and attributes and the same number of children.
+     *
+     * @param node the node
+     * @param other the other node
+     * @return true if the nodes are equal apart from their children
+     */
+    private static boolean isEqualShallow( final Node node, final Node other )
+    {
+        if( null == other ||
+            node.getNodeType() != other.getNodeType() ||
+            !isEqual( node.getNodeName(), other.getNodeName() ) ||
+            !isEqual( node.getLocalName(), other.getLocalName() ) ||
+            !isEqual( node.getNamespaceURI(), other.getNamespaceURI() ) ||
+            !isEqual( node.getPrefix(), other.getPrefix() ) ||
+            !isEqual( node.getNodeValue(), other.getNodeValue() ) )
+        {
+            return false;
+        }
+
+        final NamedNodeMap attributes = node.getAttributes();
+        final NamedNodeMap otherAttributes = other.getAttributes();
+        if( null == attributes || null == otherAttributes )
+        {
+            if( attributes != otherAttributes )
+            {
+                return false;
+            }
+        }
+        else
+        {
+            final int length = attributes.getLength();
+            if( length != otherAttributes.getLength() )
+            {
+                return false;
+            }
+            for( int i = 0; i < length; i++ )
+            {
+                final Node attribute = attributes.item( i );
+                final Node otherAttribute =
+                    otherAttributes.getNamedItem( attribute.getNodeName() );
+                if( !attribute.isEqualNode( otherAttribute ) )
+                {
+                    return false;
+                }
+            }
+        }
+
+        return node.getChildNodes().getLength() == other.getChildNodes().getLength();
+    }
+
+    /**
+     * Return null as no optional features are supported.
+     *
+     * @param feature the feature
+     * @param version the version
+     * @return null
+     */
+    public Object getFeature( final String feature, final String version )
+    {
+        return null;
+    }
+
+    /**
+     * Associate user data with key. The handler is never invoked
+     * as nodes can not be cloned, imported or renamed.
+     *
+     * @param key the key
+     * @param data the data or null to remove data
+     * @param handler the handler
+     * @return the data previously associated with key
+     */
+    public synchronized Object setUserData( final String key,
+                                            final Object data,
+                                            final UserDataHandler handler )
+    {
+        if( null == m_userData )
+        {
+            if( null == data )
+            {
+                return null;
+            }
+            m_userData = new HashMap();
+        }
+        if( null == data )
+        {
+            return m_userData.remove( key );
+        }
+        else
+        {
+            return m_userData.put( key, data );
+        }
+    }
+
+    /**
+     * Return user data associated with key.
+     *
+     * @param key the key
+     * @return the data or null
+     */
+    public synchronized Object getUserData( final String key )
+    {
+        if( null == m_userData )
+        {
+            return null;
+        }
+        else
+        {
+            return m_userData.get( key );
+        }
+    }
+
+    /**
+     * Return the topmost container of node.
+     *
+     * @return the root node
+     */
+    private DOMConfigurationNode getRoot()
+    {
+        DOMConfigurationNode node = this;
+        while( null != node.getContainer() )
+        {
+            node = node.getContainer();
+        }
+        return node;
+    }
+
+    /**
+     * Return the indexes of the containers of node from the root
+     * down, followed by the index of node. Attributes have negative
+     * indexes so that they order after their element and before
+     * its children.
+     *
+     * @return the position of node
+     */
+    private int[] getPosition()
+    {
+        int depth = 0;
+        for( DOMConfigurationNode node = this; null != node.getContainer();
+             node = node.getContainer() )
+        {
+            depth++;
+        }
+        final int[] position = new int[ depth ];
+        DOMConfigurationNode node = this;
+        for( int i = depth - 1; i >= 0; i-- )
+        {
+            position[ i ] = node.getContainerIndex();
+            node = node.getContainer();
+        }
+        return position;
+    }
+
+    /**
+     * Return true if the strings are both null or equal.
+     *
+     * @param value1 a string or null
+     * @param value2 a string or null
+     * @return true if the strings are equal
+     */
+    private static boolean isEqual( final String value1, final String value2 )
+    {
+        if( null == value1 )
+        {
+            return null == value2;
+        }
+        else
+        {
+            return value1.equals( value2 );
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A NodeList backed by an array of nodes.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+final class DOMConfigurationNodeList
+    implements NodeList
+{
+    /**
+     * The nodes.
+     */
+    private final Node[] m_nodes;
+
+    /**
+     * Create a list of nodes.
+     *
+     * @param nodes the nodes
+     */
+    DOMConfigurationNodeList( final Node[] nodes )
+    {
+        m_nodes = nodes;
+    }
+
+    /**
+     * Return the node at index.
+     *
+     * @param index the index
+     * @return the node or null if index is out of range
+     */
+    public Node item( final int index )
+    {
+        if( index < 0 || index >= m_nodes.length )
+        {
+            return null;
+        }
+        else
+        {
+            return m_nodes[ index ];
+        }
+    }
+
+    /**
+     * Return the number of nodes.
+     *
+     * @return the number of nodes
+     */
+    public int getLength()
+    {
+        return m_nodes.length;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Text;
+
+/**
+ * A read-only Text node holding the value of a Configuration.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+final class DOMConfigurationText
+    extends DOMConfigurationNode
+    implements Text
+{
+    /**
+     * The name of text nodes.
+     */
+    private static final String NODE_NAME = "#text";
+
+    /**
+     * The text.
+     */
+    private final String m_data;
+
+    /**
+     * Create a text node.
+     *
+     * @param document the document containing node
+     * @param parent the element or attribute containing text
+     * @param data the text
+     */
+    DOMConfigurationText( final DOMConfigurationDocument document,
+                          final DOMConfigurationNode parent,
+                          final String data )
+    {
+        super( document, parent, 0 );
+        m_data = data;
+    }
+
+    /**
+     * Return the name of node.
+     *
+     * @return "#text"
+     */
+    public String getNodeName()
+    {
+        return NODE_NAME;
+    }
+
+    /**
+     * Return the type of node.
+     *
+     * @return {@link #TEXT_NODE}
+     */
+    public short getNodeType()
+    {
+        return TEXT_NODE;
+    }
+
+    /**
+     * Return the text.
+     *
+     * @return the text
+     */
+    public String getNodeValue()
+    {
+        return m_data;
+    }
+
+    /**
+     * Return the text.
+     *
+     * @return the text
+     */
+    public String getData()
+    {
+        return m_data;
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param data the text
+     */
+    public void setData( final String data )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return the number of characters in text.
+     *
+     * @return the number of characters
+     */
+    public int getLength()
+    {
+        return m_data.length();
+    }
+
+    /**
+     * Return part of the text.
+     *
+     * @param offset the index of the first character
+     * @param count the maximum number of characters
+     * @return the part of the text
+     * @throws DOMException if offset or count are out of range
+     */
+    public String substringData( final int offset, final int count )
+        throws DOMException
+    {
+        if( offset < 0 || count < 0 || offset > m_data.length() )
+        {
+            final String message = "offset=" + offset + " count=" + count;
+            throw new DOMException( DOMException.INDEX_SIZE_ERR, message );
+        }
+        return m_data.substring( offset, Math.min( m_data.length(), offset + count ) );
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param arg the text to append
+     */
+    public void appendData( final String arg )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param offset the index to insert at
+     * @param arg the text to insert
+     */
+    public void insertData( final int offset, final String arg )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param offset the index of the first character
+     * @param count the number of characters
+     */
+    public void deleteData( final int offset, final int count )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param offset the index of the first character
+     * @param count the number of characters
+     * @param arg the replacement text
+     */
+    public void replaceData( final int offset, final int count, final String arg )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param offset the index to split at
+     * @return never returns
+     */
+    public Text splitText( final int offset )
+    {
+        throw readOnly();
+    }
+
+    /**
+     * Return false as whitespace-only values are never created.
+     *
+     * @return false
+     */
+    public boolean isElementContentWhitespace()
+    {
+        return false;
+    }
+
+    /**
+     * Return the text, as there are never adjacent text nodes.
+     *
+     * @return the text
+     */
+    public String getWholeText()
+    {
+        return m_data;
+    }
+
+    /**
+     * Throw an exception as nodes are read-only.
+     *
+     * @param content the replacement text
+     * @return never returns
+     */
+    public Text replaceWholeText( final String content )
+    {
+        throw readOnly();
+    }
+}
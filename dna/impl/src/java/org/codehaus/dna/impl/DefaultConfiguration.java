@@ -9,9 +9,12 @@ package org.codehaus.dna.impl;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codehaus.dna.Configuration;
 import org.codehaus.dna.ConfigurationException;
@@ -27,7 +30,7 @@ import org.codehaus.dna.ConfigurationException;
  */
 public class DefaultConfiguration
     extends AbstractFreezable
-    implements Configuration
+    implements IndexedConfiguration, HashedConfiguration
 {
     /**
      * Postfix indicating that location is generated.
@@ -57,17 +60,37 @@ public class DefaultConfiguration
     private final String m_name;
 
     /**
-     * The location of configuration element in source.
-     * May be empty string if unknown.
+     * The system id of the source the configuration element
+     * was read from. Combined with {@link #m_lineNumber} and
+     * {@link #m_columnNumber} to produce the location on demand.
+     * May be null or empty string if unknown.
      */
-    private final String m_location;
+    private final String m_systemId;
 
     /**
-     * The path of configuration element in document.
-     * May be empty string if unknown.
+     * The line number of configuration element in source
+     * or -1 if unknown.
+     */
+    private final int m_lineNumber;
+
+    /**
+     * The column number of configuration element in source
+     * or -1 if unknown.
+     */
+    private final int m_columnNumber;
+
+    /**
+     * The path of configuration element in document. If null
+     * then the path is derived from {@link #m_parent} on demand.
      */
     private final String m_path;
 
+    /**
+     * The parent configuration element used to derive path
+     * (May be null).
+     */
+    private final Configuration m_parent;
+
     /**
      * The attributes defined by configuration (May be null).
      */
@@ -88,6 +111,40 @@ public class DefaultConfiguration
      */
     private String m_value;
 
+    /**
+     * The attribute names in the order returned by
+     * {@link #getAttributeName(int)}. Created on demand and
+     * discarded when a new attribute is added (May be null).
+     */
+    private volatile String[] m_attributeNameIndex;
+
+    /**
+     * The typed form of {@link #m_value}. Only cached once
+     * configuration is read-only (May be null).
+     */
+    private volatile TypedValue m_typedValue;
+
+    /**
+     * Typed attribute values keyed by attribute name. Only
+     * cached once configuration is read-only and created on
+     * first typed attribute access (May be null).
+     */
+    private volatile ConcurrentMap m_typedAttributes;
+
+    /**
+     * Index of child elements keyed by name. The values
+     * are arrays of children with that name in document order.
+     * Only created when configuration is made read-only
+     * (May be null).
+     */
+    private Map m_childIndex;
+
+    /**
+     * The structural hash calculated when configuration
+     * was made read-only.
+     */
+    private long m_structuralHash;
+
     /**
      * Create a DefaultConfiguration instance.
      *
@@ -113,7 +170,40 @@ public class DefaultConfiguration
         }
         m_name = name;
         m_path = path;
-        m_location = location;
+        m_parent = null;
+        m_systemId = location;
+        m_lineNumber = -1;
+        m_columnNumber = -1;
+    }
+
+    /**
+     * Create a DefaultConfiguration instance whose path and location
+     * are computed when requested rather than stored. The path is
+     * derived from the parent and the location from the system id,
+     * line number and column number.
+     *
+     * @param name the name of configuration element
+     * @param parent the parent configuration element or null if root
+     * @param systemId the system id of source (may be null if unknown)
+     * @param lineNumber the line number in source or -1 if unknown
+     * @param columnNumber the column number in source or -1 if unknown
+     */
+    public DefaultConfiguration( final String name,
+                                 final Configuration parent,
+                                 final String systemId,
+                                 final int lineNumber,
+                                 final int columnNumber )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        m_name = name;
+        m_path = null;
+        m_parent = parent;
+        m_systemId = systemId;
+        m_lineNumber = lineNumber;
+        m_columnNumber = columnNumber;
     }
 
     /**
@@ -135,7 +225,31 @@ public class DefaultConfiguration
      */
     public final String getPath()
     {
-        return m_path;
+        if( null != m_path )
+        {
+            return m_path;
+        }
+        else if( null == m_parent )
+        {
+            return ConfigurationUtil.ROOT_PATH;
+        }
+
+        //Collect the names of the ancestors rather than recursing
+        //through them so that deep trees do not exhaust the stack
+        final List names = new ArrayList();
+        Configuration ancestor = m_parent;
+        while( ancestor instanceof DefaultConfiguration )
+        {
+            final DefaultConfiguration parent = (DefaultConfiguration)ancestor;
+            if( null != parent.m_path || null == parent.m_parent )
+            {
+                break;
+            }
+            names.add( parent.m_name );
+            ancestor = parent.m_parent;
+        }
+        names.add( ancestor.getName() );
+        return ConfigurationUtil.generatePathName( ancestor.getPath(), names );
     }
 
     /**
@@ -148,7 +262,7 @@ public class DefaultConfiguration
      */
     public String getLocation()
     {
-        return m_location;
+        return ConfigurationUtil.formatLocation( m_systemId, m_lineNumber, m_columnNumber );
     }
 
     /**
@@ -171,6 +285,8 @@ public class DefaultConfiguration
 
     /**
      * Return an array of all the child elements with specified name.
+     * Once the configuration has been made read-only the array is
+     * shared between callers and should not be modified.
      *
      * @param name the name of child configuration objects
      * @return an array of all the child elements with specified name.
@@ -181,6 +297,18 @@ public class DefaultConfiguration
         {
             throw new NullPointerException( "name" );
         }
+        if( null != m_childIndex )
+        {
+            final Configuration[] results = (Configuration[])m_childIndex.get( name );
+            if( null == results )
+            {
+                return EMPTY_CONFIG_ARRAY;
+            }
+            else
+            {
+                return results;
+            }
+        }
         final List children = getChildList();
         if( null == children )
         {
@@ -230,6 +358,42 @@ public class DefaultConfiguration
         {
             throw new NullPointerException( "name" );
         }
+        if( null != m_childIndex )
+        {
+            final Configuration[] results = (Configuration[])m_childIndex.get( name );
+            if( null != results )
+            {
+                return results[ 0 ];
+            }
+        }
+        else
+        {
+            final Configuration child = findChild( name );
+            if( null != child )
+            {
+                return child;
+            }
+        }
+        if( createChild )
+        {
+            final String path = getPath() + ConfigurationUtil.PATH_SEPARATOR + getName();
+            return new DefaultConfiguration( name, generateLocation(), path );
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Return the first child with specified name or null
+     * if no such child exists.
+     *
+     * @param name the name of child
+     * @return the child or null
+     */
+    private Configuration findChild( final String name )
+    {
         final List children = getChildList();
         if( null != children )
         {
@@ -243,16 +407,69 @@ public class DefaultConfiguration
                 }
             }
         }
-        if( createChild )
+        return null;
+    }
+
+    /**
+     * Return the number of child elements.
+     *
+     * @return the number of child elements.
+     */
+    public int getChildCount()
+    {
+        final List children = getChildList();
+        if( null == children )
         {
-            final String path = getPath() + ConfigurationUtil.PATH_SEPARATOR + getName();
-            return new DefaultConfiguration( name, generateLocation(), path );
+            return 0;
         }
         else
         {
-            return null;
+            return children.size();
         }
+    }
 
+    /**
+     * Return the child element at specified index.
+     *
+     * @param index the index of child
+     * @return the child element
+     */
+    public Configuration getChild( final int index )
+    {
+        final List children = getChildList();
+        if( null == children )
+        {
+            throw new IndexOutOfBoundsException( String.valueOf( index ) );
+        }
+        return (Configuration)children.get( index );
+    }
+
+    /**
+     * Pass each child element to visitor in order until all
+     * children have been visited or the visitor returns false.
+     *
+     * @param visitor the visitor
+     * @return true if all children were visited
+     */
+    public boolean forEachChild( final ConfigurationVisitor visitor )
+    {
+        if( null == visitor )
+        {
+            throw new NullPointerException( "visitor" );
+        }
+        final List children = getChildList();
+        if( null != children )
+        {
+            final int count = children.size();
+            for( int i = 0; i < count; i++ )
+            {
+                if( !visitor.visit( (Configuration)children.get( i ) ) )
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     /**
@@ -304,6 +521,11 @@ public class DefaultConfiguration
     public boolean getValueAsBoolean()
         throws ConfigurationException
     {
+        final TypedValue typed = getTypedValue();
+        if( null != typed )
+        {
+            return typed.toBoolean();
+        }
         return getValue().equals( "true" );
     }
 
@@ -317,6 +539,11 @@ public class DefaultConfiguration
      */
     public boolean getValueAsBoolean( final boolean defaultValue )
     {
+        final TypedValue typed = getTypedValue();
+        if( null != typed )
+        {
+            return typed.toBoolean();
+        }
         if( null == m_value )
         {
             return defaultValue;
@@ -337,6 +564,11 @@ public class DefaultConfiguration
     public int getValueAsInteger()
         throws ConfigurationException
     {
+        final TypedValue typed = getTypedValue();
+        if( null != typed && typed.isInteger() )
+        {
+            return typed.toInteger( 0 );
+        }
         try
         {
             return Integer.parseInt( getValue() );
@@ -359,6 +591,11 @@ public class DefaultConfiguration
      */
     public int getValueAsInteger( final int defaultValue )
     {
+        final TypedValue typed = getTypedValue();
+        if( null != typed )
+        {
+            return typed.toInteger( defaultValue );
+        }
         if( null == m_value )
         {
             return defaultValue;
@@ -386,6 +623,11 @@ public class DefaultConfiguration
     public long getValueAsLong()
         throws ConfigurationException
     {
+        final TypedValue typed = getTypedValue();
+        if( null != typed && typed.isLong() )
+        {
+            return typed.toLong( 0 );
+        }
         try
         {
             return Long.parseLong( getValue() );
@@ -408,6 +650,11 @@ public class DefaultConfiguration
      */
     public long getValueAsLong( final long defaultValue )
     {
+        final TypedValue typed = getTypedValue();
+        if( null != typed )
+        {
+            return typed.toLong( defaultValue );
+        }
         if( null == m_value )
         {
             return defaultValue;
@@ -435,6 +682,11 @@ public class DefaultConfiguration
     public float getValueAsFloat()
         throws ConfigurationException
     {
+        final TypedValue typed = getTypedValue();
+        if( null != typed && typed.isFloat() )
+        {
+            return typed.toFloat( 0 );
+        }
         try
         {
             return Float.parseFloat( getValue() );
@@ -457,6 +709,11 @@ public class DefaultConfiguration
      */
     public float getValueAsFloat( final float defaultValue )
     {
+        final TypedValue typed = getTypedValue();
+        if( null != typed )
+        {
+            return typed.toFloat( defaultValue );
+        }
         if( null == m_value )
         {
             return defaultValue;
@@ -493,6 +750,41 @@ public class DefaultConfiguration
         }
     }
 
+    /**
+     * Return the number of attributes.
+     *
+     * @return the number of attributes.
+     */
+    public int getAttributeCount()
+    {
+        final Map attributeMap = getAttributeMap();
+        if( null == attributeMap )
+        {
+            return 0;
+        }
+        else
+        {
+            return attributeMap.size();
+        }
+    }
+
+    /**
+     * Return the name of attribute at specified index.
+     *
+     * @param index the index of attribute
+     * @return the name of attribute
+     */
+    public String getAttributeName( final int index )
+    {
+        String[] names = m_attributeNameIndex;
+        if( null == names )
+        {
+            names = getAttributeNames();
+            m_attributeNameIndex = names;
+        }
+        return names[ index ];
+    }
+
     /**
      * Return attribute value with specified name.
      *
@@ -577,6 +869,11 @@ public class DefaultConfiguration
     public boolean getAttributeAsBoolean( final String name )
         throws ConfigurationException
     {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null != typed )
+        {
+            return typed.toBoolean();
+        }
         return getAttribute( name ).equals( TRUE_STRING );
     }
 
@@ -593,6 +890,11 @@ public class DefaultConfiguration
     public boolean getAttributeAsBoolean( final String name,
                                           final boolean defaultValue )
     {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null != typed )
+        {
+            return typed.toBoolean();
+        }
         final String value = getAttribute( name, null );
         if( null != value )
         {
@@ -613,6 +915,11 @@ public class DefaultConfiguration
     public int getAttributeAsInteger( final String name )
         throws ConfigurationException
     {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null != typed && typed.isInteger() )
+        {
+            return typed.toInteger( 0 );
+        }
         final String value = getAttribute( name );
         try
         {
@@ -639,6 +946,11 @@ public class DefaultConfiguration
     public int getAttributeAsInteger( final String name,
                                       final int defaultValue )
     {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null != typed )
+        {
+            return typed.toInteger( defaultValue );
+        }
         final String value = getAttribute( name, null );
         if( null != value )
         {
@@ -666,6 +978,11 @@ public class DefaultConfiguration
     public long getAttributeAsLong( final String name )
         throws ConfigurationException
     {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null != typed && typed.isLong() )
+        {
+            return typed.toLong( 0 );
+        }
         final String value = getAttribute( name );
         try
         {
@@ -692,6 +1009,11 @@ public class DefaultConfiguration
     public long getAttributeAsLong( final String name,
                                     final long defaultValue )
     {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null != typed )
+        {
+            return typed.toLong( defaultValue );
+        }
         final String value = getAttribute( name, null );
         if( null != value )
         {
@@ -719,6 +1041,11 @@ public class DefaultConfiguration
     public float getAttributeAsFloat( final String name )
         throws ConfigurationException
     {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null != typed && typed.isFloat() )
+        {
+            return typed.toFloat( 0 );
+        }
         final String value = getAttribute( name );
         try
         {
@@ -745,6 +1072,11 @@ public class DefaultConfiguration
     public float getAttributeAsFloat( final String name,
                                       final float defaultValue )
     {
+        final TypedValue typed = getTypedAttribute( name );
+        if( null != typed )
+        {
+            return typed.toFloat( defaultValue );
+        }
         final String value = getAttribute( name, null );
         if( null != value )
         {
@@ -760,25 +1092,180 @@ public class DefaultConfiguration
         return defaultValue;
     }
 
+    /**
+     * Return the typed form of value if the configuration is
+     * read-only and has a value, otherwise return null. The typed
+     * form is created on first request and then reused.
+     *
+     * @return the typed value or null
+     */
+    private TypedValue getTypedValue()
+    {
+        if( null == m_value || !isReadOnly() )
+        {
+            return null;
+        }
+        TypedValue typed = m_typedValue;
+        if( null == typed )
+        {
+            typed = new TypedValue( m_value );
+            m_typedValue = typed;
+        }
+        return typed;
+    }
+
+    /**
+     * Return the typed form of attribute with specified name if
+     * the configuration is read-only and has such an attribute,
+     * otherwise return null. The typed form is created on first
+     * request and then reused.
+     *
+     * @param name the attribute name
+     * @return the typed value or null
+     */
+    private TypedValue getTypedAttribute( final String name )
+    {
+        if( !isReadOnly() )
+        {
+            return null;
+        }
+        ConcurrentMap cache = m_typedAttributes;
+        if( null != cache )
+        {
+            final TypedValue typed = (TypedValue)cache.get( name );
+            if( null != typed )
+            {
+                return typed;
+            }
+        }
+        final String value = doGetAttribute( name );
+        if( null == value )
+        {
+            return null;
+        }
+        if( null == cache )
+        {
+            synchronized( this )
+            {
+                cache = m_typedAttributes;
+                if( null == cache )
+                {
+                    cache = new ConcurrentHashMap();
+                    m_typedAttributes = cache;
+                }
+            }
+        }
+        return TypedValue.addToCache( cache, name, value );
+    }
+
     /**
      * Mark the configuration and child configurations as read only.
+     * As the set of children can no longer change an index of
+     * children by name is built to speed up subsequent lookups.
+     *
+     * <p>Descendants that are instances of this class, rather than
+     * of a subclass, are frozen while walking the tree instead of by
+     * recursion, so trees of any depth can be made read-only. Other
+     * {@link Freezable} descendants have their own makeReadOnly()
+     * invoked.</p>
      */
     public void makeReadOnly()
+    {
+        final ConfigurationWalker walker = new ConfigurationWalker( this );
+        while( walker.next() )
+        {
+            final Configuration configuration = walker.getConfiguration();
+            final boolean walked = this == configuration ||
+                DefaultConfiguration.class == configuration.getClass();
+            if( walker.isStartElement() )
+            {
+                if( !walked )
+                {
+                    if( configuration instanceof Freezable )
+                    {
+                        ( (Freezable)configuration ).makeReadOnly();
+                    }
+                    walker.skipChildren();
+                }
+            }
+            else if( walked )
+            {
+                //Children have been frozen so their hashes are cached
+                ( (DefaultConfiguration)configuration ).freeze();
+            }
+        }
+    }
+
+    /**
+     * Mark this configuration as read only once its
+     * children have been made read only.
+     */
+    private void freeze()
     {
         super.makeReadOnly();
         final List children = getChildList();
         if( null != children )
         {
-            final int count = children.size();
-            for( int i = 0; i < count; i++ )
+            m_childIndex = buildChildIndex( children );
+        }
+        m_structuralHash = ConfigurationUtil.computeStructuralHash( this, null );
+    }
+
+    /**
+     * Return the structural hash of configuration. The hash is
+     * calculated once when the configuration is made read-only,
+     * before then it is recalculated on every call.
+     *
+     * @return the structural hash of configuration.
+     */
+    public long getStructuralHash()
+    {
+        if( isReadOnly() )
+        {
+            return m_structuralHash;
+        }
+        else
+        {
+            return ConfigurationUtil.computeStructuralHash( this, null );
+        }
+    }
+
+    /**
+     * Build an index of children keyed by name. Each value
+     * in the index is an exact-size array of children with
+     * that name in the order they were added.
+     *
+     * @param children the list of children
+     * @return the index
+     */
+    private static Map buildChildIndex( final List children )
+    {
+        final Map lists = new HashMap();
+        final int count = children.size();
+        for( int i = 0; i < count; i++ )
+        {
+            final Configuration child = (Configuration)children.get( i );
+            final String name = child.getName();
+            List list = (List)lists.get( name );
+            if( null == list )
             {
-                final Configuration configuration = (Configuration)children.get( i );
-                if( configuration instanceof Freezable )
-                {
-                    ( (Freezable)configuration ).makeReadOnly();
-                }
+                list = new ArrayList( 1 );
+                lists.put( name, list );
             }
+            list.add( child );
         }
+
+        final Map index = new HashMap( lists.size() * 2 );
+        final Iterator iterator = lists.entrySet().iterator();
+        while( iterator.hasNext() )
+        {
+            final Map.Entry entry = (Map.Entry)iterator.next();
+            final List list = (List)entry.getValue();
+            final Configuration[] array =
+                (Configuration[])list.toArray( new Configuration[ list.size() ] );
+            index.put( entry.getKey(), array );
+        }
+        return index;
     }
 
     /**
@@ -803,7 +1290,10 @@ public class DefaultConfiguration
         {
             m_attributes = new HashMap();
         }
-        m_attributes.put( key, value );
+        if( null == m_attributes.put( key, value ) )
+        {
+            m_attributeNameIndex = null;
+        }
     }
 
     /**
@@ -869,6 +1359,47 @@ public class DefaultConfiguration
         return sb.toString();
     }
 
+    /**
+     * Return the system id of source or null if unknown.
+     *
+     * @return the system id of source
+     */
+    final String getSystemId()
+    {
+        return m_systemId;
+    }
+
+    /**
+     * Return the line number in source or -1 if unknown.
+     *
+     * @return the line number in source
+     */
+    final int getLineNumber()
+    {
+        return m_lineNumber;
+    }
+
+    /**
+     * Return the column number in source or -1 if unknown.
+     *
+     * @return the column number in source
+     */
+    final int getColumnNumber()
+    {
+        return m_columnNumber;
+    }
+
+    /**
+     * Return true if the path is derived from the parent
+     * rather than stored.
+     *
+     * @return true if the path is derived from the parent
+     */
+    final boolean isPathDerived()
+    {
+        return null == m_path;
+    }
+
     /**
      * Return the list of child configuration objects.
      *
@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Extension of Configuration that exposes the structural hash
+ * described by {@link ConfigurationUtil#structuralHash(Configuration)}.
+ * Read-only implementations calculate the hash once so that it
+ * can be used to quickly rule out equality or as a cache key.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public interface HashedConfiguration
+    extends Configuration
+{
+    /**
+     * Return the structural hash of configuration.
+     *
+     * @return the structural hash of configuration.
+     */
+    long getStructuralHash();
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Extension of Configuration that allows children and attributes
+ * to be traversed by index without copying them into arrays as
+ * {@link Configuration#getChildren()} and
+ * {@link Configuration#getAttributeNames()} do. Configuration walkers
+ * in this package use this interface when it is available and
+ * {@link ConfigurationUtil#toIndexed(Configuration)} otherwise.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public interface IndexedConfiguration
+    extends Configuration
+{
+    /**
+     * Return the number of child elements.
+     *
+     * @return the number of child elements.
+     */
+    int getChildCount();
+
+    /**
+     * Return the child element at specified index.
+     *
+     * @param index the index of child
+     * @return the child element
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    Configuration getChild( int index );
+
+    /**
+     * Return the number of attributes.
+     *
+     * @return the number of attributes.
+     */
+    int getAttributeCount();
+
+    /**
+     * Return the name of attribute at specified index. The order
+     * of attributes is the same as {@link #getAttributeNames()}.
+     *
+     * @param index the index of attribute
+     * @return the name of attribute
+     * @throws IndexOutOfBoundsException if index is out of range
+     */
+    String getAttributeName( int index );
+
+    /**
+     * Pass each child element to visitor in order until all
+     * children have been visited or the visitor returns false.
+     *
+     * @param visitor the visitor
+     * @return true if all children were visited, false if the
+     *         visitor stopped the traversal
+     */
+    boolean forEachChild( ConfigurationVisitor visitor );
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Adapts a Configuration that does not implement
+ * {@link IndexedConfiguration}. The children and attribute names
+ * are copied once when the adapter is created so that indexed
+ * access does not copy them again on every call.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ * @see ConfigurationUtil#toIndexed(Configuration)
+ */
+final class IndexedConfigurationAdapter
+    extends AbstractConfiguration
+{
+    /**
+     * The adapted configuration.
+     */
+    private final Configuration m_configuration;
+
+    /**
+     * The children of adapted configuration.
+     */
+    private final Configuration[] m_children;
+
+    /**
+     * The attribute names of adapted configuration.
+     */
+    private final String[] m_attributeNames;
+
+    /**
+     * Create an adapter for specified configuration.
+     *
+     * @param configuration the configuration
+     */
+    IndexedConfigurationAdapter( final Configuration configuration )
+    {
+        if( null == configuration )
+        {
+            throw new NullPointerException( "configuration" );
+        }
+        m_configuration = configuration;
+        m_children = configuration.getChildren();
+        m_attributeNames = configuration.getAttributeNames();
+    }
+
+    /**
+     * Return the adapted configuration.
+     *
+     * @return the adapted configuration.
+     */
+    Configuration getConfiguration()
+    {
+        return m_configuration;
+    }
+
+    /**
+     * Return the name of the configuration element.
+     *
+     * @return the name of the configuration element.
+     */
+    public String getName()
+    {
+        return m_configuration.getName();
+    }
+
+    /**
+     * Return the path to the configuration element.
+     *
+     * @return the path to the configuration element.
+     */
+    public String getPath()
+    {
+        return m_configuration.getPath();
+    }
+
+    /**
+     * Return the location of configuration element.
+     *
+     * @return the location of configuration element.
+     */
+    public String getLocation()
+    {
+        return m_configuration.getLocation();
+    }
+
+    /**
+     * Return an array of all the child elements.
+     *
+     * @return an array of all the child elements.
+     */
+    public Configuration[] getChildren()
+    {
+        return m_children;
+    }
+
+    /**
+     * Return an array of all the child elements with specified name.
+     *
+     * @param name the name of child configuration objects
+     * @return an array of all the child elements with specified name.
+     */
+    public Configuration[] getChildren( final String name )
+    {
+        return m_configuration.getChildren( name );
+    }
+
+    /**
+     * Return a child Configuration element with specified name.
+     *
+     * @param name the name of child configuration object
+     * @param createChild true if child should be created if it does not exist
+     * @return a child Configuration element with specified name.
+     */
+    public Configuration getChild( final String name,
+                                   final boolean createChild )
+    {
+        return m_configuration.getChild( name, createChild );
+    }
+
+    /**
+     * Return text value of element.
+     * Use specified default if no value in element.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public String getValue( final String defaultValue )
+    {
+        return m_configuration.getValue( defaultValue );
+    }
+
+    /**
+     * Return an array of all the attribute names.
+     *
+     * @return an array of all the attribute names.
+     */
+    public String[] getAttributeNames()
+    {
+        return m_attributeNames;
+    }
+
+    /**
+     * Return attribute value with specified name.
+     * If no attribute with specified name then return
+     * default value.
+     *
+     * @param name the attribute name
+     * @param defaultValue the default value
+     * @return the attribute value
+     */
+    public String getAttribute( final String name,
+                                final String defaultValue )
+    {
+        return m_configuration.getAttribute( name, defaultValue );
+    }
+
+    /**
+     * Return string representation of adapted configuration.
+     *
+     * @return string representation of adapted configuration
+     */
+    public String toString()
+    {
+        return m_configuration.toString();
+    }
+}
@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ResourceLocator;
+
+/**
+ * A {@link SAXConfigurationHandler} that replaces <code>${name}</code>
+ * placeholders in attribute values and element values. Each name is
+ * resolved by looking in the following places in order;
+ *
+ * <ul>
+ *   <li>the {@link ResourceLocator}, if specified,</li>
+ *   <li>the system properties,</li>
+ *   <li>the attributes of the defaults {@link Configuration},
+ *   if specified.</li>
+ * </ul>
+ *
+ * <p>Placeholders that can not be resolved or are not terminated
+ * are left in the text unchanged. Text that contains placeholders is
+ * compiled into a template the first time it is seen and the template
+ * is reused for later occurrences of the same text, including in later
+ * parses. Each name is resolved at most once per parse, so changes to
+ * the variables are picked up when the handler is reused via
+ * {@link #clear()}.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public class InterpolatingSAXConfigurationHandler
+    extends SAXConfigurationHandler
+{
+    /**
+     * The start of a placeholder.
+     */
+    private static final String PREFIX = "${";
+
+    /**
+     * The end of a placeholder.
+     */
+    private static final char SUFFIX = '}';
+
+    /**
+     * The maximum number of templates retained. The cache is
+     * emptied when full so that a stream of distinct texts can not
+     * exhaust memory.
+     */
+    private static final int MAX_TEMPLATES = 1024;
+
+    /**
+     * Marker recording that a name could not be resolved.
+     */
+    private static final Object UNRESOLVED = new Object();
+
+    /**
+     * The locator consulted first or null.
+     */
+    private final ResourceLocator m_locator;
+
+    /**
+     * The configuration of defaults consulted last or null.
+     */
+    private final Configuration m_defaults;
+
+    /**
+     * The compiled templates keyed by text.
+     */
+    private final Map m_templates = new HashMap();
+
+    /**
+     * The values resolved during current parse keyed by name.
+     */
+    private final Map m_values = new HashMap();
+
+    /**
+     * Create a handler that resolves placeholders with its
+     * own string pool.
+     *
+     * @param locator the locator consulted first, may be null
+     * @param defaults the configuration whose attributes are
+     *        consulted last, may be null
+     */
+    public InterpolatingSAXConfigurationHandler( final ResourceLocator locator,
+                                                 final Configuration defaults )
+    {
+        this( new StringPool(), locator, defaults );
+    }
+
+    /**
+     * Create a handler that resolves placeholders and deduplicates
+     * strings using the specified pool.
+     *
+     * @param pool the string pool
+     * @param locator the locator consulted first, may be null
+     * @param defaults the configuration whose attributes are
+     *        consulted last, may be null
+     */
+    public InterpolatingSAXConfigurationHandler( final StringPool pool,
+                                                 final ResourceLocator locator,
+                                                 final Configuration defaults )
+    {
+        super( pool );
+        m_locator = locator;
+        m_defaults = defaults;
+    }
+
+    /**
+     * Reset internal state of handler in preparation for reuse.
+     * Compiled templates are retained but variables are resolved
+     * again during the next parse.
+     */
+    public void clear()
+    {
+        super.clear();
+        m_values.clear();
+    }
+
+    /**
+     * Replace placeholders in attribute value.
+     *
+     * @param configuration the associated configuration
+     * @param name the attribute name
+     * @param value the attribute value
+     * @return the attribute value with placeholders replaced
+     */
+    protected String processAttributeText( final Configuration configuration,
+                                           final String name,
+                                           final String value )
+    {
+        return interpolate( value );
+    }
+
+    /**
+     * Replace placeholders in value.
+     *
+     * @param configuration the associated configuration
+     * @param value the value
+     * @return the value with placeholders replaced
+     */
+    protected String processValueText( final Configuration configuration,
+                                       final String value )
+    {
+        return interpolate( value );
+    }
+
+    /**
+     * Replace placeholders in text.
+     *
+     * @param text the text
+     * @return the text with placeholders replaced
+     */
+    String interpolate( final String text )
+    {
+        if( -1 == text.indexOf( PREFIX ) )
+        {
+            return text;
+        }
+        Template template = (Template)m_templates.get( text );
+        if( null == template )
+        {
+            template = compile( text );
+            if( m_templates.size() >= MAX_TEMPLATES )
+            {
+                m_templates.clear();
+            }
+            m_templates.put( text, template );
+        }
+        return template.resolve( this );
+    }
+
+    /**
+     * Return the value of variable with specified name.
+     *
+     * @param name the name
+     * @return the value or null if unable to resolve name
+     */
+    String resolve( final String name )
+    {
+        final Object cached = m_values.get( name );
+        if( UNRESOLVED == cached )
+        {
+            return null;
+        }
+        else if( null != cached )
+        {
+            return (String)cached;
+        }
+
+        final String value = lookup( name );
+        if( null == value )
+        {
+            m_values.put( name, UNRESOLVED );
+        }
+        else
+        {
+            m_values.put( name, value );
+        }
+        return value;
+    }
+
+    /**
+     * Look up value of variable with specified name.
+     *
+     * @param name the name
+     * @return the value or null if unable to locate name
+     */
+    private String lookup( final String name )
+    {
+        if( 0 == name.length() )
+        {
+            return null;
+        }
+        if( null != m_locator && m_locator.contains( name ) )
+        {
+            try
+            {
+                final Object resource = m_locator.lookup( name );
+                if( null != resource )
+                {
+                    return resource.toString();
+                }
+            }
+            catch( final Exception e )
+            {
+                //Fall through to other sources
+            }
+        }
+        try
+        {
+            final String property = System.getProperty( name );
+            if( null != property )
+            {
+                return property;
+            }
+        }
+        catch( final SecurityException se )
+        {
+            //Fall through to defaults
+        }
+        if( null != m_defaults )
+        {
+            return m_defaults.getAttribute( name, null );
+        }
+        return null;
+    }
+
+    /**
+     * Split text into literal text and the names of placeholders.
+     *
+     * @param text the text
+     * @return the template
+     */
+    private static Template compile( final String text )
+    {
+        final List literals = new ArrayList();
+        final List names = new ArrayList();
+        final List placeholders = new ArrayList();
+        int index = 0;
+        while( true )
+        {
+            final int start = text.indexOf( PREFIX, index );
+            if( -1 == start )
+            {
+                break;
+            }
+            final int end = text.indexOf( SUFFIX, start + PREFIX.length() );
+            if( -1 == end )
+            {
+                break;
+            }
+            literals.add( text.substring( index, start ) );
+            names.add( text.substring( start + PREFIX.length(), end ) );
+            placeholders.add( text.substring( start, end + 1 ) );
+            index = end + 1;
+        }
+        literals.add( text.substring( index ) );
+        return new Template( (String[])literals.toArray( new String[ literals.size() ] ),
+                             (String[])names.toArray( new String[ names.size() ] ),
+                             (String[])placeholders.toArray( new String[ placeholders.size() ] ) );
+    }
+
+    /**
+     * Text compiled into literal segments separated by placeholders.
+     */
+    private static final class Template
+    {
+        /**
+         * The literal segments. There is one more literal than names.
+         */
+        private final String[] m_literals;
+
+        /**
+         * The names of placeholders.
+         */
+        private final String[] m_names;
+
+        /**
+         * The original text of placeholders used when a name
+         * can not be resolved.
+         */
+        private final String[] m_placeholders;
+
+        /**
+         * The minimum length of the resolved text.
+         */
+        private final int m_length;
+
+        /**
+         * Create a template.
+         *
+         * @param literals the literal segments
+         * @param names the names of placeholders
+         * @param placeholders the original text of placeholders
+         */
+        Template( final String[] literals,
+                  final String[] names,
+                  final String[] placeholders )
+        {
+            m_literals = literals;
+            m_names = names;
+            m_placeholders = placeholders;
+            int length = 0;
+            for( int i = 0; i < literals.length; i++ )
+            {
+                length += literals[ i ].length();
+            }
+            m_length = length;
+        }
+
+        /**
+         * Resolve the placeholders using specified handler.
+         *
+         * @param handler the handler
+         * @return the resolved text
+         */
+        String resolve( final InterpolatingSAXConfigurationHandler handler )
+        {
+            final StringBuffer sb = new StringBuffer( m_length + 16 * m_names.length );
+            for( int i = 0; i < m_names.length; i++ )
+            {
+                sb.append( m_literals[ i ] );
+                final String value = handler.resolve( m_names[ i ] );
+                if( null == value )
+                {
+                    sb.append( m_placeholders[ i ] );
+                }
+                else
+                {
+                    sb.append( value );
+                }
+            }
+            sb.append( m_literals[ m_names.length ] );
+            return sb.toString();
+        }
+    }
+}
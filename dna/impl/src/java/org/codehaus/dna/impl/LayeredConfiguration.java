@@ -0,0 +1,413 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Read-only Configuration that overlays an override configuration
+ * on a base configuration without copying either. It allows many
+ * components to share one large default configuration while each
+ * component only holds its own overrides.
+ *
+ * <p>The layered view is merged as follows:</p>
+ * <ul>
+ *   <li>The name, path and location are those of the override.</li>
+ *   <li>An attribute is read from the override and falls back to
+ *       the base if the override does not define it.</li>
+ *   <li>The value is read from the override and falls back to the
+ *       base. As configuration elements can not have mixed content
+ *       an override with a value hides the base children and an
+ *       override with children hides the base value.</li>
+ *   <li>Children are matched by name and position, so the n-th
+ *       override child named "x" overlays the n-th base child named
+ *       "x". Children are returned in the order of the base followed
+ *       by any override children that overlay no base child. Children
+ *       that only appear in one layer are returned as is and only
+ *       children present in both layers are wrapped.</li>
+ * </ul>
+ *
+ * <p>The merged children and attribute names are calculated on first
+ * access. Neither layer should be modified after the view has been
+ * created, which is normally guaranteed by making them read-only.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public class LayeredConfiguration
+    extends AbstractConfiguration
+{
+    /**
+     * The configuration that takes precedence.
+     */
+    private final Configuration m_override;
+
+    /**
+     * The configuration that supplies anything not in override.
+     */
+    private final Configuration m_base;
+
+    /**
+     * The merged children, calculated on first access (May be null).
+     */
+    private volatile Configuration[] m_children;
+
+    /**
+     * The merged attribute names, calculated on first access (May be null).
+     */
+    private volatile String[] m_attributeNames;
+
+    /**
+     * Create a view that overlays override on base.
+     *
+     * @param override the configuration that takes precedence
+     * @param base the configuration that supplies defaults
+     */
+    public LayeredConfiguration( final Configuration override,
+                                 final Configuration base )
+    {
+        if( null == override )
+        {
+            throw new NullPointerException( "override" );
+        }
+        if( null == base )
+        {
+            throw new NullPointerException( "base" );
+        }
+        m_override = override;
+        m_base = base;
+    }
+
+    /**
+     * Return the configuration that takes precedence.
+     *
+     * @return the configuration that takes precedence.
+     */
+    public Configuration getOverride()
+    {
+        return m_override;
+    }
+
+    /**
+     * Return the configuration that supplies defaults.
+     *
+     * @return the configuration that supplies defaults.
+     */
+    public Configuration getBase()
+    {
+        return m_base;
+    }
+
+    /**
+     * Return the name of the configuration element.
+     *
+     * @return the name of the configuration element.
+     */
+    public String getName()
+    {
+        return m_override.getName();
+    }
+
+    /**
+     * Return the path to the configuration element.
+     *
+     * @return the path to the configuration element.
+     */
+    public String getPath()
+    {
+        return m_override.getPath();
+    }
+
+    /**
+     * Return the location of configuration element.
+     *
+     * @return the location of configuration element.
+     */
+    public String getLocation()
+    {
+        return m_override.getLocation();
+    }
+
+    /**
+     * Return an array of all the child elements.
+     * The array is shared and should not be modified.
+     *
+     * @return an array of all the child elements.
+     */
+    public Configuration[] getChildren()
+    {
+        Configuration[] children = m_children;
+        if( null == children )
+        {
+            synchronized( this )
+            {
+                children = m_children;
+                if( null == children )
+                {
+                    children = mergeChildren();
+                    m_children = children;
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Return an array of all the child elements with specified name.
+     *
+     * @param name the name of child configuration objects
+     * @return an array of all the child elements with specified name.
+     */
+    public Configuration[] getChildren( final String name )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        final Configuration[] children = getChildren();
+        final List results = new ArrayList();
+        for( int i = 0; i < children.length; i++ )
+        {
+            if( name.equals( children[ i ].getName() ) )
+            {
+                results.add( children[ i ] );
+            }
+        }
+        if( 0 == results.size() )
+        {
+            return EMPTY_CONFIG_ARRAY;
+        }
+        else if( children.length == results.size() )
+        {
+            return children;
+        }
+        else
+        {
+            return (Configuration[])results.toArray( new Configuration[ results.size() ] );
+        }
+    }
+
+    /**
+     * Return a child Configuration element with specified name.
+     * If no such element exists and createChild is true then an
+     * element will be autocreated otherwise null will be returned.
+     *
+     * @param name the name of child configuration object
+     * @param createChild true if child should be created if it does not exist
+     * @return a child Configuration element with specified name.
+     */
+    public Configuration getChild( final String name,
+                                   final boolean createChild )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        final Configuration[] children = getChildren();
+        for( int i = 0; i < children.length; i++ )
+        {
+            if( name.equals( children[ i ].getName() ) )
+            {
+                return children[ i ];
+            }
+        }
+        if( createChild )
+        {
+            return createAutogenChild( name );
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Return text value of element.
+     * Use specified default if no value in either layer.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public String getValue( final String defaultValue )
+    {
+        final String value = m_override.getValue( null );
+        if( null != value )
+        {
+            return value;
+        }
+        else if( 0 == ConfigurationUtil.toIndexed( m_override ).getChildCount() )
+        {
+            return m_base.getValue( defaultValue );
+        }
+        else
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Return an array of all the attribute names.
+     * The array is shared and should not be modified.
+     *
+     * @return an array of all the attribute names.
+     */
+    public String[] getAttributeNames()
+    {
+        String[] names = m_attributeNames;
+        if( null == names )
+        {
+            names = mergeAttributeNames();
+            m_attributeNames = names;
+        }
+        return names;
+    }
+
+    /**
+     * Return attribute value with specified name.
+     * If no attribute with specified name in either layer
+     * then return default value.
+     *
+     * @param name the attribute name
+     * @param defaultValue the default value
+     * @return the attribute value
+     */
+    public String getAttribute( final String name,
+                                final String defaultValue )
+    {
+        final String value = m_override.getAttribute( name, null );
+        if( null != value )
+        {
+            return value;
+        }
+        else
+        {
+            return m_base.getAttribute( name, defaultValue );
+        }
+    }
+
+    /**
+     * Overide toString to improve ability to debug implementation.
+     *
+     * @return string representation of object
+     */
+    public String toString()
+    {
+        return "[LayeredConfiguration override=" + m_override + " base=" + m_base + "]";
+    }
+
+    /**
+     * Merge the children of both layers.
+     *
+     * @return the merged children
+     */
+    private Configuration[] mergeChildren()
+    {
+        if( null != m_override.getValue( null ) )
+        {
+            return EMPTY_CONFIG_ARRAY;
+        }
+        final IndexedConfiguration override = ConfigurationUtil.toIndexed( m_override );
+        final int overrideCount = override.getChildCount();
+        final IndexedConfiguration base = ConfigurationUtil.toIndexed( m_base );
+        final int baseCount = base.getChildCount();
+        if( 0 == overrideCount && 0 == baseCount )
+        {
+            return EMPTY_CONFIG_ARRAY;
+        }
+
+        //Index the positions of override children by name so
+        //that the n-th base child with a name finds its overlay
+        final Map overrides = new HashMap();
+        for( int i = 0; i < overrideCount; i++ )
+        {
+            final String name = override.getChild( i ).getName();
+            List list = (List)overrides.get( name );
+            if( null == list )
+            {
+                list = new ArrayList();
+                overrides.put( name, list );
+            }
+            list.add( new Integer( i ) );
+        }
+
+        final Configuration[] results = new Configuration[ overrideCount + baseCount ];
+        final boolean[] matched = new boolean[ overrideCount ];
+        final Map positions = new HashMap();
+        int count = 0;
+        for( int i = 0; i < baseCount; i++ )
+        {
+            final Configuration child = base.getChild( i );
+            final String name = child.getName();
+            final List list = (List)overrides.get( name );
+            final Integer position = (Integer)positions.get( name );
+            int index = 0;
+            if( null != position )
+            {
+                index = position.intValue();
+            }
+            positions.put( name, new Integer( index + 1 ) );
+
+            if( null != list && index < list.size() )
+            {
+                final int overlay = ( (Integer)list.get( index ) ).intValue();
+                results[ count++ ] =
+                    new LayeredConfiguration( override.getChild( overlay ), child );
+                matched[ overlay ] = true;
+            }
+            else
+            {
+                results[ count++ ] = child;
+            }
+        }
+        //Overrides that were not matched overlay no base child
+        for( int i = 0; i < overrideCount; i++ )
+        {
+            if( !matched[ i ] )
+            {
+                results[ count++ ] = override.getChild( i );
+            }
+        }
+
+        final Configuration[] children = new Configuration[ count ];
+        System.arraycopy( results, 0, children, 0, count );
+        return children;
+    }
+
+    /**
+     * Merge the attribute names of both layers. The override
+     * names come first followed by base names not in override.
+     *
+     * @return the merged attribute names
+     */
+    private String[] mergeAttributeNames()
+    {
+        final String[] overrideNames = m_override.getAttributeNames();
+        final String[] baseNames = m_base.getAttributeNames();
+        if( 0 == baseNames.length )
+        {
+            return overrideNames;
+        }
+        final List names = new ArrayList( overrideNames.length + baseNames.length );
+        for( int i = 0; i < overrideNames.length; i++ )
+        {
+            names.add( overrideNames[ i ] );
+        }
+        for( int i = 0; i < baseNames.length; i++ )
+        {
+            if( null == m_override.getAttribute( baseNames[ i ], null ) )
+            {
+                names.add( baseNames[ i ] );
+            }
+        }
+        return (String[])names.toArray( new String[ names.size() ] );
+    }
+}
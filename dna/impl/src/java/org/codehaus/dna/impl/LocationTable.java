@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+/**
+ * Table holding the source location and subtree size of every
+ * element of a configuration tree in document order. It allows
+ * shared configuration content to report the location of each
+ * place it occurs without an object per element.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ * @see SharedConfiguration
+ */
+final class LocationTable
+{
+    /**
+     * Initial capacity of table.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The system id of each element (May contain nulls).
+     */
+    private String[] m_systemIds = new String[ INITIAL_CAPACITY ];
+
+    /**
+     * The line number of each element or -1 if unknown.
+     */
+    private int[] m_lineNumbers = new int[ INITIAL_CAPACITY ];
+
+    /**
+     * The column number of each element or -1 if unknown.
+     */
+    private int[] m_columnNumbers = new int[ INITIAL_CAPACITY ];
+
+    /**
+     * The number of elements in the subtree rooted at each
+     * element, including the element itself.
+     */
+    private int[] m_sizes = new int[ INITIAL_CAPACITY ];
+
+    /**
+     * The number of elements in table.
+     */
+    private int m_count;
+
+    /**
+     * Add an element to the end of table. The size of its
+     * subtree must be set once its children have been added.
+     *
+     * @param systemId the system id (May be null)
+     * @param lineNumber the line number or -1 if unknown
+     * @param columnNumber the column number or -1 if unknown
+     * @return the index of element
+     */
+    int add( final String systemId,
+             final int lineNumber,
+             final int columnNumber )
+    {
+        if( m_count == m_sizes.length )
+        {
+            resize( m_count * 2 );
+        }
+        final int index = m_count++;
+        m_systemIds[ index ] = systemId;
+        m_lineNumbers[ index ] = lineNumber;
+        m_columnNumbers[ index ] = columnNumber;
+        m_sizes[ index ] = 1;
+        return index;
+    }
+
+    /**
+     * Mark the subtree of element at index as complete, so that
+     * its size covers every element added since it.
+     *
+     * @param index the index of element
+     */
+    void complete( final int index )
+    {
+        m_sizes[ index ] = m_count - index;
+    }
+
+    /**
+     * Release any unused capacity once all elements are added.
+     */
+    void trim()
+    {
+        if( m_count != m_sizes.length )
+        {
+            resize( m_count );
+        }
+    }
+
+    /**
+     * Return the number of elements in table.
+     *
+     * @return the number of elements in table.
+     */
+    int size()
+    {
+        return m_count;
+    }
+
+    /**
+     * Return the location of element at index.
+     *
+     * @param index the index of element
+     * @return the location of element
+     */
+    String getLocation( final int index )
+    {
+        return ConfigurationUtil.formatLocation( m_systemIds[ index ],
+                                                 m_lineNumbers[ index ],
+                                                 m_columnNumbers[ index ] );
+    }
+
+    /**
+     * Return the index of the element after the subtree
+     * rooted at element with index, which is the index
+     * of the next sibling if there is one.
+     *
+     * @param index the index of element
+     * @return the index after the subtree
+     */
+    int skip( final int index )
+    {
+        return index + m_sizes[ index ];
+    }
+
+    /**
+     * Resize the arrays of table.
+     *
+     * @param capacity the new capacity
+     */
+    private void resize( final int capacity )
+    {
+        final String[] systemIds = new String[ capacity ];
+        System.arraycopy( m_systemIds, 0, systemIds, 0, m_count );
+        m_systemIds = systemIds;
+        final int[] lineNumbers = new int[ capacity ];
+        System.arraycopy( m_lineNumbers, 0, lineNumbers, 0, m_count );
+        m_lineNumbers = lineNumbers;
+        final int[] columnNumbers = new int[ capacity ];
+        System.arraycopy( m_columnNumbers, 0, columnNumbers, 0, m_count );
+        m_columnNumbers = columnNumbers;
+        final int[] sizes = new int[ capacity ];
+        System.arraycopy( m_sizes, 0, sizes, 0, m_count );
+        m_sizes = sizes;
+    }
+}
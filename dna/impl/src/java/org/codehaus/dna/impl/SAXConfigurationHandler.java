@@ -28,9 +28,14 @@ public class SAXConfigurationHandler
     extends DefaultHandler
 {
     /**
-     * Empty string used for padding out contents array.
+     * The initial size of the text buffer.
      */
-    private static final String EMPTY_STRING = "";
+    private static final int INITIAL_TEXT_SIZE = 256;
+
+    /**
+     * The initial depth of the text start offsets.
+     */
+    private static final int INITIAL_DEPTH = 16;
 
     /**
      * Constant to indicate location of
@@ -39,6 +44,22 @@ public class SAXConfigurationHandler
      */
     private static final String UNKNOWN = "";
 
+    /**
+     * Result of filtering an element that should be built in full.
+     */
+    private static final int FILTER_BUILD = 0;
+
+    /**
+     * Result of filtering an element that should be built without
+     * attributes or value as it is an ancestor of selected elements.
+     */
+    private static final int FILTER_SKELETON = 1;
+
+    /**
+     * Result of filtering an element that should be ignored.
+     */
+    private static final int FILTER_SKIP = 2;
+
     /**
      * Stack of configuration elements currently being
      * constructed.
@@ -46,10 +67,23 @@ public class SAXConfigurationHandler
     private final List m_elements = new ArrayList();
 
     /**
-     * Stakc of content text for elements currently being
-     * constructed.
+     * Buffer holding the content text of the elements currently
+     * being constructed. The text of each element follows the text
+     * of its parent and is discarded when the element ends, so the
+     * buffer is reused for every element of every parse.
+     */
+    private char[] m_text = new char[ INITIAL_TEXT_SIZE ];
+
+    /**
+     * The number of characters in text buffer.
      */
-    private final ArrayList m_values = new ArrayList();
+    private int m_textLength;
+
+    /**
+     * The offset in text buffer at which the text of the
+     * element at each depth starts.
+     */
+    private int[] m_textStarts = new int[ INITIAL_DEPTH ];
 
     /**
      * The configuration element created.
@@ -61,6 +95,75 @@ public class SAXConfigurationHandler
      */
     private Locator m_locator;
 
+    /**
+     * The pool used to deduplicate names, attribute keys
+     * and system ids.
+     */
+    private final StringPool m_pool;
+
+    /**
+     * The configuration used to derive the path of the root element
+     * when handler builds a fragment of a document (May be null).
+     */
+    private Configuration m_rootParent;
+
+    /**
+     * The queries selecting the subtrees to build or null
+     * if the whole document is built.
+     */
+    private ConfigurationQuery[] m_filters;
+
+    /**
+     * The number of open elements that matched the leading
+     * steps of each filter.
+     */
+    private int[] m_matchedDepths;
+
+    /**
+     * The position counters of each step of each filter.
+     */
+    private int[][][] m_positions;
+
+    /**
+     * Flags recording which filters matched current element.
+     */
+    private boolean[] m_filterMatches;
+
+    /**
+     * The depth within an element being ignored or 0 if none.
+     */
+    private int m_skipDepth;
+
+    /**
+     * The depth within a selected element or 0 if none.
+     */
+    private int m_selectedDepth;
+
+    /**
+     * Create a handler with its own string pool. The pool
+     * is retained when the handler is reused via {@link #clear()}.
+     */
+    public SAXConfigurationHandler()
+    {
+        this( new StringPool() );
+    }
+
+    /**
+     * Create a handler that deduplicates strings using
+     * the specified pool. The pool may be shared by several
+     * handlers to share strings across parses.
+     *
+     * @param pool the string pool
+     */
+    public SAXConfigurationHandler( final StringPool pool )
+    {
+        if( null == pool )
+        {
+            throw new NullPointerException( "pool" );
+        }
+        m_pool = pool;
+    }
+
     /**
      * Let the XML parser specify locator for when
      * events arrive at handler.
@@ -78,8 +181,91 @@ public class SAXConfigurationHandler
     public void clear()
     {
         m_elements.clear();
-        m_values.clear();
+        m_textLength = 0;
+        m_configuration = null;
         m_locator = null;
+        m_rootParent = null;
+        if( null != m_filters )
+        {
+            resetFilters();
+        }
+    }
+
+    /**
+     * Specify the paths of the subtrees that should be built. Each
+     * path is a {@link ConfigurationQuery} expression whose first step
+     * is matched against the root element and may be preceded by
+     * "/", such as <code>/app/modules/module[@name='x']</code>.
+     *
+     * <p>Elements that match a path are built with all their
+     * children. Their ancestors are built with names and locations
+     * only so that the selected elements keep their paths. All other
+     * elements are ignored without creating objects or buffering
+     * their text. The root element is always built. The filter is
+     * retained when the handler is reused via {@link #clear()}.</p>
+     *
+     * @param paths the paths to build or null to build every element
+     * @throws IllegalArgumentException if a path is malformed
+     */
+    public void setFilter( final String[] paths )
+    {
+        if( null == paths )
+        {
+            m_filters = null;
+            m_matchedDepths = null;
+            m_positions = null;
+            m_filterMatches = null;
+            return;
+        }
+        final ConfigurationQuery[] filters = new ConfigurationQuery[ paths.length ];
+        final int[][][] positions = new int[ paths.length ][][];
+        for( int i = 0; i < paths.length; i++ )
+        {
+            String path = paths[ i ];
+            if( null == path )
+            {
+                throw new NullPointerException( "paths[" + i + "]" );
+            }
+            if( path.startsWith( ConfigurationUtil.PATH_SEPARATOR ) )
+            {
+                path = path.substring( 1 );
+            }
+            filters[ i ] = ConfigurationQuery.compile( path );
+            final int stepCount = filters[ i ].getStepCount();
+            positions[ i ] = new int[ stepCount ][];
+            for( int j = 0; j < stepCount; j++ )
+            {
+                positions[ i ][ j ] = filters[ i ].createPositions( j );
+            }
+        }
+        m_filters = filters;
+        m_matchedDepths = new int[ filters.length ];
+        m_positions = positions;
+        m_filterMatches = new boolean[ filters.length ];
+        resetFilters();
+    }
+
+    /**
+     * Specify the configuration used to derive the path of the root
+     * element. This is used when the handler only receives the events
+     * for a fragment of a document so that paths are relative to the
+     * whole document. The configuration is not modified.
+     *
+     * @param parent the parent of root element (May be null)
+     */
+    void setRootParent( final Configuration parent )
+    {
+        m_rootParent = parent;
+    }
+
+    /**
+     * Return the string pool used by handler.
+     *
+     * @return the string pool used by handler.
+     */
+    public StringPool getStringPool()
+    {
+        return m_pool;
     }
 
     /**
@@ -106,35 +292,78 @@ public class SAXConfigurationHandler
                               final String qName,
                               final Attributes attributes )
         throws SAXException
+    {
+        if( null != m_filters )
+        {
+            final int action = filterElement( qName, attributes );
+            if( FILTER_SKIP == action )
+            {
+                return;
+            }
+            else if( FILTER_SKELETON == action )
+            {
+                pushConfiguration( qName );
+                return;
+            }
+        }
+        final DefaultConfiguration configuration = pushConfiguration( qName );
+        final int length = attributes.getLength();
+        for( int i = 0; i < length; i++ )
+        {
+            final String key = m_pool.intern( attributes.getQName( i ) );
+            final String value = attributes.getValue( i );
+            final String newValue =
+                processAttributeText( configuration, key, value );
+            configuration.setAttribute( key, newValue );
+        }
+    }
+
+    /**
+     * Create the configuration for an element, add it to its
+     * parent and push it onto the stack.
+     *
+     * @param qName the qualified name (used for name of configuration)
+     * @return the configuration
+     */
+    private DefaultConfiguration pushConfiguration( final String qName )
     {
         DefaultConfiguration parent = null;
-        String path = ConfigurationUtil.ROOT_PATH;
+        Configuration pathParent = m_rootParent;
         if( m_elements.size() > 0 )
         {
             final int index = m_elements.size() - 1;
             parent =
                 (DefaultConfiguration)m_elements.get( index );
-            path = ConfigurationUtil.
-                generatePathName( parent.getPath(),
-                                  parent.getName() );
+            pathParent = parent;
+        }
+        final String name = m_pool.intern( qName );
+        final DefaultConfiguration configuration;
+        if( null == m_locator )
+        {
+            configuration = new DefaultConfiguration( name, pathParent, null, -1, -1 );
+        }
+        else
+        {
+            final String systemId = m_pool.intern( m_locator.getSystemId() );
+            configuration =
+                new DefaultConfiguration( name, pathParent, systemId,
+                                          m_locator.getLineNumber(),
+                                          m_locator.getColumnNumber() );
         }
-        final DefaultConfiguration configuration =
-            new DefaultConfiguration( qName, getLocationDescription(), path );
         if( null != parent )
         {
             parent.addChild( configuration );
         }
-        final int length = attributes.getLength();
-        for( int i = 0; i < length; i++ )
+        final int depth = m_elements.size();
+        if( depth == m_textStarts.length )
         {
-            final String key = attributes.getQName( i );
-            final String value = attributes.getValue( i );
-            final String newValue =
-                processAttributeText( configuration, key, value );
-            configuration.setAttribute( key, newValue );
+            final int[] textStarts = new int[ depth * 2 ];
+            System.arraycopy( m_textStarts, 0, textStarts, 0, depth );
+            m_textStarts = textStarts;
         }
-
+        m_textStarts[ depth ] = m_textLength;
         m_elements.add( configuration );
+        return configuration;
     }
 
     /**
@@ -154,27 +383,45 @@ public class SAXConfigurationHandler
                             final String qName )
         throws SAXException
     {
+        if( null != m_filters )
+        {
+            if( 0 != m_skipDepth )
+            {
+                m_skipDepth--;
+                return;
+            }
+            else if( 0 != m_selectedDepth )
+            {
+                m_selectedDepth--;
+            }
+            else
+            {
+                endSkeletonElement();
+                return;
+            }
+        }
         final int index = m_elements.size() - 1;
         final DefaultConfiguration configuration =
             (DefaultConfiguration)m_elements.remove( index );
-        if( index < m_values.size() )
+        final int start = m_textStarts[ index ];
+        final int length = m_textLength - start;
+        m_textLength = start;
+        if( !isWhitespace( m_text, start, length ) )
         {
-            final String value = m_values.remove( index ).toString();
-            if( 0 != value.trim().length() )
+            if( 0 == configuration.getChildCount() )
             {
-                if( 0 == configuration.getChildren().length )
-                {
-                    final String newValue =
-                        processValueText( configuration, value );
-                    configuration.setValue( newValue );
-                }
-                else
-                {
-                    final String message =
-                        "Mixed content (" + value.trim() + ") " +
-                        "not supported @ " + getLocationDescription();
-                    throw new SAXException( message );
-                }
+                final String value = new String( m_text, start, length );
+                final String newValue =
+                    processValueText( configuration, value );
+                configuration.setValue( newValue );
+            }
+            else
+            {
+                final String value = new String( m_text, start, length );
+                final String message =
+                    "Mixed content (" + value.trim() + ") " +
+                    "not supported @ " + getLocationDescription();
+                throw new SAXException( message );
             }
         }
         m_configuration = configuration;
@@ -192,26 +439,186 @@ public class SAXConfigurationHandler
                             final int start,
                             final int length )
         throws SAXException
+    {
+        if( null != m_filters && 0 == m_selectedDepth )
+        {
+            return;
+        }
+        final int required = m_textLength + length;
+        if( required > m_text.length )
+        {
+            final char[] text = new char[ Math.max( required, m_text.length * 2 ) ];
+            System.arraycopy( m_text, 0, text, 0, m_textLength );
+            m_text = text;
+        }
+        System.arraycopy( ch, start, m_text, m_textLength, length );
+        m_textLength = required;
+    }
+
+    /**
+     * Return true if the characters are all whitespace, using
+     * the same definition of whitespace as {@link String#trim()}.
+     *
+     * @param text the characters
+     * @param start the index of the first character
+     * @param length the number of characters
+     * @return true if the characters are all whitespace
+     */
+    static boolean isWhitespace( final char[] text,
+                                 final int start,
+                                 final int length )
+    {
+        final int end = start + length;
+        for( int i = start; i < end; i++ )
+        {
+            if( text[ i ] > ' ' )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return true if the text is all whitespace, using the same
+     * definition of whitespace as {@link String#trim()}.
+     *
+     * @param text the text
+     * @return true if the text is all whitespace
+     */
+    static boolean isWhitespace( final StringBuffer text )
+    {
+        final int length = text.length();
+        for( int i = 0; i < length; i++ )
+        {
+            if( text.charAt( i ) > ' ' )
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decide how an element is handled when a filter is specified.
+     *
+     * @param qName the qualified name of element
+     * @param attributes the attributes of element
+     * @return one of FILTER_BUILD, FILTER_SKELETON or FILTER_SKIP
+     */
+    private int filterElement( final String qName, final Attributes attributes )
+    {
+        if( 0 != m_skipDepth )
+        {
+            m_skipDepth++;
+            return FILTER_SKIP;
+        }
+        else if( 0 != m_selectedDepth )
+        {
+            m_selectedDepth++;
+            return FILTER_BUILD;
+        }
+
+        final int depth = m_elements.size();
+        boolean selected = false;
+        boolean ancestor = false;
+        for( int i = 0; i < m_filters.length; i++ )
+        {
+            final ConfigurationQuery filter = m_filters[ i ];
+            final int stepCount = filter.getStepCount();
+            m_filterMatches[ i ] =
+                depth == m_matchedDepths[ i ] && depth < stepCount &&
+                filter.matches( depth, qName, attributes, m_positions[ i ][ depth ] );
+            if( m_filterMatches[ i ] )
+            {
+                if( depth == stepCount - 1 )
+                {
+                    selected = true;
+                }
+                else
+                {
+                    ancestor = true;
+                }
+            }
+        }
+
+        if( selected )
+        {
+            m_selectedDepth = 1;
+            return FILTER_BUILD;
+        }
+        else if( ancestor )
+        {
+            for( int i = 0; i < m_filters.length; i++ )
+            {
+                if( m_filterMatches[ i ] )
+                {
+                    m_matchedDepths[ i ] = depth + 1;
+                    clearPositions( m_positions[ i ][ depth + 1 ] );
+                }
+            }
+            return FILTER_SKELETON;
+        }
+        else if( 0 == depth )
+        {
+            return FILTER_SKELETON;
+        }
+        else
+        {
+            m_skipDepth = 1;
+            return FILTER_SKIP;
+        }
+    }
+
+    /**
+     * End an element built as the ancestor of selected elements.
+     */
+    private void endSkeletonElement()
     {
         final int index = m_elements.size() - 1;
-        StringBuffer sb = null;
-        if( index < m_values.size() )
+        m_configuration = (Configuration)m_elements.remove( index );
+        m_textLength = m_textStarts[ index ];
+        for( int i = 0; i < m_filters.length; i++ )
         {
-            sb = (StringBuffer)m_values.get( index );
+            if( m_matchedDepths[ i ] > index )
+            {
+                m_matchedDepths[ i ] = index;
+            }
         }
-        if( null == sb )
+    }
+
+    /**
+     * Reset the state used to evaluate filters.
+     */
+    private void resetFilters()
+    {
+        m_skipDepth = 0;
+        m_selectedDepth = 0;
+        for( int i = 0; i < m_filters.length; i++ )
         {
-            sb = new StringBuffer();
-            final int minCapacity = index + 1;
-            m_values.ensureCapacity( minCapacity );
-            final int size = m_values.size();
-            for( int i = size; i < minCapacity; i++ )
+            m_matchedDepths[ i ] = 0;
+            final int[][] positions = m_positions[ i ];
+            for( int j = 0; j < positions.length; j++ )
             {
-                m_values.add( EMPTY_STRING );
+                clearPositions( positions[ j ] );
+            }
+        }
+    }
+
+    /**
+     * Zero the position counters of a step.
+     *
+     * @param positions the position counters (May be null)
+     */
+    private static void clearPositions( final int[] positions )
+    {
+        if( null != positions )
+        {
+            for( int i = 0; i < positions.length; i++ )
+            {
+                positions[ i ] = 0;
             }
-            m_values.set( index, sb );
         }
-        sb.append( ch, start, length );
     }
 
     /**
@@ -263,25 +670,15 @@ public class SAXConfigurationHandler
      */
     protected final String getLocationDescription()
     {
-        if( null == m_locator ||
-            null == m_locator.getSystemId() )
+        if( null == m_locator )
         {
             return UNKNOWN;
         }
-        else if( -1 == m_locator.getLineNumber() )
-        {
-            return m_locator.getSystemId();
-        }
-        else if( -1 == m_locator.getColumnNumber() )
-        {
-            return m_locator.getSystemId() + ":" +
-                m_locator.getLineNumber();
-        }
         else
         {
-            return m_locator.getSystemId() + ':' +
-                m_locator.getLineNumber() + ':' +
-                m_locator.getColumnNumber();
+            return ConfigurationUtil.formatLocation( m_locator.getSystemId(),
+                                                     m_locator.getLineNumber(),
+                                                     m_locator.getColumnNumber() );
         }
     }
 
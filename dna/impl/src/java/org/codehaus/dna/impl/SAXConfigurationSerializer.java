@@ -71,21 +71,95 @@ public class SAXConfigurationSerializer
                            final ContentHandler handler )
         throws SAXException
     {
-        final AttributesImpl attributes = serializeAttributes( configuration );
+        serializeElement( configuration, handler, 0 );
+    }
 
-        final String name = configuration.getName();
-        handler.startElement( EMPTY_NAMESPACE, name, name, attributes );
+    /**
+     * Serialize the configuration as an Element to specified
+     * ContentHandler, recursing into the children until
+     * {@link ConfigurationWalker#RECURSION_LIMIT} and walking
+     * any deeper subtrees.
+     *
+     * @param configuration the Configuration
+     * @param handler the ContentHandler to write Configuration out to
+     * @param depth the depth of configuration
+     * @throws SAXException if the handler throws an exception
+     */
+    private void serializeElement( final Configuration configuration,
+                                   final ContentHandler handler,
+                                   final int depth )
+        throws SAXException
+    {
+        if( ConfigurationWalker.RECURSION_LIMIT == depth )
+        {
+            walkElement( configuration, handler );
+            return;
+        }
 
-        String value = configuration.getValue( null );
-        if( null == value )
+        startElement( configuration, handler );
+        if( null == configuration.getValue( null ) )
         {
-            final Configuration[] children = configuration.getChildren();
-            for( int i = 0; i < children.length; i++ )
+            final IndexedConfiguration indexed = ConfigurationUtil.toIndexed( configuration );
+            final int count = indexed.getChildCount();
+            for( int i = 0; i < count; i++ )
             {
-                serializeElement( children[ i ], handler );
+                serializeElement( indexed.getChild( i ), handler, depth + 1 );
             }
         }
-        else
+        endElement( configuration, handler );
+    }
+
+    /**
+     * Serialize the configuration as an Element to specified
+     * ContentHandler by walking the tree, so that configurations
+     * of any depth can be serialized.
+     *
+     * @param configuration the Configuration
+     * @param handler the ContentHandler to write Configuration out to
+     * @throws SAXException if the handler throws an exception
+     */
+    private void walkElement( final Configuration configuration,
+                              final ContentHandler handler )
+        throws SAXException
+    {
+        final ConfigurationWalker walker = new ConfigurationWalker( configuration );
+        while( walker.next() )
+        {
+            final Configuration current = walker.getConfiguration();
+            if( walker.isStartElement() )
+            {
+                startElement( current, handler );
+                if( null != current.getValue( null ) )
+                {
+                    walker.skipChildren();
+                }
+            }
+            else
+            {
+                endElement( current, handler );
+            }
+        }
+    }
+
+    /**
+     * Serialize the start of the Element for configuration
+     * and its value, if any, to specified ContentHandler.
+     *
+     * @param configuration the Configuration
+     * @param handler the ContentHandler to write Configuration out to
+     * @throws SAXException if the handler throws an exception
+     */
+    void startElement( final Configuration configuration,
+                       final ContentHandler handler )
+        throws SAXException
+    {
+        final AttributesImpl attributes = serializeAttributes( configuration );
+
+        final String name = configuration.getName();
+        handler.startElement( EMPTY_NAMESPACE, name, name, attributes );
+
+        String value = configuration.getValue( null );
+        if( null != value )
         {
             /*if ( needsEscaping( value ) )
             {
@@ -94,7 +168,21 @@ public class SAXConfigurationSerializer
             */
             handler.characters( value.toCharArray(), 0, value.length() );
         }
+    }
 
+    /**
+     * Serialize the end of the Element for configuration
+     * to specified ContentHandler.
+     *
+     * @param configuration the Configuration
+     * @param handler the ContentHandler to write Configuration out to
+     * @throws SAXException if the handler throws an exception
+     */
+    void endElement( final Configuration configuration,
+                     final ContentHandler handler )
+        throws SAXException
+    {
+        final String name = configuration.getName();
         handler.endElement( EMPTY_NAMESPACE, name, name );
     }
 
@@ -107,11 +195,12 @@ public class SAXConfigurationSerializer
     AttributesImpl serializeAttributes( final Configuration configuration )
     {
         final AttributesImpl attributes = new AttributesImpl();
-        final String[] names = configuration.getAttributeNames();
-        for( int i = 0; i < names.length; i++ )
+        final IndexedConfiguration indexed = ConfigurationUtil.toIndexed( configuration );
+        final int count = indexed.getAttributeCount();
+        for( int i = 0; i < count; i++ )
         {
-            final String name = names[ i ];
-            final String value = configuration.getAttribute( name, "" );
+            final String name = indexed.getAttributeName( i );
+            final String value = indexed.getAttribute( name, "" );
             attributes.addAttribute( EMPTY_NAMESPACE, name, name,
                                      CDATA_TYPE, value );
         }
@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Read-only Configuration that represents one occurrence of
+ * content that may be shared with other structurally identical
+ * elements. The name, value, attributes and children come from
+ * the shared content while the path and location belong to the
+ * occurrence. Locations are held in a {@link LocationTable} and
+ * the children are created in one pass on first access, after
+ * which they are retained so that successive calls return the
+ * same instances.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ * @see ConfigurationDeduplicator
+ */
+final class SharedConfiguration
+    extends AbstractConfiguration
+{
+    /**
+     * The shared content.
+     */
+    private final CompactConfiguration m_content;
+
+    /**
+     * The parent used to derive path (May be null).
+     */
+    private final SharedConfiguration m_parent;
+
+    /**
+     * The path of element or null if derived from {@link #m_parent}.
+     */
+    private final String m_path;
+
+    /**
+     * The locations of every element in the tree.
+     */
+    private final LocationTable m_locations;
+
+    /**
+     * The index of element in {@link #m_locations}.
+     */
+    private final int m_index;
+
+    /**
+     * The children, created on first access (May be null).
+     */
+    private volatile Configuration[] m_children;
+
+    /**
+     * Create an occurrence of shared content.
+     *
+     * @param content the shared content
+     * @param parent the parent used to derive path if path is null
+     * @param path the path of element (May be null)
+     * @param locations the locations of every element in the tree
+     * @param index the index of element in locations
+     */
+    SharedConfiguration( final CompactConfiguration content,
+                         final SharedConfiguration parent,
+                         final String path,
+                         final LocationTable locations,
+                         final int index )
+    {
+        m_content = content;
+        m_parent = parent;
+        m_path = path;
+        m_locations = locations;
+        m_index = index;
+    }
+
+    /**
+     * Return the name of the configuration element.
+     *
+     * @return the name of the configuration element.
+     */
+    public String getName()
+    {
+        return m_content.getName();
+    }
+
+    /**
+     * Return the path to the configuration element.
+     *
+     * @return the path to the configuration element.
+     */
+    public String getPath()
+    {
+        if( null != m_path )
+        {
+            return m_path;
+        }
+
+        //Collect the names of the ancestors rather than recursing
+        //through them so that deep trees do not exhaust the stack
+        final List names = new ArrayList();
+        SharedConfiguration ancestor = m_parent;
+        while( null == ancestor.m_path )
+        {
+            names.add( ancestor.getName() );
+            ancestor = ancestor.m_parent;
+        }
+        names.add( ancestor.getName() );
+        return ConfigurationUtil.generatePathName( ancestor.m_path, names );
+    }
+
+    /**
+     * Return the location of configuration element.
+     *
+     * @return the location of configuration element.
+     */
+    public String getLocation()
+    {
+        return m_locations.getLocation( m_index );
+    }
+
+    /**
+     * Return the number of child elements.
+     *
+     * @return the number of child elements.
+     */
+    public int getChildCount()
+    {
+        return m_content.getChildren().length;
+    }
+
+    /**
+     * Return the child element at specified index.
+     *
+     * @param index the index of child
+     * @return the child element
+     */
+    public Configuration getChild( final int index )
+    {
+        final Configuration[] children = getChildren();
+        if( index < 0 || index >= children.length )
+        {
+            throw new IndexOutOfBoundsException( String.valueOf( index ) );
+        }
+        return children[ index ];
+    }
+
+    /**
+     * Return an array of all the child elements.
+     * The array is shared and should not be modified.
+     *
+     * @return an array of all the child elements.
+     */
+    public Configuration[] getChildren()
+    {
+        Configuration[] children = m_children;
+        if( null == children )
+        {
+            synchronized( this )
+            {
+                children = m_children;
+                if( null == children )
+                {
+                    children = createChildren();
+                    m_children = children;
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Return an array of all the child elements with specified name.
+     *
+     * @param name the name of child configuration objects
+     * @return an array of all the child elements with specified name.
+     */
+    public Configuration[] getChildren( final String name )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        final Configuration[] children = getChildren();
+        final List results = new ArrayList();
+        for( int i = 0; i < children.length; i++ )
+        {
+            if( name.equals( children[ i ].getName() ) )
+            {
+                results.add( children[ i ] );
+            }
+        }
+        if( 0 == results.size() )
+        {
+            return EMPTY_CONFIG_ARRAY;
+        }
+        else
+        {
+            return (Configuration[])results.toArray( new Configuration[ results.size() ] );
+        }
+    }
+
+    /**
+     * Return a child Configuration element with specified name.
+     * If no such element exists and createChild is true then an
+     * element will be autocreated otherwise null will be returned.
+     *
+     * @param name the name of child configuration object
+     * @param createChild true if child should be created if it does not exist
+     * @return a child Configuration element with specified name.
+     */
+    public Configuration getChild( final String name,
+                                   final boolean createChild )
+    {
+        if( null == name )
+        {
+            throw new NullPointerException( "name" );
+        }
+        final Configuration[] children = getChildren();
+        for( int i = 0; i < children.length; i++ )
+        {
+            if( name.equals( children[ i ].getName() ) )
+            {
+                return children[ i ];
+            }
+        }
+        if( createChild )
+        {
+            return createAutogenChild( name );
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Return text value of element.
+     * Use specified default if no value in element.
+     *
+     * @param defaultValue the default value
+     * @return the value
+     */
+    public String getValue( final String defaultValue )
+    {
+        return m_content.getValue( defaultValue );
+    }
+
+    /**
+     * Return an array of all the attribute names.
+     * The array is shared and should not be modified.
+     *
+     * @return an array of all the attribute names.
+     */
+    public String[] getAttributeNames()
+    {
+        return m_content.getAttributeNames();
+    }
+
+    /**
+     * Return attribute value with specified name.
+     * If no attribute with specified name then return
+     * default value.
+     *
+     * @param name the attribute name
+     * @param defaultValue the default value
+     * @return the attribute value
+     */
+    public String getAttribute( final String name,
+                                final String defaultValue )
+    {
+        return m_content.getAttribute( name, defaultValue );
+    }
+
+    /**
+     * Return the structural hash of the shared content.
+     *
+     * @return the structural hash of the shared content.
+     */
+    public long getStructuralHash()
+    {
+        return m_content.getStructuralHash();
+    }
+
+    /**
+     * Overide toString to improve ability to debug implementation.
+     *
+     * @return string representation of object
+     */
+    public String toString()
+    {
+        return m_content.toString();
+    }
+
+    /**
+     * Create an occurrence for every child of content, locating
+     * each child by skipping the subtree of its previous sibling.
+     *
+     * @return the children
+     */
+    private Configuration[] createChildren()
+    {
+        final Configuration[] contents = m_content.getChildren();
+        if( 0 == contents.length )
+        {
+            return EMPTY_CONFIG_ARRAY;
+        }
+        final Configuration[] children = new Configuration[ contents.length ];
+        int location = m_index + 1;
+        for( int i = 0; i < contents.length; i++ )
+        {
+            children[ i ] = new SharedConfiguration( (CompactConfiguration)contents[ i ],
+                                                     this,
+                                                     null,
+                                                     m_locations,
+                                                     location );
+            location = m_locations.skip( location );
+        }
+        return children;
+    }
+}
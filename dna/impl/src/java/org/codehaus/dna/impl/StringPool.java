@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A table used to deduplicate strings that are repeated many
+ * times while building configuration trees, such as element
+ * names, attribute keys and system ids. Unlike
+ * {@link String#intern()} the table is owned by the caller and
+ * can be discarded or shared between several parses.
+ *
+ * <p>The pool is safe to share between threads and strings can
+ * be interned concurrently without locking.</p>
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+public class StringPool
+{
+    /**
+     * The strings in pool. Each key maps to itself.
+     */
+    private final ConcurrentMap m_strings = new ConcurrentHashMap();
+
+    /**
+     * Return the canonical instance of specified string.
+     * If an equal string has previously been added to the
+     * pool then that instance is returned, otherwise the
+     * specified string is added and returned.
+     *
+     * @param string the string (may be null)
+     * @return the canonical string or null if string is null
+     */
+    public String intern( final String string )
+    {
+        if( null == string )
+        {
+            return null;
+        }
+        final String existing = (String)m_strings.get( string );
+        if( null != existing )
+        {
+            return existing;
+        }
+        final String raced = (String)m_strings.putIfAbsent( string, string );
+        if( null != raced )
+        {
+            return raced;
+        }
+        else
+        {
+            return string;
+        }
+    }
+
+    /**
+     * Return the number of strings in pool.
+     *
+     * @return the number of strings in pool.
+     */
+    public int size()
+    {
+        return m_strings.size();
+    }
+
+    /**
+     * Remove all strings from pool.
+     */
+    public void clear()
+    {
+        m_strings.clear();
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The typed forms of a configuration value or attribute. Read-only
+ * configurations cache instances so that repeated typed reads do
+ * not re-parse the string. Each type is only parsed when it is
+ * first requested and the result, valid or not, is remembered.
+ * Instances may be shared between threads without synchronization
+ * as parsing the same string twice yields the same result.
+ *
+ * @version $Revision: 1.1 $ $Date: 2004-05-01 09:51:48 $
+ */
+final class TypedValue
+{
+    /**
+     * The constant that boolean values must equal to be "true".
+     */
+    private static final String TRUE_STRING = "true";
+
+    /**
+     * State of a type that has not been parsed.
+     */
+    private static final int UNPARSED = 0;
+
+    /**
+     * State of a type that was parsed successfully.
+     */
+    private static final int VALID = 1;
+
+    /**
+     * State of a type that could not be parsed.
+     */
+    private static final int INVALID = 2;
+
+    /**
+     * The value.
+     */
+    private final String m_value;
+
+    /**
+     * The state of parsing value as an integer. Written after
+     * {@link #m_integer} so that reading it publishes the result.
+     */
+    private volatile int m_integerState;
+
+    /**
+     * The integer form of value if {@link #m_integerState} is valid.
+     */
+    private int m_integer;
+
+    /**
+     * The state of parsing value as a long. Written after
+     * {@link #m_long} so that reading it publishes the result.
+     */
+    private volatile int m_longState;
+
+    /**
+     * The long form of value if {@link #m_longState} is valid.
+     */
+    private long m_long;
+
+    /**
+     * The state of parsing value as a float. Written after
+     * {@link #m_float} so that reading it publishes the result.
+     */
+    private volatile int m_floatState;
+
+    /**
+     * The float form of value if {@link #m_floatState} is valid.
+     */
+    private float m_float;
+
+    /**
+     * Create the typed forms of specified value.
+     *
+     * @param value the value
+     */
+    TypedValue( final String value )
+    {
+        if( null == value )
+        {
+            throw new NullPointerException( "value" );
+        }
+        m_value = value;
+    }
+
+    /**
+     * Return the value as a boolean.
+     *
+     * @return the value as a boolean
+     */
+    boolean toBoolean()
+    {
+        return m_value.equals( TRUE_STRING );
+    }
+
+    /**
+     * Return true if value is a valid integer.
+     *
+     * @return true if value is a valid integer
+     */
+    boolean isInteger()
+    {
+        int state = m_integerState;
+        if( UNPARSED == state )
+        {
+            try
+            {
+                m_integer = Integer.parseInt( m_value );
+                state = VALID;
+            }
+            catch( final NumberFormatException nfe )
+            {
+                state = INVALID;
+            }
+            m_integerState = state;
+        }
+        return VALID == state;
+    }
+
+    /**
+     * Return the value as an integer or the default
+     * if value is not a valid integer.
+     *
+     * @param defaultValue the default value
+     * @return the value as an integer
+     */
+    int toInteger( final int defaultValue )
+    {
+        if( isInteger() )
+        {
+            return m_integer;
+        }
+        else
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Return true if value is a valid long.
+     *
+     * @return true if value is a valid long
+     */
+    boolean isLong()
+    {
+        int state = m_longState;
+        if( UNPARSED == state )
+        {
+            try
+            {
+                m_long = Long.parseLong( m_value );
+                state = VALID;
+            }
+            catch( final NumberFormatException nfe )
+            {
+                state = INVALID;
+            }
+            m_longState = state;
+        }
+        return VALID == state;
+    }
+
+    /**
+     * Return the value as a long or the default
+     * if value is not a valid long.
+     *
+     * @param defaultValue the default value
+     * @return the value as a long
+     */
+    long toLong( final long defaultValue )
+    {
+        if( isLong() )
+        {
+            return m_long;
+        }
+        else
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Return true if value is a valid float.
+     *
+     * @return true if value is a valid float
+     */
+    boolean isFloat()
+    {
+        int state = m_floatState;
+        if( UNPARSED == state )
+        {
+            try
+            {
+                m_float = Float.parseFloat( m_value );
+                state = VALID;
+            }
+            catch( final NumberFormatException nfe )
+            {
+                state = INVALID;
+            }
+            m_floatState = state;
+        }
+        return VALID == state;
+    }
+
+    /**
+     * Return the value as a float or the default
+     * if value is not a valid float.
+     *
+     * @param defaultValue the default value
+     * @return the value as a float
+     */
+    float toFloat( final float defaultValue )
+    {
+        if( isFloat() )
+        {
+            return m_float;
+        }
+        else
+        {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Return the typed form of the attribute with specified name
+     * from cache, adding it if not already present. If another
+     * thread adds the attribute first then its instance is returned.
+     *
+     * @param cache the cache of typed attributes
+     * @param name the attribute name
+     * @param value the attribute value
+     * @return the typed value
+     */
+    static TypedValue addToCache( final ConcurrentMap cache,
+                                  final String name,
+                                  final String value )
+    {
+        final TypedValue typed = new TypedValue( value );
+        final TypedValue existing = (TypedValue)cache.putIfAbsent( name, typed );
+        if( null != existing )
+        {
+            return existing;
+        }
+        else
+        {
+            return typed;
+        }
+    }
+}
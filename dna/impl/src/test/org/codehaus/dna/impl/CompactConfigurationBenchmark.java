@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Compares the memory retained by a read-only tree of
+ * DefaultConfiguration objects with the same tree converted by
+ * {@link ConfigurationUtil#toCompactConfiguration(Configuration)}.
+ * Run via main method; not part of the unit tests.
+ */
+public class CompactConfigurationBenchmark
+{
+    private static final int COUNT = 20000;
+
+    public static void main( final String[] args )
+        throws Exception
+    {
+        for( int i = 0; i < 3; i++ )
+        {
+            System.out.println( "Round " + ( i + 1 ) + " (" + COUNT + " entries)" );
+
+            long before = usedMemory();
+            Configuration configuration = createConfiguration();
+            final long defaultSize = usedMemory() - before;
+            System.out.println( "  DefaultConfiguration retains " +
+                                defaultSize / COUNT + " bytes/entry" );
+            configuration = null;
+
+            before = usedMemory();
+            configuration = ConfigurationUtil.toCompactConfiguration( createConfiguration() );
+            final long compactSize = usedMemory() - before;
+            System.out.println( "  CompactConfiguration retains " +
+                                compactSize / COUNT + " bytes/entry" );
+            System.out.println( "  " + configuration.getChildren().length + " entries" );
+        }
+    }
+
+    private static DefaultConfiguration createConfiguration()
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "root", "file.xml:1", "" );
+        for( int i = 0; i < COUNT; i++ )
+        {
+            final DefaultConfiguration child =
+                new DefaultConfiguration( "entry", "file.xml:" + ( i + 2 ), "root" );
+            child.setAttribute( "name", "entry" + i );
+            child.setAttribute( "type", "string" );
+            child.setValue( String.valueOf( i ) );
+            configuration.addChild( child );
+        }
+        configuration.makeReadOnly();
+        return configuration;
+    }
+
+    private static long usedMemory()
+        throws InterruptedException
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        for( int i = 0; i < 4; i++ )
+        {
+            System.gc();
+            Thread.sleep( 10 );
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
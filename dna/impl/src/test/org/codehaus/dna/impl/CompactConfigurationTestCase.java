@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+
+public class CompactConfigurationTestCase
+    extends TestCase
+{
+    public void testConvertBasicConfiguration()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        final Configuration compact =
+            ConfigurationUtil.toCompactConfiguration( configuration );
+        assertTrue( "compact instanceof CompactConfiguration",
+                    compact instanceof CompactConfiguration );
+        assertEquals( "name", "myElement", compact.getName() );
+        assertEquals( "location", "file.xml:20", compact.getLocation() );
+        assertEquals( "path", "", compact.getPath() );
+        assertEquals( "getAttributeNames().length", 0, compact.getAttributeNames().length );
+        assertEquals( "getChildren().length", 0, compact.getChildren().length );
+        assertEquals( "getValue( null )", null, compact.getValue( null ) );
+    }
+
+    public void testConvertCompactConfigurationReturnsSameInstance()
+        throws Exception
+    {
+        final Configuration compact =
+            ConfigurationUtil.toCompactConfiguration( new DefaultConfiguration( "x", "", "" ) );
+        assertSame( compact, ConfigurationUtil.toCompactConfiguration( compact ) );
+    }
+
+    public void testConvertNullConfiguration()
+        throws Exception
+    {
+        try
+        {
+            ConfigurationUtil.toCompactConfiguration( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "configuration", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to toCompactConfiguration." );
+    }
+
+    public void testConvertedConfigurationIsEqual()
+        throws Exception
+    {
+        final DefaultConfiguration configuration = createConfiguration( 5 );
+        final Configuration compact =
+            ConfigurationUtil.toCompactConfiguration( configuration );
+        assertTrue( "equals", ConfigurationUtil.equals( configuration, compact ) );
+        assertTrue( "equals", ConfigurationUtil.equals( compact, configuration ) );
+    }
+
+    public void testAttributes()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        configuration.setAttribute( "zed", "1" );
+        configuration.setAttribute( "alpha", "true" );
+        configuration.setAttribute( "mid", "2.5" );
+        final Configuration compact =
+            ConfigurationUtil.toCompactConfiguration( configuration );
+
+        final String[] names = compact.getAttributeNames();
+        assertEquals( "names.length", 3, names.length );
+        assertEquals( "names[ 0 ]", "alpha", names[ 0 ] );
+        assertEquals( "names[ 1 ]", "mid", names[ 1 ] );
+        assertEquals( "names[ 2 ]", "zed", names[ 2 ] );
+        assertSame( "getAttributeNames() cached", names, compact.getAttributeNames() );
+
+        assertEquals( "zed", "1", compact.getAttribute( "zed" ) );
+        assertEquals( "zed", 1, compact.getAttributeAsInteger( "zed" ) );
+        assertEquals( "zed", 1L, compact.getAttributeAsLong( "zed" ) );
+        assertEquals( "alpha", true, compact.getAttributeAsBoolean( "alpha" ) );
+        assertEquals( "mid", 2.5F, compact.getAttributeAsFloat( "mid" ), 0.0F );
+        assertEquals( "missing", "x", compact.getAttribute( "missing", "x" ) );
+        assertEquals( "mid as integer", 7, compact.getAttributeAsInteger( "mid", 7 ) );
+    }
+
+    public void testGetMissingAttribute()
+        throws Exception
+    {
+        final Configuration compact =
+            ConfigurationUtil.toCompactConfiguration(
+                new DefaultConfiguration( "myElement", "file.xml:20", "" ) );
+        try
+        {
+            compact.getAttribute( "noExist" );
+        }
+        catch( final ConfigurationException ce )
+        {
+            assertEquals( "ce.getLocation()", "file.xml:20", ce.getLocation() );
+            return;
+        }
+        fail( "Expected to fail getting missing attribute" );
+    }
+
+    public void testGetMalformedValueAsInteger()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        configuration.setValue( "blah" );
+        final Configuration compact =
+            ConfigurationUtil.toCompactConfiguration( configuration );
+        assertEquals( "getValueAsInteger( 3 )", 3, compact.getValueAsInteger( 3 ) );
+        try
+        {
+            compact.getValueAsInteger();
+        }
+        catch( final ConfigurationException ce )
+        {
+            return;
+        }
+        fail( "Expected to fail getting malformed value as integer" );
+    }
+
+    public void testChildren()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        final DefaultConfiguration child1 =
+            new DefaultConfiguration( "a", "file.xml:21", "myElement" );
+        final DefaultConfiguration child2 =
+            new DefaultConfiguration( "b", "file.xml:22", "myElement" );
+        final DefaultConfiguration child3 =
+            new DefaultConfiguration( "a", "file.xml:23", "myElement" );
+        child2.setValue( "42" );
+        configuration.addChild( child1 );
+        configuration.addChild( child2 );
+        configuration.addChild( child3 );
+        final Configuration compact =
+            ConfigurationUtil.toCompactConfiguration( configuration );
+
+        final Configuration[] children = compact.getChildren();
+        assertEquals( "children.length", 3, children.length );
+        assertSame( "getChildren() cached", children, compact.getChildren() );
+        assertEquals( "children[ 2 ].location", "file.xml:23", children[ 2 ].getLocation() );
+        assertEquals( "children[ 2 ].path", "myElement", children[ 2 ].getPath() );
+
+        final Configuration[] as = compact.getChildren( "a" );
+        assertEquals( "as.length", 2, as.length );
+        assertSame( "as[ 0 ]", children[ 0 ], as[ 0 ] );
+        assertSame( "as[ 1 ]", children[ 2 ], as[ 1 ] );
+        assertEquals( "getChildren( 'x' ).length", 0, compact.getChildren( "x" ).length );
+
+        assertEquals( "b", 42, compact.getChild( "b" ).getValueAsInteger() );
+        assertEquals( "getChild( 'x', false )", null, compact.getChild( "x", false ) );
+        final Configuration created = compact.getChild( "x" );
+        assertEquals( "created.getName()", "x", created.getName() );
+        assertEquals( "created.getLocation()", "file.xml:20<autogen>", created.getLocation() );
+        assertEquals( "created.getPath()", "/myElement", created.getPath() );
+    }
+
+    public void testIndexedAccess()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        configuration.setAttribute( "zed", "1" );
+        configuration.setAttribute( "alpha", "2" );
+        configuration.addChild( new DefaultConfiguration( "a", "file.xml:21", "myElement" ) );
+        configuration.addChild( new DefaultConfiguration( "b", "file.xml:22", "myElement" ) );
+        final CompactConfiguration compact =
+            (CompactConfiguration)ConfigurationUtil.toCompactConfiguration( configuration );
+
+        assertEquals( "getAttributeCount()", 2, compact.getAttributeCount() );
+        assertEquals( "getAttributeName( 0 )", "alpha", compact.getAttributeName( 0 ) );
+        assertEquals( "getAttributeName( 1 )", "zed", compact.getAttributeName( 1 ) );
+        assertEquals( "getChildCount()", 2, compact.getChildCount() );
+        assertEquals( "getChild( 0 ).getName()", "a", compact.getChild( 0 ).getName() );
+        assertEquals( "getChild( 1 ).getName()", "b", compact.getChild( 1 ).getName() );
+
+        final int[] count = new int[ 1 ];
+        final boolean completed = compact.forEachChild( new ConfigurationVisitor()
+        {
+            public boolean visit( final Configuration child )
+            {
+                count[ 0 ]++;
+                return true;
+            }
+        } );
+        assertEquals( "completed", true, completed );
+        assertEquals( "count", 2, count[ 0 ] );
+    }
+
+    public void testStructuralHash()
+        throws Exception
+    {
+        final DefaultConfiguration configuration = createConfiguration( 3 );
+        final CompactConfiguration compact =
+            (CompactConfiguration)ConfigurationUtil.toCompactConfiguration( configuration );
+        assertEquals( "getStructuralHash()",
+                      configuration.getStructuralHash(), compact.getStructuralHash() );
+    }
+
+    public void testConvertRetainsLazyPathAndLocation()
+        throws Exception
+    {
+        final DefaultConfiguration root =
+            new DefaultConfiguration( "root", null, "file.xml", 1, 2 );
+        final DefaultConfiguration child =
+            new DefaultConfiguration( "child", root, "file.xml", 3, 4 );
+        final DefaultConfiguration grandChild =
+            new DefaultConfiguration( "grandChild", child, "file.xml", 5, 6 );
+        root.addChild( child );
+        child.addChild( grandChild );
+
+        final Configuration compact = ConfigurationUtil.toCompactConfiguration( child );
+        assertEquals( "compact.path", "root", compact.getPath() );
+        assertEquals( "compact.location", "file.xml:3:4", compact.getLocation() );
+        final Configuration compactChild = compact.getChildren()[ 0 ];
+        assertEquals( "compactChild.path", "root/child", compactChild.getPath() );
+        assertEquals( "compactChild.location", "file.xml:5:6", compactChild.getLocation() );
+    }
+
+    public void testToString()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        configuration.setAttribute( "key", "value" );
+        final Configuration compact =
+            ConfigurationUtil.toCompactConfiguration( configuration );
+        assertEquals( "[Configuration name='myElement' attributes={key=value}]",
+                      compact.toString() );
+    }
+
+    private static DefaultConfiguration createConfiguration( final int count )
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "root", "file.xml:1", "" );
+        for( int i = 0; i < count; i++ )
+        {
+            final DefaultConfiguration child =
+                new DefaultConfiguration( "entry", "file.xml:" + ( i + 2 ), "root" );
+            child.setAttribute( "name", "entry" + i );
+            child.setAttribute( "type", "string" );
+            child.setValue( String.valueOf( i ) );
+            configuration.addChild( child );
+        }
+        configuration.makeReadOnly();
+        return configuration;
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+import org.xml.sax.InputSource;
+
+public class ConfigurationBinderTestCase
+    extends TestCase
+{
+    private static final String XML =
+        "<server name=\"main\" secure=\"true\">" +
+        "<port>8080</port>" +
+        "<max-threads>16</max-threads>" +
+        "<load-factor>0.5</load-factor>" +
+        "<address host=\"localhost\"/>" +
+        "<extra><item/></extra>" +
+        "</server>";
+
+    public void testNullTypeInBind()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationBinder().bind( null, build( XML ) );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "type", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null type." );
+    }
+
+    public void testNullConfigurationInBind()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationBinder().bind( MockSettings.class, null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "configuration", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null configuration." );
+    }
+
+    public void testBindInterface()
+        throws Exception
+    {
+        final Configuration configuration = build( XML );
+        final MockSettings settings =
+            (MockSettings)new ConfigurationBinder().bind( MockSettings.class, configuration );
+        assertEquals( "name", "main", settings.getName() );
+        assertEquals( "port", 8080, settings.getPort() );
+        assertEquals( "timeout", 30L, settings.getTimeout( 30L ) );
+        assertEquals( "secure", true, settings.isSecure( false ) );
+        assertEquals( "loadFactor", 0.5f, settings.loadFactor( 1.0f ), 0.0f );
+        assertEquals( "maxThreads", 16, settings.getMaxThreads( 4 ) );
+        assertSame( "extra", configuration.getChild( "extra" ), settings.getExtra( null ) );
+        assertEquals( "address.host", "localhost", settings.getAddress().getHost() );
+        assertEquals( "address.port", 80, settings.getAddress().getPort( 80 ) );
+    }
+
+    public void testInterfaceObjectMethods()
+        throws Exception
+    {
+        final ConfigurationBinder binder = new ConfigurationBinder();
+        final Object settings = binder.bind( MockSettings.class, build( XML ) );
+        final Object other = binder.bind( MockSettings.class, build( XML ) );
+        assertEquals( "equals self", settings, settings );
+        assertEquals( "equals other", false, settings.equals( other ) );
+        assertEquals( "hashCode", System.identityHashCode( settings ), settings.hashCode() );
+        assertTrue( "toString", settings.toString().startsWith( MockSettings.class.getName() ) );
+    }
+
+    public void testMissingRequiredProperty()
+        throws Exception
+    {
+        try
+        {
+            final String xml = "<server name=\"a\"><address host=\"h\"/></server>";
+            new ConfigurationBinder().bind( MockSettings.class, build( xml ) );
+        }
+        catch( final ConfigurationException ce )
+        {
+            assertEquals( "message",
+                          "Missing required attribute or element named port",
+                          ce.getMessage() );
+            return;
+        }
+        fail( "Expected configuration exception as port is missing" );
+    }
+
+    public void testMissingRequiredNestedProperty()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationBinder().bind( MockSettings.class,
+                                            build( "<server name=\"a\" port=\"1\"/>" ) );
+        }
+        catch( final ConfigurationException ce )
+        {
+            assertEquals( "message",
+                          "Missing required attribute or element named address",
+                          ce.getMessage() );
+            return;
+        }
+        fail( "Expected configuration exception as address is missing" );
+    }
+
+    public void testInvalidValue()
+        throws Exception
+    {
+        try
+        {
+            final String xml = "<server name=\"a\" port=\"x\"><address host=\"h\"/></server>";
+            new ConfigurationBinder().bind( MockSettings.class, build( xml ) );
+        }
+        catch( final ConfigurationException ce )
+        {
+            return;
+        }
+        fail( "Expected configuration exception as port is not an integer" );
+    }
+
+    public void testBindClass()
+        throws Exception
+    {
+        final MockSettingsBean bean =
+            (MockSettingsBean)new ConfigurationBinder().bind( MockSettingsBean.class,
+                                                              build( XML ) );
+        assertEquals( "name", "main", bean.getName() );
+        assertEquals( "maxThreads", 16, bean.getMaxThreads() );
+        assertEquals( "secure", true, bean.isSecure() );
+        assertEquals( "address.host", "localhost", bean.getAddress().getHost() );
+    }
+
+    public void testBindClassKeepsInitialValues()
+        throws Exception
+    {
+        final MockSettingsBean bean =
+            (MockSettingsBean)new ConfigurationBinder().bind( MockSettingsBean.class,
+                                                              build( "<server/>" ) );
+        assertNull( "name", bean.getName() );
+        assertEquals( "maxThreads", 4, bean.getMaxThreads() );
+        assertEquals( "secure", false, bean.isSecure() );
+        assertNull( "address", bean.getAddress() );
+    }
+
+    public void testPropertiesCached()
+        throws Exception
+    {
+        final ConfigurationBinder binder = new ConfigurationBinder();
+        final ConfigurationProperty[] properties = binder.getProperties( MockSettings.class );
+        assertEquals( "properties.length", 8, properties.length );
+        assertSame( "cached", properties, binder.getProperties( MockSettings.class ) );
+        assertEquals( "fields", 4, binder.getProperties( MockSettingsBean.class ).length );
+    }
+
+    public void testUnsupportedAccessor()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationBinder().bind( Runnable.class, build( XML ) );
+        }
+        catch( final IllegalArgumentException iae )
+        {
+            return;
+        }
+        fail( "Expected illegal argument exception as run() returns void" );
+    }
+
+    public void testClassWithoutDefaultConstructor()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationBinder().bind( Integer.class, build( XML ) );
+        }
+        catch( final IllegalArgumentException iae )
+        {
+            return;
+        }
+        fail( "Expected illegal argument exception as Integer has no default constructor" );
+    }
+
+    public void testToPropertyName()
+        throws Exception
+    {
+        assertEquals( "port", ConfigurationBinder.toPropertyName( "Port" ) );
+        assertEquals( "max-threads", ConfigurationBinder.toPropertyName( "MaxThreads" ) );
+        assertEquals( "max-threads", ConfigurationBinder.toPropertyName( "maxThreads" ) );
+        assertEquals( "url-path", ConfigurationBinder.toPropertyName( "URLPath" ) );
+        assertEquals( "base-url", ConfigurationBinder.toPropertyName( "baseURL" ) );
+    }
+
+    private static Configuration build( final String data )
+        throws Exception
+    {
+        return ConfigurationUtil.buildFromXML( new InputSource( new StringReader( data ) ) );
+    }
+}
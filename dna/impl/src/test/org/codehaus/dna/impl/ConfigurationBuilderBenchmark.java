@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.StringReader;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.InputSource;
+
+/**
+ * Compares the per-document cost of building small documents with
+ * a new factory, parser and handler for every document against a
+ * {@link ConfigurationBuilder} that reuses them.
+ * Run via main method; not part of the unit tests.
+ */
+public class ConfigurationBuilderBenchmark
+{
+    private static final int DOCUMENTS = 20000;
+
+    private static final String DATA =
+        "<component name=\"pool\" class=\"org.example.Pool\">\n" +
+        "  <size min=\"1\" max=\"20\"/>\n" +
+        "  <timeout>3000</timeout>\n" +
+        "</component>";
+
+    public static void main( final String[] args )
+        throws Exception
+    {
+        final InputSource[] inputs = new InputSource[ DOCUMENTS ];
+        for( int i = 0; i < 3; i++ )
+        {
+            System.out.println( "Round " + ( i + 1 ) );
+
+            long start = System.nanoTime();
+            for( int j = 0; j < DOCUMENTS; j++ )
+            {
+                final SAXParserFactory factory = SAXParserFactory.newInstance();
+                factory.setNamespaceAware( false );
+                final SAXParser parser = factory.newSAXParser();
+                final SAXConfigurationHandler handler = new SAXConfigurationHandler();
+                parser.parse( createInput(), handler );
+            }
+            report( "new factory per document", start );
+
+            start = System.nanoTime();
+            for( int j = 0; j < DOCUMENTS; j++ )
+            {
+                ConfigurationUtil.buildFromXML( createInput() );
+            }
+            report( "ConfigurationUtil.buildFromXML", start );
+
+            final ConfigurationBuilder builder = new ConfigurationBuilder();
+            start = System.nanoTime();
+            for( int j = 0; j < DOCUMENTS; j++ )
+            {
+                builder.build( createInput() );
+            }
+            report( "ConfigurationBuilder.build", start );
+
+            for( int j = 0; j < DOCUMENTS; j++ )
+            {
+                inputs[ j ] = createInput();
+            }
+            start = System.nanoTime();
+            builder.build( inputs );
+            report( "ConfigurationBuilder.build( batch )", start );
+        }
+    }
+
+    private static InputSource createInput()
+    {
+        return new InputSource( new StringReader( DATA ) );
+    }
+
+    private static void report( final String label, final long start )
+    {
+        final long duration = System.nanoTime() - start;
+        System.out.println( "  " + label + ": " + ( duration / DOCUMENTS ) + " ns/document" );
+    }
+}
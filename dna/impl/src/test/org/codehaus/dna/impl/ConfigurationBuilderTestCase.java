@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+public class ConfigurationBuilderTestCase
+    extends TestCase
+{
+    public void testNullPoolInCtor()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationBuilder( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "pool", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to ctor." );
+    }
+
+    public void testNullInput()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationBuilder().build( (InputSource)null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "input", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null input." );
+    }
+
+    public void testNullInputInBatch()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationBuilder().build( new InputSource[]{createInput( "<a/>" ), null} );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "inputs[1]", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null input." );
+    }
+
+    public void testBuildReusesPool()
+        throws Exception
+    {
+        final StringPool pool = new StringPool();
+        final ConfigurationBuilder builder = new ConfigurationBuilder( pool );
+        assertSame( "getStringPool()", pool, builder.getStringPool() );
+        final Configuration first = builder.build( createInput( "<root><child/></root>" ) );
+        final Configuration second = builder.build( createInput( "<root><child/></root>" ) );
+        assertNotSame( "configurations", first, second );
+        assertSame( "name", first.getChild( "child" ).getName(),
+                    second.getChild( "child" ).getName() );
+        assertEquals( "first.getChildren().length", 1, first.getChildren().length );
+        assertEquals( "second.getChildren().length", 1, second.getChildren().length );
+    }
+
+    public void testBuildBatch()
+        throws Exception
+    {
+        final InputSource[] inputs = new InputSource[ 10 ];
+        for( int i = 0; i < inputs.length; i++ )
+        {
+            final String data =
+                "<root index=\"" + i + "\"><value>" + i + "</value></root>";
+            inputs[ i ] = createInput( data );
+        }
+        final Configuration[] configurations = new ConfigurationBuilder().build( inputs );
+        assertEquals( "configurations.length", inputs.length, configurations.length );
+        for( int i = 0; i < configurations.length; i++ )
+        {
+            assertEquals( "index", i, configurations[ i ].getAttributeAsInteger( "index" ) );
+            assertEquals( "value", i, configurations[ i ].getChild( "value" ).getValueAsInteger() );
+        }
+    }
+
+    public void testBuildAfterFailure()
+        throws Exception
+    {
+        final ConfigurationBuilder builder = new ConfigurationBuilder();
+        try
+        {
+            builder.build( createInput( "<root>text<child/></root>" ) );
+            fail( "Expected to fail due to mixed content" );
+        }
+        catch( final SAXException se )
+        {
+            //expected
+        }
+        final Configuration configuration = builder.build( createInput( "<root><child/></root>" ) );
+        assertEquals( "getChildren().length", 1, configuration.getChildren().length );
+    }
+
+    public void testReentrantBuild()
+        throws Exception
+    {
+        final Configuration[] nested = new Configuration[ 1 ];
+        final ConfigurationBuilder builder = new ConfigurationBuilder()
+        {
+            protected SAXConfigurationHandler createHandler( final StringPool pool )
+            {
+                final ConfigurationBuilder outer = this;
+                return new SAXConfigurationHandler( pool )
+                {
+                    protected String processValueText( final Configuration configuration,
+                                                       final String value )
+                    {
+                        if( "include".equals( configuration.getName() ) )
+                        {
+                            try
+                            {
+                                nested[ 0 ] = outer.build( createInput( value ) );
+                            }
+                            catch( final Exception e )
+                            {
+                                fail( e.toString() );
+                            }
+                        }
+                        return value;
+                    }
+                };
+            }
+        };
+        final Configuration configuration =
+            builder.build( createInput( "<root><include>&lt;nested/&gt;</include></root>" ) );
+        assertEquals( "include", "<nested/>", configuration.getChild( "include" ).getValue() );
+        assertEquals( "nested.getName()", "nested", nested[ 0 ].getName() );
+    }
+
+    public void testConcurrentBuilds()
+        throws Exception
+    {
+        final ConfigurationBuilder builder = new ConfigurationBuilder();
+        final Throwable[] failures = new Throwable[ 4 ];
+        final Thread[] threads = new Thread[ failures.length ];
+        for( int i = 0; i < threads.length; i++ )
+        {
+            final int index = i;
+            threads[ i ] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        for( int j = 0; j < 50; j++ )
+                        {
+                            final String data = "<root id=\"" + index + "-" + j + "\"/>";
+                            final Configuration configuration =
+                                builder.build( createInput( data ) );
+                            assertEquals( "id", index + "-" + j,
+                                          configuration.getAttribute( "id" ) );
+                        }
+                    }
+                    catch( final Throwable t )
+                    {
+                        failures[ index ] = t;
+                    }
+                }
+            };
+            threads[ i ].start();
+        }
+        for( int i = 0; i < threads.length; i++ )
+        {
+            threads[ i ].join();
+            assertNull( "failure " + failures[ i ], failures[ i ] );
+        }
+    }
+
+    private static InputSource createInput( final String data )
+    {
+        return new InputSource( new StringReader( data ) );
+    }
+}
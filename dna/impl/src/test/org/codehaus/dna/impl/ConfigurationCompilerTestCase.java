@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+import org.xml.sax.InputSource;
+
+public class ConfigurationCompilerTestCase
+    extends TestCase
+{
+    private static final int DEPTH = 50000;
+
+    private static final String DATA =
+        "<root version=\"2\">\n" +
+        "  <listener port=\"80\" secure=\"false\">\n" +
+        "    <host>www.example.com</host>\n" +
+        "  </listener>\n" +
+        "  <listener port=\"443\" secure=\"true\">\n" +
+        "    <host>secure.example.com</host>\n" +
+        "    <timeout>2.5</timeout>\n" +
+        "  </listener>\n" +
+        "  <name>caf\u00e9 \u20ac</name>\n" +
+        "</root>";
+
+    public void testCompileNullConfiguration()
+        throws Exception
+    {
+        try
+        {
+            ConfigurationCompiler.compile( null, new ByteArrayOutputStream() );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "configuration", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null configuration." );
+    }
+
+    public void testCompileNullOutput()
+        throws Exception
+    {
+        try
+        {
+            ConfigurationCompiler.compile( createConfiguration(), (ByteArrayOutputStream)null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "output", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null output." );
+    }
+
+    public void testLoadNullBuffer()
+        throws Exception
+    {
+        try
+        {
+            ConfigurationCompiler.load( (ByteBuffer)null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "buffer", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null buffer." );
+    }
+
+    public void testLoadInvalidBuffer()
+        throws Exception
+    {
+        try
+        {
+            ConfigurationCompiler.load( ByteBuffer.wrap( "<root/>".getBytes() ) );
+        }
+        catch( final ConfigurationException ce )
+        {
+            return;
+        }
+        fail( "Expected configuration exception as buffer is not compiled." );
+    }
+
+    public void testLoadTruncatedBuffer()
+        throws Exception
+    {
+        final byte[] data = compile( createConfiguration() );
+        final ByteBuffer buffer = ByteBuffer.wrap( data, 0, 40 ).slice();
+        try
+        {
+            ConfigurationCompiler.load( buffer );
+        }
+        catch( final ConfigurationException ce )
+        {
+            return;
+        }
+        fail( "Expected configuration exception as buffer is truncated." );
+    }
+
+    public void testLoadCorruptBuffer()
+        throws Exception
+    {
+        final byte[] data = compile( createConfiguration() );
+        final ByteBuffer buffer = ByteBuffer.wrap( data );
+        final int stringCount = buffer.getInt( 8 );
+        final int nodeCount = buffer.getInt( 12 );
+        final int nodeOffset = ConfigurationCompiler.HEADER_SIZE + stringCount * 4;
+        final int[] offsets = new int[]{
+            //The offset of the first string
+            ConfigurationCompiler.HEADER_SIZE,
+            //The name of the last element
+            nodeOffset + ( nodeCount - 1 ) * ConfigurationCompiler.NODE_FIELDS * 4 +
+            ConfigurationCompiler.NAME * 4,
+            //The child count of the root element
+            nodeOffset + ConfigurationCompiler.CHILD_COUNT * 4,
+            //The attribute count of the root element
+            nodeOffset + ConfigurationCompiler.ATTRIBUTE_COUNT * 4,
+            //The name of the first attribute
+            nodeOffset + nodeCount * ConfigurationCompiler.NODE_FIELDS * 4};
+        for( int i = 0; i < offsets.length; i++ )
+        {
+            final byte[] corrupt = (byte[])data.clone();
+            ByteBuffer.wrap( corrupt ).putInt( offsets[ i ], 0x7FFF0000 );
+            try
+            {
+                ConfigurationCompiler.load( ByteBuffer.wrap( corrupt ) );
+                fail( "Expected configuration exception as field " + i + " is corrupt." );
+            }
+            catch( final ConfigurationException ce )
+            {
+                assertTrue( "message (" + ce.getMessage() + ")",
+                            ce.getMessage().startsWith( "Compiled configuration is corrupt" ) );
+            }
+        }
+    }
+
+    public void testLoadCorruptStringLength()
+        throws Exception
+    {
+        final byte[] data = compile( createConfiguration() );
+        final ByteBuffer buffer = ByteBuffer.wrap( data );
+        final int offset = buffer.getInt( ConfigurationCompiler.HEADER_SIZE );
+        buffer.putInt( offset, -1 );
+        try
+        {
+            ConfigurationCompiler.load( buffer );
+        }
+        catch( final ConfigurationException ce )
+        {
+            return;
+        }
+        fail( "Expected configuration exception as string length is negative." );
+    }
+
+    public void testRoundTrip()
+        throws Exception
+    {
+        final Configuration configuration = createConfiguration();
+        final Configuration loaded =
+            ConfigurationCompiler.load( ByteBuffer.wrap( compile( configuration ) ) );
+        assertTrue( "equals", ConfigurationUtil.equals( configuration, loaded ) );
+        assertEquals( "structuralHash",
+                      ConfigurationUtil.structuralHash( configuration ),
+                      ConfigurationUtil.structuralHash( loaded ) );
+    }
+
+    public void testAccessors()
+        throws Exception
+    {
+        final Configuration loaded =
+            ConfigurationCompiler.load( ByteBuffer.wrap( compile( createConfiguration() ) ) );
+        assertEquals( "root.getPath()", "", loaded.getPath() );
+        assertEquals( "version", 2, loaded.getAttributeAsInteger( "version" ) );
+        assertEquals( "root.getValue( null )", null, loaded.getValue( null ) );
+
+        final Configuration[] listeners = loaded.getChildren( "listener" );
+        assertEquals( "listeners.length", 2, listeners.length );
+        assertEquals( "listener.getPath()", "root", listeners[ 1 ].getPath() );
+        assertEquals( "port", 443, listeners[ 1 ].getAttributeAsInteger( "port" ) );
+        assertEquals( "secure", true, listeners[ 1 ].getAttributeAsBoolean( "secure" ) );
+        final String[] names = listeners[ 1 ].getAttributeNames();
+        assertEquals( "names.length", 2, names.length );
+
+        final Configuration timeout = listeners[ 1 ].getChild( "timeout" );
+        assertEquals( "timeout.getPath()", "root/listener", timeout.getPath() );
+        assertEquals( "timeout", 2.5, timeout.getValueAsFloat(), 0.0 );
+        assertEquals( "host", "secure.example.com",
+                      listeners[ 1 ].getChild( "host" ).getValue() );
+        assertEquals( "name", "caf\u00e9 \u20ac", loaded.getChild( "name" ).getValue() );
+
+        final IndexedConfiguration indexed = (IndexedConfiguration)loaded;
+        assertEquals( "getChildCount()", 3, indexed.getChildCount() );
+        assertEquals( "getChild( 2 ).getName()", "name", indexed.getChild( 2 ).getName() );
+        assertEquals( "getChild( 'missing', false )",
+                      null, loaded.getChild( "missing", false ) );
+        final Configuration autogen = loaded.getChild( "missing" );
+        assertTrue( "autogen.getLocation()", autogen.getLocation().endsWith( "<autogen>" ) );
+    }
+
+    public void testChildrenAreRetained()
+        throws Exception
+    {
+        final Configuration loaded =
+            ConfigurationCompiler.load( ByteBuffer.wrap( compile( createConfiguration() ) ) );
+        final IndexedConfiguration indexed = (IndexedConfiguration)loaded;
+        final Configuration[] children = loaded.getChildren();
+        assertSame( "getChildren()", children, loaded.getChildren() );
+        for( int i = 0; i < children.length; i++ )
+        {
+            assertSame( "getChild( " + i + " )", children[ i ], indexed.getChild( i ) );
+        }
+        assertSame( "getChild( \"name\" )", children[ 2 ], loaded.getChild( "name" ) );
+        final Configuration[] listeners = loaded.getChildren( "listener" );
+        assertSame( "listeners[ 1 ]", children[ 1 ], listeners[ 1 ] );
+        assertEquals( "host.getPath()",
+                      "root/listener",
+                      listeners[ 1 ].getChild( "host" ).getPath() );
+    }
+
+    public void testMissingAttributeReportsLocation()
+        throws Exception
+    {
+        final Configuration loaded =
+            ConfigurationCompiler.load( ByteBuffer.wrap( compile( createConfiguration() ) ) );
+        final Configuration listener = loaded.getChildren()[ 1 ];
+        try
+        {
+            listener.getAttribute( "missing" );
+        }
+        catch( final ConfigurationException ce )
+        {
+            assertEquals( "ce.getPath()", "root", ce.getPath() );
+            assertTrue( "ce.getLocation()", -1 != ce.getLocation().indexOf( "file.xml:5:" ) );
+            return;
+        }
+        fail( "Expected to fail getting missing attribute" );
+    }
+
+    public void testFileRoundTrip()
+        throws Exception
+    {
+        final Configuration configuration = createConfiguration();
+        final File file = File.createTempFile( "dna", ".cfg" );
+        try
+        {
+            ConfigurationCompiler.compile( configuration, file );
+            final Configuration loaded = ConfigurationCompiler.load( file );
+            assertTrue( "equals", ConfigurationUtil.equals( configuration, loaded ) );
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+    public void testCompileNonDefaultConfiguration()
+        throws Exception
+    {
+        final Configuration configuration =
+            ConfigurationUtil.toCompactConfiguration( createConfiguration() );
+        final Configuration loaded =
+            ConfigurationCompiler.load( ByteBuffer.wrap( compile( configuration ) ) );
+        assertTrue( "equals", ConfigurationUtil.equals( configuration, loaded ) );
+        assertEquals( "getLocation()", configuration.getLocation(), loaded.getLocation() );
+    }
+
+    public void testCompileDeepConfiguration()
+        throws Exception
+    {
+        final Configuration configuration = createDeepConfiguration();
+        final Configuration loaded =
+            ConfigurationCompiler.load( ByteBuffer.wrap( compile( configuration ) ) );
+        assertTrue( "equals", ConfigurationUtil.equals( configuration, loaded ) );
+
+        Configuration leaf = loaded;
+        while( 0 != leaf.getChildren().length )
+        {
+            leaf = leaf.getChild( "level" );
+        }
+        assertEquals( "leaf.getValue()", "leaf", leaf.getValue() );
+        assertEquals( "leaf.getAttribute( 'index' )",
+                      String.valueOf( DEPTH - 1 ),
+                      leaf.getAttribute( "index" ) );
+    }
+
+    private static byte[] compile( final Configuration configuration )
+        throws Exception
+    {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ConfigurationCompiler.compile( configuration, output );
+        return output.toByteArray();
+    }
+
+    private static Configuration createConfiguration()
+        throws Exception
+    {
+        final InputSource input = new InputSource( new StringReader( DATA ) );
+        input.setSystemId( "file.xml" );
+        return ConfigurationUtil.buildFromXML( input );
+    }
+
+    private static Configuration createDeepConfiguration()
+    {
+        final DefaultConfiguration root = new DefaultConfiguration( "level", "", "" );
+        DefaultConfiguration parent = root;
+        for( int i = 1; i < DEPTH; i++ )
+        {
+            final DefaultConfiguration child =
+                new DefaultConfiguration( "level", parent, null, -1, -1 );
+            child.setAttribute( "index", String.valueOf( i ) );
+            parent.addChild( child );
+            parent = child;
+        }
+        parent.setValue( "leaf" );
+        return root;
+    }
+}
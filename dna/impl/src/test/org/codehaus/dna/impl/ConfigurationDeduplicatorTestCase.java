@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+import org.xml.sax.InputSource;
+
+public class ConfigurationDeduplicatorTestCase
+    extends TestCase
+{
+    public void testDeduplicateNull()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationDeduplicator().deduplicate( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "configuration", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to deduplicate." );
+    }
+
+    public void testIdenticalSubtreesAreShared()
+        throws Exception
+    {
+        final DefaultConfiguration configuration = createConfiguration( 3 );
+        final ConfigurationDeduplicator deduplicator = new ConfigurationDeduplicator();
+        final Configuration result = deduplicator.deduplicate( configuration );
+
+        assertTrue( "equals", ConfigurationUtil.equals( configuration, result ) );
+        assertEquals( "getElementCount()", 10, deduplicator.getElementCount() );
+        //The second and third components share all their content
+        assertEquals( "getSharedCount()", 6, deduplicator.getSharedCount() );
+
+        final Configuration[] components = result.getChildren();
+        assertEquals( "components.length", 3, components.length );
+        assertEquals( "structural hash",
+                      ( (HashedConfiguration)components[ 0 ] ).getStructuralHash(),
+                      ( (HashedConfiguration)components[ 1 ] ).getStructuralHash() );
+    }
+
+    public void testPathAndLocationOfEachOccurrence()
+        throws Exception
+    {
+        final Configuration result =
+            new ConfigurationDeduplicator().deduplicate( createConfiguration( 3 ) );
+        assertEquals( "root.getLocation()", "file.xml:1:1", result.getLocation() );
+        assertEquals( "root.getPath()", "", result.getPath() );
+
+        final Configuration[] components = result.getChildren();
+        for( int i = 0; i < components.length; i++ )
+        {
+            final int line = 2 + i * 3;
+            assertEquals( "component.getLocation()",
+                          "file.xml:" + line + ":3", components[ i ].getLocation() );
+            assertEquals( "component.getPath()", "root", components[ i ].getPath() );
+
+            final Configuration pool = components[ i ].getChild( "pool" );
+            assertEquals( "pool.getLocation()",
+                          "file.xml:" + ( line + 1 ) + ":5", pool.getLocation() );
+            assertEquals( "pool.getPath()", "root/component", pool.getPath() );
+
+            final Configuration retry = components[ i ].getChildren( "retry" )[ 0 ];
+            assertEquals( "retry.getLocation()",
+                          "file.xml:" + ( line + 2 ) + ":5", retry.getLocation() );
+            final Configuration indexed =
+                ( (IndexedConfiguration)components[ i ] ).getChild( 1 );
+            assertEquals( "getChild( 1 ).getLocation()",
+                          "file.xml:" + ( line + 2 ) + ":5", indexed.getLocation() );
+        }
+    }
+
+    public void testChildrenAreRetained()
+        throws Exception
+    {
+        final Configuration result =
+            new ConfigurationDeduplicator().deduplicate( createConfiguration( 3 ) );
+        final IndexedConfiguration root = (IndexedConfiguration)result;
+        final Configuration[] components = result.getChildren();
+        assertSame( "getChildren()", components, result.getChildren() );
+        for( int i = 0; i < components.length; i++ )
+        {
+            assertSame( "getChild( " + i + " )", components[ i ], root.getChild( i ) );
+            final IndexedConfiguration component = (IndexedConfiguration)components[ i ];
+            assertSame( "getChild( \"pool\" )",
+                        component.getChild( 0 ),
+                        components[ i ].getChild( "pool" ) );
+            assertSame( "getChildren( \"retry\" )",
+                        component.getChild( 1 ),
+                        components[ i ].getChildren( "retry" )[ 0 ] );
+        }
+    }
+
+    public void testTypedAccessorsReportOccurrenceLocation()
+        throws Exception
+    {
+        final Configuration result =
+            new ConfigurationDeduplicator().deduplicate( createConfiguration( 2 ) );
+        final Configuration pool = result.getChildren()[ 1 ].getChild( "pool" );
+        assertEquals( "size", 10, pool.getAttributeAsInteger( "size" ) );
+        try
+        {
+            pool.getAttributeAsInteger( "missing" );
+        }
+        catch( final ConfigurationException ce )
+        {
+            assertEquals( "ce.getLocation()", "file.xml:6:5", ce.getLocation() );
+            return;
+        }
+        fail( "Expected to fail getting missing attribute" );
+    }
+
+    public void testContentSharedBetweenTrees()
+        throws Exception
+    {
+        final ConfigurationDeduplicator deduplicator = new ConfigurationDeduplicator();
+        deduplicator.deduplicate( createConfiguration( 1 ) );
+        assertEquals( "getSharedCount()", 0, deduplicator.getSharedCount() );
+        deduplicator.deduplicate( createConfiguration( 1 ) );
+        assertEquals( "getSharedCount()", 4, deduplicator.getSharedCount() );
+
+        deduplicator.clear();
+        assertEquals( "getElementCount()", 0, deduplicator.getElementCount() );
+        assertEquals( "getSharedCount()", 0, deduplicator.getSharedCount() );
+        assertEquals( "getEstimatedBytesSaved()", 0, deduplicator.getEstimatedBytesSaved() );
+        deduplicator.deduplicate( createConfiguration( 1 ) );
+        assertEquals( "getSharedCount()", 0, deduplicator.getSharedCount() );
+    }
+
+    public void testEstimatedBytesSaved()
+        throws Exception
+    {
+        final ConfigurationDeduplicator deduplicator = new ConfigurationDeduplicator();
+        deduplicator.deduplicate( createConfiguration( 1000 ) );
+        assertEquals( "getSharedCount()", 999 * 3, deduplicator.getSharedCount() );
+        assertTrue( "getEstimatedBytesSaved() > 0",
+                    deduplicator.getEstimatedBytesSaved() > 0 );
+    }
+
+    public void testEstimateCountsRetainedWrappers()
+        throws Exception
+    {
+        final ConfigurationDeduplicator deduplicator = new ConfigurationDeduplicator();
+        deduplicator.deduplicate( createConfiguration( 1 ) );
+        assertEquals( "getSharedCount()", 0, deduplicator.getSharedCount() );
+        //Nothing is shared so the estimate is the cost of the location
+        //table plus a wrapper of at least 48 bytes for each of 4 elements
+        assertTrue( "getEstimatedBytesSaved() <= -192",
+                    deduplicator.getEstimatedBytesSaved() <= -192 );
+    }
+
+    public void testDeduplicateDeepConfiguration()
+        throws Exception
+    {
+        final int depth = 50000;
+        final DefaultConfiguration root =
+            new DefaultConfiguration( "level", null, "file.xml", 1, 1 );
+        DefaultConfiguration parent = root;
+        for( int i = 1; i < depth; i++ )
+        {
+            final DefaultConfiguration child =
+                new DefaultConfiguration( "level", parent, "file.xml", i + 1, 1 );
+            parent.addChild( child );
+            parent = child;
+        }
+        parent.setValue( "leaf" );
+
+        final ConfigurationDeduplicator deduplicator = new ConfigurationDeduplicator();
+        final Configuration result = deduplicator.deduplicate( root );
+        assertEquals( "getElementCount()", depth, deduplicator.getElementCount() );
+        assertTrue( "equals", ConfigurationUtil.equals( root, result ) );
+
+        Configuration leaf = result;
+        while( 0 != leaf.getChildren().length )
+        {
+            leaf = leaf.getChild( "level" );
+        }
+        assertEquals( "leaf.getValue()", "leaf", leaf.getValue() );
+        assertEquals( "leaf.getLocation()", "file.xml:" + depth + ":1", leaf.getLocation() );
+    }
+
+    public void testBuildFromXML()
+        throws Exception
+    {
+        final String data =
+            "<root>\n" +
+            "  <component><pool size=\"10\"/></component>\n" +
+            "  <component><pool size=\"10\"/></component>\n" +
+            "</root>";
+        final InputSource input = new InputSource( new StringReader( data ) );
+        input.setSystemId( "file.xml" );
+        final ConfigurationDeduplicator deduplicator = new ConfigurationDeduplicator();
+        final Configuration configuration =
+            ConfigurationUtil.buildFromXML( input, new StringPool(), deduplicator );
+        assertEquals( "getSharedCount()", 2, deduplicator.getSharedCount() );
+
+        final Configuration[] components = configuration.getChildren( "component" );
+        assertEquals( "components.length", 2, components.length );
+        final String location1 = components[ 0 ].getChild( "pool" ).getLocation();
+        final String location2 = components[ 1 ].getChild( "pool" ).getLocation();
+        assertTrue( "location1 (" + location1 + ")", -1 != location1.indexOf( "file.xml:2:" ) );
+        assertTrue( "location2 (" + location2 + ")", -1 != location2.indexOf( "file.xml:3:" ) );
+    }
+
+    private static DefaultConfiguration createConfiguration( final int count )
+    {
+        final DefaultConfiguration root =
+            new DefaultConfiguration( "root", null, "file.xml", 1, 1 );
+        for( int i = 0; i < count; i++ )
+        {
+            final int line = 2 + i * 3;
+            final DefaultConfiguration component =
+                new DefaultConfiguration( "component", root, "file.xml", line, 3 );
+            final DefaultConfiguration pool =
+                new DefaultConfiguration( "pool", component, "file.xml", line + 1, 5 );
+            pool.setAttribute( "size", "10" );
+            final DefaultConfiguration retry =
+                new DefaultConfiguration( "retry", component, "file.xml", line + 2, 5 );
+            retry.setValue( "3" );
+            component.addChild( pool );
+            component.addChild( retry );
+            root.addChild( component );
+        }
+        root.makeReadOnly();
+        return root;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+
+public class ConfigurationDiffTestCase
+    extends TestCase
+{
+    public void testDiffNullOldConfiguration()
+        throws Exception
+    {
+        try
+        {
+            ConfigurationDiff.diff( null, new DefaultConfiguration( "x", "", "" ) );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "oldConfiguration", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to diff." );
+    }
+
+    public void testDiffNullNewConfiguration()
+        throws Exception
+    {
+        try
+        {
+            ConfigurationDiff.diff( new DefaultConfiguration( "x", "", "" ), null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "newConfiguration", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to diff." );
+    }
+
+    public void testDiffEqualConfigurations()
+        throws Exception
+    {
+        final ConfigurationChange[] changes =
+            ConfigurationDiff.diff( createServer( "80" ), createServer( "80" ) );
+        assertEquals( "changes.length", 0, changes.length );
+    }
+
+    public void testDiffDifferentRootNames()
+        throws Exception
+    {
+        final DefaultConfiguration oldConfiguration = new DefaultConfiguration( "x", "", "" );
+        final DefaultConfiguration newConfiguration = new DefaultConfiguration( "y", "", "" );
+        final ConfigurationChange[] changes =
+            ConfigurationDiff.diff( oldConfiguration, newConfiguration );
+        assertEquals( "changes.length", 2, changes.length );
+        assertEquals( "changes[ 0 ].type", ConfigurationChange.REMOVED, changes[ 0 ].getType() );
+        assertEquals( "changes[ 0 ].path", "x", changes[ 0 ].getPath() );
+        assertSame( "changes[ 0 ].old", oldConfiguration, changes[ 0 ].getOldConfiguration() );
+        assertEquals( "changes[ 1 ].type", ConfigurationChange.ADDED, changes[ 1 ].getType() );
+        assertEquals( "changes[ 1 ].path", "y", changes[ 1 ].getPath() );
+        assertSame( "changes[ 1 ].new", newConfiguration, changes[ 1 ].getNewConfiguration() );
+    }
+
+    public void testDiffChangedAttribute()
+        throws Exception
+    {
+        final ConfigurationChange[] changes =
+            ConfigurationDiff.diff( createServer( "80" ), createServer( "8080" ) );
+        assertEquals( "changes.length", 1, changes.length );
+        final ConfigurationChange change = changes[ 0 ];
+        assertEquals( "type", ConfigurationChange.CHANGED, change.getType() );
+        assertEquals( "path", "server/listener[2]", change.getPath() );
+        assertEquals( "attribute", "port", change.getAttribute() );
+        assertEquals( "oldValue", "80", change.getOldValue() );
+        assertEquals( "newValue", "8080", change.getNewValue() );
+        assertEquals( "oldConfiguration.port", "80",
+                      change.getOldConfiguration().getAttribute( "port" ) );
+        assertEquals( "newConfiguration.port", "8080",
+                      change.getNewConfiguration().getAttribute( "port" ) );
+    }
+
+    public void testDiffAddedAndRemovedAttributes()
+        throws Exception
+    {
+        final DefaultConfiguration oldConfiguration = new DefaultConfiguration( "x", "", "" );
+        oldConfiguration.setAttribute( "a", "1" );
+        final DefaultConfiguration newConfiguration = new DefaultConfiguration( "x", "", "" );
+        newConfiguration.setAttribute( "b", "2" );
+
+        final ConfigurationChange[] changes =
+            ConfigurationDiff.diff( oldConfiguration, newConfiguration );
+        assertEquals( "changes.length", 2, changes.length );
+        assertEquals( "changes[ 0 ].type", ConfigurationChange.REMOVED, changes[ 0 ].getType() );
+        assertEquals( "changes[ 0 ].attribute", "a", changes[ 0 ].getAttribute() );
+        assertEquals( "changes[ 0 ].path", "x", changes[ 0 ].getPath() );
+        assertEquals( "changes[ 0 ].oldValue", "1", changes[ 0 ].getOldValue() );
+        assertEquals( "changes[ 1 ].type", ConfigurationChange.ADDED, changes[ 1 ].getType() );
+        assertEquals( "changes[ 1 ].attribute", "b", changes[ 1 ].getAttribute() );
+        assertEquals( "changes[ 1 ].newValue", "2", changes[ 1 ].getNewValue() );
+    }
+
+    public void testDiffChangedValue()
+        throws Exception
+    {
+        final DefaultConfiguration oldConfiguration = createServer( "80" );
+        final DefaultConfiguration newConfiguration = createServer( "80" );
+        ( (DefaultConfiguration)newConfiguration.getChild( "timeout" ) ).setValue( "60" );
+
+        final ConfigurationChange[] changes =
+            ConfigurationDiff.diff( oldConfiguration, newConfiguration );
+        assertEquals( "changes.length", 1, changes.length );
+        assertEquals( "type", ConfigurationChange.CHANGED, changes[ 0 ].getType() );
+        assertEquals( "path", "server/timeout[1]", changes[ 0 ].getPath() );
+        assertEquals( "attribute", null, changes[ 0 ].getAttribute() );
+        assertEquals( "oldValue", "30", changes[ 0 ].getOldValue() );
+        assertEquals( "newValue", "60", changes[ 0 ].getNewValue() );
+    }
+
+    public void testDiffAddedAndRemovedChildren()
+        throws Exception
+    {
+        final DefaultConfiguration oldConfiguration = createServer( "80" );
+        final DefaultConfiguration removed = new DefaultConfiguration( "removed", "", "server" );
+        oldConfiguration.addChild( removed );
+        final DefaultConfiguration newConfiguration = createServer( "80" );
+        final DefaultConfiguration added = new DefaultConfiguration( "listener", "", "server" );
+        newConfiguration.addChild( added );
+
+        final ConfigurationChange[] changes =
+            ConfigurationDiff.diff( oldConfiguration, newConfiguration );
+        assertEquals( "changes.length", 2, changes.length );
+        assertEquals( "changes[ 0 ].type", ConfigurationChange.REMOVED, changes[ 0 ].getType() );
+        assertEquals( "changes[ 0 ].path", "server/removed[1]", changes[ 0 ].getPath() );
+        assertSame( "changes[ 0 ].old", removed, changes[ 0 ].getOldConfiguration() );
+        assertEquals( "changes[ 1 ].type", ConfigurationChange.ADDED, changes[ 1 ].getType() );
+        assertEquals( "changes[ 1 ].path", "server/listener[3]", changes[ 1 ].getPath() );
+        assertSame( "changes[ 1 ].new", added, changes[ 1 ].getNewConfiguration() );
+    }
+
+    public void testDiffNestedChange()
+        throws Exception
+    {
+        final DefaultConfiguration oldConfiguration = createServer( "80" );
+        final DefaultConfiguration newConfiguration = createServer( "80" );
+        final DefaultConfiguration ssl = new DefaultConfiguration( "ssl", "", "" );
+        ssl.setAttribute( "enabled", "true" );
+        ( (DefaultConfiguration)newConfiguration.getChildren( "listener" )[ 1 ] ).addChild( ssl );
+
+        final ConfigurationChange[] changes =
+            ConfigurationDiff.diff( oldConfiguration, newConfiguration );
+        assertEquals( "changes.length", 1, changes.length );
+        assertEquals( "type", ConfigurationChange.ADDED, changes[ 0 ].getType() );
+        assertEquals( "path", "server/listener[2]/ssl[1]", changes[ 0 ].getPath() );
+
+        final String path = changes[ 0 ].getPath();
+        final String expression = path.substring( path.indexOf( '/' ) + 1 );
+        final Configuration selected =
+            ConfigurationQuery.compile( expression ).selectFirst( newConfiguration );
+        assertSame( "selected", ssl, selected );
+    }
+
+    public void testDiffWithCompactConfiguration()
+        throws Exception
+    {
+        final Configuration oldConfiguration =
+            ConfigurationUtil.toCompactConfiguration( createServer( "80" ) );
+        final Configuration newConfiguration = createServer( "8080" );
+        final ConfigurationChange[] changes =
+            ConfigurationDiff.diff( oldConfiguration, newConfiguration );
+        assertEquals( "changes.length", 1, changes.length );
+        assertEquals( "path", "server/listener[2]", changes[ 0 ].getPath() );
+    }
+
+    public void testToString()
+        throws Exception
+    {
+        final ConfigurationChange[] changes =
+            ConfigurationDiff.diff( createServer( "80" ), createServer( "8080" ) );
+        assertEquals( "[ConfigurationChange changed path='server/listener[2]' attribute='port' " +
+                      "old=80 new=8080]",
+                      changes[ 0 ].toString() );
+    }
+
+    private static DefaultConfiguration createServer( final String port )
+    {
+        final DefaultConfiguration server = new DefaultConfiguration( "server", "", "" );
+        server.setAttribute( "name", "main" );
+        final DefaultConfiguration listener1 =
+            new DefaultConfiguration( "listener", "", "server" );
+        listener1.setAttribute( "port", "443" );
+        final DefaultConfiguration listener2 =
+            new DefaultConfiguration( "listener", "", "server" );
+        listener2.setAttribute( "port", port );
+        final DefaultConfiguration timeout =
+            new DefaultConfiguration( "timeout", "", "server" );
+        timeout.setValue( "30" );
+        server.addChild( listener1 );
+        server.addChild( timeout );
+        server.addChild( listener2 );
+        return server;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+
+public class ConfigurationLoaderTestCase
+    extends TestCase
+{
+    private File m_directory;
+
+    protected void setUp()
+        throws Exception
+    {
+        final File file = File.createTempFile( "dna", "" );
+        file.delete();
+        m_directory = file;
+        m_directory.mkdir();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        final File[] files = m_directory.listFiles();
+        for( int i = 0; i < files.length; i++ )
+        {
+            files[ i ].delete();
+        }
+        m_directory.delete();
+    }
+
+    public void testNullBuilderInCtor()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationLoader( null, 1 );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "builder", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to ctor." );
+    }
+
+    public void testZeroThreadsInCtor()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationLoader( new ConfigurationBuilder(), 0 );
+        }
+        catch( final IllegalArgumentException iae )
+        {
+            return;
+        }
+        fail( "Expected illegal argument exception as passed in 0 threads to ctor." );
+    }
+
+    public void testNullFileInLoad()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationLoader().load( new File[]{null} );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "files[0]", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null file." );
+    }
+
+    public void testLoadDirectory()
+        throws Exception
+    {
+        for( int i = 0; i < 20; i++ )
+        {
+            write( "file" + ( 100 + i ) + ".xml", "<component id=\"" + i + "\"/>" );
+        }
+        write( "notes.txt", "not xml" );
+
+        final ConfigurationLoadResult result =
+            new ConfigurationLoader( new ConfigurationBuilder(), 4 ).load( m_directory );
+        assertEquals( "hasErrors()", false, result.hasErrors() );
+        assertEquals( "getConfigurations().size()", 20, result.getConfigurations().size() );
+
+        final Iterator iterator = result.getConfigurations().keySet().iterator();
+        for( int i = 0; i < 20; i++ )
+        {
+            final File file = (File)iterator.next();
+            assertEquals( "file", "file" + ( 100 + i ) + ".xml", file.getName() );
+            final Configuration configuration = result.getConfiguration( file );
+            assertEquals( "id", i, configuration.getAttributeAsInteger( "id" ) );
+            assertTrue( "read-only", ( (DefaultConfiguration)configuration ).isReadOnly() );
+        }
+    }
+
+    public void testErrorsReportedPerFile()
+        throws Exception
+    {
+        final File good = write( "good.xml", "<good/>" );
+        final File malformed = write( "malformed.xml", "<root>\n  <child>\n</root>" );
+        final File mixed = write( "mixed.xml", "<root>text<child/></root>" );
+        final File missing = new File( m_directory, "missing.xml" );
+
+        final ConfigurationLoadResult result =
+            new ConfigurationLoader().load( new File[]{good, malformed, mixed, missing} );
+        assertEquals( "hasErrors()", true, result.hasErrors() );
+        assertEquals( "getConfigurations().size()", 1, result.getConfigurations().size() );
+        assertEquals( "good", "good", result.getConfiguration( good ).getName() );
+        assertEquals( "getErrors().size()", 3, result.getErrors().size() );
+        assertNull( "getError( good )", result.getError( good ) );
+
+        final ConfigurationException malformedError = result.getError( malformed );
+        final String location = malformedError.getLocation();
+        assertTrue( "location (" + location + ")",
+                    -1 != location.indexOf( "malformed.xml:3:" ) );
+
+        final ConfigurationException mixedError = result.getError( mixed );
+        assertTrue( "location", mixedError.getLocation().endsWith( "mixed.xml" ) );
+        assertNotNull( "missing", result.getError( missing ) );
+    }
+
+    public void testLoadNoFiles()
+        throws Exception
+    {
+        final ConfigurationLoadResult result = new ConfigurationLoader().load( m_directory );
+        assertEquals( "getConfigurations().size()", 0, result.getConfigurations().size() );
+        assertEquals( "hasErrors()", false, result.hasErrors() );
+    }
+
+    public void testWorkersReusedBetweenLoads()
+        throws Exception
+    {
+        final File file = write( "file.xml", "<component/>" );
+        final int[] handlers = new int[ 1 ];
+        final ConfigurationBuilder builder = new ConfigurationBuilder()
+        {
+            protected SAXConfigurationHandler createHandler( final StringPool pool )
+            {
+                handlers[ 0 ]++;
+                return super.createHandler( pool );
+            }
+        };
+        final ConfigurationLoader loader = new ConfigurationLoader( builder, 1 );
+        try
+        {
+            for( int i = 0; i < 3; i++ )
+            {
+                final ConfigurationLoadResult result = loader.load( new File[]{file} );
+                assertEquals( "hasErrors()", false, result.hasErrors() );
+            }
+            assertEquals( "handlers", 1, handlers[ 0 ] );
+        }
+        finally
+        {
+            loader.shutdown();
+        }
+    }
+
+    public void testLoadAfterShutdown()
+        throws Exception
+    {
+        final ConfigurationLoader loader = new ConfigurationLoader();
+        loader.shutdown();
+        try
+        {
+            loader.load( m_directory );
+        }
+        catch( final IllegalStateException ise )
+        {
+            return;
+        }
+        fail( "Expected illegal state exception as loader is shut down." );
+    }
+
+    public void testLoadMissingDirectory()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationLoader().load( new File( m_directory, "missing" ) );
+        }
+        catch( final ConfigurationException ce )
+        {
+            return;
+        }
+        fail( "Expected configuration exception as directory is missing." );
+    }
+
+    private File write( final String name, final String data )
+        throws IOException
+    {
+        final File file = new File( m_directory, name );
+        final Writer writer = new FileWriter( file );
+        try
+        {
+            writer.write( data );
+        }
+        finally
+        {
+            writer.close();
+        }
+        return file;
+    }
+}
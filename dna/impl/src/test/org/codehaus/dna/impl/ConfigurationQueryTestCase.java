@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.StringReader;
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.xml.sax.InputSource;
+
+public class ConfigurationQueryTestCase
+    extends TestCase
+{
+    private static final String DOCUMENT =
+        "<server>" +
+        "<listener name=\"a\" port=\"80\"><ssl enabled=\"false\"/></listener>" +
+        "<listener name=\"b\"><ssl enabled=\"true\"/></listener>" +
+        "<listener name=\"c\" port=\"443\"><ssl enabled=\"true\"/><ssl enabled=\"x\"/></listener>" +
+        "<pool size=\"5\"/>" +
+        "</server>";
+
+    public void testSimplePath()
+        throws Exception
+    {
+        final Configuration configuration = buildConfiguration();
+        final Configuration[] results =
+            ConfigurationQuery.compile( "listener/ssl" ).select( configuration );
+        assertEquals( "results.length", 4, results.length );
+        assertEquals( "results[ 0 ]", "false", results[ 0 ].getAttribute( "enabled" ) );
+        assertEquals( "results[ 3 ]", "x", results[ 3 ].getAttribute( "enabled" ) );
+    }
+
+    public void testAttributeExistsPredicate()
+        throws Exception
+    {
+        final Configuration configuration = buildConfiguration();
+        final Configuration[] results =
+            ConfigurationQuery.compile( "listener[@port]/ssl" ).select( configuration );
+        assertEquals( "results.length", 3, results.length );
+        assertEquals( "results[ 1 ]", "true", results[ 1 ].getAttribute( "enabled" ) );
+    }
+
+    public void testAttributeValuePredicate()
+        throws Exception
+    {
+        final Configuration configuration = buildConfiguration();
+        final Configuration[] results =
+            ConfigurationQuery.compile( "listener[@name='b']" ).select( configuration );
+        assertEquals( "results.length", 1, results.length );
+        assertEquals( "results[ 0 ]", "b", results[ 0 ].getAttribute( "name" ) );
+
+        final Configuration[] doubleQuoted =
+            ConfigurationQuery.compile( "listener[@port=\"443\"]" ).select( configuration );
+        assertEquals( "doubleQuoted.length", 1, doubleQuoted.length );
+        assertEquals( "doubleQuoted[ 0 ]", "c", doubleQuoted[ 0 ].getAttribute( "name" ) );
+    }
+
+    public void testPositionalPredicate()
+        throws Exception
+    {
+        final Configuration configuration = buildConfiguration();
+        final Configuration[] results =
+            ConfigurationQuery.compile( "listener[@port][2]/ssl[1]" ).select( configuration );
+        assertEquals( "results.length", 1, results.length );
+        assertEquals( "results[ 0 ]", "true", results[ 0 ].getAttribute( "enabled" ) );
+
+        final Configuration[] second =
+            ConfigurationQuery.compile( "listener/ssl[2]" ).select( configuration );
+        assertEquals( "second.length", 1, second.length );
+        assertEquals( "second[ 0 ]", "x", second[ 0 ].getAttribute( "enabled" ) );
+    }
+
+    public void testWildcard()
+        throws Exception
+    {
+        final Configuration configuration = buildConfiguration();
+        final Configuration[] results =
+            ConfigurationQuery.compile( "*[@name]" ).select( configuration );
+        assertEquals( "results.length", 3, results.length );
+        final Configuration[] all =
+            ConfigurationQuery.compile( "*" ).select( configuration );
+        assertEquals( "all.length", 4, all.length );
+    }
+
+    public void testSelectFirst()
+        throws Exception
+    {
+        final Configuration configuration = buildConfiguration();
+        final Configuration result =
+            ConfigurationQuery.compile( "listener/ssl[@enabled='true']" ).
+            selectFirst( configuration );
+        assertNotNull( "result", result );
+        assertEquals( "result.path", "server/listener", result.getPath() );
+        assertEquals( "missing", null,
+                      ConfigurationQuery.compile( "missing/ssl" ).selectFirst( configuration ) );
+    }
+
+    public void testNoMatches()
+        throws Exception
+    {
+        final Configuration configuration = buildConfiguration();
+        final Configuration[] results =
+            ConfigurationQuery.compile( "listener[@name='zz']/ssl" ).select( configuration );
+        assertEquals( "results.length", 0, results.length );
+    }
+
+    public void testCompiledQueriesAreCached()
+        throws Exception
+    {
+        final ConfigurationQuery query = ConfigurationQuery.compile( "a/b[@c]" );
+        assertSame( query, ConfigurationQuery.compile( "a/b[@c]" ) );
+        assertEquals( "query.getExpression()", "a/b[@c]", query.getExpression() );
+    }
+
+    public void testMalformedQueries()
+        throws Exception
+    {
+        assertMalformed( "" );
+        assertMalformed( "a//b" );
+        assertMalformed( "a/" );
+        assertMalformed( "a[" );
+        assertMalformed( "a[@]" );
+        assertMalformed( "a[@b=c]" );
+        assertMalformed( "a[@b='c]" );
+        assertMalformed( "a[0]" );
+        assertMalformed( "a[x]" );
+        assertMalformed( "a b" );
+    }
+
+    public void testNullExpression()
+        throws Exception
+    {
+        try
+        {
+            ConfigurationQuery.compile( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "expression", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to compile." );
+    }
+
+    private void assertMalformed( final String expression )
+    {
+        try
+        {
+            ConfigurationQuery.compile( expression );
+        }
+        catch( final IllegalArgumentException iae )
+        {
+            return;
+        }
+        fail( "Expected compile of '" + expression + "' to fail" );
+    }
+
+    private Configuration buildConfiguration()
+        throws Exception
+    {
+        final InputSource input = new InputSource( new StringReader( DOCUMENT ) );
+        final DefaultConfiguration configuration =
+            (DefaultConfiguration)ConfigurationUtil.buildFromXML( input );
+        configuration.makeReadOnly();
+        return configuration;
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+
+public class ConfigurationReloaderTestCase
+    extends TestCase
+{
+    private File m_directory;
+
+    protected void setUp()
+        throws Exception
+    {
+        final File file = File.createTempFile( "dna", "" );
+        file.delete();
+        m_directory = file;
+        m_directory.mkdir();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        final File[] files = m_directory.listFiles();
+        for( int i = 0; i < files.length; i++ )
+        {
+            files[ i ].delete();
+        }
+        m_directory.delete();
+    }
+
+    public void testNullBuilderInCtor()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationReloader( null, 1, 0 );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "builder", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to ctor." );
+    }
+
+    public void testNegativeQuietPeriodInCtor()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationReloader( new ConfigurationBuilder(), 1, -1 );
+        }
+        catch( final IllegalArgumentException iae )
+        {
+            return;
+        }
+        fail( "Expected illegal argument exception as passed in negative quiet period." );
+    }
+
+    public void testNullFileInAddSource()
+        throws Exception
+    {
+        try
+        {
+            createReloader().addSource( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "file", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null file." );
+    }
+
+    public void testAddSource()
+        throws Exception
+    {
+        final File file = write( "a.xml", "<a x=\"1\"/>", 1000 );
+        final ConfigurationReloader reloader = createReloader();
+        final Configuration configuration = reloader.addSource( file );
+        assertEquals( "x", 1, configuration.getAttributeAsInteger( "x" ) );
+        assertTrue( "read-only", ( (DefaultConfiguration)configuration ).isReadOnly() );
+        assertSame( "getConfiguration", configuration, reloader.getConfiguration( file ) );
+        assertSame( "addSource again", configuration, reloader.addSource( file ) );
+        assertNull( "unknown", reloader.getConfiguration( new File( m_directory, "b.xml" ) ) );
+
+        reloader.removeSource( file );
+        assertNull( "removed", reloader.getConfiguration( file ) );
+    }
+
+    public void testAddMissingSource()
+        throws Exception
+    {
+        try
+        {
+            createReloader().addSource( new File( m_directory, "missing.xml" ) );
+        }
+        catch( final ConfigurationException ce )
+        {
+            return;
+        }
+        fail( "Expected configuration exception as file is missing." );
+    }
+
+    public void testReloadAfterQuietPeriod()
+        throws Exception
+    {
+        final File file = write( "a.xml", "<a x=\"1\"/>", 1000 );
+        final ConfigurationReloader reloader = createReloader();
+        final Configuration original = reloader.addSource( file );
+        final RecordingListener listener = new RecordingListener();
+        reloader.addListener( listener );
+
+        reloader.checkForChanges( 10000 );
+        assertSame( "unchanged", original, reloader.getConfiguration( file ) );
+
+        write( "a.xml", "<a x=\"2\"/>", 2000 );
+        reloader.checkForChanges( 10000 );
+        assertSame( "pending", original, reloader.getConfiguration( file ) );
+        reloader.checkForChanges( 10099 );
+        assertSame( "still pending", original, reloader.getConfiguration( file ) );
+
+        reloader.checkForChanges( 10100 );
+        final Configuration reloaded = reloader.getConfiguration( file );
+        assertNotSame( "reloaded", original, reloaded );
+        assertEquals( "x", 2, reloaded.getAttributeAsInteger( "x" ) );
+        assertTrue( "read-only", ( (DefaultConfiguration)reloaded ).isReadOnly() );
+        assertEquals( "x of original", 1, original.getAttributeAsInteger( "x" ) );
+
+        assertEquals( "reloads", 1, listener.m_reloads.size() );
+        final Object[] event = (Object[])listener.m_reloads.get( 0 );
+        assertEquals( "file", file, event[ 0 ] );
+        assertSame( "old", original, event[ 1 ] );
+        assertSame( "new", reloaded, event[ 2 ] );
+        final ConfigurationChange[] changes = (ConfigurationChange[])event[ 3 ];
+        assertEquals( "changes.length", 1, changes.length );
+        assertEquals( "type", ConfigurationChange.CHANGED, changes[ 0 ].getType() );
+
+        reloader.checkForChanges( 20000 );
+        assertSame( "not reloaded again", reloaded, reloader.getConfiguration( file ) );
+        assertEquals( "reloads", 1, listener.m_reloads.size() );
+    }
+
+    public void testBurstOfWritesCoalesced()
+        throws Exception
+    {
+        final File file = write( "a.xml", "<a x=\"1\"/>", 1000 );
+        final ConfigurationReloader reloader = createReloader();
+        reloader.addSource( file );
+        final RecordingListener listener = new RecordingListener();
+        reloader.addListener( listener );
+
+        write( "a.xml", "<a x=\"", 2000 );
+        reloader.checkForChanges( 10000 );
+        write( "a.xml", "<a x=\"2", 3000 );
+        reloader.checkForChanges( 10050 );
+        write( "a.xml", "<a x=\"3\"/>", 4000 );
+        reloader.checkForChanges( 10100 );
+        reloader.checkForChanges( 10150 );
+        assertEquals( "reloads before quiet", 0, listener.m_reloads.size() );
+
+        reloader.checkForChanges( 10200 );
+        assertEquals( "reloads", 1, listener.m_reloads.size() );
+        assertEquals( "failures", 0, listener.m_failures.size() );
+        assertEquals( "x", 3, reloader.getConfiguration( file ).getAttributeAsInteger( "x" ) );
+    }
+
+    public void testOnlyChangedFileReloaded()
+        throws Exception
+    {
+        final File a = write( "a.xml", "<a/>", 1000 );
+        final File b = write( "b.xml", "<b/>", 1000 );
+        final ConfigurationReloader reloader = createReloader();
+        reloader.addSource( a );
+        final Configuration original = reloader.addSource( b );
+
+        write( "a.xml", "<a x=\"1\"/>", 2000 );
+        reloader.checkForChanges( 10000 );
+        reloader.checkForChanges( 10100 );
+        assertEquals( "a", "1", reloader.getConfiguration( a ).getAttribute( "x" ) );
+        assertSame( "b", original, reloader.getConfiguration( b ) );
+    }
+
+    public void testFailedReloadKeepsConfiguration()
+        throws Exception
+    {
+        final File file = write( "a.xml", "<a x=\"1\"/>", 1000 );
+        final ConfigurationReloader reloader = createReloader();
+        final Configuration original = reloader.addSource( file );
+        final RecordingListener listener = new RecordingListener();
+        reloader.addListener( new ConfigurationReloadListener()
+        {
+            public void configurationReloaded( final File file,
+                                               final Configuration oldConfiguration,
+                                               final Configuration newConfiguration,
+                                               final ConfigurationChange[] changes )
+            {
+                throw new IllegalStateException();
+            }
+
+            public void reloadFailed( final File file, final ConfigurationException exception )
+            {
+                throw new IllegalStateException();
+            }
+        } );
+        reloader.addListener( listener );
+
+        write( "a.xml", "<a>\n<b>\n</a>", 2000 );
+        reloader.checkForChanges( 10000 );
+        reloader.checkForChanges( 10100 );
+        assertSame( "kept", original, reloader.getConfiguration( file ) );
+        assertEquals( "failures", 1, listener.m_failures.size() );
+        assertEquals( "file", file, ( (Object[])listener.m_failures.get( 0 ) )[ 0 ] );
+
+        reloader.checkForChanges( 20000 );
+        assertEquals( "failures not repeated", 1, listener.m_failures.size() );
+
+        write( "a.xml", "<a x=\"2\"/>", 3000 );
+        reloader.checkForChanges( 30000 );
+        reloader.checkForChanges( 30100 );
+        assertEquals( "x", 2, reloader.getConfiguration( file ).getAttributeAsInteger( "x" ) );
+        assertEquals( "reloads", 1, listener.m_reloads.size() );
+    }
+
+    public void testRemoveListener()
+        throws Exception
+    {
+        final File file = write( "a.xml", "<a/>", 1000 );
+        final ConfigurationReloader reloader =
+            new ConfigurationReloader( new ConfigurationBuilder(), 100, 0 );
+        reloader.addSource( file );
+        final RecordingListener listener = new RecordingListener();
+        reloader.addListener( listener );
+        reloader.removeListener( listener );
+
+        write( "a.xml", "<a x=\"1\"/>", 2000 );
+        reloader.checkForChanges( 10000 );
+        assertEquals( "a", "1", reloader.getConfiguration( file ).getAttribute( "x" ) );
+        assertEquals( "reloads", 0, listener.m_reloads.size() );
+    }
+
+    public void testStartAndStop()
+        throws Exception
+    {
+        final File file = write( "a.xml", "<a/>", 1000 );
+        final ConfigurationReloader reloader =
+            new ConfigurationReloader( new ConfigurationBuilder(), 10, 0 );
+        reloader.addSource( file );
+        reloader.start();
+        try
+        {
+            write( "a.xml", "<a x=\"1\"/>", 2000 );
+            final long end = System.currentTimeMillis() + 5000;
+            while( null == reloader.getConfiguration( file ).getAttribute( "x", null ) &&
+                System.currentTimeMillis() < end )
+            {
+                Thread.sleep( 10 );
+            }
+            assertEquals( "a", "1", reloader.getConfiguration( file ).getAttribute( "x" ) );
+        }
+        finally
+        {
+            reloader.stop();
+        }
+    }
+
+    private ConfigurationReloader createReloader()
+    {
+        return new ConfigurationReloader( new ConfigurationBuilder(), 100, 100 );
+    }
+
+    private File write( final String name, final String data, final long lastModified )
+        throws IOException
+    {
+        final File file = new File( m_directory, name );
+        final Writer writer = new FileWriter( file );
+        try
+        {
+            writer.write( data );
+        }
+        finally
+        {
+            writer.close();
+        }
+        file.setLastModified( lastModified );
+        return file;
+    }
+
+    private static class RecordingListener
+        implements ConfigurationReloadListener
+    {
+        private final List m_reloads = new ArrayList();
+        private final List m_failures = new ArrayList();
+
+        public void configurationReloaded( final File file,
+                                           final Configuration oldConfiguration,
+                                           final Configuration newConfiguration,
+                                           final ConfigurationChange[] changes )
+        {
+            m_reloads.add( new Object[]{file, oldConfiguration, newConfiguration, changes} );
+        }
+
+        public void reloadFailed( final File file, final ConfigurationException exception )
+        {
+            m_failures.add( new Object[]{file, exception} );
+        }
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+public class ConfigurationStreamReaderTestCase
+    extends TestCase
+{
+    private static final String DATA =
+        "<root>\n" +
+        "  <record id=\"1\" weight=\"2.5\" enabled=\"true\">10</record>\n" +
+        "  <record id=\"2\"><child>x</child></record>\n" +
+        "  <record id=\"3\">30</record>\n" +
+        "</root>";
+
+    public void testNullPassedIntoCtor()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationStreamReader( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "pool", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to ctor." );
+    }
+
+    public void testNullInputPassedIntoRead()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationStreamReader().read( null, new RecordingHandler() );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "input", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null input to read." );
+    }
+
+    public void testNullHandlerPassedIntoRead()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationStreamReader().read( createInput( DATA ), null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "handler", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null handler to read." );
+    }
+
+    public void testStreamElements()
+        throws Exception
+    {
+        final RecordingHandler handler = new RecordingHandler();
+        new ConfigurationStreamReader().read( createInput( DATA ), handler );
+        assertEquals( "events",
+                      "start:root[0]," +
+                      "start:record[1],end:record=10," +
+                      "start:record[1],start:child[2],end:child=x,end:record=null," +
+                      "start:record[1],end:record=30," +
+                      "end:root=null",
+                      handler.getEvents() );
+    }
+
+    public void testTypedAccessors()
+        throws Exception
+    {
+        final List values = new ArrayList();
+        final ConfigurationStreamHandler handler = new RecordingHandler()
+        {
+            public int startElement( final ConfigurationCursor cursor )
+                throws ConfigurationException
+            {
+                if( 1 == cursor.getDepth() && "1".equals( cursor.getAttribute( "id" ) ) )
+                {
+                    assertEquals( "getPath()", "root", cursor.getPath() );
+                    assertEquals( "getAttributeCount()", 3, cursor.getAttributeCount() );
+                    assertEquals( "getAttributeNames().length",
+                                  3, cursor.getAttributeNames().length );
+                    assertEquals( "getAttributeName( 0 )", "id", cursor.getAttributeName( 0 ) );
+                    assertEquals( "id", 1, cursor.getAttributeAsInteger( "id" ) );
+                    assertEquals( "id", 1L, cursor.getAttributeAsLong( "id" ) );
+                    assertEquals( "weight", 2.5, cursor.getAttributeAsFloat( "weight" ), 0.0 );
+                    assertEquals( "enabled", true, cursor.getAttributeAsBoolean( "enabled" ) );
+                    assertEquals( "missing", 7, cursor.getAttributeAsInteger( "missing", 7 ) );
+                    assertEquals( "missing", "x", cursor.getAttribute( "missing", "x" ) );
+                    assertEquals( "getValue( null )", null, cursor.getValue( null ) );
+                }
+                return CONTINUE;
+            }
+
+            public void endElement( final ConfigurationCursor cursor )
+                throws ConfigurationException
+            {
+                if( "record".equals( cursor.getName() ) )
+                {
+                    values.add( new Integer( cursor.getValueAsInteger( -1 ) ) );
+                }
+            }
+        };
+        new ConfigurationStreamReader().read( createInput( DATA ), handler );
+        assertEquals( "values.size()", 3, values.size() );
+        assertEquals( "values[0]", new Integer( 10 ), values.get( 0 ) );
+        assertEquals( "values[1]", new Integer( -1 ), values.get( 1 ) );
+        assertEquals( "values[2]", new Integer( 30 ), values.get( 2 ) );
+    }
+
+    public void testMissingAttributeReportsLocation()
+        throws Exception
+    {
+        final ConfigurationStreamHandler handler = new RecordingHandler()
+        {
+            public int startElement( final ConfigurationCursor cursor )
+                throws ConfigurationException
+            {
+                if( "record".equals( cursor.getName() ) )
+                {
+                    cursor.getAttribute( "missing" );
+                }
+                return CONTINUE;
+            }
+        };
+        try
+        {
+            new ConfigurationStreamReader().read( createInput( DATA ), handler );
+        }
+        catch( final ConfigurationException ce )
+        {
+            assertEquals( "ce.getPath()", "root", ce.getPath() );
+            final String location = ce.getLocation();
+            assertTrue( "location (" + location + ")",
+                        -1 != location.indexOf( "file.xml:2:" ) );
+            return;
+        }
+        fail( "Expected to fail getting missing attribute" );
+    }
+
+    public void testSkipElement()
+        throws Exception
+    {
+        final RecordingHandler handler = new RecordingHandler()
+        {
+            public int startElement( final ConfigurationCursor cursor )
+                throws ConfigurationException
+            {
+                super.startElement( cursor );
+                if( "2".equals( cursor.getAttribute( "id", null ) ) )
+                {
+                    return SKIP;
+                }
+                return CONTINUE;
+            }
+        };
+        new ConfigurationStreamReader().read( createInput( DATA ), handler );
+        assertEquals( "events",
+                      "start:root[0]," +
+                      "start:record[1],end:record=10," +
+                      "start:record[1]," +
+                      "start:record[1],end:record=30," +
+                      "end:root=null",
+                      handler.getEvents() );
+    }
+
+    public void testBuildElement()
+        throws Exception
+    {
+        final RecordingHandler handler = new RecordingHandler()
+        {
+            public int startElement( final ConfigurationCursor cursor )
+                throws ConfigurationException
+            {
+                super.startElement( cursor );
+                if( "2".equals( cursor.getAttribute( "id", null ) ) )
+                {
+                    return BUILD;
+                }
+                return CONTINUE;
+            }
+        };
+        new ConfigurationStreamReader().read( createInput( DATA ), handler );
+        assertEquals( "events",
+                      "start:root[0]," +
+                      "start:record[1],end:record=10," +
+                      "start:record[1],element:record," +
+                      "start:record[1],end:record=30," +
+                      "end:root=null",
+                      handler.getEvents() );
+
+        assertEquals( "elements.size()", 1, handler.getElements().size() );
+        final Configuration record = (Configuration)handler.getElements().get( 0 );
+        assertEquals( "record.getPath()", "root", record.getPath() );
+        assertEquals( "record.getAttribute( 'id' )", "2", record.getAttribute( "id" ) );
+        final String location = record.getLocation();
+        assertTrue( "location (" + location + ")", -1 != location.indexOf( "file.xml:3:" ) );
+        final Configuration child = record.getChild( "child" );
+        assertEquals( "child.getPath()", "root/record", child.getPath() );
+        assertEquals( "child.getValue()", "x", child.getValue() );
+    }
+
+    public void testBuildRootElement()
+        throws Exception
+    {
+        final RecordingHandler handler = new RecordingHandler()
+        {
+            public int startElement( final ConfigurationCursor cursor )
+                throws ConfigurationException
+            {
+                return BUILD;
+            }
+        };
+        new ConfigurationStreamReader().read( createInput( DATA ), handler );
+        assertEquals( "elements.size()", 1, handler.getElements().size() );
+        final Configuration root = (Configuration)handler.getElements().get( 0 );
+        final Configuration expected = ConfigurationUtil.buildFromXML( createInput( DATA ) );
+        assertTrue( "equals", ConfigurationUtil.equals( expected, root ) );
+        assertEquals( "root.getPath()", "", root.getPath() );
+    }
+
+    public void testWhitespaceMatchesBuildFromXML()
+        throws Exception
+    {
+        final String data = "<root><a>\u2028</a><b>\u3000</b><c> \t\n</c></root>";
+        final RecordingHandler handler = new RecordingHandler();
+        new ConfigurationStreamReader().read( createInput( data ), handler );
+        final Configuration built = ConfigurationUtil.buildFromXML( createInput( data ) );
+        assertEquals( "events",
+                      "start:root[0]," +
+                      "start:a[1],end:a=" + built.getChild( "a" ).getValue( null ) + "," +
+                      "start:b[1],end:b=" + built.getChild( "b" ).getValue( null ) + "," +
+                      "start:c[1],end:c=" + built.getChild( "c" ).getValue( null ) + "," +
+                      "end:root=null",
+                      handler.getEvents() );
+        assertEquals( "a", "\u2028", built.getChild( "a" ).getValue( null ) );
+        assertEquals( "c", null, built.getChild( "c" ).getValue( null ) );
+    }
+
+    public void testMixedContent()
+        throws Exception
+    {
+        final String data = "<root>text<child/></root>";
+        try
+        {
+            new ConfigurationStreamReader().read( createInput( data ), new RecordingHandler() );
+        }
+        catch( final SAXException se )
+        {
+            assertTrue( "message", se.getMessage().startsWith( "Mixed content (text)" ) );
+            return;
+        }
+        fail( "Expected to fail due to mixed content" );
+    }
+
+    public void testMixedContentAfterChild()
+        throws Exception
+    {
+        final String data = "<root><child/>text</root>";
+        try
+        {
+            new ConfigurationStreamReader().read( createInput( data ), new RecordingHandler() );
+        }
+        catch( final SAXException se )
+        {
+            assertTrue( "message", se.getMessage().startsWith( "Mixed content (text)" ) );
+            return;
+        }
+        fail( "Expected to fail due to mixed content" );
+    }
+
+    public void testDeepDocument()
+        throws Exception
+    {
+        final StringBuffer sb = new StringBuffer();
+        for( int i = 0; i < 50; i++ )
+        {
+            sb.append( "<e a=\"" + i + "\">" );
+        }
+        sb.append( "v" );
+        for( int i = 0; i < 50; i++ )
+        {
+            sb.append( "</e>" );
+        }
+        final int[] maxDepth = new int[ 1 ];
+        final ConfigurationStreamHandler handler = new RecordingHandler()
+        {
+            public int startElement( final ConfigurationCursor cursor )
+                throws ConfigurationException
+            {
+                assertEquals( "a", cursor.getDepth(), cursor.getAttributeAsInteger( "a" ) );
+                maxDepth[ 0 ] = Math.max( maxDepth[ 0 ], cursor.getDepth() );
+                return CONTINUE;
+            }
+        };
+        new ConfigurationStreamReader().read( createInput( sb.toString() ), handler );
+        assertEquals( "maxDepth", 49, maxDepth[ 0 ] );
+    }
+
+    private static InputSource createInput( final String data )
+    {
+        final InputSource input = new InputSource( new StringReader( data ) );
+        input.setSystemId( "file.xml" );
+        return input;
+    }
+
+    private static class RecordingHandler
+        implements ConfigurationStreamHandler
+    {
+        private final StringBuffer m_events = new StringBuffer();
+        private final List m_elements = new ArrayList();
+
+        public int startElement( final ConfigurationCursor cursor )
+            throws ConfigurationException
+        {
+            record( "start:" + cursor.getName() + "[" + cursor.getDepth() + "]" );
+            return CONTINUE;
+        }
+
+        public void endElement( final ConfigurationCursor cursor )
+            throws ConfigurationException
+        {
+            record( "end:" + cursor.getName() + "=" + cursor.getValue( null ) );
+        }
+
+        public void element( final Configuration configuration )
+            throws ConfigurationException
+        {
+            record( "element:" + configuration.getName() );
+            m_elements.add( configuration );
+        }
+
+        String getEvents()
+        {
+            return m_events.toString();
+        }
+
+        List getElements()
+        {
+            return m_elements;
+        }
+
+        private void record( final String event )
+        {
+            if( 0 != m_events.length() )
+            {
+                m_events.append( ',' );
+            }
+            m_events.append( event );
+        }
+    }
+}
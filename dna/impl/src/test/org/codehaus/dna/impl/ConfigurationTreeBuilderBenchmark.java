@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Compares building a large read-only configuration from
+ * DefaultConfiguration objects and then making it read-only
+ * against building it with a {@link ConfigurationTreeBuilder}.
+ * Run via main method; not part of the unit tests.
+ */
+public class ConfigurationTreeBuilderBenchmark
+{
+    private static final int COMPONENTS = 25000;
+
+    private static final int ROUNDS = 10;
+
+    public static void main( final String[] args )
+        throws Exception
+    {
+        final int nodes = 1 + COMPONENTS * 4;
+        for( int i = 0; i < 3; i++ )
+        {
+            System.out.println( "Round " + ( i + 1 ) + " (" + nodes + " nodes)" );
+
+            long start = System.nanoTime();
+            for( int j = 0; j < ROUNDS; j++ )
+            {
+                buildDefault();
+            }
+            report( "DefaultConfiguration + makeReadOnly", start );
+
+            start = System.nanoTime();
+            for( int j = 0; j < ROUNDS; j++ )
+            {
+                ConfigurationUtil.toCompactConfiguration( buildDefault() );
+            }
+            report( "DefaultConfiguration + toCompactConfiguration", start );
+
+            final ConfigurationTreeBuilder builder = new ConfigurationTreeBuilder();
+            start = System.nanoTime();
+            for( int j = 0; j < ROUNDS; j++ )
+            {
+                buildTree( builder );
+            }
+            report( "ConfigurationTreeBuilder", start );
+        }
+
+        long before = usedMemory();
+        Configuration configuration = buildDefault();
+        System.out.println( "DefaultConfiguration retains " +
+                            ( usedMemory() - before ) / nodes + " bytes/node" );
+        configuration = null;
+
+        before = usedMemory();
+        configuration = buildTree( new ConfigurationTreeBuilder() );
+        System.out.println( "ConfigurationTreeBuilder retains " +
+                            ( usedMemory() - before ) / nodes + " bytes/node" );
+        System.out.println( configuration.getChildren().length + " components" );
+    }
+
+    private static Configuration buildDefault()
+    {
+        final DefaultConfiguration root = new DefaultConfiguration( "container", "", "" );
+        for( int i = 0; i < COMPONENTS; i++ )
+        {
+            final DefaultConfiguration component =
+                new DefaultConfiguration( "component", "", "container" );
+            component.setAttribute( "name", "component" + i );
+            component.setAttribute( "class", "org.example.Component" );
+            final DefaultConfiguration size =
+                new DefaultConfiguration( "size", "", "container/component" );
+            size.setAttribute( "min", "1" );
+            size.setAttribute( "max", "20" );
+            component.addChild( size );
+            final DefaultConfiguration timeout =
+                new DefaultConfiguration( "timeout", "", "container/component" );
+            timeout.setValue( "3000" );
+            component.addChild( timeout );
+            final DefaultConfiguration host =
+                new DefaultConfiguration( "host", "", "container/component" );
+            host.setValue( "localhost" );
+            component.addChild( host );
+            root.addChild( component );
+        }
+        root.makeReadOnly();
+        return root;
+    }
+
+    private static Configuration buildTree( final ConfigurationTreeBuilder builder )
+    {
+        builder.start( "container" );
+        for( int i = 0; i < COMPONENTS; i++ )
+        {
+            builder.start( "component" ).
+                attribute( "name", "component" + i ).
+                attribute( "class", "org.example.Component" ).
+                start( "size" ).attribute( "min", "1" ).attribute( "max", "20" ).end().
+                element( "timeout", "3000" ).
+                element( "host", "localhost" ).
+                end();
+        }
+        return builder.end().build();
+    }
+
+    private static void report( final String label, final long start )
+    {
+        final long duration = System.nanoTime() - start;
+        System.out.println( "  " + label + ": " + ( duration / ROUNDS / 1000 ) + " us/tree" );
+    }
+
+    private static long usedMemory()
+        throws InterruptedException
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        for( int i = 0; i < 4; i++ )
+        {
+            System.gc();
+            Thread.sleep( 10 );
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
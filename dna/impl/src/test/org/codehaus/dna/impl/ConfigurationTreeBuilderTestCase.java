@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+
+public class ConfigurationTreeBuilderTestCase
+    extends TestCase
+{
+    public void testBuildTree()
+        throws Exception
+    {
+        final Configuration configuration =
+            new ConfigurationTreeBuilder().
+            start( "server" ).attribute( "name", "main" ).
+            element( "port", "8080" ).
+            start( "address" ).attribute( "host", "localhost" ).attribute( "a", "1" ).end().
+            end().
+            build();
+
+        final DefaultConfiguration expected = new DefaultConfiguration( "server", "", "" );
+        expected.setAttribute( "name", "main" );
+        final DefaultConfiguration port = new DefaultConfiguration( "port", "", "server" );
+        port.setValue( "8080" );
+        expected.addChild( port );
+        final DefaultConfiguration address = new DefaultConfiguration( "address", "", "server" );
+        address.setAttribute( "host", "localhost" );
+        address.setAttribute( "a", "1" );
+        expected.addChild( address );
+
+        assertTrue( "equals", ConfigurationUtil.equals( expected, configuration ) );
+        assertTrue( "compact", configuration instanceof CompactConfiguration );
+        assertEquals( "root path", "", configuration.getPath() );
+        assertEquals( "child path", "server", configuration.getChild( "address" ).getPath() );
+        assertEquals( "port", 8080, configuration.getChild( "port" ).getValueAsInteger() );
+        final String[] names = configuration.getChild( "address" ).getAttributeNames();
+        assertEquals( "names.length", 2, names.length );
+        assertEquals( "names[0]", "a", names[ 0 ] );
+        assertEquals( "names[1]", "host", names[ 1 ] );
+    }
+
+    public void testGrandchildPath()
+        throws Exception
+    {
+        final Configuration configuration =
+            new ConfigurationTreeBuilder().
+            start( "a" ).start( "b" ).element( "c", null ).end().end().build();
+        final Configuration c = configuration.getChild( "b" ).getChild( "c" );
+        assertEquals( "path", "a/b", c.getPath() );
+        assertNull( "value", c.getValue( null ) );
+    }
+
+    public void testDuplicateAttributeKeepsLastValue()
+        throws Exception
+    {
+        final Configuration configuration =
+            new ConfigurationTreeBuilder().
+            start( "a" ).
+            attribute( "x", "1" ).attribute( "y", "2" ).attribute( "x", "3" ).
+            end().
+            build();
+        assertEquals( "names", 2, configuration.getAttributeNames().length );
+        assertEquals( "x", "3", configuration.getAttribute( "x" ) );
+        assertEquals( "y", "2", configuration.getAttribute( "y" ) );
+    }
+
+    public void testLocation()
+        throws Exception
+    {
+        final Configuration configuration =
+            new ConfigurationTreeBuilder().
+            start( "a" ).location( "file.xml", 3, 7 ).end().build();
+        assertEquals( "location", "file.xml:3:7", configuration.getLocation() );
+    }
+
+    public void testReuse()
+        throws Exception
+    {
+        final ConfigurationTreeBuilder builder = new ConfigurationTreeBuilder();
+        final Configuration first = builder.start( "a" ).element( "b", "1" ).end().build();
+        final Configuration second = builder.start( "c" ).attribute( "d", "2" ).end().build();
+        assertEquals( "first", "a", first.getName() );
+        assertEquals( "first.b", "1", first.getChild( "b" ).getValue() );
+        assertEquals( "second", "c", second.getName() );
+        assertEquals( "second.children", 0, second.getChildren().length );
+        assertEquals( "second.d", "2", second.getAttribute( "d" ) );
+    }
+
+    public void testWideAndDeepTree()
+        throws Exception
+    {
+        final ConfigurationTreeBuilder builder = new ConfigurationTreeBuilder();
+        builder.start( "root" );
+        for( int i = 0; i < 1000; i++ )
+        {
+            builder.start( "item" ).attribute( "index", String.valueOf( i ) ).end();
+        }
+        for( int i = 0; i < 1000; i++ )
+        {
+            builder.start( "level" );
+        }
+        for( int i = 0; i < 1000; i++ )
+        {
+            builder.end();
+        }
+        final Configuration configuration = builder.end().build();
+        final Configuration[] items = configuration.getChildren( "item" );
+        assertEquals( "items", 1000, items.length );
+        assertEquals( "items[999]", 999, items[ 999 ].getAttributeAsInteger( "index" ) );
+
+        Configuration level = configuration.getChild( "level" );
+        int depth = 0;
+        while( null != level )
+        {
+            depth++;
+            level = level.getChild( "level", false );
+        }
+        assertEquals( "depth", 1000, depth );
+    }
+
+    public void testNullName()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationTreeBuilder().start( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "name", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null name." );
+    }
+
+    public void testNullAttributeValue()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationTreeBuilder().start( "a" ).attribute( "b", null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "value", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null value." );
+    }
+
+    public void testEndWithoutStart()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationTreeBuilder().end();
+        }
+        catch( final IllegalStateException ise )
+        {
+            return;
+        }
+        fail( "Expected illegal state exception as no element is open." );
+    }
+
+    public void testBuildWithOpenElement()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationTreeBuilder().start( "a" ).build();
+        }
+        catch( final IllegalStateException ise )
+        {
+            return;
+        }
+        fail( "Expected illegal state exception as root is not closed." );
+    }
+
+    public void testSecondRoot()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationTreeBuilder().start( "a" ).end().start( "b" );
+        }
+        catch( final IllegalStateException ise )
+        {
+            return;
+        }
+        fail( "Expected illegal state exception as root is already closed." );
+    }
+}
@@ -8,6 +8,8 @@
 package org.codehaus.dna.impl;
 
 import java.io.StringReader;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -162,6 +164,31 @@ public class ConfigurationUtilTestCase
                       configuration.getLocation() );
     }
 
+    public void testToConfigurationSharesStringPool()
+        throws Exception
+    {
+        final Document document = createDocument();
+        final Element element = document.createElement( "meep" );
+        final Element child1 = document.createElement( "child" );
+        final Element child2 = document.createElement( "child" );
+        child1.setAttribute( "key", "1" );
+        child2.setAttribute( "key", "2" );
+        element.appendChild( child1 );
+        element.appendChild( child2 );
+
+        final StringPool pool = new StringPool();
+        final Configuration configuration1 = ConfigurationUtil.toConfiguration( element, pool );
+        final Configuration configuration2 = ConfigurationUtil.toConfiguration( element, pool );
+        final Configuration[] children1 = configuration1.getChildren();
+        final Configuration[] children2 = configuration2.getChildren();
+        assertEquals( "children1.length", 2, children1.length );
+        assertSame( "name", children1[ 0 ].getName(), children1[ 1 ].getName() );
+        assertSame( "name", children1[ 0 ].getName(), children2[ 1 ].getName() );
+        assertSame( "key",
+                    children1[ 0 ].getAttributeNames()[ 0 ],
+                    children2[ 1 ].getAttributeNames()[ 0 ] );
+    }
+
     public void testToConfigurationFromElementWithValue()
         throws Exception
     {
@@ -331,6 +358,34 @@ public class ConfigurationUtilTestCase
         assertEquals( "configuration.location", "", configuration.getLocation() );
     }
 
+    public void testBuildFromXMLWithNullPaths()
+        throws Exception
+    {
+        final InputSource input = new InputSource( new StringReader( "<element/>" ) );
+        try
+        {
+            ConfigurationUtil.buildFromXML( input, new StringPool(), (String[])null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "paths", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null paths." );
+    }
+
+    public void testBuildFromXMLWithPaths()
+        throws Exception
+    {
+        final String data = "<root><a><b/></a><c/></root>";
+        final InputSource input = new InputSource( new StringReader( data ) );
+        final Configuration configuration =
+            ConfigurationUtil.buildFromXML( input, new StringPool(), new String[]{"root/c"} );
+        final Configuration[] children = configuration.getChildren();
+        assertEquals( "children.length", 1, children.length );
+        assertEquals( "children[ 0 ].getName()", "c", children[ 0 ].getName() );
+    }
+
     private Document createDocument() throws ParserConfigurationException
     {
         final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
@@ -520,4 +575,113 @@ public class ConfigurationUtilTestCase
             ConfigurationUtil.equals( configuration1, configuration2 );
         assertEquals( "config1 == config2", false, equal );
     }
+
+    public void testToIndexedReturnsSameInstance()
+        throws Exception
+    {
+        final DefaultConfiguration configuration = new DefaultConfiguration( "x", "", "" );
+        assertSame( configuration, ConfigurationUtil.toIndexed( configuration ) );
+    }
+
+    public void testToIndexedAdaptsOtherConfiguration()
+        throws Exception
+    {
+        final DefaultConfiguration configuration = new DefaultConfiguration( "x", "", "" );
+        configuration.setAttribute( "key", "value" );
+        configuration.addChild( new DefaultConfiguration( "y", "", "x" ) );
+        final Configuration proxy = (Configuration)Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class[]{Configuration.class},
+            new InvocationHandler()
+            {
+                public Object invoke( final Object object,
+                                      final Method method,
+                                      final Object[] args )
+                    throws Throwable
+                {
+                    return method.invoke( configuration, args );
+                }
+            } );
+
+        final IndexedConfiguration indexed = ConfigurationUtil.toIndexed( proxy );
+        assertEquals( "getName()", "x", indexed.getName() );
+        assertEquals( "getAttributeCount()", 1, indexed.getAttributeCount() );
+        assertEquals( "getAttributeName( 0 )", "key", indexed.getAttributeName( 0 ) );
+        assertEquals( "getChildCount()", 1, indexed.getChildCount() );
+        assertEquals( "getChild( 0 ).getName()", "y", indexed.getChild( 0 ).getName() );
+        assertTrue( "equals", ConfigurationUtil.equals( proxy, configuration ) );
+    }
+
+    public void testToIndexedWithNull()
+        throws Exception
+    {
+        try
+        {
+            ConfigurationUtil.toIndexed( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "configuration", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to toIndexed." );
+    }
+
+    public void testStructuralHashOfEqualConfigurations()
+        throws Exception
+    {
+        final DefaultConfiguration configuration1 = new DefaultConfiguration( "x", "", "" );
+        configuration1.setAttribute( "a", "1" );
+        configuration1.setAttribute( "b", "2" );
+        configuration1.addChild( new DefaultConfiguration( "y", "", "x" ) );
+        final Configuration configuration2 =
+            ConfigurationUtil.toCompactConfiguration( configuration1 );
+        assertEquals( "hash",
+                      ConfigurationUtil.structuralHash( configuration1 ),
+                      ConfigurationUtil.structuralHash( configuration2 ) );
+    }
+
+    public void testStructuralHashOfDifferentConfigurations()
+        throws Exception
+    {
+        final DefaultConfiguration configuration1 = new DefaultConfiguration( "x", "", "" );
+        final DefaultConfiguration configuration2 = new DefaultConfiguration( "x", "", "" );
+        configuration2.setValue( "" );
+        assertTrue( "null value != empty value",
+                    ConfigurationUtil.structuralHash( configuration1 ) !=
+                    ConfigurationUtil.structuralHash( configuration2 ) );
+
+        final DefaultConfiguration configuration3 = new DefaultConfiguration( "x", "", "" );
+        configuration3.setAttribute( "a", "1" );
+        final DefaultConfiguration configuration4 = new DefaultConfiguration( "x", "", "" );
+        configuration4.setAttribute( "a", "2" );
+        assertTrue( "different attribute values",
+                    ConfigurationUtil.structuralHash( configuration3 ) !=
+                    ConfigurationUtil.structuralHash( configuration4 ) );
+
+        final DefaultConfiguration configuration5 = new DefaultConfiguration( "x", "", "" );
+        configuration5.addChild( new DefaultConfiguration( "a", "", "x" ) );
+        configuration5.addChild( new DefaultConfiguration( "b", "", "x" ) );
+        final DefaultConfiguration configuration6 = new DefaultConfiguration( "x", "", "" );
+        configuration6.addChild( new DefaultConfiguration( "b", "", "x" ) );
+        configuration6.addChild( new DefaultConfiguration( "a", "", "x" ) );
+        assertTrue( "different child order",
+                    ConfigurationUtil.structuralHash( configuration5 ) !=
+                    ConfigurationUtil.structuralHash( configuration6 ) );
+    }
+
+    public void testStructuralHashWithNull()
+        throws Exception
+    {
+        try
+        {
+            ConfigurationUtil.structuralHash( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "configuration", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to structuralHash." );
+    }
 }
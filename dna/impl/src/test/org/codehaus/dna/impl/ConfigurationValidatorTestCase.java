@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+import org.codehaus.dna.impl.verifier.MyComponent;
+import org.xml.sax.InputSource;
+
+public class ConfigurationValidatorTestCase
+    extends TestCase
+{
+    public void testNullTypeInValidate()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationValidator().validate( null, build( "<server/>" ) );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "type", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null type." );
+    }
+
+    public void testNullConfigurationInValidate()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationValidator().validate( MockValidatedComponent.class, null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "configuration", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null configuration." );
+    }
+
+    public void testValidConfiguration()
+        throws Exception
+    {
+        final ConfigurationValidator validator = new ConfigurationValidator();
+        validator.validate( MockValidatedComponent.class,
+                            build( "<server name=\"a\"><port>80</port><host>x</host></server>" ) );
+    }
+
+    public void testTypeWithoutDescriptorNotValidated()
+        throws Exception
+    {
+        new ConfigurationValidator().validate( MockComponent.class, build( "<anything/>" ) );
+        new ConfigurationValidator().validate( Object.class, build( "<anything/>" ) );
+    }
+
+    public void testInvalidConfigurationReportsLocation()
+        throws Exception
+    {
+        final Configuration configuration =
+            build( "<server name=\"a\">\n  <port>eighty</port>\n</server>" );
+        try
+        {
+            new ConfigurationValidator().validate( MockValidatedComponent.class,
+                                                   configuration );
+        }
+        catch( final ConfigurationException ce )
+        {
+            assertEquals( "path", "server", ce.getPath() );
+            assertTrue( "location", ce.getLocation().endsWith( "test.xml:2:9" ) );
+            return;
+        }
+        fail( "Expected configuration exception as port is not an int." );
+    }
+
+    public void testMissingAttributeReported()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationValidator().validate( MockValidatedComponent.class,
+                                                   build( "<server><port>1</port></server>" ) );
+        }
+        catch( final ConfigurationException ce )
+        {
+            assertTrue( "location", ce.getLocation().endsWith( "test.xml:1:9" ) );
+            return;
+        }
+        fail( "Expected configuration exception as name is missing." );
+    }
+
+    public void testSchemaCached()
+        throws Exception
+    {
+        final ConfigurationValidator validator = new ConfigurationValidator();
+        final String location = "MockValidatedComponent-schema.xsd";
+        assertSame( "schema",
+                    validator.getSchema( MockValidatedComponent.class, location, "" ),
+                    validator.getSchema( MockValidatedComponent.class, location, "" ) );
+    }
+
+    public void testNamespacedSchema()
+        throws Exception
+    {
+        final ConfigurationValidator validator = new ConfigurationValidator();
+        validator.validate( MockValidatedComponent.class,
+                            "MockNamespaced-schema.xsd",
+                            "",
+                            build( "<server xmlns=\"urn:dna:test\"><port>1</port></server>" ) );
+        validator.validate( MockValidatedComponent.class,
+                            "MockNamespaced-schema.xsd",
+                            "",
+                            build( "<t:server xmlns:t=\"urn:dna:test\"><t:port>1</t:port>" +
+                                   "</t:server>" ) );
+        try
+        {
+            validator.validate( MockValidatedComponent.class,
+                                "MockNamespaced-schema.xsd",
+                                "",
+                                build( "<server><port>1</port></server>" ) );
+        }
+        catch( final ConfigurationException ce )
+        {
+            return;
+        }
+        fail( "Expected configuration exception as namespace is missing." );
+    }
+
+    public void testMissingSchema()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationValidator().validate( MockValidatedComponent.class,
+                                                   "missing.xsd",
+                                                   "",
+                                                   build( "<server/>" ) );
+        }
+        catch( final ConfigurationException ce )
+        {
+            return;
+        }
+        fail( "Expected configuration exception as schema is missing." );
+    }
+
+    public void testBrokenSchema()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationValidator().validate( MockValidatedComponent.class,
+                                                   "MockBroken-schema.xsd",
+                                                   "",
+                                                   build( "<server/>" ) );
+        }
+        catch( final ConfigurationException ce )
+        {
+            final String location = ce.getLocation();
+            assertTrue( "location (" + location + ")",
+                        -1 != location.indexOf( "MockBroken-schema.xsd:3:" ) );
+            return;
+        }
+        fail( "Expected configuration exception as schema is broken." );
+    }
+
+    public void testDTDUnsupported()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationValidator().validate( MyComponent.class, build( "<server/>" ) );
+        }
+        catch( final ConfigurationException ce )
+        {
+            assertTrue( "message", -1 != ce.getMessage().indexOf( "Unsupported" ) );
+            return;
+        }
+        fail( "Expected configuration exception as DTDs are unsupported." );
+    }
+
+    private static Configuration build( final String data )
+        throws Exception
+    {
+        final InputSource input = new InputSource( new StringReader( data ) );
+        input.setSystemId( "test.xml" );
+        return ConfigurationUtil.buildFromXML( input );
+    }
+}
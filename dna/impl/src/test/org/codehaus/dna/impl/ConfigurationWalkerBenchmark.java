@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Compares equals and SAX serialization, which recurse until
+ * {@link ConfigurationWalker#RECURSION_LIMIT} and walk any deeper
+ * subtrees, against purely recursive versions, on a wide tree and
+ * on a tree shallow enough for the recursive versions to complete.
+ * Run via main method; not part of the unit tests.
+ */
+public class ConfigurationWalkerBenchmark
+{
+    private static final int ROUNDS = 20;
+
+    private static final int COMPONENTS = 25000;
+
+    private static final int DEPTH = 2000;
+
+    public static void main( final String[] args )
+        throws Exception
+    {
+        final Configuration wide1 = createWide();
+        final Configuration wide2 = createWide();
+        final Configuration deep1 = createDeep();
+        final Configuration deep2 = createDeep();
+        for( int i = 0; i < 3; i++ )
+        {
+            System.out.println( "Round " + ( i + 1 ) );
+            run( "wide", wide1, wide2 );
+            run( "deep", deep1, deep2 );
+        }
+    }
+
+    private static void run( final String label,
+                             final Configuration configuration1,
+                             final Configuration configuration2 )
+        throws Exception
+    {
+        long start = System.nanoTime();
+        for( int j = 0; j < ROUNDS; j++ )
+        {
+            recursiveEquals( configuration1, configuration2 );
+        }
+        report( label + " recursive equals", start );
+
+        start = System.nanoTime();
+        for( int j = 0; j < ROUNDS; j++ )
+        {
+            ConfigurationUtil.equals( configuration1, configuration2 );
+        }
+        report( label + " ConfigurationUtil.equals", start );
+
+        final ContentHandler handler = new DefaultHandler();
+        start = System.nanoTime();
+        for( int j = 0; j < ROUNDS; j++ )
+        {
+            recursiveSerialize( configuration1, handler );
+        }
+        report( label + " recursive serialize", start );
+
+        final SAXConfigurationSerializer serializer = new SAXConfigurationSerializer();
+        start = System.nanoTime();
+        for( int j = 0; j < ROUNDS; j++ )
+        {
+            serializer.serialize( configuration1, handler );
+        }
+        report( label + " SAXConfigurationSerializer", start );
+    }
+
+    private static Configuration createWide()
+    {
+        final DefaultConfiguration root = new DefaultConfiguration( "container", "", "" );
+        for( int i = 0; i < COMPONENTS; i++ )
+        {
+            final DefaultConfiguration component =
+                new DefaultConfiguration( "component", root, null, -1, -1 );
+            component.setAttribute( "name", "component" + i );
+            final DefaultConfiguration size =
+                new DefaultConfiguration( "size", component, null, -1, -1 );
+            size.setAttribute( "max", "20" );
+            component.addChild( size );
+            final DefaultConfiguration timeout =
+                new DefaultConfiguration( "timeout", component, null, -1, -1 );
+            timeout.setValue( "3000" );
+            component.addChild( timeout );
+            root.addChild( component );
+        }
+        return root;
+    }
+
+    private static Configuration createDeep()
+    {
+        final DefaultConfiguration root = new DefaultConfiguration( "level", "", "" );
+        DefaultConfiguration parent = root;
+        for( int i = 1; i < DEPTH; i++ )
+        {
+            final DefaultConfiguration child =
+                new DefaultConfiguration( "level", parent, null, -1, -1 );
+            child.setAttribute( "index", String.valueOf( i ) );
+            parent.addChild( child );
+            parent = child;
+        }
+        parent.setValue( "leaf" );
+        return root;
+    }
+
+    private static boolean recursiveEquals( final Configuration configuration1,
+                                            final Configuration configuration2 )
+    {
+        if( !configuration1.getName().equals( configuration2.getName() ) )
+        {
+            return false;
+        }
+        final IndexedConfiguration indexed1 = ConfigurationUtil.toIndexed( configuration1 );
+        final IndexedConfiguration indexed2 = ConfigurationUtil.toIndexed( configuration2 );
+        final int childCount = indexed1.getChildCount();
+        if( childCount != indexed2.getChildCount() )
+        {
+            return false;
+        }
+        for( int i = 0; i < childCount; i++ )
+        {
+            if( !recursiveEquals( indexed1.getChild( i ), indexed2.getChild( i ) ) )
+            {
+                return false;
+            }
+        }
+        final int attributeCount = indexed1.getAttributeCount();
+        if( attributeCount != indexed2.getAttributeCount() )
+        {
+            return false;
+        }
+        for( int i = 0; i < attributeCount; i++ )
+        {
+            final String name = indexed1.getAttributeName( i );
+            if( !indexed1.getAttribute( name, "" ).equals( indexed2.getAttribute( name, null ) ) )
+            {
+                return false;
+            }
+        }
+        final String value1 = configuration1.getValue( null );
+        final String value2 = configuration2.getValue( null );
+        if( null == value1 )
+        {
+            return null == value2;
+        }
+        return value1.equals( value2 );
+    }
+
+    private static void recursiveSerialize( final Configuration configuration,
+                                            final ContentHandler handler )
+        throws SAXException
+    {
+        final IndexedConfiguration indexed = ConfigurationUtil.toIndexed( configuration );
+        final AttributesImpl attributes = new AttributesImpl();
+        final int attributeCount = indexed.getAttributeCount();
+        for( int i = 0; i < attributeCount; i++ )
+        {
+            final String name = indexed.getAttributeName( i );
+            attributes.addAttribute( "", name, name, "CDATA", indexed.getAttribute( name, "" ) );
+        }
+        final String name = indexed.getName();
+        handler.startElement( "", name, name, attributes );
+        final String value = indexed.getValue( null );
+        if( null == value )
+        {
+            final int count = indexed.getChildCount();
+            for( int i = 0; i < count; i++ )
+            {
+                recursiveSerialize( indexed.getChild( i ), handler );
+            }
+        }
+        else
+        {
+            handler.characters( value.toCharArray(), 0, value.length() );
+        }
+        handler.endElement( "", name, name );
+    }
+
+    private static void report( final String label, final long start )
+    {
+        final long duration = System.nanoTime() - start;
+        System.out.println( "  " + label + ": " + ( duration / ROUNDS / 1000 ) + " us" );
+    }
+}
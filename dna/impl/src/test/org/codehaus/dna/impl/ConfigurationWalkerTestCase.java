@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+import org.w3c.dom.Element;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class ConfigurationWalkerTestCase
+    extends TestCase
+{
+    private static final int DEPTH = 100000;
+
+    public void testNullConfiguration()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationWalker( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "configuration", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null configuration." );
+    }
+
+    public void testEvents()
+        throws Exception
+    {
+        final Configuration configuration =
+            new ConfigurationTreeBuilder().
+            start( "a" ).start( "b" ).element( "c", "1" ).end().element( "d", null ).end().
+            build();
+        final ConfigurationWalker walker = new ConfigurationWalker( configuration );
+        final StringBuffer sb = new StringBuffer();
+        while( walker.next() )
+        {
+            if( walker.isStartElement() )
+            {
+                sb.append( '<' );
+            }
+            else
+            {
+                sb.append( '/' );
+            }
+            sb.append( walker.getConfiguration().getName() );
+            sb.append( walker.getDepth() );
+            sb.append( walker.getIndex() );
+            sb.append( ' ' );
+        }
+        assertEquals( "events", "<a00 <b10 <c20 /c20 /b10 <d11 /d11 /a00 ", sb.toString() );
+        assertEquals( "next after end", false, walker.next() );
+    }
+
+    public void testSkipChildren()
+        throws Exception
+    {
+        final Configuration configuration =
+            new ConfigurationTreeBuilder().
+            start( "a" ).start( "b" ).element( "c", "1" ).end().element( "d", null ).end().
+            build();
+        final ConfigurationWalker walker = new ConfigurationWalker( configuration );
+        final StringBuffer sb = new StringBuffer();
+        while( walker.next() )
+        {
+            if( walker.isStartElement() )
+            {
+                sb.append( walker.getConfiguration().getName() );
+                if( "b".equals( walker.getConfiguration().getName() ) )
+                {
+                    walker.skipChildren();
+                }
+            }
+        }
+        assertEquals( "starts", "abd", sb.toString() );
+    }
+
+    public void testSkipChildrenAtEnd()
+        throws Exception
+    {
+        final ConfigurationWalker walker =
+            new ConfigurationWalker( new DefaultConfiguration( "a", "", "" ) );
+        walker.next();
+        walker.next();
+        try
+        {
+            walker.skipChildren();
+        }
+        catch( final IllegalStateException ise )
+        {
+            return;
+        }
+        fail( "Expected illegal state exception as positioned at end of element" );
+    }
+
+    public void testNotPositioned()
+        throws Exception
+    {
+        final ConfigurationWalker walker =
+            new ConfigurationWalker( new DefaultConfiguration( "a", "", "" ) );
+        try
+        {
+            walker.getConfiguration();
+        }
+        catch( final IllegalStateException ise )
+        {
+            return;
+        }
+        fail( "Expected illegal state exception as next() has not been called" );
+    }
+
+    public void testDeepEquals()
+        throws Exception
+    {
+        final DefaultConfiguration first = createDeepConfiguration( DEPTH );
+        final DefaultConfiguration second = createDeepConfiguration( DEPTH );
+        assertTrue( "equals", ConfigurationUtil.equals( first, second ) );
+        getDeepest( second ).setAttribute( "extra", "true" );
+        assertEquals( "equals", false, ConfigurationUtil.equals( first, second ) );
+    }
+
+    public void testDeepMakeReadOnly()
+        throws Exception
+    {
+        final DefaultConfiguration configuration = createDeepConfiguration( DEPTH );
+        final long hash = ConfigurationUtil.structuralHash( configuration );
+        configuration.makeReadOnly();
+        final DefaultConfiguration deepest = getDeepest( configuration );
+        assertEquals( "readOnly", true, deepest.isReadOnly() );
+        assertEquals( "hash", hash, configuration.getStructuralHash() );
+    }
+
+    public void testDeepCompactConfiguration()
+        throws Exception
+    {
+        final DefaultConfiguration configuration = createDeepConfiguration( DEPTH );
+        final Configuration compact = ConfigurationUtil.toCompactConfiguration( configuration );
+        assertTrue( "equals", ConfigurationUtil.equals( configuration, compact ) );
+        assertEquals( "hash",
+                      ConfigurationUtil.structuralHash( configuration ),
+                      ConfigurationUtil.structuralHash( compact ) );
+    }
+
+    public void testDeepElement()
+        throws Exception
+    {
+        final DefaultConfiguration configuration = createDeepConfiguration( DEPTH );
+        final Element element = ConfigurationUtil.toElement( configuration );
+        final Configuration copy = ConfigurationUtil.toConfiguration( element );
+        assertTrue( "equals", ConfigurationUtil.equals( configuration, copy ) );
+    }
+
+    public void testDeepElementView()
+        throws Exception
+    {
+        final DefaultConfiguration configuration = createDeepConfiguration( DEPTH );
+        final Element view = ConfigurationUtil.toElementView( configuration );
+        assertEquals( "elements", DEPTH, view.getElementsByTagName( "*" ).getLength() );
+        assertEquals( "text", "leaf", view.getTextContent() );
+        assertTrue( "equals", view.isEqualNode( ConfigurationUtil.toElement( configuration ) ) );
+    }
+
+    public void testDeepSerialize()
+        throws Exception
+    {
+        final DefaultConfiguration configuration = createDeepConfiguration( DEPTH );
+        final int[] counts = new int[ 2 ];
+        new SAXConfigurationSerializer().serialize( configuration, new DefaultHandler()
+        {
+            public void startElement( final String uri,
+                                      final String localName,
+                                      final String qName,
+                                      final Attributes attributes )
+            {
+                counts[ 0 ]++;
+            }
+
+            public void endElement( final String uri,
+                                    final String localName,
+                                    final String qName )
+            {
+                counts[ 1 ]++;
+            }
+        } );
+        assertEquals( "starts", DEPTH, counts[ 0 ] );
+        assertEquals( "ends", DEPTH, counts[ 1 ] );
+    }
+
+    public void testDeepWrite()
+        throws Exception
+    {
+        final DefaultConfiguration configuration = createDeepConfiguration( 3 );
+        final StringWriter writer = new StringWriter();
+        new ConfigurationWriter( "" ).write( configuration, writer );
+        final String expected =
+            "<?xml version=\"1.0\"?>" +
+            "<level index=\"0\"><level index=\"1\"><level index=\"2\">leaf</level>" +
+            "</level></level>";
+        assertEquals( "xml", expected, writer.toString() );
+
+        final StringWriter deepWriter = new StringWriter();
+        new ConfigurationWriter( "" ).write( createDeepConfiguration( DEPTH ), deepWriter );
+        final String xml = deepWriter.toString();
+        assertTrue( "leaf", xml.indexOf( "\"" + ( DEPTH - 1 ) + "\">leaf</level></level>" ) > 0 );
+        assertTrue( "end", xml.endsWith( "</level></level>" ) );
+    }
+
+    public void testAcrossRecursionLimit()
+        throws Exception
+    {
+        for( int i = -1; i <= 2; i++ )
+        {
+            final int depth = ConfigurationWalker.RECURSION_LIMIT + i;
+            final DefaultConfiguration first = createDeepConfiguration( depth );
+            final DefaultConfiguration second = createDeepConfiguration( depth );
+            assertTrue( "equals " + depth, ConfigurationUtil.equals( first, second ) );
+
+            final int[] counts = new int[ 1 ];
+            new SAXConfigurationSerializer().serialize( first, new DefaultHandler()
+            {
+                public void characters( final char[] ch, final int start, final int length )
+                {
+                    counts[ 0 ]++;
+                }
+
+                public void endElement( final String uri,
+                                        final String localName,
+                                        final String qName )
+                {
+                    counts[ 0 ]++;
+                }
+            } );
+            assertEquals( "events " + depth, depth + 1, counts[ 0 ] );
+
+            getDeepest( second ).setAttribute( "extra", "true" );
+            assertEquals( "equals " + depth,
+                          false,
+                          ConfigurationUtil.equals( first, second ) );
+        }
+    }
+
+    public void testDeepParsedPath()
+        throws Exception
+    {
+        final StringBuffer sb = new StringBuffer();
+        for( int i = 0; i < DEPTH; i++ )
+        {
+            sb.append( "<level>" );
+        }
+        sb.append( "leaf" );
+        for( int i = 0; i < DEPTH; i++ )
+        {
+            sb.append( "</level>" );
+        }
+        final InputSource input = new InputSource( new StringReader( sb.toString() ) );
+        final Configuration configuration = ConfigurationUtil.buildFromXML( input );
+
+        Configuration leaf = configuration;
+        while( 0 != leaf.getChildren().length )
+        {
+            leaf = leaf.getChild( "level" );
+        }
+        final StringBuffer path = new StringBuffer( "level" );
+        for( int i = 2; i < DEPTH; i++ )
+        {
+            path.append( "/level" );
+        }
+        assertEquals( "path", path.toString(), leaf.getPath() );
+        try
+        {
+            leaf.getValueAsInteger();
+            fail( "Expected to fail due to non-integer value" );
+        }
+        catch( final ConfigurationException ce )
+        {
+            assertEquals( "ce.path", path.toString(), ce.getPath() );
+        }
+    }
+
+    private static DefaultConfiguration createDeepConfiguration( final int depth )
+    {
+        final DefaultConfiguration root = new DefaultConfiguration( "level", "", "" );
+        root.setAttribute( "index", "0" );
+        DefaultConfiguration parent = root;
+        for( int i = 1; i < depth; i++ )
+        {
+            final DefaultConfiguration child =
+                new DefaultConfiguration( "level", parent, null, -1, -1 );
+            child.setAttribute( "index", String.valueOf( i ) );
+            parent.addChild( child );
+            parent = child;
+        }
+        parent.setValue( "leaf" );
+        return root;
+    }
+
+    private static DefaultConfiguration getDeepest( final DefaultConfiguration configuration )
+    {
+        DefaultConfiguration current = configuration;
+        while( 0 != current.getChildCount() )
+        {
+            current = (DefaultConfiguration)current.getChild( 0 );
+        }
+        return current;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+
+import javax.xml.transform.stream.StreamResult;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Compares writing a large configuration as text through the JAXP
+ * identity transform of {@link ConfigurationUtil#serializeToResult}
+ * against {@link ConfigurationWriter}.
+ * Run via main method; not part of the unit tests.
+ */
+public class ConfigurationWriterBenchmark
+{
+    private static final int ITERATIONS = 50;
+
+    public static void main( final String[] args )
+        throws Exception
+    {
+        final Configuration configuration = createConfiguration();
+        final ConfigurationWriter writer = new ConfigurationWriter();
+        for( int i = 0; i < 3; i++ )
+        {
+            System.out.println( "Round " + ( i + 1 ) );
+
+            long start = System.nanoTime();
+            for( int j = 0; j < ITERATIONS; j++ )
+            {
+                final StringWriter output = new StringWriter();
+                ConfigurationUtil.serializeToResult( new StreamResult( output ), configuration );
+            }
+            report( "serializeToResult( Writer )", start );
+
+            start = System.nanoTime();
+            for( int j = 0; j < ITERATIONS; j++ )
+            {
+                final ByteArrayOutputStream output = new ByteArrayOutputStream();
+                ConfigurationUtil.serializeToResult( new StreamResult( output ), configuration );
+            }
+            report( "serializeToResult( OutputStream )", start );
+
+            start = System.nanoTime();
+            for( int j = 0; j < ITERATIONS; j++ )
+            {
+                writer.write( configuration, new StringWriter() );
+            }
+            report( "ConfigurationWriter( Writer )", start );
+
+            start = System.nanoTime();
+            for( int j = 0; j < ITERATIONS; j++ )
+            {
+                writer.write( configuration, new ByteArrayOutputStream() );
+            }
+            report( "ConfigurationWriter( OutputStream )", start );
+        }
+    }
+
+    private static Configuration createConfiguration()
+    {
+        final DefaultConfiguration root = new DefaultConfiguration( "container", "", "" );
+        for( int i = 0; i < 500; i++ )
+        {
+            final DefaultConfiguration component =
+                new DefaultConfiguration( "component", "", "" );
+            component.setAttribute( "name", "component-" + i );
+            component.setAttribute( "class", "org.example.Component" + i );
+            for( int j = 0; j < 10; j++ )
+            {
+                final DefaultConfiguration entry = new DefaultConfiguration( "entry", "", "" );
+                entry.setAttribute( "key", "key-" + j );
+                entry.setValue( "value " + j + " & <more>" );
+                component.addChild( entry );
+            }
+            root.addChild( component );
+        }
+        return root;
+    }
+
+    private static void report( final String label, final long start )
+    {
+        final long duration = System.nanoTime() - start;
+        System.out.println( "  " + label + ": " + ( duration / ITERATIONS / 1000 ) + " us/write" );
+    }
+}
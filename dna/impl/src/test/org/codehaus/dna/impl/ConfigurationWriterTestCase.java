@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.xml.sax.InputSource;
+
+public class ConfigurationWriterTestCase
+    extends TestCase
+{
+    public void testNullIndentInCtor()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationWriter( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "indent", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to ctor." );
+    }
+
+    public void testNullConfigurationInWrite()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationWriter().write( null, new StringWriter() );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "configuration", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null configuration." );
+    }
+
+    public void testNullWriterInWrite()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationWriter().write( build( "<a/>" ), (Writer)null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "writer", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null writer." );
+    }
+
+    public void testNullOutputInWrite()
+        throws Exception
+    {
+        try
+        {
+            new ConfigurationWriter().write( build( "<a/>" ), (OutputStream)null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "output", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null output." );
+    }
+
+    public void testWriteIndented()
+        throws Exception
+    {
+        final Configuration configuration =
+            build( "<root a=\"1\"><child><leaf>x</leaf><empty/></child><value>v</value></root>" );
+        final StringWriter writer = new StringWriter();
+        new ConfigurationWriter().write( configuration, writer );
+        assertEquals( "output",
+                      "<?xml version=\"1.0\"?>\n" +
+                      "<root a=\"1\">\n" +
+                      "  <child>\n" +
+                      "    <leaf>x</leaf>\n" +
+                      "    <empty/>\n" +
+                      "  </child>\n" +
+                      "  <value>v</value>\n" +
+                      "</root>\n",
+                      writer.toString() );
+    }
+
+    public void testWriteCompact()
+        throws Exception
+    {
+        final Configuration configuration = build( "<root><child><leaf>x</leaf></child></root>" );
+        final StringWriter writer = new StringWriter();
+        new ConfigurationWriter( "" ).write( configuration, writer );
+        assertEquals( "output",
+                      "<?xml version=\"1.0\"?><root><child><leaf>x</leaf></child></root>",
+                      writer.toString() );
+    }
+
+    public void testEscaping()
+        throws Exception
+    {
+        final DefaultConfiguration configuration = new DefaultConfiguration( "root", "", "" );
+        configuration.setAttribute( "a", "<\"&'>\t\n\r" );
+        configuration.setValue( "<\"&'>\t\n\r" );
+        final StringWriter writer = new StringWriter();
+        new ConfigurationWriter( "" ).write( configuration, writer );
+        assertEquals( "output",
+                      "<?xml version=\"1.0\"?><root a=\"&lt;&quot;&amp;'&gt;&#9;&#10;&#13;\">" +
+                      "&lt;\"&amp;'&gt;\t\n&#13;</root>",
+                      writer.toString() );
+
+        final Configuration read = build( writer.toString() );
+        assertEquals( "attribute", "<\"&'>\t\n\r", read.getAttribute( "a" ) );
+        assertEquals( "value", "<\"&'>\t\n\r", read.getValue() );
+    }
+
+    public void testWriteUTF8()
+        throws Exception
+    {
+        final String text = "caf\u00e9 \u20ac \ud834\udd1e";
+        final DefaultConfiguration configuration = new DefaultConfiguration( "root", "", "" );
+        configuration.setAttribute( "a", text );
+        configuration.setValue( text );
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ConfigurationWriter( "" ).write( configuration, output );
+        final String expected =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?><root a=\"" + text + "\">" +
+            text + "</root>";
+        assertEquals( "output", expected, new String( output.toByteArray(), "UTF-8" ) );
+    }
+
+    public void testSurrogatePairAcrossBufferBoundary()
+        throws Exception
+    {
+        //Place the high surrogate in the last slot of the 8192 character buffer
+        final String prefix = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><root>";
+        final StringBuffer sb = new StringBuffer();
+        for( int i = prefix.length(); i < 8191; i++ )
+        {
+            sb.append( 'x' );
+        }
+        sb.append( "\ud834\udd1e" );
+        final DefaultConfiguration configuration = new DefaultConfiguration( "root", "", "" );
+        configuration.setValue( sb.toString() );
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ConfigurationWriter( "" ).write( configuration, output );
+        assertEquals( "output",
+                      prefix + sb + "</root>",
+                      new String( output.toByteArray(), "UTF-8" ) );
+    }
+
+    public void testWriteLargeConfigurationToStream()
+        throws Exception
+    {
+        final DefaultConfiguration root = new DefaultConfiguration( "root", "", "" );
+        for( int i = 0; i < 2000; i++ )
+        {
+            final DefaultConfiguration child = new DefaultConfiguration( "child", "", "" );
+            child.setAttribute( "id", String.valueOf( i ) );
+            child.setValue( "\u20ac\ud834\udd1e" + i );
+            root.addChild( child );
+        }
+        final ConfigurationWriter writer = new ConfigurationWriter();
+        for( int i = 0; i < 2; i++ )
+        {
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            writer.write( root, output );
+            final InputSource input =
+                new InputSource( new ByteArrayInputStream( output.toByteArray() ) );
+            final Configuration read = ConfigurationUtil.buildFromXML( input );
+            assertTrue( "equals", ConfigurationUtil.equals( root, read ) );
+
+            final StringWriter stringWriter = new StringWriter();
+            writer.write( root, stringWriter );
+            assertEquals( "same as stream",
+                          new String( output.toByteArray(), "UTF-8" ).substring( 38 ),
+                          stringWriter.toString().substring( 21 ) );
+        }
+    }
+
+    private static Configuration build( final String data )
+        throws Exception
+    {
+        return ConfigurationUtil.buildFromXML( new InputSource( new StringReader( data ) ) );
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+public class DOMConfigurationElementTestCase
+    extends TestCase
+{
+    private static final String XML =
+        "<root version=\"2\">" +
+        "<component name=\"a\" class=\"A\"><size>10</size></component>" +
+        "<component name=\"b\" class=\"B\"/>" +
+        "<value>text</value>" +
+        "</root>";
+
+    public void testNullConfigurationInToElementView()
+        throws Exception
+    {
+        try
+        {
+            ConfigurationUtil.toElementView( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "configuration", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null configuration." );
+    }
+
+    public void testNavigation()
+        throws Exception
+    {
+        final Element root = ConfigurationUtil.toElementView( build( XML ) );
+        assertEquals( "root.getTagName()", "root", root.getTagName() );
+        assertEquals( "root.getNodeType()", Node.ELEMENT_NODE, root.getNodeType() );
+        assertEquals( "root.version", "2", root.getAttribute( "version" ) );
+        assertEquals( "root.missing", "", root.getAttribute( "missing" ) );
+        assertEquals( "root.hasAttribute", true, root.hasAttribute( "version" ) );
+        assertEquals( "root.getParentNode().getNodeType()",
+                      Node.DOCUMENT_NODE,
+                      root.getParentNode().getNodeType() );
+        assertSame( "getDocumentElement", root, root.getOwnerDocument().getDocumentElement() );
+
+        final NodeList children = root.getChildNodes();
+        assertEquals( "children.getLength()", 3, children.getLength() );
+        final Element first = (Element)root.getFirstChild();
+        assertSame( "same node", first, children.item( 0 ) );
+        assertEquals( "first.name", "a", first.getAttribute( "name" ) );
+        final Element second = (Element)first.getNextSibling();
+        assertEquals( "second.name", "b", second.getAttribute( "name" ) );
+        assertSame( "previous", first, second.getPreviousSibling() );
+        assertNull( "first.getPreviousSibling()", first.getPreviousSibling() );
+        assertEquals( "second.hasChildNodes()", false, second.hasChildNodes() );
+
+        final Node value = root.getLastChild();
+        assertNull( "value.getNextSibling()", value.getNextSibling() );
+        final Node text = value.getFirstChild();
+        assertEquals( "text.getNodeType()", Node.TEXT_NODE, text.getNodeType() );
+        assertEquals( "text.getNodeValue()", "text", text.getNodeValue() );
+        assertSame( "text.getParentNode()", value, text.getParentNode() );
+        assertEquals( "root.getTextContent()", "10text", root.getTextContent() );
+
+        final NamedNodeMap attributes = first.getAttributes();
+        assertEquals( "attributes.getLength()", 2, attributes.getLength() );
+        final Attr attr = (Attr)attributes.getNamedItem( "class" );
+        assertEquals( "attr.getValue()", "A", attr.getValue() );
+        assertSame( "attr.getOwnerElement()", first, attr.getOwnerElement() );
+        assertSame( "same attr", attr, first.getAttributeNode( "class" ) );
+    }
+
+    public void testGetElementsByTagName()
+        throws Exception
+    {
+        final Element root = ConfigurationUtil.toElementView( build( XML ) );
+        final NodeList components = root.getElementsByTagName( "component" );
+        assertEquals( "components", 2, components.getLength() );
+        assertSame( "components[0]", root.getFirstChild(), components.item( 0 ) );
+        assertEquals( "all", 5, root.getOwnerDocument().getElementsByTagName( "*" ).getLength() );
+    }
+
+    public void testReadOnly()
+        throws Exception
+    {
+        final Element root = ConfigurationUtil.toElementView( build( XML ) );
+        try
+        {
+            root.setAttribute( "version", "3" );
+            fail( "Expected exception as view is read-only" );
+        }
+        catch( final DOMException de )
+        {
+            assertEquals( "code", DOMException.NO_MODIFICATION_ALLOWED_ERR, de.code );
+        }
+        try
+        {
+            root.removeChild( root.getFirstChild() );
+            fail( "Expected exception as view is read-only" );
+        }
+        catch( final DOMException de )
+        {
+            assertEquals( "code", DOMException.NO_MODIFICATION_ALLOWED_ERR, de.code );
+        }
+        try
+        {
+            root.getOwnerDocument().createElement( "x" );
+            fail( "Expected exception as view is read-only" );
+        }
+        catch( final DOMException de )
+        {
+            assertEquals( "code", DOMException.NO_MODIFICATION_ALLOWED_ERR, de.code );
+        }
+    }
+
+    public void testCompareDocumentPosition()
+        throws Exception
+    {
+        final Element root = ConfigurationUtil.toElementView( build( XML ) );
+        final Node first = root.getFirstChild();
+        final Node last = root.getLastChild();
+        final Node attr = root.getAttributeNode( "version" );
+        assertEquals( "first to last", Node.DOCUMENT_POSITION_FOLLOWING,
+                      first.compareDocumentPosition( last ) );
+        assertEquals( "last to first", Node.DOCUMENT_POSITION_PRECEDING,
+                      last.compareDocumentPosition( first ) );
+        assertEquals( "root to first",
+                      Node.DOCUMENT_POSITION_CONTAINED_BY | Node.DOCUMENT_POSITION_FOLLOWING,
+                      root.compareDocumentPosition( first ) );
+        assertEquals( "first to root",
+                      Node.DOCUMENT_POSITION_CONTAINS | Node.DOCUMENT_POSITION_PRECEDING,
+                      first.compareDocumentPosition( root ) );
+        assertEquals( "attr to first", Node.DOCUMENT_POSITION_FOLLOWING,
+                      attr.compareDocumentPosition( first ) );
+        assertEquals( "same", 0, first.compareDocumentPosition( first ) );
+    }
+
+    public void testEqualToCopy()
+        throws Exception
+    {
+        final Configuration configuration = build( XML );
+        final Element view = ConfigurationUtil.toElementView( configuration );
+        final Element copy = ConfigurationUtil.toElement( configuration );
+        assertTrue( "view equals copy", view.isEqualNode( copy ) );
+        assertTrue( "copy equals view", copy.isEqualNode( view ) );
+    }
+
+    public void testXPath()
+        throws Exception
+    {
+        final Element root = ConfigurationUtil.toElementView( build( XML ) );
+        final XPath xpath = XPathFactory.newInstance().newXPath();
+        assertEquals( "class",
+                      "B",
+                      xpath.evaluate( "component[@name='b']/@class", root ) );
+        assertEquals( "size", "10", xpath.evaluate( "/root/component/size", root ) );
+        final NodeList nodes =
+            (NodeList)xpath.evaluate( "//component", root, XPathConstants.NODESET );
+        assertEquals( "nodes", 2, nodes.getLength() );
+        assertSame( "nodes[1]", root.getFirstChild().getNextSibling(), nodes.item( 1 ) );
+    }
+
+    public void testTransform()
+        throws Exception
+    {
+        final Configuration configuration = build( XML );
+        final Element root = ConfigurationUtil.toElementView( configuration );
+        final StringWriter writer = new StringWriter();
+        TransformerFactory.newInstance().newTransformer().
+            transform( new DOMSource( root ), new StreamResult( writer ) );
+        final Configuration read = build( writer.toString() );
+        assertTrue( "equals", ConfigurationUtil.equals( configuration, read ) );
+    }
+
+    private static Configuration build( final String data )
+        throws Exception
+    {
+        return ConfigurationUtil.buildFromXML( new InputSource( new StringReader( data ) ) );
+    }
+}
@@ -7,6 +7,8 @@
  */
 package org.codehaus.dna.impl;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import junit.framework.TestCase;
 
@@ -30,6 +32,42 @@ public class DefaultConfigurationTestCase
         assertEquals( "path", path, configuration.getPath() );
     }
 
+    public void testLazyPathAndLocation()
+        throws Exception
+    {
+        final DefaultConfiguration root =
+            new DefaultConfiguration( "root", null, "file.xml", 1, 2 );
+        final DefaultConfiguration child =
+            new DefaultConfiguration( "child", root, "file.xml", 3, -1 );
+        final DefaultConfiguration grandChild =
+            new DefaultConfiguration( "grandChild", child, "file.xml", -1, -1 );
+        final DefaultConfiguration unknown =
+            new DefaultConfiguration( "unknown", grandChild, null, 7, 8 );
+        assertEquals( "root.location", "file.xml:1:2", root.getLocation() );
+        assertEquals( "root.path", "", root.getPath() );
+        assertEquals( "child.location", "file.xml:3", child.getLocation() );
+        assertEquals( "child.path", "root", child.getPath() );
+        assertEquals( "grandChild.location", "file.xml", grandChild.getLocation() );
+        assertEquals( "grandChild.path", "root/child", grandChild.getPath() );
+        assertEquals( "unknown.location", "", unknown.getLocation() );
+        assertEquals( "unknown.path", "root/child/grandChild", unknown.getPath() );
+    }
+
+    public void testNullNameInLazyCtor()
+        throws Exception
+    {
+        try
+        {
+            new DefaultConfiguration( null, null, "file.xml", 1, 2 );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "name", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to ctor." );
+    }
+
     public void testNullNameInCtor()
         throws Exception
     {
@@ -643,6 +681,75 @@ public class DefaultConfigurationTestCase
         fail( "Expected to fail with getAttribute for malformed attribute" );
     }
 
+    public void testTypedValueAccessorsWhenReadOnly()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        configuration.setValue( "42" );
+        configuration.makeReadOnly();
+        for( int i = 0; i < 2; i++ )
+        {
+            assertEquals( "getValueAsInteger()", 42, configuration.getValueAsInteger() );
+            assertEquals( "getValueAsInteger( 1 )", 42, configuration.getValueAsInteger( 1 ) );
+            assertEquals( "getValueAsLong()", 42L, configuration.getValueAsLong() );
+            assertEquals( "getValueAsFloat()", 42.0F, configuration.getValueAsFloat(), 0.0F );
+            assertEquals( "getValueAsBoolean()", false, configuration.getValueAsBoolean() );
+        }
+    }
+
+    public void testMalformedTypedValueWhenReadOnly()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        configuration.setValue( "blah" );
+        configuration.makeReadOnly();
+        assertEquals( "getValueAsInteger( 1 )", 1, configuration.getValueAsInteger( 1 ) );
+        assertEquals( "getValueAsLong( 2 )", 2L, configuration.getValueAsLong( 2 ) );
+        assertEquals( "getValueAsFloat( 3 )", 3.0F, configuration.getValueAsFloat( 3 ), 0.0F );
+        try
+        {
+            configuration.getValueAsInteger();
+        }
+        catch( final ConfigurationException ce )
+        {
+            assertEquals( "ce.getLocation()", "file.xml:20", ce.getLocation() );
+            assertTrue( "ce.getCause()", ce.getCause() instanceof NumberFormatException );
+            return;
+        }
+        fail( "Expected to fail getting malformed value as integer" );
+    }
+
+    public void testTypedAttributeAccessorsWhenReadOnly()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        configuration.setAttribute( "port", "8080" );
+        configuration.setAttribute( "secure", "true" );
+        configuration.setAttribute( "ratio", "0.5" );
+        configuration.makeReadOnly();
+        for( int i = 0; i < 2; i++ )
+        {
+            assertEquals( "port", 8080, configuration.getAttributeAsInteger( "port" ) );
+            assertEquals( "port", 8080L, configuration.getAttributeAsLong( "port", 1 ) );
+            assertEquals( "secure", true, configuration.getAttributeAsBoolean( "secure" ) );
+            assertEquals( "ratio", 0.5F, configuration.getAttributeAsFloat( "ratio" ), 0.0F );
+            assertEquals( "ratio", 9, configuration.getAttributeAsInteger( "ratio", 9 ) );
+            assertEquals( "missing", 7, configuration.getAttributeAsInteger( "missing", 7 ) );
+        }
+        try
+        {
+            configuration.getAttributeAsInteger( "ratio" );
+        }
+        catch( final ConfigurationException ce )
+        {
+            return;
+        }
+        fail( "Expected to fail getting malformed attribute as integer" );
+    }
+
     public void testGetAttributes()
         throws Exception
     {
@@ -809,6 +916,56 @@ public class DefaultConfigurationTestCase
         assertEquals( "children.length", 0, children.length );
     }
 
+    public void testGetChildrenWithNameWhenReadOnly()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        final DefaultConfiguration child1 =
+            new DefaultConfiguration( "mychild", "file.xml:20", "/myElement" );
+        final DefaultConfiguration child2 =
+            new DefaultConfiguration( "blah", "file.xml:20", "/myElement" );
+        final DefaultConfiguration child3 =
+            new DefaultConfiguration( "mychild", "file.xml:20", "/myElement" );
+
+        configuration.addChild( child1 );
+        configuration.addChild( child2 );
+        configuration.addChild( child3 );
+        configuration.makeReadOnly();
+
+        final Configuration[] children = configuration.getChildren( "mychild" );
+        assertEquals( "children.length", 2, children.length );
+        assertEquals( "children[ 0 ]", child1, children[ 0 ] );
+        assertEquals( "children[ 1 ]", child3, children[ 1 ] );
+        assertEquals( "getChildren( 'blah' ).length",
+                      1, configuration.getChildren( "blah" ).length );
+        assertEquals( "getChildren( 'noExist' ).length",
+                      0, configuration.getChildren( "noExist" ).length );
+    }
+
+    public void testGetChildWhenReadOnly()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        final DefaultConfiguration child1 =
+            new DefaultConfiguration( "mychild", "file.xml:20", "/myElement" );
+        final DefaultConfiguration child2 =
+            new DefaultConfiguration( "mychild", "file.xml:20", "/myElement" );
+        configuration.addChild( child1 );
+        configuration.addChild( child2 );
+        configuration.makeReadOnly();
+
+        assertEquals( "getChild( 'mychild' )",
+                      child1, configuration.getChild( "mychild" ) );
+        assertEquals( "getChild( 'noExist', false )",
+                      null, configuration.getChild( "noExist", false ) );
+        final Configuration created = configuration.getChild( "noExist" );
+        assertEquals( "created.getName()", "noExist", created.getName() );
+        assertEquals( "created.getLocation()",
+                      "file.xml:20<autogen>", created.getLocation() );
+    }
+
     public void testAutogeneratePath()
         throws Exception
     {
@@ -880,4 +1037,166 @@ public class DefaultConfigurationTestCase
         final String string = configuration.toString();
         assertEquals( expected, string );
     }
+
+    public void testIndexedAccessToChildren()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        assertEquals( "getChildCount()", 0, configuration.getChildCount() );
+
+        final DefaultConfiguration child1 =
+            new DefaultConfiguration( "a", "file.xml:21", "myElement" );
+        final DefaultConfiguration child2 =
+            new DefaultConfiguration( "b", "file.xml:22", "myElement" );
+        configuration.addChild( child1 );
+        configuration.addChild( child2 );
+        assertEquals( "getChildCount()", 2, configuration.getChildCount() );
+        assertSame( "getChild( 0 )", child1, configuration.getChild( 0 ) );
+        assertSame( "getChild( 1 )", child2, configuration.getChild( 1 ) );
+    }
+
+    public void testGetChildWithIndexOutOfRange()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        try
+        {
+            configuration.getChild( 0 );
+        }
+        catch( final IndexOutOfBoundsException ioobe )
+        {
+            return;
+        }
+        fail( "Expected getChild( 0 ) to fail as there are no children" );
+    }
+
+    public void testIndexedAccessToAttributes()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        assertEquals( "getAttributeCount()", 0, configuration.getAttributeCount() );
+
+        configuration.setAttribute( "key", "value" );
+        assertEquals( "getAttributeCount()", 1, configuration.getAttributeCount() );
+        assertEquals( "getAttributeName( 0 )", "key", configuration.getAttributeName( 0 ) );
+
+        configuration.setAttribute( "key", "value2" );
+        configuration.setAttribute( "key2", "value" );
+        assertEquals( "getAttributeCount()", 2, configuration.getAttributeCount() );
+        final String[] names = configuration.getAttributeNames();
+        assertEquals( "getAttributeName( 0 )", names[ 0 ], configuration.getAttributeName( 0 ) );
+        assertEquals( "getAttributeName( 1 )", names[ 1 ], configuration.getAttributeName( 1 ) );
+    }
+
+    public void testForEachChild()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        final DefaultConfiguration child1 =
+            new DefaultConfiguration( "a", "file.xml:21", "myElement" );
+        final DefaultConfiguration child2 =
+            new DefaultConfiguration( "b", "file.xml:22", "myElement" );
+        configuration.addChild( child1 );
+        configuration.addChild( child2 );
+
+        final List visited = new ArrayList();
+        final ConfigurationVisitor visitor = new ConfigurationVisitor()
+        {
+            public boolean visit( final Configuration child )
+            {
+                visited.add( child );
+                return true;
+            }
+        };
+        assertEquals( "forEachChild()", true, configuration.forEachChild( visitor ) );
+        assertEquals( "visited.size()", 2, visited.size() );
+        assertSame( "visited[ 0 ]", child1, visited.get( 0 ) );
+        assertSame( "visited[ 1 ]", child2, visited.get( 1 ) );
+    }
+
+    public void testForEachChildStopsWhenVisitorReturnsFalse()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        configuration.addChild( new DefaultConfiguration( "a", "file.xml:21", "myElement" ) );
+        configuration.addChild( new DefaultConfiguration( "b", "file.xml:22", "myElement" ) );
+        configuration.makeReadOnly();
+
+        final List visited = new ArrayList();
+        final ConfigurationVisitor visitor = new ConfigurationVisitor()
+        {
+            public boolean visit( final Configuration child )
+            {
+                visited.add( child );
+                return false;
+            }
+        };
+        assertEquals( "forEachChild()", false, configuration.forEachChild( visitor ) );
+        assertEquals( "visited.size()", 1, visited.size() );
+    }
+
+    public void testForEachChildWithNullVisitor()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        try
+        {
+            configuration.forEachChild( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "visitor", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to forEachChild." );
+    }
+
+    public void testStructuralHashCalculatedWhenReadOnly()
+        throws Exception
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        final DefaultConfiguration child =
+            new DefaultConfiguration( "child", "file.xml:21", "myElement" );
+        configuration.addChild( child );
+        final long mutableHash = configuration.getStructuralHash();
+        assertEquals( "mutableHash",
+                      ConfigurationUtil.structuralHash( configuration ), mutableHash );
+
+        child.setAttribute( "key", "value" );
+        final long changedHash = configuration.getStructuralHash();
+        assertTrue( "hash changes while mutable", mutableHash != changedHash );
+
+        configuration.makeReadOnly();
+        assertEquals( "readOnlyHash", changedHash, configuration.getStructuralHash() );
+        assertEquals( "child.readOnlyHash",
+                      ConfigurationUtil.structuralHash( child ), child.getStructuralHash() );
+    }
+
+    public void testEqualsWithReadOnlyConfigurations()
+        throws Exception
+    {
+        final DefaultConfiguration configuration1 =
+            new DefaultConfiguration( "myElement", "file.xml:20", "" );
+        configuration1.setAttribute( "key", "value" );
+        final DefaultConfiguration configuration2 =
+            new DefaultConfiguration( "myElement", "file.xml:30", "" );
+        configuration2.setAttribute( "key", "value" );
+        final DefaultConfiguration configuration3 =
+            new DefaultConfiguration( "myElement", "file.xml:40", "" );
+        configuration3.setAttribute( "key", "other" );
+        configuration1.makeReadOnly();
+        configuration2.makeReadOnly();
+        configuration3.makeReadOnly();
+
+        assertTrue( "1 == 1", ConfigurationUtil.equals( configuration1, configuration1 ) );
+        assertTrue( "1 == 2", ConfigurationUtil.equals( configuration1, configuration2 ) );
+        assertEquals( "1 != 3", false, ConfigurationUtil.equals( configuration1, configuration3 ) );
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.xml.sax.InputSource;
+
+public class InterpolatingSAXConfigurationHandlerTestCase
+    extends TestCase
+{
+    private static final String PROPERTY = "dna.interpolation.test";
+
+    protected void tearDown()
+        throws Exception
+    {
+        System.getProperties().remove( PROPERTY );
+    }
+
+    public void testTextWithoutPlaceholdersUnchanged()
+        throws Exception
+    {
+        final InterpolatingSAXConfigurationHandler handler =
+            new InterpolatingSAXConfigurationHandler( null, null );
+        final String text = "plain $text {with} $ symbols";
+        assertSame( "text", text, handler.interpolate( text ) );
+    }
+
+    public void testResolveFromLocator()
+        throws Exception
+    {
+        final DefaultResourceLocator locator = new DefaultResourceLocator();
+        locator.put( "host", "example.com" );
+        locator.put( "port", new Integer( 8080 ) );
+        final InterpolatingSAXConfigurationHandler handler =
+            new InterpolatingSAXConfigurationHandler( locator, null );
+        assertEquals( "text",
+                      "http://example.com:8080/",
+                      handler.interpolate( "http://${host}:${port}/" ) );
+        assertEquals( "whole", "example.com", handler.interpolate( "${host}" ) );
+    }
+
+    public void testResolutionOrder()
+        throws Exception
+    {
+        final DefaultResourceLocator locator = new DefaultResourceLocator();
+        locator.put( PROPERTY, "locator" );
+        final DefaultConfiguration defaults = new DefaultConfiguration( "defaults", "", "" );
+        defaults.setAttribute( PROPERTY, "defaults" );
+        defaults.setAttribute( "other", "defaults" );
+        System.setProperty( PROPERTY, "property" );
+
+        final String text = "${" + PROPERTY + "}";
+        assertEquals( "locator",
+                      "locator",
+                      new InterpolatingSAXConfigurationHandler( locator, defaults )
+                      .interpolate( text ) );
+        assertEquals( "property",
+                      "property",
+                      new InterpolatingSAXConfigurationHandler( null, defaults )
+                      .interpolate( text ) );
+        System.getProperties().remove( PROPERTY );
+        assertEquals( "defaults",
+                      "defaults",
+                      new InterpolatingSAXConfigurationHandler( null, defaults )
+                      .interpolate( text ) );
+        assertEquals( "other",
+                      "defaults",
+                      new InterpolatingSAXConfigurationHandler( locator, defaults )
+                      .interpolate( "${other}" ) );
+    }
+
+    public void testUnresolvedAndUnterminatedPlaceholdersKept()
+        throws Exception
+    {
+        final InterpolatingSAXConfigurationHandler handler =
+            new InterpolatingSAXConfigurationHandler( null, null );
+        assertEquals( "unresolved",
+                      "a${dna.missing}b",
+                      handler.interpolate( "a${dna.missing}b" ) );
+        assertEquals( "unterminated", "a${b", handler.interpolate( "a${b" ) );
+        assertEquals( "empty", "${}", handler.interpolate( "${}" ) );
+    }
+
+    public void testVariablesResolvedAgainAfterClear()
+        throws Exception
+    {
+        final InterpolatingSAXConfigurationHandler handler =
+            new InterpolatingSAXConfigurationHandler( null, null );
+        final String text = "v=${" + PROPERTY + "}";
+        System.setProperty( PROPERTY, "1" );
+        assertEquals( "first", "v=1", handler.interpolate( text ) );
+        System.setProperty( PROPERTY, "2" );
+        assertEquals( "same parse", "v=1", handler.interpolate( text ) );
+        handler.clear();
+        assertEquals( "after clear", "v=2", handler.interpolate( text ) );
+    }
+
+    public void testBuildWithBuilder()
+        throws Exception
+    {
+        final DefaultResourceLocator locator = new DefaultResourceLocator();
+        locator.put( "name", "server" );
+        final DefaultConfiguration defaults = new DefaultConfiguration( "defaults", "", "" );
+        defaults.setAttribute( "dir", "/var/dna" );
+        final ConfigurationBuilder builder = new ConfigurationBuilder()
+        {
+            protected SAXConfigurationHandler createHandler( final StringPool pool )
+            {
+                return new InterpolatingSAXConfigurationHandler( pool, locator, defaults );
+            }
+        };
+        final String xml =
+            "<root id=\"${name}\"><log>${dir}/${name}.log</log><raw>${x</raw></root>";
+        for( int i = 0; i < 2; i++ )
+        {
+            final Configuration configuration =
+                builder.build( new InputSource( new StringReader( xml ) ) );
+            assertEquals( "id", "server", configuration.getAttribute( "id" ) );
+            assertEquals( "log",
+                          "/var/dna/server.log",
+                          configuration.getChild( "log" ).getValue() );
+            assertEquals( "raw", "${x", configuration.getChild( "raw" ).getValue() );
+        }
+    }
+}
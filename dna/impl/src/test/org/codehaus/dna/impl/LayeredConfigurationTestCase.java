@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import junit.framework.TestCase;
+
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+
+public class LayeredConfigurationTestCase
+    extends TestCase
+{
+    public void testNullOverridePassedToCtor()
+        throws Exception
+    {
+        try
+        {
+            new LayeredConfiguration( null, new DefaultConfiguration( "x", "", "" ) );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "override", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to constructor." );
+    }
+
+    public void testNullBasePassedToCtor()
+        throws Exception
+    {
+        try
+        {
+            new LayeredConfiguration( new DefaultConfiguration( "x", "", "" ), null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "base", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to constructor." );
+    }
+
+    public void testNameLocationAndPathFromOverride()
+        throws Exception
+    {
+        final DefaultConfiguration override =
+            new DefaultConfiguration( "x", "override.xml:1", "a" );
+        final DefaultConfiguration base =
+            new DefaultConfiguration( "x", "base.xml:1", "b" );
+        final Configuration layered = new LayeredConfiguration( override, base );
+        assertEquals( "getName()", "x", layered.getName() );
+        assertEquals( "getLocation()", "override.xml:1", layered.getLocation() );
+        assertEquals( "getPath()", "a", layered.getPath() );
+    }
+
+    public void testAttributesFallBackToBase()
+        throws Exception
+    {
+        final DefaultConfiguration override = new DefaultConfiguration( "x", "", "" );
+        override.setAttribute( "port", "8080" );
+        final DefaultConfiguration base = new DefaultConfiguration( "x", "", "" );
+        base.setAttribute( "port", "80" );
+        base.setAttribute( "host", "localhost" );
+        final Configuration layered = new LayeredConfiguration( override, base );
+
+        assertEquals( "port", 8080, layered.getAttributeAsInteger( "port" ) );
+        assertEquals( "host", "localhost", layered.getAttribute( "host" ) );
+        assertEquals( "missing", "x", layered.getAttribute( "missing", "x" ) );
+
+        final String[] names = layered.getAttributeNames();
+        assertEquals( "names.length", 2, names.length );
+        assertEquals( "names[ 0 ]", "port", names[ 0 ] );
+        assertEquals( "names[ 1 ]", "host", names[ 1 ] );
+        assertSame( "getAttributeNames() cached", names, layered.getAttributeNames() );
+    }
+
+    public void testGetMissingAttribute()
+        throws Exception
+    {
+        final Configuration layered =
+            new LayeredConfiguration( new DefaultConfiguration( "x", "file.xml:3", "" ),
+                                      new DefaultConfiguration( "x", "", "" ) );
+        try
+        {
+            layered.getAttribute( "noExist" );
+        }
+        catch( final ConfigurationException ce )
+        {
+            assertEquals( "ce.getLocation()", "file.xml:3", ce.getLocation() );
+            return;
+        }
+        fail( "Expected to fail getting missing attribute" );
+    }
+
+    public void testValueFallsBackToBase()
+        throws Exception
+    {
+        final DefaultConfiguration base = new DefaultConfiguration( "x", "", "" );
+        base.setValue( "2" );
+        final DefaultConfiguration override = new DefaultConfiguration( "x", "", "" );
+        assertEquals( "base value", 2,
+                      new LayeredConfiguration( override, base ).getValueAsInteger() );
+
+        override.setValue( "3" );
+        assertEquals( "override value", 3,
+                      new LayeredConfiguration( override, base ).getValueAsInteger() );
+    }
+
+    public void testOverrideValueHidesBaseChildren()
+        throws Exception
+    {
+        final DefaultConfiguration base = new DefaultConfiguration( "x", "", "" );
+        base.addChild( new DefaultConfiguration( "y", "", "x" ) );
+        final DefaultConfiguration override = new DefaultConfiguration( "x", "", "" );
+        override.setValue( "3" );
+        final Configuration layered = new LayeredConfiguration( override, base );
+        assertEquals( "getChildren().length", 0, layered.getChildren().length );
+        assertEquals( "getValue()", "3", layered.getValue() );
+    }
+
+    public void testOverrideChildrenHideBaseValue()
+        throws Exception
+    {
+        final DefaultConfiguration base = new DefaultConfiguration( "x", "", "" );
+        base.setValue( "3" );
+        final DefaultConfiguration override = new DefaultConfiguration( "x", "", "" );
+        override.addChild( new DefaultConfiguration( "y", "", "x" ) );
+        final Configuration layered = new LayeredConfiguration( override, base );
+        assertEquals( "getChildren().length", 1, layered.getChildren().length );
+        assertEquals( "getValue( null )", null, layered.getValue( null ) );
+    }
+
+    public void testChildrenMergedByNameAndPosition()
+        throws Exception
+    {
+        final DefaultConfiguration base = new DefaultConfiguration( "x", "", "" );
+        final DefaultConfiguration baseA1 = new DefaultConfiguration( "a", "", "x" );
+        baseA1.setAttribute( "id", "1" );
+        final DefaultConfiguration baseB = new DefaultConfiguration( "b", "", "x" );
+        final DefaultConfiguration baseA2 = new DefaultConfiguration( "a", "", "x" );
+        baseA2.setAttribute( "id", "2" );
+        base.addChild( baseA1 );
+        base.addChild( baseB );
+        base.addChild( baseA2 );
+
+        final DefaultConfiguration override = new DefaultConfiguration( "x", "", "" );
+        final DefaultConfiguration overrideA1 = new DefaultConfiguration( "a", "", "x" );
+        final DefaultConfiguration overrideA2 = new DefaultConfiguration( "a", "", "x" );
+        overrideA2.setAttribute( "id", "two" );
+        final DefaultConfiguration overrideC = new DefaultConfiguration( "c", "", "x" );
+        override.addChild( overrideC );
+        override.addChild( overrideA1 );
+        override.addChild( overrideA2 );
+
+        final Configuration layered = new LayeredConfiguration( override, base );
+        final Configuration[] children = layered.getChildren();
+        assertEquals( "children.length", 4, children.length );
+        assertEquals( "children[ 0 ].id", "1", children[ 0 ].getAttribute( "id" ) );
+        assertSame( "children[ 1 ]", baseB, children[ 1 ] );
+        assertEquals( "children[ 2 ].id", "two", children[ 2 ].getAttribute( "id" ) );
+        assertSame( "children[ 3 ]", overrideC, children[ 3 ] );
+        assertSame( "getChildren() cached", children, layered.getChildren() );
+
+        final Configuration[] as = layered.getChildren( "a" );
+        assertEquals( "as.length", 2, as.length );
+        assertSame( "as[ 0 ]", children[ 0 ], as[ 0 ] );
+        assertSame( "as[ 1 ]", children[ 2 ], as[ 1 ] );
+        assertSame( "getChild( 'b' )", baseB, layered.getChild( "b" ) );
+        assertEquals( "getChild( 'z', false )", null, layered.getChild( "z", false ) );
+        assertEquals( "getChild( 'z' ).getName()", "z", layered.getChild( "z" ).getName() );
+    }
+
+    public void testUnmatchedOverridesWithSharedName()
+        throws Exception
+    {
+        final DefaultConfiguration base = new DefaultConfiguration( "x", "", "" );
+        for( int i = 0; i < 100; i++ )
+        {
+            base.addChild( new DefaultConfiguration( "entry", "", "x" ) );
+        }
+        final DefaultConfiguration override = new DefaultConfiguration( "x", "", "" );
+        final DefaultConfiguration[] entries = new DefaultConfiguration[ 150 ];
+        for( int i = 0; i < entries.length; i++ )
+        {
+            entries[ i ] = new DefaultConfiguration( "entry", "", "x" );
+            entries[ i ].setAttribute( "id", String.valueOf( i ) );
+            override.addChild( entries[ i ] );
+        }
+
+        final Configuration[] children = new LayeredConfiguration( override, base ).getChildren();
+        assertEquals( "children.length", 150, children.length );
+        for( int i = 0; i < 100; i++ )
+        {
+            assertTrue( "layered", children[ i ] instanceof LayeredConfiguration );
+            assertEquals( "id", String.valueOf( i ), children[ i ].getAttribute( "id" ) );
+        }
+        for( int i = 100; i < 150; i++ )
+        {
+            assertSame( "unmatched", entries[ i ], children[ i ] );
+        }
+    }
+
+    public void testBaseIsShared()
+        throws Exception
+    {
+        final DefaultConfiguration base = new DefaultConfiguration( "x", "", "" );
+        final DefaultConfiguration shared = new DefaultConfiguration( "shared", "", "x" );
+        base.addChild( shared );
+        base.addChild( new DefaultConfiguration( "tuned", "", "x" ) );
+        base.makeReadOnly();
+
+        for( int i = 0; i < 3; i++ )
+        {
+            final DefaultConfiguration override = new DefaultConfiguration( "x", "", "" );
+            final DefaultConfiguration tuned = new DefaultConfiguration( "tuned", "", "x" );
+            tuned.setAttribute( "value", String.valueOf( i ) );
+            override.addChild( tuned );
+            final Configuration layered = new LayeredConfiguration( override, base );
+            assertSame( "shared", shared, layered.getChild( "shared" ) );
+            final Configuration child = layered.getChild( "tuned" );
+            assertEquals( "tuned", i, child.getAttributeAsInteger( "value" ) );
+        }
+    }
+
+    public void testEqualsMergedCopy()
+        throws Exception
+    {
+        final DefaultConfiguration base = new DefaultConfiguration( "x", "", "" );
+        base.setAttribute( "a", "1" );
+        final DefaultConfiguration baseChild = new DefaultConfiguration( "y", "", "x" );
+        baseChild.setValue( "base" );
+        base.addChild( baseChild );
+        final DefaultConfiguration override = new DefaultConfiguration( "x", "", "" );
+        override.setAttribute( "b", "2" );
+        final DefaultConfiguration overrideChild = new DefaultConfiguration( "y", "", "x" );
+        overrideChild.setValue( "override" );
+        override.addChild( overrideChild );
+
+        final DefaultConfiguration expected = new DefaultConfiguration( "x", "", "" );
+        expected.setAttribute( "a", "1" );
+        expected.setAttribute( "b", "2" );
+        final DefaultConfiguration expectedChild = new DefaultConfiguration( "y", "", "x" );
+        expectedChild.setValue( "override" );
+        expected.addChild( expectedChild );
+
+        final Configuration layered = new LayeredConfiguration( override, base );
+        assertTrue( "equals", ConfigurationUtil.equals( expected, layered ) );
+    }
+}
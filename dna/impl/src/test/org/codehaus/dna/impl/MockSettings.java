@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+
+public interface MockSettings
+{
+    String getName();
+
+    int getPort();
+
+    long getTimeout( long defaultValue );
+
+    boolean isSecure( boolean defaultValue );
+
+    float loadFactor( float defaultValue );
+
+    int getMaxThreads( int defaultValue );
+
+    Configuration getExtra( Configuration defaultValue );
+
+    Address getAddress();
+
+    public interface Address
+    {
+        String getHost();
+
+        int getPort( int defaultValue );
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+public class MockSettingsBean
+{
+    public static final String IGNORED = "ignored";
+
+    private String m_name;
+    private int m_maxThreads = 4;
+    private boolean m_secure;
+    private MockSettings.Address m_address;
+
+    private MockSettingsBean()
+    {
+    }
+
+    public String getName()
+    {
+        return m_name;
+    }
+
+    public int getMaxThreads()
+    {
+        return m_maxThreads;
+    }
+
+    public boolean isSecure()
+    {
+        return m_secure;
+    }
+
+    public MockSettings.Address getAddress()
+    {
+        return m_address;
+    }
+}
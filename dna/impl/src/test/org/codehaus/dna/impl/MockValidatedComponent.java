@@ -0,0 +1,23 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configurable;
+import org.codehaus.dna.Configuration;
+import org.codehaus.dna.ConfigurationException;
+import org.codehaus.dna.annotation.ConfigurationDescriptor;
+
+public class MockValidatedComponent
+    implements Configurable
+{
+    @ConfigurationDescriptor(location = "MockValidatedComponent-schema.xsd")
+        public void configure( Configuration configuration )
+        throws ConfigurationException
+    {
+    }
+}
@@ -7,10 +7,13 @@
  */
 package org.codehaus.dna.impl;
 
+import java.io.StringReader;
+
 import junit.framework.TestCase;
 
 import org.codehaus.dna.Configuration;
 import org.codehaus.dna.impl.SAXConfigurationHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.AttributesImpl;
@@ -294,6 +297,50 @@ public class SAXConfigurationHandlerTestCase
         fail( "Expected to fail handling sax events as mixed content" );
     }
 
+    public void testWhitespaceAfterChildWithValue()
+        throws Exception
+    {
+        final SAXConfigurationHandler handler = new SAXConfigurationHandler();
+        final String space = " \n ";
+        final String value = "value";
+        handler.startElement( "", "", "a", new AttributesImpl() );
+        handler.startElement( "", "", "b", new AttributesImpl() );
+        handler.startElement( "", "", "c", new AttributesImpl() );
+        handler.characters( value.toCharArray(), 0, value.length() );
+        handler.endElement( "", "", "c" );
+        handler.characters( space.toCharArray(), 0, space.length() );
+        handler.startElement( "", "", "d", new AttributesImpl() );
+        handler.characters( value.toCharArray(), 1, 3 );
+        handler.endElement( "", "", "d" );
+        handler.characters( space.toCharArray(), 0, space.length() );
+        handler.endElement( "", "", "b" );
+        handler.endElement( "", "", "a" );
+        final Configuration configuration = handler.getConfiguration();
+        final Configuration b = configuration.getChild( "b" );
+        assertEquals( "b.value", null, b.getValue( null ) );
+        assertEquals( "c.value", value, b.getChild( "c" ).getValue() );
+        assertEquals( "d.value", "alu", b.getChild( "d" ).getValue() );
+    }
+
+    public void testValueDeliveredInManyChunks()
+        throws Exception
+    {
+        final SAXConfigurationHandler handler = new SAXConfigurationHandler();
+        final String value = "0123456789";
+        handler.startElement( "", "", "a", new AttributesImpl() );
+        for( int i = 0; i < 100; i++ )
+        {
+            handler.characters( value.toCharArray(), 0, value.length() );
+        }
+        handler.endElement( "", "", "a" );
+        final StringBuffer expected = new StringBuffer();
+        for( int i = 0; i < 100; i++ )
+        {
+            expected.append( value );
+        }
+        assertEquals( "value", expected.toString(), handler.getConfiguration().getValue() );
+    }
+
     public void testClearHandler()
         throws Exception
     {
@@ -358,4 +405,233 @@ public class SAXConfigurationHandlerTestCase
                       MockSAXConfigurationHandler.REPLACEMENT,
                       configuration.getAttribute( names[ 0 ] ) );
     }
+
+    public void testNullPoolInCtor()
+        throws Exception
+    {
+        try
+        {
+            new SAXConfigurationHandler( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "pool", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to ctor." );
+    }
+
+    public void testNamesAndKeysAreDeduplicated()
+        throws Exception
+    {
+        final StringPool pool = new StringPool();
+        final SAXConfigurationHandler handler = new SAXConfigurationHandler( pool );
+        assertSame( "handler.getStringPool()", pool, handler.getStringPool() );
+        final MockLocator locator = new MockLocator( new String( "file.xml" ) );
+        handler.setDocumentLocator( locator );
+
+        final AttributesImpl attributes1 = new AttributesImpl();
+        attributes1.addAttribute( "", "", new String( "key" ), "CDATA", "1" );
+        final AttributesImpl attributes2 = new AttributesImpl();
+        attributes2.addAttribute( "", "", new String( "key" ), "CDATA", "2" );
+
+        handler.startElement( "", "", "root", new AttributesImpl() );
+        handler.startElement( "", "", new String( "entry" ), attributes1 );
+        handler.endElement( "", "", "entry" );
+        handler.startElement( "", "", new String( "entry" ), attributes2 );
+        handler.endElement( "", "", "entry" );
+        handler.endElement( "", "", "root" );
+
+        final Configuration[] children = handler.getConfiguration().getChildren();
+        assertEquals( "children.length", 2, children.length );
+        assertSame( "name", children[ 0 ].getName(), children[ 1 ].getName() );
+        assertSame( "key",
+                    children[ 0 ].getAttributeNames()[ 0 ],
+                    children[ 1 ].getAttributeNames()[ 0 ] );
+        assertSame( "location", locator.getSystemId(), children[ 0 ].getLocation() );
+        assertSame( "location", children[ 0 ].getLocation(), children[ 1 ].getLocation() );
+    }
+
+    public void testLocationAndPathComputedFromLocator()
+        throws Exception
+    {
+        final SAXConfigurationHandler handler = new SAXConfigurationHandler();
+        final MockLocator locator = new MockLocator( "file.xml" );
+        handler.setDocumentLocator( locator );
+        locator.setLineNumber( 1 );
+        locator.setColumnNumber( 2 );
+        handler.startElement( "", "", "root", new AttributesImpl() );
+        locator.setLineNumber( 3 );
+        locator.setColumnNumber( 4 );
+        handler.startElement( "", "", "child", new AttributesImpl() );
+        handler.startElement( "", "", "grandChild", new AttributesImpl() );
+        handler.endElement( "", "", "grandChild" );
+        handler.endElement( "", "", "child" );
+        handler.endElement( "", "", "root" );
+
+        final Configuration configuration = handler.getConfiguration();
+        assertEquals( "configuration.location", "file.xml:1:2", configuration.getLocation() );
+        final Configuration child = configuration.getChildren()[ 0 ];
+        assertEquals( "child.location", "file.xml:3:4", child.getLocation() );
+        assertEquals( "child.path", "root", child.getPath() );
+        final Configuration grandChild = child.getChildren()[ 0 ];
+        assertEquals( "grandChild.path", "root/child", grandChild.getPath() );
+    }
+
+    private static final String FILTER_DATA =
+        "<app version=\"1\">\n" +
+        "  <logging level=\"debug\">noise</logging>\n" +
+        "  <modules dir=\"lib\">\n" +
+        "    <module name=\"a\"><entry>1</entry></module>\n" +
+        "    <module name=\"x\"><entry>2</entry><entry>3</entry></module>\n" +
+        "    <module name=\"y\"><entry>4</entry></module>\n" +
+        "  </modules>\n" +
+        "</app>";
+
+    public void testNullFilterPath()
+        throws Exception
+    {
+        final SAXConfigurationHandler handler = new SAXConfigurationHandler();
+        try
+        {
+            handler.setFilter( new String[]{"app", null} );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "paths[1]", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null path." );
+    }
+
+    public void testMalformedFilterPath()
+        throws Exception
+    {
+        final SAXConfigurationHandler handler = new SAXConfigurationHandler();
+        try
+        {
+            handler.setFilter( new String[]{"app/module[@name"} );
+        }
+        catch( final IllegalArgumentException iae )
+        {
+            return;
+        }
+        fail( "Expected illegal argument exception as passed in malformed path." );
+    }
+
+    public void testFilterSelectsSubtree()
+        throws Exception
+    {
+        final Configuration configuration =
+            buildFiltered( new String[]{"/app/modules/module[@name='x']"} );
+        assertEquals( "app.getName()", "app", configuration.getName() );
+        assertEquals( "app.getAttributeNames().length",
+                      0, configuration.getAttributeNames().length );
+        assertEquals( "app.getChildren().length", 1, configuration.getChildren().length );
+
+        final Configuration modules = configuration.getChild( "modules" );
+        assertEquals( "modules.getAttribute( 'dir', null )",
+                      null, modules.getAttribute( "dir", null ) );
+        assertTrue( "modules.getLocation()",
+                    -1 != modules.getLocation().indexOf( "file.xml:3:" ) );
+
+        final Configuration[] modulesList = modules.getChildren();
+        assertEquals( "modulesList.length", 1, modulesList.length );
+        final Configuration module = modulesList[ 0 ];
+        assertEquals( "module.getAttribute( 'name' )", "x", module.getAttribute( "name" ) );
+        assertEquals( "module.getPath()", "app/modules", module.getPath() );
+        final Configuration[] entries = module.getChildren( "entry" );
+        assertEquals( "entries.length", 2, entries.length );
+        assertEquals( "entries[ 1 ].getValue()", "3", entries[ 1 ].getValue() );
+    }
+
+    public void testFilterWithPositionAndMultiplePaths()
+        throws Exception
+    {
+        final Configuration configuration =
+            buildFiltered( new String[]{"app/modules/module[3]", "app/logging"} );
+        final Configuration[] children = configuration.getChildren();
+        assertEquals( "children.length", 2, children.length );
+        assertEquals( "children[ 0 ].getName()", "logging", children[ 0 ].getName() );
+        assertEquals( "logging.getValue()", "noise", children[ 0 ].getValue() );
+        assertEquals( "logging.getAttribute( 'level' )",
+                      "debug", children[ 0 ].getAttribute( "level" ) );
+
+        final Configuration[] modules = children[ 1 ].getChildren();
+        assertEquals( "modules.length", 1, modules.length );
+        assertEquals( "module.getAttribute( 'name' )", "y", modules[ 0 ].getAttribute( "name" ) );
+    }
+
+    public void testFilterWithWildcard()
+        throws Exception
+    {
+        final Configuration configuration =
+            buildFiltered( new String[]{"*/modules/*/entry[2]"} );
+        final Configuration[] modules = configuration.getChild( "modules" ).getChildren();
+        assertEquals( "modules.length", 3, modules.length );
+        assertEquals( "modules[ 0 ].getChildren().length", 0, modules[ 0 ].getChildren().length );
+        final Configuration[] entries = modules[ 1 ].getChildren();
+        assertEquals( "entries.length", 1, entries.length );
+        assertEquals( "entries[ 0 ].getValue()", "3", entries[ 0 ].getValue() );
+    }
+
+    public void testFilterSelectingRoot()
+        throws Exception
+    {
+        final Configuration configuration = buildFiltered( new String[]{"app"} );
+        final Configuration expected = ConfigurationUtil.buildFromXML( createFilterInput() );
+        assertTrue( "equals", ConfigurationUtil.equals( expected, configuration ) );
+    }
+
+    public void testFilterMatchingNothing()
+        throws Exception
+    {
+        final Configuration configuration = buildFiltered( new String[]{"other/modules"} );
+        assertEquals( "getName()", "app", configuration.getName() );
+        assertEquals( "getChildren().length", 0, configuration.getChildren().length );
+    }
+
+    public void testFilterRetainedOnClear()
+        throws Exception
+    {
+        final SAXConfigurationHandler handler = new SAXConfigurationHandler();
+        handler.setFilter( new String[]{"app/modules/module[1]"} );
+        final AttributesImpl attributes = new AttributesImpl();
+        for( int i = 0; i < 2; i++ )
+        {
+            handler.clear();
+            handler.startElement( "", "", "app", attributes );
+            handler.startElement( "", "", "modules", attributes );
+            handler.startElement( "", "", "module", attributes );
+            handler.endElement( "", "", "module" );
+            handler.startElement( "", "", "module", attributes );
+            handler.endElement( "", "", "module" );
+            handler.endElement( "", "", "modules" );
+            handler.endElement( "", "", "app" );
+            final Configuration modules = handler.getConfiguration().getChild( "modules" );
+            assertEquals( "modules.getChildren().length", 1, modules.getChildren().length );
+        }
+
+        handler.setFilter( null );
+        handler.clear();
+        handler.startElement( "", "", "app", attributes );
+        handler.startElement( "", "", "other", attributes );
+        handler.endElement( "", "", "other" );
+        handler.endElement( "", "", "app" );
+        assertEquals( "getChildren().length",
+                      1, handler.getConfiguration().getChildren().length );
+    }
+
+    private static Configuration buildFiltered( final String[] paths )
+        throws Exception
+    {
+        return ConfigurationUtil.buildFromXML( createFilterInput(), new StringPool(), paths );
+    }
+
+    private static InputSource createFilterInput()
+    {
+        final InputSource input = new InputSource( new StringReader( FILTER_DATA ) );
+        input.setSystemId( "file.xml" );
+        return input;
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import junit.framework.TestCase;
+
+public class StringPoolTestCase
+    extends TestCase
+{
+    public void testInternReturnsCanonicalInstance()
+        throws Exception
+    {
+        final StringPool pool = new StringPool();
+        final String first = new String( "element" );
+        final String second = new String( "element" );
+        assertSame( "first", first, pool.intern( first ) );
+        assertSame( "second", first, pool.intern( second ) );
+        assertEquals( "pool.size()", 1, pool.size() );
+    }
+
+    public void testInternNull()
+        throws Exception
+    {
+        final StringPool pool = new StringPool();
+        assertEquals( "pool.intern( null )", null, pool.intern( null ) );
+        assertEquals( "pool.size()", 0, pool.size() );
+    }
+
+    public void testClear()
+        throws Exception
+    {
+        final StringPool pool = new StringPool();
+        final String first = new String( "element" );
+        pool.intern( first );
+        pool.clear();
+        assertEquals( "pool.size()", 0, pool.size() );
+        final String second = new String( "element" );
+        assertSame( "second", second, pool.intern( second ) );
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import org.codehaus.dna.Configuration;
+
+/**
+ * Compares the cost of typed accessors on a mutable
+ * configuration, which parses the string on every call, with
+ * a read-only configuration, which caches the parsed result.
+ * Run via main method; not part of the unit tests.
+ */
+public class TypedAccessorBenchmark
+{
+    private static final int ITERATIONS = 2000000;
+
+    public static void main( final String[] args )
+    {
+        final DefaultConfiguration mutable = createConfiguration();
+        final DefaultConfiguration frozen = createConfiguration();
+        frozen.makeReadOnly();
+
+        for( int i = 0; i < 3; i++ )
+        {
+            System.out.println( "Round " + ( i + 1 ) );
+            run( "mutable", mutable );
+            run( "read-only", frozen );
+        }
+    }
+
+    private static void run( final String label, final Configuration configuration )
+    {
+        long start = System.nanoTime();
+        long total = 0;
+        for( int i = 0; i < ITERATIONS; i++ )
+        {
+            total += configuration.getAttributeAsInteger( "port", 0 );
+        }
+        report( label, "getAttributeAsInteger( name, default )", start, total );
+
+        start = System.nanoTime();
+        total = 0;
+        for( int i = 0; i < ITERATIONS; i++ )
+        {
+            total += configuration.getAttributeAsInteger( "host", 0 );
+        }
+        report( label, "getAttributeAsInteger( malformed, default )", start, total );
+
+        start = System.nanoTime();
+        total = 0;
+        for( int i = 0; i < ITERATIONS; i++ )
+        {
+            total += configuration.getValueAsLong( 0 );
+        }
+        report( label, "getValueAsLong( default )", start, total );
+    }
+
+    private static void report( final String label,
+                                final String operation,
+                                final long start,
+                                final long total )
+    {
+        final long duration = System.nanoTime() - start;
+        System.out.println( "  " + label + " " + operation + ": " +
+                            ( duration / ITERATIONS ) + " ns/op (" + total + ")" );
+    }
+
+    private static DefaultConfiguration createConfiguration()
+    {
+        final DefaultConfiguration configuration =
+            new DefaultConfiguration( "listener", "benchmark", "" );
+        configuration.setAttribute( "port", "8080" );
+        configuration.setAttribute( "host", "localhost" );
+        configuration.setValue( "1234567890123" );
+        return configuration;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) The DNA Group. All rights reserved.
+ *
+ * This software is published under the terms of the DNA
+ * Software License version 1.1, a copy of which has been included
+ * with this distribution in the LICENSE.txt file.
+ */
+package org.codehaus.dna.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import junit.framework.TestCase;
+
+public class TypedValueTestCase
+    extends TestCase
+{
+    public void testIntegerValue()
+        throws Exception
+    {
+        final TypedValue value = new TypedValue( "42" );
+        assertEquals( "isInteger()", true, value.isInteger() );
+        assertEquals( "toInteger()", 42, value.toInteger( 0 ) );
+        assertEquals( "isLong()", true, value.isLong() );
+        assertEquals( "toLong()", 42L, value.toLong( 0 ) );
+        assertEquals( "isFloat()", true, value.isFloat() );
+        assertEquals( "toFloat()", 42.0F, value.toFloat( 0 ), 0.0F );
+        assertEquals( "toBoolean()", false, value.toBoolean() );
+    }
+
+    public void testLongValue()
+        throws Exception
+    {
+        final TypedValue value = new TypedValue( "9999999999" );
+        assertEquals( "isInteger()", false, value.isInteger() );
+        assertEquals( "toInteger()", 7, value.toInteger( 7 ) );
+        assertEquals( "isLong()", true, value.isLong() );
+        assertEquals( "toLong()", 9999999999L, value.toLong( 0 ) );
+        assertEquals( "isFloat()", true, value.isFloat() );
+    }
+
+    public void testFloatValue()
+        throws Exception
+    {
+        final TypedValue value = new TypedValue( "2.5" );
+        assertEquals( "isInteger()", false, value.isInteger() );
+        assertEquals( "isLong()", false, value.isLong() );
+        assertEquals( "toLong()", 3L, value.toLong( 3 ) );
+        assertEquals( "isFloat()", true, value.isFloat() );
+        assertEquals( "toFloat()", 2.5F, value.toFloat( 0 ), 0.0F );
+    }
+
+    public void testBooleanValue()
+        throws Exception
+    {
+        final TypedValue value = new TypedValue( "true" );
+        assertEquals( "toBoolean()", true, value.toBoolean() );
+        assertEquals( "isInteger()", false, value.isInteger() );
+        assertEquals( "isLong()", false, value.isLong() );
+        assertEquals( "isFloat()", false, value.isFloat() );
+        assertEquals( "toFloat()", 1.5F, value.toFloat( 1.5F ), 0.0F );
+    }
+
+    public void testNullValue()
+        throws Exception
+    {
+        try
+        {
+            new TypedValue( null );
+        }
+        catch( final NullPointerException npe )
+        {
+            assertEquals( "value", npe.getMessage() );
+            return;
+        }
+        fail( "Expected null pointer exception as passed in null to ctor." );
+    }
+
+    public void testAddToCacheKeepsFirstInstance()
+        throws Exception
+    {
+        final ConcurrentMap cache = new ConcurrentHashMap();
+        final TypedValue value1 = TypedValue.addToCache( cache, "a", "1" );
+        final TypedValue value2 = TypedValue.addToCache( cache, "b", "2" );
+        assertEquals( "cache.size()", 2, cache.size() );
+        assertSame( "cache.get( 'a' )", value1, cache.get( "a" ) );
+        assertSame( "cache.get( 'b' )", value2, cache.get( "b" ) );
+        assertSame( "addToCache( 'a' )", value1, TypedValue.addToCache( cache, "a", "1" ) );
+        assertEquals( "value2.toInteger()", 2, value2.toInteger( 0 ) );
+    }
+
+    public void testParseResultRemembered()
+        throws Exception
+    {
+        final TypedValue value = new TypedValue( "12" );
+        assertEquals( "isLong()", true, value.isLong() );
+        assertEquals( "isLong()", true, value.isLong() );
+        assertEquals( "toInteger()", 12, value.toInteger( 0 ) );
+        assertEquals( "toInteger()", 12, value.toInteger( 0 ) );
+
+        final TypedValue text = new TypedValue( "text" );
+        assertEquals( "toInteger()", 3, text.toInteger( 3 ) );
+        assertEquals( "toInteger()", 4, text.toInteger( 4 ) );
+    }
+}